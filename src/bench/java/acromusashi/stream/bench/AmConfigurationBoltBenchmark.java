@@ -0,0 +1,167 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bench;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import acromusashi.stream.bolt.AmConfigurationBolt;
+import acromusashi.stream.constants.FieldName;
+import acromusashi.stream.entity.StreamMessage;
+import backtype.storm.generated.StormTopology;
+import backtype.storm.task.GeneralTopologyContext;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.TupleImpl;
+import backtype.storm.utils.Utils;
+
+/**
+ * Benchmark for tuple to message conversion in {@link AmConfigurationBolt#execute(Tuple)}.
+ *
+ * @author kimura
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AmConfigurationBoltBenchmark
+{
+    /** Source component name */
+    private static final String SOURCE_COMPONENT = "SourceSpout";
+
+    /** Source task id */
+    private static final int    SOURCE_TASK      = 1;
+
+    /** Target bolt */
+    private ConvertOnlyBolt     bolt;
+
+    /** Tuple that contains StreamMessage */
+    private Tuple               messageTuple;
+
+    /** Tuple that contains plain fields */
+    private Tuple               fieldTuple;
+
+    /**
+     * Create target bolt and tuples.
+     */
+    @Setup
+    @SuppressWarnings("rawtypes")
+    public void setUp()
+    {
+        this.bolt = new ConvertOnlyBolt();
+        this.bolt.prepare(new HashMap(), null, null);
+
+        StreamMessage message = new StreamMessage();
+        message.addField("Param1", "Value1");
+        this.messageTuple = createTuple("MessageStream", new Fields(FieldName.MESSAGE_KEY,
+                FieldName.MESSAGE_VALUE), Arrays.<Object> asList("MessageKey", message));
+        this.fieldTuple = createTuple("FieldStream", new Fields("Param1", "Param2", "Param3",
+                "Param4"), Arrays.<Object> asList("Value1", 2, 3L, "Value4"));
+    }
+
+    /**
+     * Execute tuple that contains StreamMessage.
+     *
+     * @return converted message
+     */
+    @Benchmark
+    public StreamMessage executeMessageTuple()
+    {
+        this.bolt.execute(this.messageTuple);
+        return this.bolt.lastMessage;
+    }
+
+    /**
+     * Execute tuple that contains plain fields.
+     *
+     * @return converted message
+     */
+    @Benchmark
+    public StreamMessage executeFieldTuple()
+    {
+        this.bolt.execute(this.fieldTuple);
+        return this.bolt.lastMessage;
+    }
+
+    /**
+     * Create tuple emitted from source component.
+     *
+     * @param streamId stream id
+     * @param fields output fields
+     * @param values values
+     * @return tuple
+     */
+    private Tuple createTuple(String streamId, Fields fields, List<Object> values)
+    {
+        Map<Integer, String> taskToComponent = new HashMap<>();
+        taskToComponent.put(SOURCE_TASK, SOURCE_COMPONENT);
+        Map<String, List<Integer>> componentToTasks = new HashMap<>();
+        componentToTasks.put(SOURCE_COMPONENT, Arrays.asList(SOURCE_TASK));
+        Map<String, Fields> streamToFields = new HashMap<>();
+        streamToFields.put(streamId, fields);
+        Map<String, Map<String, Fields>> componentToStreamToFields = new HashMap<>();
+        componentToStreamToFields.put(SOURCE_COMPONENT, streamToFields);
+
+        GeneralTopologyContext context = new GeneralTopologyContext(new StormTopology(),
+                Utils.readDefaultConfig(), taskToComponent, componentToTasks,
+                componentToStreamToFields, "BenchTopology");
+        return new TupleImpl(context, values, SOURCE_TASK, streamId);
+    }
+
+    /**
+     * Bolt that only keeps converted message.
+     */
+    private static class ConvertOnlyBolt extends AmConfigurationBolt
+    {
+        /** serialVersionUID */
+        private static final long serialVersionUID = 1L;
+
+        /** Last converted message */
+        StreamMessage             lastMessage;
+
+        /**
+         * Constructs instance.
+         */
+        ConvertOnlyBolt()
+        {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onMessage(StreamMessage message)
+        {
+            this.lastMessage = message;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void declareOutputFields(OutputFieldsDeclarer declarer)
+        {
+            // Do nothing.
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bench;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import acromusashi.stream.bolt.AmBaseBolt;
+import acromusashi.stream.constants.FieldName;
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.trace.KeyHistory;
+import backtype.storm.generated.StormTopology;
+import backtype.storm.task.GeneralTopologyContext;
+import backtype.storm.task.IOutputCollector;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.TupleImpl;
+import backtype.storm.utils.Utils;
+
+/**
+ * Benchmark for emit in {@link AmBaseBolt} with key history trace enabled and disabled.<br>
+ * Run with GC profiler (bench profile passes -prof gc) and compare gc.alloc.rate.norm between
+ * traceHistory=true and traceHistory=false. {@link #createEmitKeyHistory()} isolates the allocation
+ * caused by tracing through production {@link AmBaseBolt} code, and is expected to be 0 B/op when trace is disabled.
+ *
+ * @author kimura
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EmitTraceBenchmark
+{
+    /** Source component name */
+    private static final String SOURCE_COMPONENT = "SourceSpout";
+
+    /** Source task id */
+    private static final int    SOURCE_TASK      = 1;
+
+    /** Number of keys recorded in received message */
+    private static final int    HISTORY_SIZE     = 4;
+
+    /** Whether key history trace is enabled */
+    @Param({"true", "false"})
+    private boolean             traceHistory;
+
+    /** Target bolt */
+    private EmitBolt            bolt;
+
+    /** Received message */
+    private StreamMessage       message;
+
+    /** Key history of received message */
+    private KeyHistory          receivedHistory;
+
+    /** Tuple that contains received message */
+    private Tuple               tuple;
+
+    /**
+     * Create target bolt and tuple.
+     */
+    @Setup
+    @SuppressWarnings("rawtypes")
+    public void setUp()
+    {
+        TopologyContext context = Mockito.mock(TopologyContext.class);
+        Mockito.when(context.getThisComponentId()).thenReturn("EmitBolt");
+        Mockito.when(context.getThisTaskId()).thenReturn(2);
+
+        this.bolt = new EmitBolt();
+        this.bolt.setTraceHistory(this.traceHistory);
+        this.bolt.setMetricsEnabled(false);
+        this.bolt.prepare(new HashMap(), context, new OutputCollector(new NoopOutputCollector()));
+
+        this.receivedHistory = new KeyHistory();
+        for (int index = 0; index < HISTORY_SIZE; index++)
+        {
+            this.receivedHistory.addKey("MessageKey" + index);
+        }
+
+        this.message = new StreamMessage();
+        this.message.addField("Param1", "Value1");
+        this.tuple = createTuple(Arrays.<Object> asList("MessageKey", this.message));
+    }
+
+    /**
+     * Execute tuple and emit received message with message key.
+     *
+     * @return emitted message
+     */
+    @Benchmark
+    public StreamMessage executeAndEmit()
+    {
+        // Emit replaces history of the message, so restore received history every time.
+        this.message.getHeader().setHistory(this.receivedHistory);
+        this.bolt.execute(this.tuple);
+        return this.message;
+    }
+
+    /**
+     * Create only key history for emitting message.<br>
+     * Called outside of execute, so key history is created from empty history when trace is enabled.
+     * Copy of received history is measured by {@link #executeAndEmit()}.
+     *
+     * @return created key history
+     */
+    @Benchmark
+    public KeyHistory createEmitKeyHistory()
+    {
+        return this.bolt.createEmitKeyHistory("EmitKey");
+    }
+
+    /**
+     * Create tuple emitted from source component.
+     *
+     * @param values values
+     * @return tuple
+     */
+    private Tuple createTuple(List<Object> values)
+    {
+        String streamId = "MessageStream";
+        Map<Integer, String> taskToComponent = new HashMap<>();
+        taskToComponent.put(SOURCE_TASK, SOURCE_COMPONENT);
+        Map<String, List<Integer>> componentToTasks = new HashMap<>();
+        componentToTasks.put(SOURCE_COMPONENT, Arrays.asList(SOURCE_TASK));
+        Map<String, Fields> streamToFields = new HashMap<>();
+        streamToFields.put(streamId, new Fields(FieldName.MESSAGE_KEY, FieldName.MESSAGE_VALUE));
+        Map<String, Map<String, Fields>> componentToStreamToFields = new HashMap<>();
+        componentToStreamToFields.put(SOURCE_COMPONENT, streamToFields);
+
+        GeneralTopologyContext context = new GeneralTopologyContext(new StormTopology(),
+                Utils.readDefaultConfig(), taskToComponent, componentToTasks,
+                componentToStreamToFields, "BenchTopology");
+        return new TupleImpl(context, values, SOURCE_TASK, streamId);
+    }
+
+    /**
+     * Bolt that emits received message with message key.
+     */
+    private static class EmitBolt extends AmBaseBolt
+    {
+        /** serialVersionUID */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs instance.
+         */
+        EmitBolt()
+        {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @SuppressWarnings("rawtypes")
+        @Override
+        public void onPrepare(Map stormConf, TopologyContext context)
+        {
+            // Do nothing.
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onExecute(StreamMessage input)
+        {
+            emit(input, "EmitKey");
+        }
+
+        /**
+         * {@inheritDoc}<br>
+         * Overridden only to be called from benchmark.
+         */
+        @Override
+        protected KeyHistory createEmitKeyHistory(Object messageKey)
+        {
+            return super.createEmitKeyHistory(messageKey);
+        }
+    }
+
+    /**
+     * Output collector that drops emitted tuples.
+     */
+    private static class NoopOutputCollector implements IOutputCollector
+    {
+        /** Task ids returned on emit */
+        private static final List<Integer> TASK_IDS = Collections.singletonList(3);
+
+        /**
+         * Constructs instance.
+         */
+        NoopOutputCollector()
+        {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<Integer> emit(String streamId, Collection<Tuple> anchors, List<Object> tuple)
+        {
+            return TASK_IDS;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void emitDirect(int taskId, String streamId, Collection<Tuple> anchors,
+                List<Object> tuple)
+        {
+            // Do nothing.
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void ack(Tuple input)
+        {
+            // Do nothing.
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void fail(Tuple input)
+        {
+            // Do nothing.
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void reportError(Throwable error)
+        {
+            // Do nothing.
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import acromusashi.stream.trace.KeyHistory;
+
+/**
+ * Benchmark for {@link KeyHistory#addKey(String)} and {@link KeyHistory#createDeepCopy()}.
+ *
+ * @author kimura
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeyHistoryBenchmark
+{
+    /** Number of recorded keys */
+    @Param({"1", "8", "32"})
+    private int        historySize;
+
+    /** Key history that has recorded keys */
+    private KeyHistory history;
+
+    /**
+     * Create key history that has recorded keys.
+     */
+    @Setup
+    public void setUp()
+    {
+        this.history = new KeyHistory();
+        for (int index = 0; index < this.historySize; index++)
+        {
+            this.history.addKey("MessageKey" + index);
+        }
+    }
+
+    /**
+     * Copy key history and add key to the copy, as bolt does on emit.
+     *
+     * @return copied key history
+     */
+    @Benchmark
+    public KeyHistory copyAndAddKey()
+    {
+        KeyHistory copied = this.history.createDeepCopy();
+        copied.addKey("AddedKey");
+        return copied;
+    }
+
+    /**
+     * Copy key history.
+     *
+     * @return copied key history
+     */
+    @Benchmark
+    public KeyHistory createDeepCopy()
+    {
+        return this.history.createDeepCopy();
+    }
+}
@@ -0,0 +1,125 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.entity.StreamMessageHeader;
+import acromusashi.stream.serializer.KeyHistorySerializer;
+import acromusashi.stream.serializer.StreamMessageHeaderSerializer;
+import acromusashi.stream.serializer.StreamMessageSerializer;
+import acromusashi.stream.trace.KeyHistory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Benchmark for {@link StreamMessage} round trip with Java serialization and Kryo serialization.<br>
+ * Kryo is configured as {@link acromusashi.stream.serializer.StreamSerializerUtil} does.
+ *
+ * @author kimura
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark
+{
+    /** Target message */
+    private StreamMessage message;
+
+    /** Kryo */
+    private Kryo          kryo;
+
+    /** Kryo output buffer */
+    private Output        output;
+
+    /**
+     * Create target message and Kryo.
+     */
+    @Setup
+    public void setUp()
+    {
+        this.message = new StreamMessage();
+        StreamMessageHeader header = this.message.getHeader();
+        header.setMessageKey("MessageKey");
+        header.setMessageId("MessageId");
+        header.setTimestamp(System.currentTimeMillis());
+        header.setSource("192.168.0.1");
+        header.setType("snmp");
+        header.addAdditionalHeader("SNMPVersion", "v2c");
+        header.addHistory("Key1");
+        header.addHistory("Key2");
+        this.message.addField("Param1", "Value1");
+        this.message.addField("Param2", 2);
+
+        this.kryo = new Kryo();
+        this.kryo.register(StreamMessage.class, new StreamMessageSerializer());
+        this.kryo.register(StreamMessageHeader.class, new StreamMessageHeaderSerializer());
+        this.kryo.register(KeyHistory.class, new KeyHistorySerializer());
+        this.kryo.register(LinkedHashMap.class);
+        this.output = new Output(1024, -1);
+    }
+
+    /**
+     * Round trip with Java serialization.
+     *
+     * @return deserialized message
+     * @throws IOException serialization failed
+     * @throws ClassNotFoundException deserialization failed
+     */
+    @Benchmark
+    public Object javaSerialization() throws IOException, ClassNotFoundException
+    {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(byteStream))
+        {
+            out.writeObject(this.message);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+                byteStream.toByteArray())))
+        {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Round trip with Kryo serialization.
+     *
+     * @return deserialized message
+     */
+    @Benchmark
+    public Object kryoSerialization()
+    {
+        this.output.clear();
+        this.kryo.writeObject(this.output, this.message);
+        Input input = new Input(this.output.getBuffer(), 0, this.output.position());
+        return this.kryo.readObject(input, StreamMessage.class);
+    }
+}
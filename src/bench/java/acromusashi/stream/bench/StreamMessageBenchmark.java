@@ -0,0 +1,103 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import acromusashi.stream.entity.StreamMessage;
+
+/**
+ * Benchmark for {@link StreamMessage} creation and field access.
+ *
+ * @author kimura
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StreamMessageBenchmark
+{
+    /** Field names */
+    private static final String[] FIELD_NAMES = {"Param1", "Param2", "Param3", "Param4"};
+
+    /** Message filled with fields */
+    private StreamMessage         filledMessage;
+
+    /**
+     * Create message filled with fields.
+     */
+    @Setup
+    public void setUp()
+    {
+        this.filledMessage = new StreamMessage();
+        for (String fieldName : FIELD_NAMES)
+        {
+            this.filledMessage.addField(fieldName, fieldName);
+        }
+    }
+
+    /**
+     * Create empty message.
+     *
+     * @return created message
+     */
+    @Benchmark
+    public StreamMessage create()
+    {
+        return new StreamMessage();
+    }
+
+    /**
+     * Create message and add fields.
+     *
+     * @return created message
+     */
+    @Benchmark
+    public StreamMessage createAndAddField()
+    {
+        StreamMessage message = new StreamMessage();
+        for (String fieldName : FIELD_NAMES)
+        {
+            message.addField(fieldName, fieldName);
+        }
+
+        return message;
+    }
+
+    /**
+     * Get all fields from message.
+     *
+     * @return number of found fields
+     */
+    @Benchmark
+    public int getField()
+    {
+        int found = 0;
+        for (String fieldName : FIELD_NAMES)
+        {
+            if (this.filledMessage.getField(fieldName) != null)
+            {
+                found++;
+            }
+        }
+
+        return found;
+    }
+}
@@ -0,0 +1,332 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt;
+
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import acromusashi.stream.bolt.AmAsyncResponse.EmitEntry;
+import acromusashi.stream.entity.StreamMessage;
+import backtype.storm.Config;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
+
+/**
+ * AcroMUSASHI Stream's basis bolt class that processes messages asynchronously.<br>
+ * {@link #onExecuteAsync(StreamMessage, AmAsyncResponse)} starts processing and returns without waiting result.
+ * When processing finishes, call {@link AmAsyncResponse#complete()} or {@link AmAsyncResponse#fail(Throwable)} from any thread.<br>
+ * Completed responses are queued, and emitting messages, ack and fail are executed on bolt's executor thread
+ * because OutputCollector is not thread-safe. The queue is drained on each received tuple and tick tuple.<br>
+ * If number of in-flight messages reaches max in-flight count, execute blocks until any response completes.<br>
+ * Response not completed within response timeout is expired and its tuple is failed on executor thread.
+ * Later complete or fail of expired response is ignored. Because the oldest response is expired at the latest
+ * after response timeout, waiting for capacity is also bounded by response timeout.
+ *
+ * @author kimura
+ */
+public abstract class AmAsyncBolt extends AmBaseBolt
+{
+    /** serialVersionUID */
+    private static final long                            serialVersionUID    = 3217655025340846823L;
+
+    /** Logger */
+    private static final Logger                          logger              = LoggerFactory.getLogger(AmAsyncBolt.class);
+
+    /** Default max in-flight count */
+    public static final int                              DEFAULT_MAX_INFLIGHT = 64;
+
+    /** Default tick tuple interval(sec) */
+    public static final int                              DEFAULT_TICK_SEC     = 1;
+
+    /** Default response timeout(ms) */
+    public static final long                             DEFAULT_RESPONSE_TIMEOUT_MS = 30000;
+
+    /** Interval(ms) to check completion while waiting in-flight messages. */
+    private static final long                            AWAIT_INTERVAL_MS    = 100;
+
+    /** Max in-flight count */
+    protected int                                        maxInFlight          = DEFAULT_MAX_INFLIGHT;
+
+    /** Response timeout(ms). 0 means responses are never expired. */
+    protected long                                       responseTimeoutMs    = DEFAULT_RESPONSE_TIMEOUT_MS;
+
+    /** Tick tuple interval(sec). 0 means tick tuple is not used. */
+    protected int                                        tickIntervalSec      = DEFAULT_TICK_SEC;
+
+    /** Completed responses */
+    private transient LinkedBlockingQueue<AmAsyncResponse> completionQueue;
+
+    /** In-flight responses in start order. Accessed only from executor thread. */
+    private transient LinkedHashSet<AmAsyncResponse>     inFlightResponses;
+
+    /**
+     * Constructs instance.
+     */
+    public AmAsyncBolt()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Object> getComponentConfiguration()
+    {
+        if (this.tickIntervalSec <= 0)
+        {
+            return null;
+        }
+
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, this.tickIntervalSec);
+        return conf;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Tuple input)
+    {
+        if (this.completionQueue == null)
+        {
+            this.completionQueue = new LinkedBlockingQueue<>();
+            this.inFlightResponses = new LinkedHashSet<>();
+        }
+
+        if (isTickTuple(input))
+        {
+            // Tick tuple is not anchored, so it does not need ack.
+            drainCompletions();
+            return;
+        }
+
+        awaitCapacity();
+        super.execute(input);
+        drainCompletions();
+    }
+
+    /**
+     * Start asynchronous processing of received message.
+     *
+     * @param input received message
+     */
+    @Override
+    public final void onExecute(StreamMessage input)
+    {
+        AmAsyncResponse response = new AmAsyncResponse(getExecutingTuple(), input.getHeader()
+                .getHistory(), this.completionQueue, getCurrentTime());
+        deferResponse();
+        this.inFlightResponses.add(response);
+
+        try
+        {
+            onExecuteAsync(input, response);
+        }
+        catch (RuntimeException ex)
+        {
+            String logFormat = "Async execute failed. Fail tuple. : TaskId={0}";
+            logger.warn(MessageFormat.format(logFormat, this.taskId), ex);
+
+            if (response.isCompleted() == false)
+            {
+                response.fail(ex);
+            }
+        }
+    }
+
+    /**
+     * Start asynchronous processing of received message.<br>
+     * Implementation must call {@link AmAsyncResponse#complete()} or {@link AmAsyncResponse#fail(Throwable)} exactly once
+     * when processing finishes. Do not call emit, ack or fail methods of this class from other thread.
+     *
+     * @param input received message
+     * @param response response handle
+     */
+    public abstract void onExecuteAsync(StreamMessage input, AmAsyncResponse response);
+
+    /**
+     * Wait until in-flight count becomes less than max in-flight count.
+     * Wait is bounded by response timeout because expired responses are failed while waiting.
+     */
+    private void awaitCapacity()
+    {
+        drainCompletions();
+
+        while (this.maxInFlight > 0 && this.inFlightResponses.size() >= this.maxInFlight)
+        {
+            AmAsyncResponse response = null;
+            try
+            {
+                response = this.completionQueue.poll(AWAIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (response != null)
+            {
+                handleCompletion(response);
+            }
+            drainCompletions();
+        }
+    }
+
+    /**
+     * Emit, ack or fail all completed responses, then fail expired responses.
+     */
+    protected void drainCompletions()
+    {
+        AmAsyncResponse response = null;
+        while ((response = this.completionQueue.poll()) != null)
+        {
+            handleCompletion(response);
+        }
+
+        expireResponses();
+    }
+
+    /**
+     * Fail in-flight responses not completed within response timeout.
+     */
+    private void expireResponses()
+    {
+        if (this.responseTimeoutMs <= 0 || this.inFlightResponses.isEmpty())
+        {
+            return;
+        }
+
+        long expireTime = getCurrentTime() - this.responseTimeoutMs;
+        Iterator<AmAsyncResponse> iterator = this.inFlightResponses.iterator();
+        while (iterator.hasNext())
+        {
+            AmAsyncResponse response = iterator.next();
+            if (response.getStartTime() > expireTime)
+            {
+                // Responses are held in start order, so following responses are not expired.
+                return;
+            }
+
+            String messageFormat = "Async response timed out. : TimeoutMs={0}";
+            if (response.expire(new TimeoutException(MessageFormat.format(messageFormat,
+                    this.responseTimeoutMs))))
+            {
+                iterator.remove();
+                String logFormat = "Async response timed out. Fail tuple. : TaskId={0}";
+                logger.warn(MessageFormat.format(logFormat, this.taskId));
+                fail(response.getTuple());
+            }
+        }
+    }
+
+    /**
+     * Emit messages of completed response, and ack or fail its tuple.
+     *
+     * @param response completed response
+     */
+    private void handleCompletion(AmAsyncResponse response)
+    {
+        this.inFlightResponses.remove(response);
+        Tuple tuple = response.getTuple();
+
+        if (response.getCause() != null)
+        {
+            String logFormat = "Async execute failed. Fail tuple. : TaskId={0}";
+            logger.warn(MessageFormat.format(logFormat, this.taskId), response.getCause());
+            fail(tuple);
+            return;
+        }
+
+        for (EmitEntry entry : response.getEmitEntries())
+        {
+            if (entry.useHistory)
+            {
+                entry.message.getHeader().setHistory(
+                        createEmitKeyHistory(response.getHistory(), entry.messageKey));
+            }
+
+            if (entry.streamId == null)
+            {
+                getCollector().emit(tuple, new Values(entry.groupingKey, entry.message));
+            }
+            else
+            {
+                getCollector().emit(entry.streamId, tuple,
+                        new Values(entry.groupingKey, entry.message));
+            }
+
+            recordEmit();
+        }
+
+        ack(tuple);
+    }
+
+    /**
+     * Get number of in-flight messages.
+     *
+     * @return in-flight count
+     */
+    protected int getInFlightCount()
+    {
+        if (this.inFlightResponses == null)
+        {
+            return 0;
+        }
+
+        return this.inFlightResponses.size();
+    }
+
+    /**
+     * Get current time.
+     *
+     * @return current time
+     */
+    protected long getCurrentTime()
+    {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @param maxInFlight the maxInFlight to set. 0 means unlimited.
+     */
+    public void setMaxInFlight(int maxInFlight)
+    {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @param responseTimeoutMs the responseTimeoutMs to set. 0 means responses are never expired.
+     */
+    public void setResponseTimeoutMs(long responseTimeoutMs)
+    {
+        this.responseTimeoutMs = responseTimeoutMs;
+    }
+
+    /**
+     * @param tickIntervalSec the tickIntervalSec to set
+     */
+    public void setTickIntervalSec(int tickIntervalSec)
+    {
+        this.tickIntervalSec = tickIntervalSec;
+    }
+}
@@ -0,0 +1,350 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.trace.KeyHistory;
+import backtype.storm.tuple.Tuple;
+
+/**
+ * Response handle of the message processed asynchronously by {@link AmAsyncBolt}.<br>
+ * Methods of this class can be called from any thread. Emitted messages are held in this class,
+ * and are emitted, then tuple is acked or failed on bolt's executor thread after {@link #complete()} or {@link #fail(Throwable)} is called.<br>
+ * If response is expired by bolt's response timeout, its tuple is already failed and later calls are ignored.
+ *
+ * @author kimura
+ */
+public class AmAsyncResponse
+{
+    /** Received tuple */
+    private final Tuple                tuple;
+
+    /** Received message's key history */
+    private final KeyHistory           history;
+
+    /** Completion queue of the bolt */
+    private final Queue<AmAsyncResponse> completionQueue;
+
+    /** Messages to emit */
+    private final List<EmitEntry>      emitEntries = new ArrayList<>();
+
+    /** Start time(ms) */
+    private final long                 startTime;
+
+    /** Completed flag */
+    private boolean                    completed;
+
+    /** Expired flag */
+    private boolean                    expired;
+
+    /** Failure cause. null if succeeded. */
+    private Throwable                  cause;
+
+    /**
+     * Constructs instance.
+     *
+     * @param tuple received tuple
+     * @param history received message's key history
+     * @param completionQueue completion queue of the bolt
+     * @param startTime start time(ms)
+     */
+    AmAsyncResponse(Tuple tuple, KeyHistory history, Queue<AmAsyncResponse> completionQueue,
+            long startTime)
+    {
+        this.tuple = tuple;
+        this.history = history;
+        this.completionQueue = completionQueue;
+        this.startTime = startTime;
+    }
+
+    /**
+     * Add message to emit to default stream when completed.<br>
+     * Key history is created from received message's key history and messageKey in the same way as
+     * {@link AmBaseBolt#emit(StreamMessage, Object)}.
+     *
+     * @param message message to emit
+     * @param messageKey MessageKey(Use key history's value)
+     */
+    public void emit(StreamMessage message, Object messageKey)
+    {
+        addEmitEntry(new EmitEntry(message, true, messageKey, "", null));
+    }
+
+    /**
+     * Add message to emit to default stream with grouping key when completed.<br>
+     * Key history is created in the same way as {@link #emit(StreamMessage, Object)}.
+     *
+     * @param message message to emit
+     * @param messageKey MessageKey(Use key history's value)
+     * @param groupingKey grouping key
+     */
+    public void emitWithGrouping(StreamMessage message, Object messageKey, String groupingKey)
+    {
+        addEmitEntry(new EmitEntry(message, true, messageKey, groupingKey, null));
+    }
+
+    /**
+     * Add message to emit to specified stream when completed.<br>
+     * Key history is created in the same way as {@link #emit(StreamMessage, Object)}.
+     *
+     * @param message message to emit
+     * @param messageKey MessageKey(Use key history's value)
+     * @param streamId stream id
+     */
+    public void emitWithStream(StreamMessage message, Object messageKey, String streamId)
+    {
+        addEmitEntry(new EmitEntry(message, true, messageKey, "", streamId));
+    }
+
+    /**
+     * Add message to emit to specified stream with grouping key when completed.<br>
+     * Key history is created in the same way as {@link #emit(StreamMessage, Object)}.
+     *
+     * @param message message to emit
+     * @param messageKey MessageKey(Use key history's value)
+     * @param groupingKey grouping key
+     * @param streamId stream id
+     */
+    public void emitWithGroupingStream(StreamMessage message, Object messageKey,
+            String groupingKey, String streamId)
+    {
+        addEmitEntry(new EmitEntry(message, true, messageKey, groupingKey, streamId));
+    }
+
+    /**
+     * Add message to emit to default stream when completed, and not use key history function.
+     *
+     * @param message message to emit
+     */
+    public void emitWithOnlyAnchor(StreamMessage message)
+    {
+        addEmitEntry(new EmitEntry(message, false, null, "", null));
+    }
+
+    /**
+     * Add message to emit to default stream with grouping key when completed, and not use key history function.
+     *
+     * @param message message to emit
+     * @param groupingKey grouping key
+     */
+    public void emitWithOnlyAnchorAndGrouping(StreamMessage message, String groupingKey)
+    {
+        addEmitEntry(new EmitEntry(message, false, null, groupingKey, null));
+    }
+
+    /**
+     * Add message to emit to specified stream when completed, and not use key history function.
+     *
+     * @param message message to emit
+     * @param streamId stream id
+     */
+    public void emitWithOnlyAnchorAndStream(StreamMessage message, String streamId)
+    {
+        addEmitEntry(new EmitEntry(message, false, null, "", streamId));
+    }
+
+    /**
+     * Add message to emit to specified stream with grouping key when completed, and not use key history function.
+     *
+     * @param message message to emit
+     * @param groupingKey grouping key
+     * @param streamId stream id
+     */
+    public void emitWithOnlyAnchorAndGroupingStream(StreamMessage message, String groupingKey,
+            String streamId)
+    {
+        addEmitEntry(new EmitEntry(message, false, null, groupingKey, streamId));
+    }
+
+    /**
+     * Add message to emit when completed.
+     *
+     * @param entry message to emit
+     */
+    private synchronized void addEmitEntry(EmitEntry entry)
+    {
+        if (this.expired)
+        {
+            return;
+        }
+
+        checkNotCompleted();
+        this.emitEntries.add(entry);
+    }
+
+    /**
+     * Notify processing succeeded. Added messages are emitted and tuple is acked.
+     */
+    public void complete()
+    {
+        synchronized (this)
+        {
+            if (this.expired)
+            {
+                return;
+            }
+
+            checkNotCompleted();
+            this.completed = true;
+        }
+
+        this.completionQueue.offer(this);
+    }
+
+    /**
+     * Notify processing failed. Added messages are discarded and tuple is failed.
+     *
+     * @param cause failure cause
+     */
+    public void fail(Throwable cause)
+    {
+        synchronized (this)
+        {
+            if (this.expired)
+            {
+                return;
+            }
+
+            checkNotCompleted();
+            this.completed = true;
+            this.cause = cause;
+        }
+
+        this.completionQueue.offer(this);
+    }
+
+    /**
+     * Check response is not completed.
+     */
+    private void checkNotCompleted()
+    {
+        if (this.completed)
+        {
+            throw new IllegalStateException("Response is already completed.");
+        }
+    }
+
+    /**
+     * Expire response if it is not completed. Called on bolt's executor thread.
+     *
+     * @param timeoutCause failure cause of expiration
+     * @return true if expired, false if already completed
+     */
+    synchronized boolean expire(Throwable timeoutCause)
+    {
+        if (this.completed)
+        {
+            return false;
+        }
+
+        this.completed = true;
+        this.expired = true;
+        this.cause = timeoutCause;
+        this.emitEntries.clear();
+        return true;
+    }
+
+    /**
+     * Check response is completed.
+     *
+     * @return true if completed
+     */
+    synchronized boolean isCompleted()
+    {
+        return this.completed;
+    }
+
+    /**
+     * @return the tuple
+     */
+    Tuple getTuple()
+    {
+        return this.tuple;
+    }
+
+    /**
+     * @return the startTime
+     */
+    long getStartTime()
+    {
+        return this.startTime;
+    }
+
+    /**
+     * @return the history
+     */
+    KeyHistory getHistory()
+    {
+        return this.history;
+    }
+
+    /**
+     * @return the emitEntries
+     */
+    synchronized List<EmitEntry> getEmitEntries()
+    {
+        return this.emitEntries;
+    }
+
+    /**
+     * @return the cause
+     */
+    synchronized Throwable getCause()
+    {
+        return this.cause;
+    }
+
+    /**
+     * Message to emit with its emit parameters.
+     */
+    static class EmitEntry
+    {
+        /** Message to emit */
+        final StreamMessage message;
+
+        /** Use key history function flag */
+        final boolean       useHistory;
+
+        /** MessageKey(Use key history's value) */
+        final Object        messageKey;
+
+        /** Grouping key */
+        final String        groupingKey;
+
+        /** Stream id. null means default stream. */
+        final String        streamId;
+
+        /**
+         * Constructs instance.
+         *
+         * @param message message to emit
+         * @param useHistory use key history function flag
+         * @param messageKey MessageKey(Use key history's value)
+         * @param groupingKey grouping key
+         * @param streamId stream id
+         */
+        EmitEntry(StreamMessage message, boolean useHistory, Object messageKey,
+                String groupingKey, String streamId)
+        {
+            this.message = message;
+            this.useHistory = useHistory;
+            this.messageKey = messageKey;
+            this.groupingKey = groupingKey;
+            this.streamId = streamId;
+        }
+    }
+}
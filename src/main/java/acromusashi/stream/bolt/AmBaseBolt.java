@@ -12,6 +12,7 @@
 */
 package acromusashi.stream.bolt;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.Collections;
@@ -22,14 +23,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import acromusashi.stream.config.ConfigFileWatcher;
+import acromusashi.stream.config.ConfigSnapshot;
+import acromusashi.stream.config.ConfigWatchService;
 import acromusashi.stream.config.StormConfigGenerator;
+import acromusashi.stream.config.WatchedConfig;
 import acromusashi.stream.constants.FieldName;
 import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.metrics.ComponentMetrics;
+import acromusashi.stream.state.KeyedStateStore;
 import acromusashi.stream.trace.KeyHistory;
+import acromusashi.stream.trace.KeyHistoryFactory;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
 
 import com.google.common.collect.Lists;
@@ -40,6 +48,7 @@ import com.google.common.collect.Lists;
  * <ol>
  * <li>Has message's key history.</li>
  * <li>If config updated, reload config.</li>
+ * <li>Records built-in metrics. ({@link ComponentMetrics})</li>
  * </ol>
  * 
  * If needs config reload function, do following.
@@ -61,6 +70,9 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     /** Default config update interval. */
     protected static final long           DEFAULT_INTERVAL        = 30;
 
+    /** Default state snapshot interval. */
+    protected static final long           DEFAULT_STATE_SNAPSHOT_INTERVAL = 60;
+
     /** Task id. */
     protected String                      taskId;
 
@@ -70,9 +82,15 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     /** Message acked flag. */
     private boolean                       responsed;
 
+    /** Anchor tuples used instead of executing tuple. null means executing tuple is used. */
+    private transient List<Tuple>         emitAnchors;
+
     /** Record key history flag. */
     protected boolean                     recordHistory           = true;
 
+    /** Trace key history flag. If false, key history is not propagated and not created. */
+    protected boolean                     traceHistory            = true;
+
     /** Config reload flag. */
     protected boolean                     reloadConfig            = false;
 
@@ -82,9 +100,42 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     /** Component Specific Config */
     protected Map<String, Object>         specificConfig;
 
-    /** Config file watcher */
+    /**
+     * Config file watcher.
+     *
+     * @deprecated Not set any more, config file is watched by {@link ConfigWatchService} and
+     * published to {@link #watchedConfig}. If a subclass sets this field, it is still checked on executor thread.
+     */
+    @Deprecated
     protected transient ConfigFileWatcher watcher;
 
+    /** Watched config file */
+    protected transient WatchedConfig     watchedConfig;
+
+    /** Applied config snapshot version */
+    protected transient long              appliedConfigVersion;
+
+    /** Key history factory */
+    protected KeyHistoryFactory           historyFactory          = new KeyHistoryFactory();
+
+    /** Built-in metrics enable flag. */
+    protected boolean                     metricsEnabled          = true;
+
+    /** Built-in metrics. null if disabled. */
+    protected transient ComponentMetrics  metrics;
+
+    /** State store base directory. null means state store is disabled. */
+    protected String                      stateDir;
+
+    /** State snapshot interval. */
+    protected long                        stateSnapshotIntervalSec = DEFAULT_STATE_SNAPSHOT_INTERVAL;
+
+    /** Keyed state store. null if disabled. */
+    protected transient KeyedStateStore   stateStore;
+
+    /** Last state snapshot time. */
+    private transient long                lastSnapshotTime;
+
     /**
      * Initialize method called after extracted for worker processes.<br>
      * <br>
@@ -101,6 +152,9 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
         super.prepare(stormConf, context, collector);
 
         this.taskId = context.getThisComponentId() + "_" + context.getThisTaskId();
+        this.historyFactory = KeyHistoryFactory.fromStormConf(stormConf);
+        this.traceHistory = this.traceHistory && this.historyFactory.isTraceEnabled();
+        this.metrics = ComponentMetrics.register(stormConf, context, this.metricsEnabled, true);
 
         if (this.reloadConfig)
         {
@@ -110,11 +164,32 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
                 String logFormat = "Config reload watch start. : WatchPath={0}, Interval(Sec)={1}";
                 logger.info(MessageFormat.format(logFormat, watchPath, this.reloadConfigIntervalSec));
 
-                this.watcher = new ConfigFileWatcher(watchPath, this.reloadConfigIntervalSec);
-                this.watcher.init();
+                this.watchedConfig = ConfigWatchService.getInstance().register(watchPath,
+                        this.reloadConfigIntervalSec);
+                this.appliedConfigVersion = this.watchedConfig.getVersion();
             }
         }
 
+        if (this.stateDir != null)
+        {
+            File stateDirectory = new File(this.stateDir, context.getThisComponentId() + "_"
+                    + context.getThisTaskIndex());
+            try
+            {
+                this.stateStore = KeyedStateStore.open(stateDirectory,
+                        KeyedStateStore.DEFAULT_INITIAL_CAPACITY, KeyedStateStore.DEFAULT_MAX_DELTAS);
+            }
+            catch (IOException ex)
+            {
+                String logFormat = "State restore failed. : StateDirectory={0}";
+                throw new IllegalStateException(MessageFormat.format(logFormat, stateDirectory), ex);
+            }
+
+            this.lastSnapshotTime = System.currentTimeMillis();
+            String logFormat = "State restored. : StateDirectory={0}, Size={1}";
+            logger.info(MessageFormat.format(logFormat, stateDirectory, this.stateStore.size()));
+        }
+
         onPrepare(stormConf, context);
     }
 
@@ -137,27 +212,31 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     @Override
     public void onMessage(StreamMessage received)
     {
-        if (this.reloadConfig && this.watcher != null)
+        long startTime = 0;
+        if (this.metrics != null)
         {
-            Map<String, Object> reloadedConfig = null;
-
-            try
-            {
-                reloadedConfig = this.watcher.readIfUpdated();
-            }
-            catch (IOException ex)
-            {
-                String logFormat = "Config file reload failed. Skip reload config.";
-                logger.warn(logFormat, ex);
-            }
+            startTime = System.nanoTime();
+        }
 
-            if (reloadedConfig != null)
+        if (this.reloadConfig && this.watchedConfig != null)
+        {
+            // Config file is read by watch thread. Only check published snapshot here.
+            ConfigSnapshot snapshot = this.watchedConfig.getSnapshot();
+            if (snapshot != null && snapshot.getVersion() != this.appliedConfigVersion)
             {
-                onUpdate(reloadedConfig);
+                this.appliedConfigVersion = snapshot.getVersion();
+                applyConfig(snapshot.getConfig());
             }
         }
+        else if (this.reloadConfig && this.watcher != null)
+        {
+            applyLegacyWatcherConfig();
+        }
 
-        this.executingKeyHistory = received.getHeader().getHistory();
+        if (this.traceHistory)
+        {
+            this.executingKeyHistory = received.getHeader().getHistory();
+        }
         this.responsed = false;
 
         // Execute message processing.
@@ -172,16 +251,135 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
             clearExecuteStatus();
         }
 
+        if (this.stateStore != null)
+        {
+            snapshotStateIfNeeded();
+        }
+
         // If not responsed, auto ack
         if (this.responsed == false)
         {
             super.ack();
+            if (this.metrics != null)
+            {
+                this.metrics.recordAck();
+                this.metrics.recordAutoAck();
+            }
+        }
+
+        if (this.metrics != null)
+        {
+            this.metrics.recordExecute(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Take state snapshot if snapshot interval elapsed.
+     */
+    private void snapshotStateIfNeeded()
+    {
+        long nowTime = System.currentTimeMillis();
+        if ((nowTime - this.lastSnapshotTime) < this.stateSnapshotIntervalSec * 1000)
+        {
+            return;
+        }
+
+        this.lastSnapshotTime = nowTime;
+        try
+        {
+            this.stateStore.snapshot();
+        }
+        catch (IOException ex)
+        {
+            String logFormat = "State snapshot failed. Retry next interval. : TaskId={0}";
+            logger.warn(MessageFormat.format(logFormat, this.taskId), ex);
+        }
+    }
+
+    /**
+     * Take state snapshot and release state store.
+     */
+    @Override
+    public void cleanup()
+    {
+        if (this.stateStore != null)
+        {
+            try
+            {
+                this.stateStore.snapshot();
+            }
+            catch (IOException ex)
+            {
+                String logFormat = "State snapshot failed. : TaskId={0}";
+                logger.warn(MessageFormat.format(logFormat, this.taskId), ex);
+            }
+
+            this.stateStore.close();
+            this.stateStore = null;
         }
+
+        super.cleanup();
+    }
+
+    /**
+     * Get keyed state store.<br>
+     * State store is enabled by {@link #setStateDir(String)}, and restored on prepare.
+     * Snapshot is taken after onExecute at snapshot interval. Tuples are acked right after onExecute,
+     * so updates after last snapshot are lost if the worker crashes before next snapshot. They are not replayed.
+     * If lost updates are not acceptable, set snapshot interval to 0 to take snapshot after each tuple.
+     *
+     * @return keyed state store, null if disabled
+     */
+    protected KeyedStateStore getStateStore()
+    {
+        return this.stateStore;
+    }
+
+    /**
+     * Read config by deprecated {@link #watcher} set by subclass, and apply it if updated.
+     */
+    private void applyLegacyWatcherConfig()
+    {
+        Map<String, Object> reloadedConfig = null;
+
+        try
+        {
+            reloadedConfig = this.watcher.readIfUpdated();
+        }
+        catch (IOException ex)
+        {
+            String logFormat = "Config file reload failed. Skip reload config.";
+            logger.warn(logFormat, ex);
+        }
+
+        if (reloadedConfig != null)
+        {
+            applyConfig(reloadedConfig);
+        }
+    }
+
+    /**
+     * Call onUpdate with reloaded config, and record its latency.
+     *
+     * @param reloadedConfig reloaded config
+     */
+    private void applyConfig(Map<String, Object> reloadedConfig)
+    {
+        if (this.metrics == null)
+        {
+            onUpdate(reloadedConfig);
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        onUpdate(reloadedConfig);
+        this.metrics.recordConfigReload(System.nanoTime() - startTime);
     }
 
     /**
      * Notify updated config if config file updated.<br>
-     * If needs config reload, override this method.
+     * If needs config reload, override this method.<br>
+     * Reloaded config is unmodifiable and shared with other components in the worker.
      * 
      * @param reloadedConfig reloaded config
      */
@@ -249,6 +447,10 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     {
         super.ack();
         this.responsed = true;
+        if (this.metrics != null)
+        {
+            this.metrics.recordAck();
+        }
     }
 
     /**
@@ -259,6 +461,47 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     {
         super.fail();
         this.responsed = true;
+        if (this.metrics != null)
+        {
+            this.metrics.recordFail();
+        }
+    }
+
+    /**
+     * Notify ack for specified tuple. Use for tuple whose response is deferred.
+     *
+     * @param tuple tuple to ack
+     */
+    protected void ack(Tuple tuple)
+    {
+        getCollector().ack(tuple);
+        if (this.metrics != null)
+        {
+            this.metrics.recordAck();
+        }
+    }
+
+    /**
+     * Notify fail for specified tuple. Use for tuple whose response is deferred.
+     *
+     * @param tuple tuple to fail
+     */
+    protected void fail(Tuple tuple)
+    {
+        getCollector().fail(tuple);
+        if (this.metrics != null)
+        {
+            this.metrics.recordFail();
+        }
+    }
+
+    /**
+     * Mark inputed tuple as responsed without ack or fail.<br>
+     * Use when the tuple is acked or failed later, so that auto ack is not executed.
+     */
+    protected void deferResponse()
+    {
+        this.responsed = true;
     }
 
     /**
@@ -278,7 +521,7 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
 
         if (history != null)
         {
-            // For adjust message splited, use keyhistory's deepcopy.
+            // For adjust message splited, use keyhistory's copy that shares recorded keys.
             result = history.createDeepCopy();
         }
 
@@ -298,11 +541,11 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
 
         if (history == null)
         {
-            result = new KeyHistory();
+            result = this.historyFactory.create();
         }
         else
         {
-            // For adjust message splited, use keyhistory's deepcopy.
+            // For adjust message splited, use keyhistory's copy that shares recorded keys.
             result = history.createDeepCopy();
         }
 
@@ -311,6 +554,111 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
         return result;
     }
 
+    /**
+     * Create key history for emitting message.<br>
+     * <ol>
+     * <li>If trace key history is disabled, return null. (Key history is dropped and not created.)</li>
+     * <li>If record key history is enabled, return key history that added current message key.</li>
+     * <li>Otherwise, return copy of executing message's key history.</li>
+     * </ol>
+     *
+     * @param messageKey current message key
+     * @return created key history
+     */
+    protected KeyHistory createEmitKeyHistory(Object messageKey)
+    {
+        return createEmitKeyHistory(this.executingKeyHistory, messageKey);
+    }
+
+    /**
+     * Create key history for emitting message from specified base key history.<br>
+     * Rules are same as {@link #createEmitKeyHistory(Object)}.
+     *
+     * @param baseHistory received message's key history
+     * @param messageKey current message key
+     * @return created key history
+     */
+    protected KeyHistory createEmitKeyHistory(KeyHistory baseHistory, Object messageKey)
+    {
+        if (this.traceHistory == false)
+        {
+            return null;
+        }
+
+        KeyHistory result = null;
+        if (this.recordHistory)
+        {
+            result = createKeyRecorededHistory(baseHistory, messageKey);
+        }
+        else
+        {
+            result = createKeyRecorededHistory(baseHistory);
+        }
+
+        return result;
+    }
+
+    /**
+     * Set anchor tuples used by anchored emit instead of executing tuple.<br>
+     * Used by subclasses which emit messages derived from multiple input tuples.
+     *
+     * @param anchors anchor tuples. null restores anchoring to executing tuple.
+     */
+    protected void setEmitAnchors(List<Tuple> anchors)
+    {
+        this.emitAnchors = anchors;
+    }
+
+    /**
+     * Emit values anchored to anchor tuples, or executing tuple if anchor tuples are not set.
+     *
+     * @param values emit values
+     */
+    private void emitAnchored(Values values)
+    {
+        if (this.emitAnchors != null)
+        {
+            getCollector().emit(this.emitAnchors, values);
+        }
+        else
+        {
+            getCollector().emit(this.getExecutingTuple(), values);
+        }
+
+        recordEmit();
+    }
+
+    /**
+     * Emit values to stream anchored to anchor tuples, or executing tuple if anchor tuples are not set.
+     *
+     * @param streamId streamId
+     * @param values emit values
+     */
+    private void emitAnchored(String streamId, Values values)
+    {
+        if (this.emitAnchors != null)
+        {
+            getCollector().emit(streamId, this.emitAnchors, values);
+        }
+        else
+        {
+            getCollector().emit(streamId, this.getExecutingTuple(), values);
+        }
+
+        recordEmit();
+    }
+
+    /**
+     * Record emit to built-in metrics.
+     */
+    protected void recordEmit()
+    {
+        if (this.metrics != null)
+        {
+            this.metrics.recordEmit();
+        }
+    }
+
     /**
      * Get config value from specific config.
      * 
@@ -358,19 +706,10 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
      */
     protected void emit(StreamMessage message, Object messageKey)
     {
-        KeyHistory newHistory = null;
-        if (this.recordHistory)
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory, messageKey);
-        }
-        else
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory);
-        }
-
+        KeyHistory newHistory = createEmitKeyHistory(messageKey);
         message.getHeader().setHistory(newHistory);
 
-        getCollector().emit(this.getExecutingTuple(), new Values("", message));
+        emitAnchored(new Values("", message));
     }
 
     /**
@@ -388,19 +727,10 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
      */
     protected void emitWithGrouping(StreamMessage message, Object messageKey, String groupingKey)
     {
-        KeyHistory newHistory = null;
-        if (this.recordHistory)
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory, messageKey);
-        }
-        else
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory);
-        }
-
+        KeyHistory newHistory = createEmitKeyHistory(messageKey);
         message.getHeader().setHistory(newHistory);
 
-        getCollector().emit(this.getExecutingTuple(), new Values(groupingKey, message));
+        emitAnchored(new Values(groupingKey, message));
     }
 
     /**
@@ -418,19 +748,10 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
      */
     protected void emitWithStream(StreamMessage message, Object messageKey, String streamId)
     {
-        KeyHistory newHistory = null;
-        if (this.recordHistory)
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory, messageKey);
-        }
-        else
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory);
-        }
-
+        KeyHistory newHistory = createEmitKeyHistory(messageKey);
         message.getHeader().setHistory(newHistory);
 
-        getCollector().emit(streamId, this.getExecutingTuple(), new Values("", message));
+        emitAnchored(streamId, new Values("", message));
     }
 
     /**
@@ -450,19 +771,10 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     protected void emitWithGroupingStream(StreamMessage message, Object messageKey,
             String groupingKey, String streamId)
     {
-        KeyHistory newHistory = null;
-        if (this.recordHistory)
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory, messageKey);
-        }
-        else
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory);
-        }
-
+        KeyHistory newHistory = createEmitKeyHistory(messageKey);
         message.getHeader().setHistory(newHistory);
 
-        getCollector().emit(streamId, this.getExecutingTuple(), new Values(groupingKey, message));
+        emitAnchored(streamId, new Values(groupingKey, message));
     }
 
     /**
@@ -479,6 +791,7 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     protected void emitWithNoAnchorKey(StreamMessage message)
     {
         getCollector().emit(new Values("", message));
+        recordEmit();
     }
 
     /**
@@ -496,6 +809,7 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     protected void emitWithNoAnchorKeyAndGrouping(StreamMessage message, String groupingKey)
     {
         getCollector().emit(new Values(groupingKey, message));
+        recordEmit();
     }
 
     /**
@@ -513,6 +827,7 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     protected void emitWithNoAnchorKeyAndStream(StreamMessage message, String streamId)
     {
         getCollector().emit(streamId, new Values("", message));
+        recordEmit();
     }
 
     /**
@@ -532,6 +847,7 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
             String streamId)
     {
         getCollector().emit(streamId, new Values(groupingKey, message));
+        recordEmit();
     }
 
     /**
@@ -548,19 +864,11 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
      */
     protected void emitWithOnlyKey(StreamMessage message, Object messageKey)
     {
-        KeyHistory newHistory = null;
-        if (this.recordHistory)
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory, messageKey);
-        }
-        else
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory);
-        }
-
+        KeyHistory newHistory = createEmitKeyHistory(messageKey);
         message.getHeader().setHistory(newHistory);
 
         getCollector().emit(new Values("", message));
+        recordEmit();
     }
 
     /**
@@ -579,19 +887,11 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     protected void emitWithOnlyKeyAndGrouping(StreamMessage message, Object messageKey,
             String groupingKey)
     {
-        KeyHistory newHistory = null;
-        if (this.recordHistory)
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory, messageKey);
-        }
-        else
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory);
-        }
-
+        KeyHistory newHistory = createEmitKeyHistory(messageKey);
         message.getHeader().setHistory(newHistory);
 
         getCollector().emit(new Values(groupingKey, message));
+        recordEmit();
     }
 
     /**
@@ -610,19 +910,11 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     protected void emitWithOnlyKeyAndStream(StreamMessage message, Object messageKey,
             String streamId)
     {
-        KeyHistory newHistory = null;
-        if (this.recordHistory)
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory, messageKey);
-        }
-        else
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory);
-        }
-
+        KeyHistory newHistory = createEmitKeyHistory(messageKey);
         message.getHeader().setHistory(newHistory);
 
         getCollector().emit(streamId, new Values("", message));
+        recordEmit();
     }
 
     /**
@@ -642,19 +934,11 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     protected void emitWithOnlyKeyAndGroupingStream(StreamMessage message, Object messageKey,
             String groupingKey, String streamId)
     {
-        KeyHistory newHistory = null;
-        if (this.recordHistory)
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory, messageKey);
-        }
-        else
-        {
-            newHistory = createKeyRecorededHistory(this.executingKeyHistory);
-        }
-
+        KeyHistory newHistory = createEmitKeyHistory(messageKey);
         message.getHeader().setHistory(newHistory);
 
         getCollector().emit(streamId, new Values(groupingKey, message));
+        recordEmit();
     }
 
     /**
@@ -670,7 +954,7 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
      */
     protected void emitWithOnlyAnchor(StreamMessage message)
     {
-        getCollector().emit(this.getExecutingTuple(), new Values("", message));
+        emitAnchored(new Values("", message));
     }
 
     /**
@@ -687,7 +971,7 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
      */
     protected void emitWithOnlyAnchorAndGrouping(StreamMessage message, String groupingKey)
     {
-        getCollector().emit(this.getExecutingTuple(), new Values(groupingKey, message));
+        emitAnchored(new Values(groupingKey, message));
     }
 
     /**
@@ -704,7 +988,7 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
      */
     protected void emitWithOnlyAnchorAndStream(StreamMessage message, String streamId)
     {
-        getCollector().emit(streamId, this.getExecutingTuple(), new Values("", message));
+        emitAnchored(streamId, new Values("", message));
     }
 
     /**
@@ -723,7 +1007,7 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     protected void emitWithOnlyAnchorAndGroupingStream(StreamMessage message, String groupingKey,
             String streamId)
     {
-        getCollector().emit(streamId, this.getExecutingTuple(), new Values(groupingKey, message));
+        emitAnchored(streamId, new Values(groupingKey, message));
     }
 
     /**
@@ -734,6 +1018,14 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
         this.recordHistory = recordHistory;
     }
 
+    /**
+     * @param traceHistory the traceHistory to set
+     */
+    public void setTraceHistory(boolean traceHistory)
+    {
+        this.traceHistory = traceHistory;
+    }
+
     /**
      * @param reloadConfig the reloadConfig to set
      */
@@ -757,4 +1049,28 @@ public abstract class AmBaseBolt extends AmConfigurationBolt
     {
         this.specificConfig = specificConfig;
     }
+
+    /**
+     * @param stateDir the stateDir to set. null means state store is disabled.
+     */
+    public void setStateDir(String stateDir)
+    {
+        this.stateDir = stateDir;
+    }
+
+    /**
+     * @param stateSnapshotIntervalSec the stateSnapshotIntervalSec to set
+     */
+    public void setStateSnapshotIntervalSec(long stateSnapshotIntervalSec)
+    {
+        this.stateSnapshotIntervalSec = stateSnapshotIntervalSec;
+    }
+
+    /**
+     * @param metricsEnabled the metricsEnabled to set
+     */
+    public void setMetricsEnabled(boolean metricsEnabled)
+    {
+        this.metricsEnabled = metricsEnabled;
+    }
 }
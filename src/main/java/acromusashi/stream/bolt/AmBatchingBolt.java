@@ -0,0 +1,418 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import acromusashi.stream.entity.LazyBody;
+import acromusashi.stream.entity.SchemaBody;
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.entity.StreamMessageSchema;
+import acromusashi.stream.entity.StreamMessageSchema.FieldType;
+import backtype.storm.Config;
+import backtype.storm.tuple.Tuple;
+
+/**
+ * AcroMUSASHI Stream's basis bolt class that processes messages in batch.<br>
+ * Received messages are buffered, and {@link #onFlush(List)} is called when one of following conditions is met.
+ * <ol>
+ * <li>Number of buffered messages reaches max batch count.</li>
+ * <li>Estimated size of buffered messages reaches max batch bytes.</li>
+ * <li>Max batch delay elapsed since first message is buffered. (Checked on message and tick tuple.)</li>
+ * </ol>
+ * After onFlush completes, all tuples of the batch are acked. If onFlush throws exception, all tuples are failed.<br>
+ * Anchored emits called in onFlush are anchored to all tuples of the batch, so failure of emitted message fails whole batch.<br>
+ * Subclasses must not call ack() or fail(), because tuples are acked or failed per batch.
+ *
+ * @author kimura
+ */
+public abstract class AmBatchingBolt extends AmBaseBolt
+{
+    /** serialVersionUID */
+    private static final long          serialVersionUID    = -2404862693460347917L;
+
+    /** Logger */
+    private static final Logger        logger              = LoggerFactory.getLogger(AmBatchingBolt.class);
+
+    /** Default max batch count */
+    public static final int            DEFAULT_BATCH_COUNT = 100;
+
+    /** Default max batch delay(ms) */
+    public static final long           DEFAULT_BATCH_DELAY = 1000;
+
+    /** Default tick tuple interval(sec) */
+    public static final int            DEFAULT_TICK_SEC    = 1;
+
+    /** Max batch count */
+    protected int                      maxBatchCount       = DEFAULT_BATCH_COUNT;
+
+    /** Max batch bytes. 0 means unlimited. */
+    protected long                     maxBatchBytes       = 0;
+
+    /** Max batch delay(ms). 0 means unlimited. */
+    protected long                     maxBatchDelayMs     = DEFAULT_BATCH_DELAY;
+
+    /** Tick tuple interval(sec). 0 means tick tuple is not used. */
+    protected int                      tickIntervalSec     = DEFAULT_TICK_SEC;
+
+    /** Buffered messages */
+    private transient List<StreamMessage> bufferedMessages;
+
+    /** Buffered tuples */
+    private transient List<Tuple>      bufferedTuples;
+
+    /** Estimated size of buffered messages */
+    private transient long             bufferedBytes;
+
+    /** Time first message is buffered */
+    private transient long             firstBufferedTime;
+
+    /**
+     * Constructs instance.
+     */
+    public AmBatchingBolt()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Object> getComponentConfiguration()
+    {
+        if (this.tickIntervalSec <= 0)
+        {
+            return null;
+        }
+
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, this.tickIntervalSec);
+        return conf;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Tuple input)
+    {
+        if (isTickTuple(input))
+        {
+            // Tick tuple is not anchored, so it does not need ack.
+            if (isBatchExpired())
+            {
+                flush();
+            }
+            return;
+        }
+
+        super.execute(input);
+    }
+
+    /**
+     * Buffer received message, and flush if batch condition is met.
+     *
+     * @param input received message
+     */
+    @Override
+    public final void onExecute(StreamMessage input)
+    {
+        if (this.bufferedMessages == null)
+        {
+            this.bufferedMessages = new ArrayList<>();
+            this.bufferedTuples = new ArrayList<>();
+        }
+
+        if (this.bufferedMessages.isEmpty())
+        {
+            this.firstBufferedTime = getCurrentTime();
+        }
+
+        this.bufferedMessages.add(input);
+        this.bufferedTuples.add(getExecutingTuple());
+        this.bufferedBytes += estimateSize(input);
+        deferResponse();
+
+        if (this.bufferedMessages.size() >= this.maxBatchCount
+                || (this.maxBatchBytes > 0 && this.bufferedBytes >= this.maxBatchBytes)
+                || isBatchExpired())
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Process buffered messages in batch.<br>
+     * If this method throws exception, all tuples of the batch are failed.
+     *
+     * @param messages buffered messages
+     * @throws Exception batch process failed
+     */
+    public abstract void onFlush(List<StreamMessage> messages) throws Exception;
+
+    /**
+     * Estimate message size used for max batch bytes.<br>
+     * Default implementation uses length of raw body for lazy body, and {@link #estimateValueSize(Object)} for other body.
+     *
+     * @param message message
+     * @return estimated size
+     */
+    protected long estimateSize(StreamMessage message)
+    {
+        LazyBody lazyBody = message.getLazyBody();
+        if (lazyBody != null)
+        {
+            return lazyBody.getLength();
+        }
+
+        return estimateValueSize(message.getBody());
+    }
+
+    /**
+     * Estimate size of value in bytes.<br>
+     * String is counted as UTF-8 bytes, byte[] as its length and number or boolean as 8 bytes.
+     * Map (including {@link SchemaBody}) and collection are counted as sum of their keys and values.
+     * Other value is counted as UTF-8 bytes of its string representation.
+     *
+     * @param value value
+     * @return estimated size
+     */
+    protected long estimateValueSize(Object value)
+    {
+        if (value == null)
+        {
+            return 0;
+        }
+
+        if (value instanceof String)
+        {
+            return utf8Length((String) value);
+        }
+
+        if (value instanceof byte[])
+        {
+            return ((byte[]) value).length;
+        }
+
+        if (value instanceof Number || value instanceof Boolean)
+        {
+            return 8;
+        }
+
+        if (value instanceof SchemaBody)
+        {
+            return estimateSchemaBodySize((SchemaBody) value);
+        }
+
+        if (value instanceof Map)
+        {
+            long size = 0;
+            for (Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+            {
+                size += estimateValueSize(entry.getKey()) + estimateValueSize(entry.getValue());
+            }
+            return size;
+        }
+
+        if (value instanceof Collection)
+        {
+            long size = 0;
+            for (Object element : (Collection<?>) value)
+            {
+                size += estimateValueSize(element);
+            }
+            return size;
+        }
+
+        return utf8Length(value.toString());
+    }
+
+    /**
+     * Estimate size of schema body without boxing primitive fields.
+     *
+     * @param body schema body
+     * @return estimated size
+     */
+    private long estimateSchemaBodySize(SchemaBody body)
+    {
+        StreamMessageSchema schema = body.getSchema();
+        long size = 0;
+        for (int index = 0; index < schema.size(); index++)
+        {
+            if (body.isAssigned(index) == false)
+            {
+                continue;
+            }
+
+            size += utf8Length(schema.getFieldName(index));
+            if (schema.getFieldType(index) == FieldType.OBJECT)
+            {
+                size += estimateValueSize(body.getObject(index));
+            }
+            else
+            {
+                size += 8;
+            }
+        }
+
+        return size + estimateValueSize(body.getAdditionalFields());
+    }
+
+    /**
+     * Count UTF-8 bytes of string without encoding it.
+     *
+     * @param value string
+     * @return UTF-8 bytes
+     */
+    private static long utf8Length(String value)
+    {
+        long length = 0;
+        int charLength = value.length();
+        for (int index = 0; index < charLength; index++)
+        {
+            char current = value.charAt(index);
+            if (current < 0x80)
+            {
+                length += 1;
+            }
+            else if (current < 0x800)
+            {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(current) && index + 1 < charLength
+                    && Character.isLowSurrogate(value.charAt(index + 1)))
+            {
+                length += 4;
+                index++;
+            }
+            else
+            {
+                length += 3;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Flush buffered messages, then ack or fail buffered tuples.
+     */
+    protected void flush()
+    {
+        if (this.bufferedMessages == null || this.bufferedMessages.isEmpty())
+        {
+            return;
+        }
+
+        List<StreamMessage> messages = this.bufferedMessages;
+        List<Tuple> tuples = this.bufferedTuples;
+        this.bufferedMessages = new ArrayList<>();
+        this.bufferedTuples = new ArrayList<>();
+        this.bufferedBytes = 0;
+
+        boolean succeeded = false;
+        setEmitAnchors(tuples);
+        try
+        {
+            onFlush(messages);
+            succeeded = true;
+        }
+        catch (Exception ex)
+        {
+            String logFormat = "Batch flush failed. Fail batch tuples. : TaskId={0}, BatchSize={1}";
+            logger.warn(MessageFormat.format(logFormat, this.taskId, messages.size()), ex);
+        }
+        finally
+        {
+            setEmitAnchors(null);
+        }
+
+        for (Tuple tuple : tuples)
+        {
+            if (succeeded)
+            {
+                ack(tuple);
+            }
+            else
+            {
+                fail(tuple);
+            }
+        }
+    }
+
+    /**
+     * Check max batch delay elapsed since first message is buffered.
+     *
+     * @return true if elapsed
+     */
+    private boolean isBatchExpired()
+    {
+        if (this.maxBatchDelayMs <= 0 || this.bufferedMessages == null
+                || this.bufferedMessages.isEmpty())
+        {
+            return false;
+        }
+
+        return getCurrentTime() - this.firstBufferedTime >= this.maxBatchDelayMs;
+    }
+
+    /**
+     * Get current time.
+     *
+     * @return current time
+     */
+    protected long getCurrentTime()
+    {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @param maxBatchCount the maxBatchCount to set
+     */
+    public void setMaxBatchCount(int maxBatchCount)
+    {
+        this.maxBatchCount = maxBatchCount;
+    }
+
+    /**
+     * @param maxBatchBytes the maxBatchBytes to set
+     */
+    public void setMaxBatchBytes(long maxBatchBytes)
+    {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * @param maxBatchDelayMs the maxBatchDelayMs to set
+     */
+    public void setMaxBatchDelayMs(long maxBatchDelayMs)
+    {
+        this.maxBatchDelayMs = maxBatchDelayMs;
+    }
+
+    /**
+     * @param tickIntervalSec the tickIntervalSec to set
+     */
+    public void setTickIntervalSec(int tickIntervalSec)
+    {
+        this.tickIntervalSec = tickIntervalSec;
+    }
+}
@@ -12,13 +12,19 @@
 */
 package acromusashi.stream.bolt;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import acromusashi.stream.constants.FieldName;
 import acromusashi.stream.entity.StreamMessage;
+import backtype.storm.Constants;
+import backtype.storm.generated.GlobalStreamId;
+import backtype.storm.generated.Grouping;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.base.BaseRichBolt;
+import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
 
 /**
@@ -49,6 +55,9 @@ public abstract class AmConfigurationBolt extends BaseRichBolt
     /** Executing Tuple */
     private Tuple             executingTuple;
 
+    /** Tuple conversion plans(Key:Source component, Value:(Key:Stream, Value:Plan)) */
+    private transient Map<String, Map<String, TupleConversionPlan>> conversionPlans;
+
     /**
      * {@inheritDoc}
      */
@@ -59,6 +68,19 @@ public abstract class AmConfigurationBolt extends BaseRichBolt
         this.stormConf = stormConf;
         this.context = context;
         this.collector = collector;
+
+        this.conversionPlans = new HashMap<>();
+        if (context != null && context.getThisSources() != null)
+        {
+            for (Entry<GlobalStreamId, Grouping> sourceEntry : context.getThisSources().entrySet())
+            {
+                GlobalStreamId streamId = sourceEntry.getKey();
+                Fields fields = context.getComponentOutputFields(streamId.get_componentId(),
+                        streamId.get_streamId());
+                putConversionPlan(streamId.get_componentId(), streamId.get_streamId(),
+                        new TupleConversionPlan(fields));
+            }
+        }
     }
 
     /**
@@ -70,6 +92,82 @@ public abstract class AmConfigurationBolt extends BaseRichBolt
         // extract message from Tuple
         this.executingTuple = input;
 
+        TupleConversionPlan plan = getConversionPlan(input);
+        StreamMessage message = null;
+        if (plan != null)
+        {
+            message = convertByPlan(input, plan);
+        }
+        else
+        {
+            message = convertByName(input);
+        }
+
+        try
+        {
+            onMessage(message);
+        }
+        finally
+        {
+            this.executingTuple = null;
+        }
+    }
+
+    /**
+     * Convert tuple to message by precomputed plan. Fields are read by position.
+     *
+     * @param input tuple
+     * @param plan conversion plan of tuple's source stream
+     * @return message
+     */
+    private StreamMessage convertByPlan(Tuple input, TupleConversionPlan plan)
+    {
+        StreamMessage message = null;
+        int messageIndex = plan.getMessageIndex();
+        if (messageIndex >= 0)
+        {
+            Object obj = input.getValue(messageIndex);
+            if (obj instanceof StreamMessage)
+            {
+                message = (StreamMessage) obj;
+            }
+        }
+
+        String[] fieldNames = plan.getFieldNames();
+
+        // Tuple does not contain message, so all fields are added to created message.
+        if (message == null)
+        {
+            message = new StreamMessage();
+            for (int index = 0; index < fieldNames.length; index++)
+            {
+                message.addField(fieldNames[index], input.getValue(index));
+            }
+            return message;
+        }
+
+        int keyIndex = plan.getKeyIndex();
+        if (keyIndex >= 0 && message.getHeader() != null)
+        {
+            message.getHeader().setMessageKey(input.getValue(keyIndex).toString());
+        }
+
+        for (int index : plan.getExtraIndexes())
+        {
+            message.addField(fieldNames[index], input.getValue(index));
+        }
+
+        return message;
+    }
+
+    /**
+     * Convert tuple to message by field names. Used for tuple whose source stream is unknown.
+     *
+     * @param input tuple
+     * @return message
+     */
+    private StreamMessage convertByName(Tuple input)
+    {
         StreamMessage message = null;
         boolean messageGet = false;
         if (input.contains(FieldName.MESSAGE_VALUE) == true)
@@ -108,14 +206,58 @@ public abstract class AmConfigurationBolt extends BaseRichBolt
             message.addField(field, obj);
         }
 
-        try
+        return message;
+    }
+
+    /**
+     * Get conversion plan of tuple's source stream.
+     * Plan of source not declared in topology context is created from tuple's fields and cached.
+     *
+     * @param input tuple
+     * @return conversion plan, null if source of tuple is unknown
+     */
+    private TupleConversionPlan getConversionPlan(Tuple input)
+    {
+        String componentId = input.getSourceComponent();
+        String streamId = input.getSourceStreamId();
+        if (this.conversionPlans == null || componentId == null || streamId == null)
         {
-            onMessage(message);
+            return null;
         }
-        finally
+
+        Map<String, TupleConversionPlan> streamPlans = this.conversionPlans.get(componentId);
+        TupleConversionPlan plan = null;
+        if (streamPlans != null)
         {
-            this.executingTuple = null;
+            plan = streamPlans.get(streamId);
+        }
+
+        if (plan == null)
+        {
+            plan = new TupleConversionPlan(input.getFields());
+            putConversionPlan(componentId, streamId, plan);
         }
+
+        return plan;
+    }
+
+    /**
+     * Register conversion plan.
+     *
+     * @param componentId source component id
+     * @param streamId source stream id
+     * @param plan conversion plan
+     */
+    private void putConversionPlan(String componentId, String streamId, TupleConversionPlan plan)
+    {
+        Map<String, TupleConversionPlan> streamPlans = this.conversionPlans.get(componentId);
+        if (streamPlans == null)
+        {
+            streamPlans = new HashMap<>();
+            this.conversionPlans.put(componentId, streamPlans);
+        }
+
+        streamPlans.put(streamId, plan);
     }
 
     /**
@@ -187,4 +329,16 @@ public abstract class AmConfigurationBolt extends BaseRichBolt
     {
         return this.executingTuple;
     }
+
+    /**
+     * Check tuple is tick tuple.
+     *
+     * @param tuple tuple
+     * @return true if tick tuple
+     */
+    protected boolean isTickTuple(Tuple tuple)
+    {
+        return Constants.SYSTEM_COMPONENT_ID.equals(tuple.getSourceComponent())
+                && Constants.SYSTEM_TICK_STREAM_ID.equals(tuple.getSourceStreamId());
+    }
 }
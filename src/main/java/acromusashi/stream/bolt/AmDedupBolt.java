@@ -0,0 +1,265 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt;
+
+import java.text.MessageFormat;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import acromusashi.stream.bolt.dedup.RotatingBloomFilter;
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.metrics.ComponentMetrics;
+import acromusashi.stream.metrics.DuplicateRateMetric;
+import acromusashi.stream.util.HashUtil;
+import backtype.storm.task.TopologyContext;
+
+/**
+ * AcroMUSASHI Stream's bolt class that drops redelivered messages by message id.<br>
+ * <br>
+ * Seen message ids are kept as 64bit hashes in {@link RotatingBloomFilter}, so memory is bounded regardless of
+ * message rate. Message ids are remembered for (bucket count - 1) to (bucket count) bucket periods. Message is
+ * judged duplicated by mistake with the configured false positive rate at most.<br>
+ * Message without message id is always passed.<br>
+ * <br>
+ * Unique message is emitted by {@link #onUnique(StreamMessage)}, and duplicated message is acked without emit.<br>
+ * <br>
+ * Message id is marked as seen only after onUnique returns without exception and without calling fail(),
+ * so a tuple failed in this bolt is processed again when it is replayed.
+ * A bolt can not observe failures of downstream bolts. If onUnique only emits (default), a replay after downstream
+ * failure is dropped. To keep at-least-once delivery, do the side effect (e.g. store write) in onUnique, or disable
+ * {@link #setMarkSeenOnUnique(boolean) markSeenOnUnique} and call {@link #markSeen(StreamMessage)} after the write
+ * commits.<br>
+ * Received and duplicated counts and duplicate rate are reported as {@value #METRIC_NAME} metric when built-in
+ * metrics are enabled.
+ *
+ * @author kimura
+ */
+public class AmDedupBolt extends AmBaseBolt
+{
+    /** serialVersionUID */
+    private static final long             serialVersionUID            = -5617320950318024736L;
+
+    /** Logger */
+    private static final Logger           logger                      = LoggerFactory.getLogger(AmDedupBolt.class);
+
+    /** Metric name */
+    public static final String            METRIC_NAME                 = "am-dedup";
+
+    /** Default expected messages per bucket */
+    public static final long              DEFAULT_EXPECTED_MESSAGES   = 100000;
+
+    /** Default false positive rate */
+    public static final double            DEFAULT_FALSE_POSITIVE_RATE = 0.001d;
+
+    /** Default bucket count */
+    public static final int               DEFAULT_BUCKET_COUNT        = 6;
+
+    /** Default bucket period(sec) */
+    public static final long              DEFAULT_BUCKET_SEC          = 600;
+
+    /** Expected messages per bucket */
+    protected long                        expectedMessagesPerBucket   = DEFAULT_EXPECTED_MESSAGES;
+
+    /** False positive rate */
+    protected double                      falsePositiveRate           = DEFAULT_FALSE_POSITIVE_RATE;
+
+    /** Bucket count */
+    protected int                         bucketCount                 = DEFAULT_BUCKET_COUNT;
+
+    /** Bucket period(sec) */
+    protected long                        bucketSec                   = DEFAULT_BUCKET_SEC;
+
+    /** Mark message id as seen when onUnique succeeded */
+    protected boolean                     markSeenOnUnique            = true;
+
+    /** Seen message id filter */
+    private transient RotatingBloomFilter filter;
+
+    /** Duplicate rate metric */
+    private transient DuplicateRateMetric dedupMetric;
+
+    /** Failed flag of executing tuple */
+    private transient boolean             executingFailed;
+
+    /**
+     * Constructs instance.
+     */
+    public AmDedupBolt()
+    {}
+
+    /**
+     * Create seen message id filter and register metric.<br>
+     * Subclass which overrides this method must call super.onPrepare.
+     *
+     * @param stormConf Storm configuration
+     * @param context Topology context
+     */
+    @SuppressWarnings("rawtypes")
+    @Override
+    public void onPrepare(Map stormConf, TopologyContext context)
+    {
+        this.filter = new RotatingBloomFilter(this.expectedMessagesPerBucket,
+                this.falsePositiveRate, this.bucketCount, this.bucketSec * 1000);
+        this.dedupMetric = new DuplicateRateMetric();
+        if (this.metrics != null)
+        {
+            context.registerMetric(METRIC_NAME, this.dedupMetric,
+                    ComponentMetrics.getBucketSecs(stormConf));
+        }
+
+        String logFormat = "Dedup filter created. : TaskId={0}, MemoryBytes={1}, HashNum={2}";
+        logger.info(MessageFormat.format(logFormat, this.taskId, this.filter.getMemoryBytes(),
+                this.filter.getHashNum()));
+    }
+
+    /**
+     * Pass received message if its message id is not seen.
+     *
+     * @param input received message
+     */
+    @Override
+    public final void onExecute(StreamMessage input)
+    {
+        String messageId = input.getHeader().getMessageId();
+        if (messageId == null)
+        {
+            this.dedupMetric.recordNoId();
+            onUnique(input);
+            return;
+        }
+
+        long hash = HashUtil.hash64(messageId);
+        if (this.filter.mightContain(hash, getCurrentTime()))
+        {
+            this.dedupMetric.recordDuplicate();
+            onDuplicate(input);
+            return;
+        }
+
+        this.dedupMetric.recordUnique();
+        this.executingFailed = false;
+
+        // If onUnique throws exception, message id is not marked and tuple is not acked.
+        onUnique(input);
+
+        if (this.markSeenOnUnique && this.executingFailed == false)
+        {
+            this.filter.put(hash, getCurrentTime());
+        }
+    }
+
+    /**
+     * Mark message id of message as seen. Following messages with the same message id are dropped.<br>
+     * Use when markSeenOnUnique is disabled, after the message is processed successfully. Call from executor thread.
+     *
+     * @param message processed message
+     */
+    protected void markSeen(StreamMessage message)
+    {
+        String messageId = message.getHeader().getMessageId();
+        if (messageId != null)
+        {
+            this.filter.put(HashUtil.hash64(messageId), getCurrentTime());
+        }
+    }
+
+    /**
+     * Notify fail for inputed tuple. Message id of failed tuple is not marked as seen.
+     */
+    @Override
+    protected void fail()
+    {
+        this.executingFailed = true;
+        super.fail();
+    }
+
+    /**
+     * Called when unique message is received.<br>
+     * Default implementation emits message with its message key.
+     * If this method throws exception or calls fail(), message id is not marked as seen.
+     *
+     * @param input received message
+     */
+    protected void onUnique(StreamMessage input)
+    {
+        emit(input, input.getHeader().getMessageKey());
+    }
+
+    /**
+     * Called when duplicated message is received.<br>
+     * Default implementation only logs message id. Message is acked after this method.
+     *
+     * @param input received message
+     */
+    protected void onDuplicate(StreamMessage input)
+    {
+        if (logger.isDebugEnabled())
+        {
+            String logFormat = "Duplicated message dropped. : TaskId={0}, MessageId={1}";
+            logger.debug(MessageFormat.format(logFormat, this.taskId,
+                    input.getHeader().getMessageId()));
+        }
+    }
+
+    /**
+     * Get current time.
+     *
+     * @return current time
+     */
+    protected long getCurrentTime()
+    {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @param markSeenOnUnique the markSeenOnUnique to set. If false, call {@link #markSeen(StreamMessage)} after processing.
+     */
+    public void setMarkSeenOnUnique(boolean markSeenOnUnique)
+    {
+        this.markSeenOnUnique = markSeenOnUnique;
+    }
+
+    /**
+     * @param expectedMessagesPerBucket the expectedMessagesPerBucket to set
+     */
+    public void setExpectedMessagesPerBucket(long expectedMessagesPerBucket)
+    {
+        this.expectedMessagesPerBucket = expectedMessagesPerBucket;
+    }
+
+    /**
+     * @param falsePositiveRate the falsePositiveRate to set
+     */
+    public void setFalsePositiveRate(double falsePositiveRate)
+    {
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * @param bucketCount the bucketCount to set
+     */
+    public void setBucketCount(int bucketCount)
+    {
+        this.bucketCount = bucketCount;
+    }
+
+    /**
+     * @param bucketSec the bucketSec to set
+     */
+    public void setBucketSec(long bucketSec)
+    {
+        this.bucketSec = bucketSec;
+    }
+}
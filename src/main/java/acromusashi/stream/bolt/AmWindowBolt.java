@@ -0,0 +1,550 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt;
+
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import acromusashi.stream.bolt.window.WindowAggregator;
+import acromusashi.stream.bolt.window.WindowTimeType;
+import acromusashi.stream.entity.StreamMessage;
+import backtype.storm.Config;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Tuple;
+
+/**
+ * AcroMUSASHI Stream's bolt class that aggregates messages by tumbling or sliding time window.<br>
+ * Each window keeps only accumulators of registered {@link WindowAggregator}s, so received messages are not buffered.<br>
+ * <br>
+ * Window is assigned by message header's timestamp ({@link WindowTimeType#EVENT_TIME}) or current time
+ * ({@link WindowTimeType#PROCESSING_TIME}). Window [start, end) is closed and its result is emitted when watermark
+ * reaches end of window.
+ * <ul>
+ * <li>Event time : Watermark is max timestamp received minus max out of orderness.</li>
+ * <li>Processing time : Watermark is current time. Checked on message and tick tuple.</li>
+ * </ul>
+ * Window is kept for allowed lateness after closed. Late message in this period updates the window, and updated
+ * result is emitted again. Message later than allowed lateness is dropped.<br>
+ * <br>
+ * Result is emitted without anchor, because window contains many messages which are acked on receive.
+ *
+ * @author kimura
+ */
+public class AmWindowBolt extends AmBaseBolt
+{
+    /** serialVersionUID */
+    private static final long                       serialVersionUID    = 1284093176524416320L;
+
+    /** Logger */
+    private static final Logger                     logger              = LoggerFactory.getLogger(AmWindowBolt.class);
+
+    /** Result field name of window start time */
+    public static final String                      FIELD_WINDOW_START  = "windowStart";
+
+    /** Result field name of window end time */
+    public static final String                      FIELD_WINDOW_END    = "windowEnd";
+
+    /** Result field name of group value */
+    public static final String                      FIELD_GROUP         = "group";
+
+    /** Default window size(ms) */
+    public static final long                        DEFAULT_WINDOW_SIZE = 60000;
+
+    /** Default tick tuple interval(sec) */
+    public static final int                         DEFAULT_TICK_SEC    = 1;
+
+    /** Window size(ms) */
+    protected long                                  windowSizeMs        = DEFAULT_WINDOW_SIZE;
+
+    /** Window slide(ms). 0 means tumbling window. (slide equals to window size) */
+    protected long                                  windowSlideMs       = 0;
+
+    /** Time type to assign window */
+    protected WindowTimeType                        timeType            = WindowTimeType.PROCESSING_TIME;
+
+    /** Max out of orderness(ms) of event time. Used to calculate watermark. */
+    protected long                                  maxOutOfOrdernessMs = 0;
+
+    /** Allowed lateness(ms) after window is closed */
+    protected long                                  allowedLatenessMs   = 0;
+
+    /** Body field name to group messages. null means all messages are aggregated in one group. */
+    protected String                                groupField;
+
+    /** Tick tuple interval(sec). 0 means tick tuple is not used. */
+    protected int                                   tickIntervalSec     = DEFAULT_TICK_SEC;
+
+    /** Aggregators mapped by result field name */
+    protected Map<String, WindowAggregator<?>>      aggregators         = new LinkedHashMap<>();
+
+    /** Windows mapped by window start time, then group value */
+    private transient TreeMap<Long, Map<Object, WindowState>> windows;
+
+    /** Current watermark */
+    private transient long                          watermark;
+
+    /** Max event time received */
+    private transient long                          maxEventTime;
+
+    /** Whether closed windows need to be checked for emit */
+    private transient boolean                       fireRequired;
+
+    /** Number of dropped late messages */
+    private transient long                          droppedCount;
+
+    /**
+     * Constructs instance.
+     */
+    public AmWindowBolt()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Object> getComponentConfiguration()
+    {
+        if (this.tickIntervalSec <= 0)
+        {
+            return null;
+        }
+
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, this.tickIntervalSec);
+        return conf;
+    }
+
+    /**
+     * Validate window settings and initialize windows.<br>
+     * Subclass which overrides this method must call super.onPrepare.
+     *
+     * @param stormConf Storm configuration
+     * @param context Topology context
+     */
+    @SuppressWarnings("rawtypes")
+    @Override
+    public void onPrepare(Map stormConf, TopologyContext context)
+    {
+        if (this.windowSizeMs <= 0)
+        {
+            throw new IllegalStateException("Window size must be positive. : WindowSize="
+                    + this.windowSizeMs);
+        }
+
+        if (this.windowSlideMs < 0 || this.windowSlideMs > this.windowSizeMs)
+        {
+            String logFormat = "Window slide must be between 0 and window size. : WindowSize={0}, WindowSlide={1}";
+            throw new IllegalStateException(MessageFormat.format(logFormat, this.windowSizeMs,
+                    this.windowSlideMs));
+        }
+
+        this.windows = new TreeMap<>();
+        this.watermark = Long.MIN_VALUE;
+        this.maxEventTime = Long.MIN_VALUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Tuple input)
+    {
+        if (isTickTuple(input))
+        {
+            // Tick tuple is not anchored, so it does not need ack.
+            if (this.timeType == WindowTimeType.PROCESSING_TIME)
+            {
+                advanceWatermark(getCurrentTime());
+            }
+            fireWindows();
+            return;
+        }
+
+        super.execute(input);
+    }
+
+    /**
+     * Add received message to windows it belongs to, then emit closed windows.
+     *
+     * @param input received message
+     */
+    @Override
+    public final void onExecute(StreamMessage input)
+    {
+        long timestamp;
+        if (this.timeType == WindowTimeType.EVENT_TIME)
+        {
+            timestamp = input.getHeader().getTimestamp();
+        }
+        else
+        {
+            timestamp = getCurrentTime();
+        }
+
+        Object group = null;
+        if (this.groupField != null)
+        {
+            group = input.getField(this.groupField);
+        }
+
+        addToWindows(timestamp, group, input);
+
+        if (this.timeType == WindowTimeType.EVENT_TIME)
+        {
+            if (timestamp > this.maxEventTime)
+            {
+                this.maxEventTime = timestamp;
+                advanceWatermark(timestamp - this.maxOutOfOrdernessMs);
+            }
+        }
+        else
+        {
+            advanceWatermark(timestamp);
+        }
+
+        fireWindows();
+    }
+
+    /**
+     * Add message to all windows that contain the timestamp, except windows expired by allowed lateness.
+     *
+     * @param timestamp message time
+     * @param group group value
+     * @param input received message
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void addToWindows(long timestamp, Object group, StreamMessage input)
+    {
+        long slide = getSlideMs();
+        long offset = timestamp % slide;
+        if (offset < 0)
+        {
+            offset += slide;
+        }
+
+        boolean added = false;
+        for (long start = timestamp - offset; start > timestamp - this.windowSizeMs; start -= slide)
+        {
+            long end = start + this.windowSizeMs;
+            if (isExpired(end))
+            {
+                continue;
+            }
+
+            Map<Object, WindowState> groups = this.windows.get(start);
+            if (groups == null)
+            {
+                groups = new HashMap<>();
+                this.windows.put(start, groups);
+            }
+
+            WindowState state = groups.get(group);
+            if (state == null)
+            {
+                state = new WindowState(this.aggregators.size());
+                int index = 0;
+                for (WindowAggregator<?> aggregator : this.aggregators.values())
+                {
+                    state.accumulators[index++] = aggregator.createAccumulator();
+                }
+                groups.put(group, state);
+            }
+
+            int index = 0;
+            for (WindowAggregator aggregator : this.aggregators.values())
+            {
+                aggregator.add(state.accumulators[index++], input);
+            }
+
+            state.updated = true;
+            if (end <= this.watermark)
+            {
+                this.fireRequired = true;
+            }
+            added = true;
+        }
+
+        if (added == false)
+        {
+            this.droppedCount++;
+            if (logger.isDebugEnabled())
+            {
+                String logFormat = "Late message dropped. : TaskId={0}, Timestamp={1}, Watermark={2}";
+                logger.debug(MessageFormat.format(logFormat, this.taskId, timestamp,
+                        this.watermark));
+            }
+        }
+    }
+
+    /**
+     * Advance watermark. Watermark never moves backward.
+     *
+     * @param newWatermark new watermark
+     */
+    protected void advanceWatermark(long newWatermark)
+    {
+        if (newWatermark > this.watermark)
+        {
+            this.watermark = newWatermark;
+            this.fireRequired = true;
+        }
+    }
+
+    /**
+     * Emit result of closed windows which are updated, and remove windows expired by allowed lateness.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void fireWindows()
+    {
+        if (this.fireRequired == false)
+        {
+            return;
+        }
+
+        this.fireRequired = false;
+        Iterator<Entry<Long, Map<Object, WindowState>>> iterator = this.windows.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Entry<Long, Map<Object, WindowState>> entry = iterator.next();
+            long start = entry.getKey();
+            long end = start + this.windowSizeMs;
+            if (end > this.watermark)
+            {
+                break;
+            }
+
+            for (Entry<Object, WindowState> groupEntry : entry.getValue().entrySet())
+            {
+                WindowState state = groupEntry.getValue();
+                if (state.updated == false)
+                {
+                    continue;
+                }
+
+                state.updated = false;
+                Map<String, Object> results = new LinkedHashMap<>();
+                int index = 0;
+                for (Entry<String, WindowAggregator<?>> aggregatorEntry : this.aggregators.entrySet())
+                {
+                    WindowAggregator aggregator = aggregatorEntry.getValue();
+                    results.put(aggregatorEntry.getKey(),
+                            aggregator.getResult(state.accumulators[index++]));
+                }
+
+                onWindowResult(start, end, groupEntry.getKey(), results);
+            }
+
+            if (isExpired(end))
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Check window is expired by allowed lateness.
+     *
+     * @param end window end time
+     * @return true if expired
+     */
+    private boolean isExpired(long end)
+    {
+        return this.watermark != Long.MIN_VALUE && end + this.allowedLatenessMs <= this.watermark;
+    }
+
+    /**
+     * Called when window is closed, or closed window is updated by late message.<br>
+     * Default implementation emits message whose header timestamp is window end, and body has window start, window
+     * end, group value (only if group field is set) and aggregation results.
+     *
+     * @param windowStart window start time(inclusive)
+     * @param windowEnd window end time(exclusive)
+     * @param group group value
+     * @param results aggregation results mapped by result field name
+     */
+    protected void onWindowResult(long windowStart, long windowEnd, Object group,
+            Map<String, Object> results)
+    {
+        StreamMessage message = new StreamMessage();
+        message.getHeader().setTimestamp(windowEnd);
+        message.addField(FIELD_WINDOW_START, windowStart);
+        message.addField(FIELD_WINDOW_END, windowEnd);
+        if (this.groupField != null)
+        {
+            message.addField(FIELD_GROUP, group);
+        }
+
+        for (Entry<String, Object> entry : results.entrySet())
+        {
+            message.addField(entry.getKey(), entry.getValue());
+        }
+
+        emitWithNoAnchorKey(message);
+    }
+
+    /**
+     * Get window slide(ms).
+     *
+     * @return window slide
+     */
+    private long getSlideMs()
+    {
+        if (this.windowSlideMs <= 0)
+        {
+            return this.windowSizeMs;
+        }
+
+        return this.windowSlideMs;
+    }
+
+    /**
+     * Get current time.
+     *
+     * @return current time
+     */
+    protected long getCurrentTime()
+    {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Register aggregator. Result is output with the field name.
+     *
+     * @param fieldName result field name
+     * @param aggregator aggregator
+     */
+    public void addAggregator(String fieldName, WindowAggregator<?> aggregator)
+    {
+        this.aggregators.put(fieldName, aggregator);
+    }
+
+    /**
+     * @return the watermark
+     */
+    public long getWatermark()
+    {
+        return this.watermark;
+    }
+
+    /**
+     * @return number of dropped late messages
+     */
+    public long getDroppedCount()
+    {
+        return this.droppedCount;
+    }
+
+    /**
+     * @return number of windows kept
+     */
+    public int getWindowCount()
+    {
+        if (this.windows == null)
+        {
+            return 0;
+        }
+
+        int count = 0;
+        for (Map<Object, WindowState> groups : this.windows.values())
+        {
+            count += groups.size();
+        }
+        return count;
+    }
+
+    /**
+     * @param windowSizeMs the windowSizeMs to set
+     */
+    public void setWindowSizeMs(long windowSizeMs)
+    {
+        this.windowSizeMs = windowSizeMs;
+    }
+
+    /**
+     * @param windowSlideMs the windowSlideMs to set
+     */
+    public void setWindowSlideMs(long windowSlideMs)
+    {
+        this.windowSlideMs = windowSlideMs;
+    }
+
+    /**
+     * @param timeType the timeType to set
+     */
+    public void setTimeType(WindowTimeType timeType)
+    {
+        this.timeType = timeType;
+    }
+
+    /**
+     * @param maxOutOfOrdernessMs the maxOutOfOrdernessMs to set
+     */
+    public void setMaxOutOfOrdernessMs(long maxOutOfOrdernessMs)
+    {
+        this.maxOutOfOrdernessMs = maxOutOfOrdernessMs;
+    }
+
+    /**
+     * @param allowedLatenessMs the allowedLatenessMs to set
+     */
+    public void setAllowedLatenessMs(long allowedLatenessMs)
+    {
+        this.allowedLatenessMs = allowedLatenessMs;
+    }
+
+    /**
+     * @param groupField the groupField to set
+     */
+    public void setGroupField(String groupField)
+    {
+        this.groupField = groupField;
+    }
+
+    /**
+     * @param tickIntervalSec the tickIntervalSec to set
+     */
+    public void setTickIntervalSec(int tickIntervalSec)
+    {
+        this.tickIntervalSec = tickIntervalSec;
+    }
+
+    /**
+     * Accumulators of one window and group.
+     */
+    private static class WindowState
+    {
+        /** Accumulators in order of aggregators */
+        Object[] accumulators;
+
+        /** Whether updated after last emit */
+        boolean  updated;
+
+        /**
+         * Constructs instance.
+         *
+         * @param aggregatorNum number of aggregators
+         */
+        WindowState(int aggregatorNum)
+        {
+            this.accumulators = new Object[aggregatorNum];
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import acromusashi.stream.constants.FieldName;
+import backtype.storm.tuple.Fields;
+
+/**
+ * Precomputed plan to convert tuple of one source component and stream to {@link acromusashi.stream.entity.StreamMessage}.<br>
+ * Holds field positions, so conversion uses positional access instead of field name lookup.
+ *
+ * @author kimura
+ */
+final class TupleConversionPlan
+{
+    /** Position of message value field, -1 if not exists */
+    private final int      messageIndex;
+
+    /** Position of message key field, -1 if not exists */
+    private final int      keyIndex;
+
+    /** Names of all fields */
+    private final String[] fieldNames;
+
+    /** Positions of fields other than message key and message value */
+    private final int[]    extraIndexes;
+
+    /**
+     * Create plan from output fields of source stream.
+     *
+     * @param fields output fields
+     */
+    TupleConversionPlan(Fields fields)
+    {
+        int fieldNum = fields.size();
+        this.fieldNames = new String[fieldNum];
+
+        int foundMessageIndex = -1;
+        int foundKeyIndex = -1;
+        List<Integer> extraList = new ArrayList<>();
+
+        for (int index = 0; index < fieldNum; index++)
+        {
+            String field = fields.get(index);
+            this.fieldNames[index] = field;
+
+            if (FieldName.MESSAGE_VALUE.equals(field))
+            {
+                foundMessageIndex = index;
+            }
+            else if (FieldName.MESSAGE_KEY.equals(field))
+            {
+                foundKeyIndex = index;
+            }
+            else
+            {
+                extraList.add(index);
+            }
+        }
+
+        this.messageIndex = foundMessageIndex;
+        this.keyIndex = foundKeyIndex;
+        this.extraIndexes = new int[extraList.size()];
+        for (int index = 0; index < this.extraIndexes.length; index++)
+        {
+            this.extraIndexes[index] = extraList.get(index);
+        }
+    }
+
+    /**
+     * @return position of message value field, -1 if not exists
+     */
+    int getMessageIndex()
+    {
+        return this.messageIndex;
+    }
+
+    /**
+     * @return position of message key field, -1 if not exists
+     */
+    int getKeyIndex()
+    {
+        return this.keyIndex;
+    }
+
+    /**
+     * @return names of all fields
+     */
+    String[] getFieldNames()
+    {
+        return this.fieldNames;
+    }
+
+    /**
+     * @return positions of fields other than message key and message value
+     */
+    int[] getExtraIndexes()
+    {
+        return this.extraIndexes;
+    }
+}
@@ -0,0 +1,260 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.dedup;
+
+import java.util.Arrays;
+
+/**
+ * Time bucketed Bloom filter that remembers 64bit hashes for limited period with bounded memory.<br>
+ * <br>
+ * Filter consists of fixed number of generations, and each generation covers one bucket period. Hash is added to
+ * current generation, and looked up from all generations. When bucket period elapses, oldest generation is cleared
+ * and becomes current generation, so hashes are remembered for (bucket count - 1) to (bucket count) bucket periods.
+ * <br>
+ * Each generation is sized for expected insertions and false positive rate divided by bucket count, so false positive
+ * rate of whole filter is kept under the specified rate. If insertions to current generation reach expected
+ * insertions before bucket period elapses, generation is rotated early. This keeps false positive rate and memory
+ * bounded at the cost of shorter remember period.<br>
+ * <br>
+ * This class is not thread safe.
+ *
+ * @author kimura
+ */
+public class RotatingBloomFilter
+{
+    /** Generation bits */
+    private final long[][] generations;
+
+    /** Number of bits per generation */
+    private final long     bitSize;
+
+    /** Number of hash functions */
+    private final int      hashNum;
+
+    /** Expected insertions per generation */
+    private final long     expectedInsertions;
+
+    /** Bucket period(ms) */
+    private final long     bucketMs;
+
+    /** Current generation index */
+    private int            current;
+
+    /** Insertions to current generation */
+    private long           currentInsertions;
+
+    /** Start time of current generation. Long.MIN_VALUE means not started. */
+    private long           currentStart = Long.MIN_VALUE;
+
+    /**
+     * Constructs instance.
+     *
+     * @param expectedInsertions expected insertions per bucket period
+     * @param falsePositiveRate false positive rate of whole filter
+     * @param bucketCount number of generations
+     * @param bucketMs bucket period(ms)
+     */
+    public RotatingBloomFilter(long expectedInsertions, double falsePositiveRate, int bucketCount,
+            long bucketMs)
+    {
+        if (expectedInsertions <= 0)
+        {
+            throw new IllegalArgumentException("Expected insertions must be positive. : ExpectedInsertions="
+                    + expectedInsertions);
+        }
+
+        if (falsePositiveRate <= 0.0d || falsePositiveRate >= 1.0d)
+        {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1. : FalsePositiveRate="
+                    + falsePositiveRate);
+        }
+
+        if (bucketCount <= 0 || bucketMs <= 0)
+        {
+            throw new IllegalArgumentException("Bucket count and bucket period must be positive. : BucketCount="
+                    + bucketCount + ", BucketMs=" + bucketMs);
+        }
+
+        double generationRate = falsePositiveRate / bucketCount;
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(generationRate)
+                / (Math.log(2) * Math.log(2)));
+        long words = (bits + Long.SIZE - 1) / Long.SIZE;
+        if (words > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Filter is too large. : ExpectedInsertions="
+                    + expectedInsertions + ", FalsePositiveRate=" + falsePositiveRate);
+        }
+
+        this.bitSize = words * Long.SIZE;
+        this.hashNum = Math.max(1, (int) Math.round((double) this.bitSize / expectedInsertions * Math.log(2)));
+        this.expectedInsertions = expectedInsertions;
+        this.bucketMs = bucketMs;
+        this.generations = new long[bucketCount][(int) words];
+    }
+
+    /**
+     * Add hash if it is not contained in filter.
+     *
+     * @param hash 64bit hash
+     * @param now current time(ms)
+     * @return true if hash is added, false if hash may be already contained
+     */
+    public boolean putIfAbsent(long hash, long now)
+    {
+        if (mightContain(hash, now))
+        {
+            return false;
+        }
+
+        put(hash, now);
+        return true;
+    }
+
+    /**
+     * Check hash may be contained in filter.
+     *
+     * @param hash 64bit hash
+     * @param now current time(ms)
+     * @return true if hash may be contained, false if hash is not contained
+     */
+    public boolean mightContain(long hash, long now)
+    {
+        rotateIfExpired(now);
+
+        for (long[] generation : this.generations)
+        {
+            if (contains(generation, hash))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Add hash to current generation.
+     *
+     * @param hash 64bit hash
+     * @param now current time(ms)
+     */
+    public void put(long hash, long now)
+    {
+        rotateIfExpired(now);
+
+        long[] generation = this.generations[this.current];
+        long combined = hash;
+        long increment = Long.rotateLeft(hash, 32) | 1L;
+        for (int index = 0; index < this.hashNum; index++)
+        {
+            long bit = (combined & Long.MAX_VALUE) % this.bitSize;
+            generation[(int) (bit >>> 6)] |= 1L << bit;
+            combined += increment;
+        }
+
+        this.currentInsertions++;
+        if (this.currentInsertions >= this.expectedInsertions)
+        {
+            rotate(now);
+        }
+    }
+
+    /**
+     * Check hash is contained in generation.
+     *
+     * @param generation generation bits
+     * @param hash 64bit hash
+     * @return true if contained
+     */
+    private boolean contains(long[] generation, long hash)
+    {
+        long combined = hash;
+        long increment = Long.rotateLeft(hash, 32) | 1L;
+        for (int index = 0; index < this.hashNum; index++)
+        {
+            long bit = (combined & Long.MAX_VALUE) % this.bitSize;
+            if ((generation[(int) (bit >>> 6)] & (1L << bit)) == 0)
+            {
+                return false;
+            }
+            combined += increment;
+        }
+
+        return true;
+    }
+
+    /**
+     * Rotate generations for elapsed bucket periods.
+     *
+     * @param now current time(ms)
+     */
+    private void rotateIfExpired(long now)
+    {
+        if (this.currentStart == Long.MIN_VALUE)
+        {
+            this.currentStart = now;
+            return;
+        }
+
+        long elapsedBuckets = (now - this.currentStart) / this.bucketMs;
+        if (elapsedBuckets <= 0)
+        {
+            return;
+        }
+
+        long nextStart = this.currentStart + elapsedBuckets * this.bucketMs;
+        long rotateNum = Math.min(elapsedBuckets, this.generations.length);
+        for (long count = 0; count < rotateNum; count++)
+        {
+            rotate(now);
+        }
+        this.currentStart = nextStart;
+    }
+
+    /**
+     * Clear oldest generation and make it current generation.
+     *
+     * @param now current time(ms)
+     */
+    private void rotate(long now)
+    {
+        this.current = (this.current + 1) % this.generations.length;
+        Arrays.fill(this.generations[this.current], 0L);
+        this.currentInsertions = 0;
+        this.currentStart = now;
+    }
+
+    /**
+     * @return number of bits per generation
+     */
+    public long getBitSize()
+    {
+        return this.bitSize;
+    }
+
+    /**
+     * @return number of hash functions
+     */
+    public int getHashNum()
+    {
+        return this.hashNum;
+    }
+
+    /**
+     * @return memory size(bytes) of all generations
+     */
+    public long getMemoryBytes()
+    {
+        return this.bitSize / Byte.SIZE * this.generations.length;
+    }
+}
@@ -0,0 +1,499 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.hdfs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HDFSへの出力をバックグラウンドスレッドで行う、ダブルバッファ方式のWriterクラス。<br>
+ * <br>
+ * 呼び出し元スレッドは一方のバッファに出力行を格納し、バックグラウンドスレッドはもう一方のバッファの内容を
+ * {@link HdfsOutputSwitcher}に書き込んで同期する。バッファが下記の条件を満たした時点でバッファを入れ替える。
+ * <ul>
+ * <li>バッファ内の文字数が同期閾値(byte)以上</li>
+ * <li>バッファ内のレコード数が同期閾値(レコード数)以上</li>
+ * <li>前回入れ替えからの経過時間が同期間隔(ms)以上({@link #flushIfExpired()}呼び出し時に判定)</li>
+ * </ul>
+ * 入れ替え時にバックグラウンドスレッドが前回のバッファを処理中の場合、完了するまで待ち合わせる。<br>
+ * <br>
+ * 出力行と共に格納したトークンは、その行を含むバッファの同期が完了した後、呼び出し元スレッドで
+ * {@link FlushListener}に通知する。通知は{@link #append(String, long, Object)}、{@link #flushIfExpired()}、
+ * {@link #close()}の呼び出し中に行う。<br>
+ * 書込み、または同期に失敗した場合は、失敗したバッファの未出力の内容を破棄し、次のバッファは新しいファイルに出力する。
+ * 失敗前に出力済みの内容はファイルに残る場合があり、再送分と重複して出力される可能性がある(at-least-once)。<br>
+ * バックグラウンドスレッドが停止した場合、処理中のバッファは失敗として通知し、新しいファイルに切り替えてスレッドを再起動する。<br>
+ * {@link HdfsOutputSwitcher}はバックグラウンドスレッドのみから使用するため、{@link #start()}以降は直接操作しないこと。
+ * 
+ * @author kimura
+ * @param <T> トークンの型
+ */
+public class HdfsAsyncWriter<T>
+{
+    /** logger */
+    private static final Logger logger = LoggerFactory.getLogger(HdfsAsyncWriter.class);
+
+    /** バックグラウンドスレッド名 */
+    private static final String THREAD_NAME = "HdfsAsyncWriter";
+
+    /** バッファの完了待ち合わせ時にバックグラウンドスレッドの生存を確認する間隔(ms) */
+    private static final long ALIVE_CHECK_INTERVAL_MS = 1000;
+
+    /**
+     * バッファの同期結果を受け取るリスナ。呼び出し元スレッドから通知される。
+     * 
+     * @param <T> トークンの型
+     */
+    public interface FlushListener<T>
+    {
+        /**
+         * バッファの同期が完了した際に呼び出される。<br>
+         * トークンのリストは通知後に再利用されるため、保持しないこと。
+         * 
+         * @param tokens 同期が完了した出力行のトークン
+         */
+        void onFlushed(List<T> tokens);
+
+        /**
+         * バッファの書込み、または同期に失敗した際に呼び出される。<br>
+         * トークンのリストは通知後に再利用されるため、保持しないこと。
+         * 
+         * @param tokens 書込み、または同期に失敗した出力行のトークン
+         * @param cause 失敗原因
+         */
+        void onFailed(List<T> tokens, Exception cause);
+    }
+
+    /** HDFSへの出力コンポーネント */
+    private final HdfsOutputSwitcher delegate;
+
+    /** 同期結果の通知先 */
+    private final FlushListener<T> listener;
+
+    /** バッファ入れ替え閾値(文字数) */
+    private final long syncBytes;
+
+    /** バッファ入れ替え閾値(レコード数) */
+    private final long syncRecords;
+
+    /** バッファ入れ替え間隔(ms) */
+    private final long syncIntervalMs;
+
+    /** バックグラウンドスレッドへの書込み依頼キュー */
+    private final BlockingQueue<WriteBatch<T>> requestQueue = new ArrayBlockingQueue<>(2);
+
+    /** バックグラウンドスレッドからの書込み完了キュー */
+    private final BlockingQueue<WriteBatch<T>> completedQueue = new ArrayBlockingQueue<>(2);
+
+    /** 呼び出し元スレッドが出力行を格納中のバッファ */
+    private WriteBatch<T> activeBatch = new WriteBatch<>();
+
+    /** 未使用のバッファ。バックグラウンドスレッドが処理中の場合はnull。 */
+    private WriteBatch<T> spareBatch = new WriteBatch<>();
+
+    /** 最後にバックグラウンドスレッドに渡したバッファ */
+    private WriteBatch<T> pendingBatch;
+
+    /** 前回バッファ入れ替え時刻 */
+    private long lastFlushTime;
+
+    /** バックグラウンドスレッド */
+    private Thread writeThread;
+
+    /**
+     * HDFSへの出力コンポーネント、HDFS出力設定、同期結果の通知先を指定してインスタンスを生成する。
+     * 
+     * @param delegate HDFSへの出力コンポーネント
+     * @param config HDFS出力設定
+     * @param listener 同期結果の通知先
+     */
+    public HdfsAsyncWriter(HdfsOutputSwitcher delegate, HdfsStoreConfig config,
+            FlushListener<T> listener)
+    {
+        this.delegate = delegate;
+        this.listener = listener;
+        this.syncBytes = config.getSyncBytes();
+        this.syncRecords = config.getSyncRecords();
+        this.syncIntervalMs = config.getSyncIntervalMs();
+    }
+
+    /**
+     * バックグラウンドスレッドを開始する。
+     */
+    public void start()
+    {
+        this.lastFlushTime = System.currentTimeMillis();
+        startWriteThread();
+    }
+
+    /**
+     * バックグラウンドスレッドを生成して開始する。
+     */
+    private void startWriteThread()
+    {
+        this.writeThread = new Thread(new Runnable() {
+            @Override
+            public void run()
+            {
+                processRequests();
+            }
+        }, THREAD_NAME);
+        this.writeThread.setDaemon(true);
+        this.writeThread.start();
+    }
+
+    /**
+     * 出力行をバッファに格納する。入れ替え条件を満たした場合はバッファを入れ替える。
+     * 
+     * @param line 出力行
+     * @param nowTime 出力時刻
+     * @param token 同期完了時に通知するトークン
+     */
+    public void append(String line, long nowTime, T token)
+    {
+        this.activeBatch.add(line, nowTime, token);
+        pollCompleted();
+
+        if ((this.syncBytes > 0 && this.activeBatch.chars >= this.syncBytes)
+                || (this.syncRecords > 0 && this.activeBatch.size() >= this.syncRecords)
+                || isSyncIntervalElapsed())
+        {
+            flush();
+        }
+    }
+
+    /**
+     * 完了済みのバッファを通知し、前回入れ替えからの経過時間が同期間隔以上の場合にバッファを入れ替える。<br>
+     * 出力が途絶えた場合も同期間隔で同期されるよう、定期的に呼び出すこと。
+     */
+    public void flushIfExpired()
+    {
+        pollCompleted();
+
+        if (isSyncIntervalElapsed())
+        {
+            flush();
+        }
+    }
+
+    /**
+     * 格納中のバッファを書き込んで同期し、バックグラウンドスレッドを停止してHDFSへの出力コンポーネントをクローズする。
+     * 
+     * @throws IOException 入出力エラー発生時
+     */
+    public void close() throws IOException
+    {
+        flush();
+
+        try
+        {
+            if (this.spareBatch == null)
+            {
+                complete(takeCompleted());
+            }
+
+            this.writeThread.interrupt();
+            this.writeThread.join();
+        }
+        catch (InterruptedException ex)
+        {
+            logger.warn("Interrupted while waiting HDFS write completion. Skip waiting.", ex);
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        this.delegate.close();
+    }
+
+    /**
+     * 格納中のバッファをバックグラウンドスレッドに渡し、未使用のバッファに入れ替える。<br>
+     * バックグラウンドスレッドが前回のバッファを処理中の場合、完了するまで待ち合わせる。
+     */
+    private void flush()
+    {
+        this.lastFlushTime = System.currentTimeMillis();
+
+        if (this.activeBatch.size() == 0)
+        {
+            return;
+        }
+
+        try
+        {
+            if (this.spareBatch == null)
+            {
+                complete(takeCompleted());
+            }
+
+            this.requestQueue.put(this.activeBatch);
+            this.pendingBatch = this.activeBatch;
+        }
+        catch (InterruptedException ex)
+        {
+            // 未通知のトークンはAck/Failされず、タイムアウト後に再送される。
+            logger.warn("Interrupted while waiting HDFS write completion. Skip flush.", ex);
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        this.activeBatch = this.spareBatch;
+        this.spareBatch = null;
+    }
+
+    /**
+     * 完了済みのバッファが存在する場合、通知して未使用のバッファとする。
+     */
+    private void pollCompleted()
+    {
+        WriteBatch<T> completed = this.completedQueue.poll();
+        if (completed != null)
+        {
+            complete(completed);
+        }
+    }
+
+    /**
+     * バックグラウンドスレッドが処理中のバッファの完了を待ち合わせて取得する。<br>
+     * 待ち合わせ中にバックグラウンドスレッドが停止した場合は、処理中のバッファに失敗原因を設定して返し、スレッドを再起動する。
+     * 
+     * @return 完了済みのバッファ
+     * @throws InterruptedException 待ち合わせ中に割り込まれた場合
+     */
+    private WriteBatch<T> takeCompleted() throws InterruptedException
+    {
+        while (true)
+        {
+            WriteBatch<T> completed = this.completedQueue.poll(ALIVE_CHECK_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+            if (completed != null)
+            {
+                return completed;
+            }
+
+            if (this.writeThread.isAlive() == false)
+            {
+                // 停止直前に完了キューへ格納された場合を考慮して再確認する。
+                completed = this.completedQueue.poll();
+                if (completed != null)
+                {
+                    return completed;
+                }
+
+                logger.error("HdfsAsyncWriter thread is not alive. Notify failure and restart thread.");
+                this.requestQueue.remove(this.pendingBatch);
+                this.pendingBatch.failure = new IllegalStateException(
+                        "HdfsAsyncWriter thread is not alive.");
+                restartWriteThread();
+                return this.pendingBatch;
+            }
+        }
+    }
+
+    /**
+     * 停止したバックグラウンドスレッドを再起動する。<br>
+     * 停止時の出力中ファイルは書込み途中の可能性があるため、次のファイルに切り替えてから再起動する。
+     * スレッドは停止済みのため、切り替えは呼び出し元スレッドで行う。
+     */
+    private void restartWriteThread()
+    {
+        try
+        {
+            this.delegate.discardWriter();
+        }
+        catch (RuntimeException ex)
+        {
+            logger.warn("Failed to discard HDFS writer. Continue.", ex);
+        }
+
+        startWriteThread();
+    }
+
+    /**
+     * 完了済みのバッファを通知し、未使用のバッファとする。
+     * 
+     * @param completed 完了済みのバッファ
+     */
+    private void complete(WriteBatch<T> completed)
+    {
+        if (completed.failure == null)
+        {
+            this.listener.onFlushed(completed.tokens);
+        }
+        else
+        {
+            this.listener.onFailed(completed.tokens, completed.failure);
+        }
+
+        completed.clear();
+        this.spareBatch = completed;
+    }
+
+    /**
+     * 前回入れ替えからの経過時間が同期間隔以上かを判定する。
+     * 
+     * @return 同期間隔以上の場合true
+     */
+    private boolean isSyncIntervalElapsed()
+    {
+        return this.syncIntervalMs > 0
+                && System.currentTimeMillis() - this.lastFlushTime >= this.syncIntervalMs;
+    }
+
+    /**
+     * バックグラウンドスレッドの処理。書込み依頼されたバッファを書き込んで同期し、完了キューに格納する。
+     */
+    private void processRequests()
+    {
+        try
+        {
+            while (true)
+            {
+                WriteBatch<T> batch = this.requestQueue.take();
+                writeBatch(batch);
+                this.completedQueue.put(batch);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            logger.info("HdfsAsyncWriter thread stopped.");
+        }
+        catch (RuntimeException | Error ex)
+        {
+            logger.error("HdfsAsyncWriter thread stopped by unexpected failure.", ex);
+        }
+    }
+
+    /**
+     * バッファの内容を書き込んで同期する。失敗した場合はバッファに失敗原因を設定し、
+     * 出力中ファイルの書込みバッファ内の未出力の内容を破棄して次のファイルに切り替える。<br>
+     * 失敗前にデータストリームへ出力済みの内容はファイルに残る場合があるため、失敗した出力行が再送分と重複して出力される可能性がある。
+     * 
+     * @param batch 対象バッファ
+     */
+    private void writeBatch(WriteBatch<T> batch)
+    {
+        try
+        {
+            int size = batch.size();
+            for (int index = 0; index < size; index++)
+            {
+                this.delegate.appendLine(batch.lines.get(index), batch.times[index]);
+            }
+
+            this.delegate.sync();
+            return;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            logger.warn("Failed to HDFS write. Notify failure.", ex);
+            batch.failure = ex;
+        }
+        catch (Error err)
+        {
+            // Errorでバックグラウンドスレッドが停止すると呼び出し元スレッドが完了を待ち続けるため、失敗として通知する。
+            logger.error("Failed to HDFS write by error. Notify failure.", err);
+            batch.failure = new IllegalStateException("Failed to HDFS write by error.", err);
+        }
+
+        try
+        {
+            this.delegate.discardWriter();
+        }
+        catch (RuntimeException ex)
+        {
+            logger.warn("Failed to discard HDFS writer. Continue.", ex);
+        }
+    }
+
+    /**
+     * 出力行、出力時刻、トークンを保持するバッファ。
+     * 
+     * @param <T> トークンの型
+     */
+    private static class WriteBatch<T>
+    {
+        /** 出力時刻配列の初期サイズ */
+        private static final int INITIAL_CAPACITY = 256;
+
+        /** 出力行 */
+        final List<String> lines  = new ArrayList<>();
+
+        /** 出力時刻 */
+        long[]             times  = new long[INITIAL_CAPACITY];
+
+        /** トークン */
+        final List<T>      tokens = new ArrayList<>();
+
+        /** 出力行の合計文字数 */
+        long               chars;
+
+        /** 書込み、または同期の失敗原因。成功時はnull。 */
+        Exception          failure;
+
+        /**
+         * パラメータを指定せずにインスタンスを生成する。
+         */
+        WriteBatch()
+        {}
+
+        /**
+         * 出力行を追加する。
+         * 
+         * @param line 出力行
+         * @param time 出力時刻
+         * @param token トークン
+         */
+        void add(String line, long time, T token)
+        {
+            int size = this.lines.size();
+            if (size == this.times.length)
+            {
+                this.times = Arrays.copyOf(this.times, size * 2);
+            }
+
+            this.times[size] = time;
+            this.lines.add(line);
+            this.tokens.add(token);
+            this.chars += line.length();
+        }
+
+        /**
+         * 格納している出力行数を取得する。
+         * 
+         * @return 出力行数
+         */
+        int size()
+        {
+            return this.lines.size();
+        }
+
+        /**
+         * 格納内容をクリアする。
+         */
+        void clear()
+        {
+            this.lines.clear();
+            this.tokens.clear();
+            this.chars = 0;
+            this.failure = null;
+        }
+    }
+}
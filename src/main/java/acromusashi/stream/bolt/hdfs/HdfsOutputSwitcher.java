@@ -17,14 +17,21 @@ import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import acromusashi.stream.metrics.LatencyHistogram;
 import acromusashi.stream.util.TimeIntervalFormatUtil;
 import acromusashi.stream.util.TimeUnitUtil;
 
@@ -42,6 +49,22 @@ public class HdfsOutputSwitcher
     /** 一時ファイルのインデックス最大値 */
     private static final int    TMP_MAX            = 50;
 
+    /** 同一インターバル内で出力済みファイルを避けて連番を進める最大回数 */
+    private static final int    SEQUENCE_SKIP_MAX  = 50;
+
+    /** 圧縮コーデック短縮名と実装クラス名のマップ */
+    private static final Map<String, String> CODEC_CLASS_NAMES;
+
+    static
+    {
+        Map<String, String> codecClassNames = new HashMap<String, String>();
+        codecClassNames.put("gzip", "org.apache.hadoop.io.compress.GzipCodec");
+        codecClassNames.put("snappy", "org.apache.hadoop.io.compress.SnappyCodec");
+        codecClassNames.put("bzip2", "org.apache.hadoop.io.compress.BZip2Codec");
+        codecClassNames.put("default", "org.apache.hadoop.io.compress.DefaultCodec");
+        CODEC_CLASS_NAMES = Collections.unmodifiableMap(codecClassNames);
+    }
+
     /** HDFSファイルシステム */
     private FileSystem          fileSystem         = null;
 
@@ -60,6 +83,15 @@ public class HdfsOutputSwitcher
     /** 現在出力を行っているファイルのサフィックス */
     private String              currentSuffix      = null;
 
+    /** 現在出力を行っているファイルの同一インターバル内連番。0の場合はファイル名に付与しない。 */
+    private int                 currentSequence    = 0;
+
+    /** 圧縮コーデック。nullの場合は圧縮しない。 */
+    private CompressionCodec    codec              = null;
+
+    /** 出力ファイルの拡張子。圧縮時はコーデックの拡張子、非圧縮時は空文字。 */
+    private String              fileExtension      = "";
+
     /** 次にファイル切替を行うタイミング */
     private long                nextSwitchTime     = 0;
 
@@ -72,6 +104,9 @@ public class HdfsOutputSwitcher
     /** ファイル切替インターバル（単位） */
     private TimeUnit            switchTimeUnit     = TimeUnit.MINUTES;
 
+    /** 同期時間の記録先 */
+    private LatencyHistogram    syncLatency        = new LatencyHistogram();
+
     /**
      * パラメータを指定せずにインスタンスを生成する。
      */
@@ -79,7 +114,10 @@ public class HdfsOutputSwitcher
     {}
 
     /**
-     * HDFS出力切替オブジェクトの初期化を行う。
+     * HDFS出力切替オブジェクトの初期化を行う。<br>
+     * ファイルは切替インターバルごとに切り替える。ファイル切替閾値(バイト数、レコード数)を指定した場合は、
+     * 閾値に達した時点でインターバル内でも切り替え、ファイル名の拡張子の前に「_連番」を付与する。<br>
+     * 再起動等により出力済みのファイルが存在する連番は使用しない。
      * 
      * @param fileSystem HDFSファイルシステム
      * @param config HDFS出力設定
@@ -93,6 +131,20 @@ public class HdfsOutputSwitcher
         this.fileSystem = fileSystem;
         this.config = config;
 
+        if (this.config.getCompressionCodec() != null)
+        {
+            this.codec = createCodec(this.config.getCompressionCodec(), fileSystem.getConf());
+            this.fileExtension = this.codec.getDefaultExtension();
+
+            if (this.config.isBufferedWrite() == false && this.config.isAsyncWrite() == false)
+            {
+                // 圧縮時はバッファ出力となり、同期前にAckされるため、書込みごとの同期による耐久性が失われる。
+                String logFormat = "Compression forces buffered write. Records are acked before sync."
+                        + " : CompressionCodec={0}";
+                logger.warn(MessageFormat.format(logFormat, this.config.getCompressionCodec()));
+            }
+        }
+
         if (this.config.getOutputUri().endsWith("/") == false)
         {
             this.outputDirUri = this.config.getOutputUri() + "/";
@@ -120,7 +172,9 @@ public class HdfsOutputSwitcher
 
         this.nextSwitchTime = initialBaseTime
                 + this.switchTimeUnit.toMillis(this.switchTimeInterval);
+        this.currentSequence = 0;
 
+        skipExistingSequence();
         updateWriter();
 
         logger.info("HDFSOutputSwitcher initialized.");
@@ -139,6 +193,10 @@ public class HdfsOutputSwitcher
         {
             switchWriter(nowTime);
         }
+        else if (isFileLimitReached())
+        {
+            rollWriter();
+        }
 
         this.currentWriter.append(target);
     }
@@ -156,10 +214,41 @@ public class HdfsOutputSwitcher
         {
             switchWriter(nowTime);
         }
+        else if (isFileLimitReached())
+        {
+            rollWriter();
+        }
 
         this.currentWriter.appendLine(target);
     }
 
+    /**
+     * バッファ出力時、前回同期からの経過時間が同期間隔以上の場合に同期する。<br>
+     * 出力が途絶えた場合も同期間隔で同期されるよう、定期的に呼び出すこと。
+     * 
+     * @throws IOException 入出力エラー発生時
+     */
+    public void syncIfExpired() throws IOException
+    {
+        if (this.currentWriter != null)
+        {
+            this.currentWriter.syncIfExpired();
+        }
+    }
+
+    /**
+     * 出力中ファイルをHDFS上に反映する。
+     * 
+     * @throws IOException 入出力エラー発生時
+     */
+    public void sync() throws IOException
+    {
+        if (this.currentWriter != null)
+        {
+            this.currentWriter.sync();
+        }
+    }
+
     /**
      * ファイルライターを切り替える。
      * 
@@ -180,7 +269,92 @@ public class HdfsOutputSwitcher
 
         this.nextSwitchTime = nextBaseTime
                 + this.config.getFileSwitchIntervalUnit().toMillis(this.switchTimeInterval);
+        this.currentSequence = 0;
+
+        skipExistingSequence();
+        updateWriter();
+    }
+
+    /**
+     * 出力中ファイルがファイル切替閾値(バイト数、レコード数)に達しているかを判定する。
+     * 
+     * @return 閾値に達している場合true
+     */
+    private boolean isFileLimitReached()
+    {
+        long maxFileBytes = this.config.getMaxFileBytes();
+        long maxFileRecords = this.config.getMaxFileRecords();
 
+        return (maxFileBytes > 0 && this.currentWriter.getWrittenBytes() >= maxFileBytes)
+                || (maxFileRecords > 0 && this.currentWriter.getWrittenRecords() >= maxFileRecords);
+    }
+
+    /**
+     * 同一インターバル内で連番を進めてファイルライターを切り替える。<br>
+     * 再起動等により出力済みのファイルが存在する連番は使用しない。
+     */
+    private void rollWriter()
+    {
+        closeRenameTmp2BaseFile();
+
+        this.currentSequence++;
+
+        skipExistingSequence();
+        updateWriter();
+    }
+
+    /**
+     * 現在の連番に出力済みのファイルが存在する場合、存在しない連番まで連番を進める。<br>
+     * 連番を進める回数は{@value #SEQUENCE_SKIP_MAX}回までとし、超過した場合はその時点の連番を使用する。
+     */
+    private void skipExistingSequence()
+    {
+        for (int skipCount = 0; skipCount < SEQUENCE_SKIP_MAX; skipCount++)
+        {
+            try
+            {
+                if (this.fileSystem.exists(new Path(getCurrentFileUri())) == false)
+                {
+                    return;
+                }
+            }
+            catch (IOException ex)
+            {
+                String logFormat = "Failed to search target file exists. Use this sequence. : TargetUri={0}";
+                String logMessage = MessageFormat.format(logFormat, getCurrentFileUri());
+                logger.warn(logMessage, ex);
+                return;
+            }
+
+            this.currentSequence++;
+        }
+    }
+
+    /**
+     * 出力中ファイルへの書込み、または同期に失敗した後に、書込みバッファ内の未出力の内容を破棄して同一インターバル内の次の連番のファイルに切り替える。<br>
+     * 失敗したファイルは同期済みの内容を保持しているため、一時ファイルサフィックスが無いファイル名称にリネームする。<br>
+     * 失敗前にデータストリームへ出力済みの内容はClose時に永続化される場合があるため、失敗した出力行の一部がファイルに残り、
+     * 再送分と重複して出力される可能性がある(at-least-once)。
+     */
+    public void discardWriter()
+    {
+        try
+        {
+            this.currentWriter.abort();
+        }
+        catch (IOException ex)
+        {
+            String logFormat = "Failed to HDFS file abort. Continue file switch. : TargetUri={0}";
+            String logMessage = MessageFormat.format(logFormat, getCurrentFileUri()
+                    + this.currentSuffix);
+            logger.warn(logMessage, ex);
+        }
+
+        renameTmp2BaseFile();
+
+        this.currentSequence++;
+
+        skipExistingSequence();
         updateWriter();
     }
 
@@ -196,21 +370,30 @@ public class HdfsOutputSwitcher
         catch (IOException ex)
         {
             String logFormat = "Failed to HDFS file close. Continue file switch. : TargetUri={0}";
-            String logMessage = MessageFormat.format(logFormat, this.currentOutputUri
+            String logMessage = MessageFormat.format(logFormat, getCurrentFileUri()
                     + this.currentSuffix);
             logger.warn(logMessage, ex);
         }
 
+        renameTmp2BaseFile();
+    }
+
+    /**
+     * 現在使用している出力中ファイルを、一時ファイルサフィックスが無いファイル名称にリネームする。
+     */
+    private void renameTmp2BaseFile()
+    {
+        String currentFileUri = getCurrentFileUri();
         boolean isFileExists = true;
 
         try
         {
-            isFileExists = this.fileSystem.exists(new Path(this.currentOutputUri));
+            isFileExists = this.fileSystem.exists(new Path(currentFileUri));
         }
         catch (IOException ioex)
         {
             String logFormat = "Failed to search target file exists. Skip file rename. : TargetUri={0}";
-            String logMessage = MessageFormat.format(logFormat, this.currentOutputUri);
+            String logMessage = MessageFormat.format(logFormat, currentFileUri);
             logger.warn(logMessage, ioex);
             return;
         }
@@ -218,22 +401,22 @@ public class HdfsOutputSwitcher
         if (isFileExists)
         {
             String logFormat = "File exists renamed target. Skip file rename. : BeforeUri={0} , AfterUri={1}";
-            String logMessage = MessageFormat.format(logFormat, this.currentOutputUri
-                    + this.currentSuffix, this.currentOutputUri);
+            String logMessage = MessageFormat.format(logFormat, currentFileUri
+                    + this.currentSuffix, currentFileUri);
             logger.warn(logMessage);
         }
         else
         {
             try
             {
-                this.fileSystem.rename(new Path(this.currentOutputUri + this.currentSuffix),
-                        new Path(this.currentOutputUri));
+                this.fileSystem.rename(new Path(currentFileUri + this.currentSuffix),
+                        new Path(currentFileUri));
             }
             catch (IOException ex)
             {
                 String logFormat = "Failed to HDFS file rename. Skip rename file. : BeforeUri={0} , AfterUri={1}";
-                String logMessage = MessageFormat.format(logFormat, this.currentOutputUri
-                        + this.currentSuffix, this.currentOutputUri);
+                String logMessage = MessageFormat.format(logFormat, currentFileUri
+                        + this.currentSuffix, currentFileUri);
                 logger.warn(logMessage, ex);
             }
         }
@@ -246,23 +429,24 @@ public class HdfsOutputSwitcher
     public void updateWriter()
     {
         HdfsStreamWriter result = new HdfsStreamWriter();
+        String currentFileUri = getCurrentFileUri();
         String suffix = this.config.getTmpFileSuffix();
         int suffixIndex = 0;
-        boolean isFileSyncEachTime = this.config.isFileSyncEachTime();
         boolean isSucceed = false;
 
         while (suffixIndex < TMP_MAX)
         {
             try
             {
-                result.open(this.currentOutputUri + suffix, this.fileSystem, isFileSyncEachTime);
+                result.open(currentFileUri + suffix, this.fileSystem, this.config, this.codec,
+                        this.syncLatency);
                 isSucceed = true;
                 break;
             }
             catch (IOException ex)
             {
                 String logFormat = "Failed to HDFS file open. Skip and retry next file. : TargetUri={0}";
-                String logMessage = MessageFormat.format(logFormat, this.currentOutputUri + suffix);
+                String logMessage = MessageFormat.format(logFormat, currentFileUri + suffix);
                 logger.warn(logMessage, ex);
                 suffixIndex++;
                 suffix = this.config.getTmpFileSuffix() + suffixIndex;
@@ -277,7 +461,7 @@ public class HdfsOutputSwitcher
         else
         {
             String logFormat = "HDFS file open failure is retry overed. Skip HDFS file open. : TargetUri={0}";
-            String logMessage = MessageFormat.format(logFormat, this.currentOutputUri + suffix);
+            String logMessage = MessageFormat.format(logFormat, currentFileUri + suffix);
             logger.warn(logMessage);
         }
     }
@@ -293,6 +477,32 @@ public class HdfsOutputSwitcher
         logger.info("HDFSOutputSwitcher closed.");
     }
 
+    /**
+     * 現在出力を行っているファイルのURI(一時ファイルサフィックス無し)を取得する。<br>
+     * 同一インターバル内の連番が1以上の場合は、拡張子の前に「_連番」を付与する。
+     * 
+     * @return 現在出力を行っているファイルのURI
+     */
+    private String getCurrentFileUri()
+    {
+        if (this.currentSequence == 0)
+        {
+            return this.currentOutputUri + this.fileExtension;
+        }
+
+        return this.currentOutputUri + "_" + this.currentSequence + this.fileExtension;
+    }
+
+    /**
+     * 同期時間の記録先を取得する。
+     * 
+     * @return 同期時間の記録先
+     */
+    public LatencyHistogram getSyncLatency()
+    {
+        return this.syncLatency;
+    }
+
     /**
      * ファイル切替インターバルの値が閾値内に収まっているかの確認を行う。<br>
      * 下記の値に収まっていることの確認を行い、収まっていない場合はデフォルト値(10分)を適用する。<br>
@@ -321,6 +531,35 @@ public class HdfsOutputSwitcher
      * 以下クラス未依存メソッド。他クラスで使用する場合はユーティリティメソッドとして切り出すこと。
      */
 
+    /**
+     * 圧縮コーデックを生成する。
+     * 
+     * @param codecName 圧縮コーデックの短縮名、または実装クラス名
+     * @param conf Hadoop設定
+     * @return 圧縮コーデック
+     * @throws IllegalArgumentException 圧縮コーデックの生成に失敗した場合
+     */
+    public static CompressionCodec createCodec(String codecName, Configuration conf)
+    {
+        String className = CODEC_CLASS_NAMES.get(codecName.toLowerCase());
+        if (className == null)
+        {
+            className = codecName;
+        }
+
+        try
+        {
+            Class<? extends CompressionCodec> codecClass = Class.forName(className).asSubclass(
+                    CompressionCodec.class);
+            return ReflectionUtils.newInstance(codecClass, conf);
+        }
+        catch (ClassNotFoundException | ClassCastException ex)
+        {
+            String logFormat = "Compression codec is invalid. : Codec={0}";
+            throw new IllegalArgumentException(MessageFormat.format(logFormat, codecName), ex);
+        }
+    }
+
     /**
      * ベースのファイル名称を取得する。
      * 
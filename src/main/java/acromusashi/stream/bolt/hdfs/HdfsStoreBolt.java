@@ -14,6 +14,8 @@ package acromusashi.stream.bolt.hdfs;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
@@ -25,12 +27,37 @@ import org.slf4j.LoggerFactory;
 import acromusashi.stream.bolt.AmConfigurationBolt;
 import acromusashi.stream.entity.StreamMessage;
 import acromusashi.stream.exception.InitFailException;
+import acromusashi.stream.metrics.ComponentMetrics;
+import backtype.storm.Config;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.tuple.Tuple;
 
 /**
  * 受信したメッセージをHDFSに出力するBolt<br>
+ * <br>
+ * 「hdfsstorebolt.bufferedwrite」にtrueを指定した場合、UTF-8でバッファ出力を行い、下記の同期条件を満たした時点で同期する。
+ * <ul>
+ * <li>hdfsstorebolt.syncbytes : 前回同期からの出力バイト数の閾値</li>
+ * <li>hdfsstorebolt.syncrecords : 前回同期からの出力レコード数の閾値</li>
+ * <li>hdfsstorebolt.syncintervalms : 前回同期からの経過時間(ms)の閾値。TickTuple受信時にも判定する。</li>
+ * </ul>
+ * 同期時間は組込みメトリクス有効時に「{@value #SYNC_LATENCY_METRIC_NAME}」として出力する。<br>
+ * バッファ出力時、受信したTupleはバッファへの格納時点でAckするため、同期前にWorkerが停止した場合は
+ * 最大で同期閾値分(デフォルトは1秒、または4MB)のAck済みレコードが失われる(at-most-once)。
+ * Ack済みレコードを失わない必要がある場合は「hdfsstorebolt.asyncwrite」を使用すること。<br>
+ * 「hdfsstorebolt.compressioncodec」に圧縮コーデック(gzip、snappy等)を指定した場合、圧縮して出力する。<br>
+ * 圧縮時は書込みごとに圧縮ストリームを終端しないよう、「hdfsstorebolt.bufferedwrite」の指定に関わらずバッファ出力として動作する。
+ * このため「hdfsstorebolt.asyncwrite」を指定しない場合、上記のバッファ出力と同様に同期前のAck済みレコードが失われ得る。
+ * 「hdfsstorebolt.bufferedwrite」「hdfsstorebolt.asyncwrite」のいずれも指定せずに圧縮した場合は初期化時に警告ログを出力する。<br>
+ * 「hdfsstorebolt.maxfilebytes」「hdfsstorebolt.maxfilerecords」を指定した場合、出力ファイルの圧縮前バイト数、レコード数が
+ * 閾値に達した時点で切替インターバル内でもファイルを切り替え、ファイル名に「_連番」を付与する。<br>
+ * <br>
+ * 「hdfsstorebolt.asyncwrite」にtrueを指定した場合、{@link HdfsAsyncWriter}を用いてバックグラウンドスレッドで出力する。
+ * 同期条件はバッファの入れ替え条件として使用し、受信したTupleは該当する出力行の同期完了後にAckする。
+ * 書込み、または同期に失敗した場合はFailする。
+ * Tupleのタイムアウト時間(topology.message.timeout.secs)は同期間隔より十分長く設定すること。
  *
  * @author kimura
  */
@@ -42,9 +69,21 @@ public class HdfsStoreBolt extends AmConfigurationBolt
     /** logger */
     private static final Logger          logger           = LoggerFactory.getLogger(HdfsStoreBolt.class);
 
+    /** 同期時間のメトリクス名称 */
+    public static final String           SYNC_LATENCY_METRIC_NAME = "am-hdfs-sync-latency";
+
+    /** TickTuple送信間隔デフォルト値(sec) */
+    public static final int              DEFAULT_TICK_SEC = 1;
+
     /** HDFSへの出力コンポーネント */
     private transient HdfsOutputSwitcher delegate         = null;
 
+    /** 非同期出力コンポーネント。非同期出力を行わない場合はnull。 */
+    private transient HdfsAsyncWriter<Tuple> asyncWriter  = null;
+
+    /** TickTuple送信間隔(sec)。0以下の場合はTickTupleを使用しない。 */
+    private int                          tickIntervalSec  = DEFAULT_TICK_SEC;
+
     /**
      * パラメータを指定せずにインスタンスを生成する。
      */
@@ -70,6 +109,56 @@ public class HdfsStoreBolt extends AmConfigurationBolt
         config.setFileSwitchIntarval(((Long) stormConf.get("hdfsstorebolt.interval")).intValue());
         config.setFileNameBody("_" + componentId + "_" + taskId + "_");
 
+        Object isBufferedWriteObj = stormConf.get("hdfsstorebolt.bufferedwrite");
+        if (isBufferedWriteObj != null && isBufferedWriteObj instanceof Boolean)
+        {
+            config.setBufferedWrite(((Boolean) isBufferedWriteObj).booleanValue());
+        }
+
+        Object writeBufferSizeObj = stormConf.get("hdfsstorebolt.writebuffersize");
+        if (writeBufferSizeObj instanceof Number)
+        {
+            config.setWriteBufferSize(((Number) writeBufferSizeObj).intValue());
+        }
+
+        Object syncBytesObj = stormConf.get("hdfsstorebolt.syncbytes");
+        if (syncBytesObj instanceof Number)
+        {
+            config.setSyncBytes(((Number) syncBytesObj).longValue());
+        }
+
+        Object syncRecordsObj = stormConf.get("hdfsstorebolt.syncrecords");
+        if (syncRecordsObj instanceof Number)
+        {
+            config.setSyncRecords(((Number) syncRecordsObj).longValue());
+        }
+
+        Object syncIntervalObj = stormConf.get("hdfsstorebolt.syncintervalms");
+        if (syncIntervalObj instanceof Number)
+        {
+            config.setSyncIntervalMs(((Number) syncIntervalObj).longValue());
+        }
+
+        Object isAsyncWriteObj = stormConf.get("hdfsstorebolt.asyncwrite");
+        if (isAsyncWriteObj instanceof Boolean)
+        {
+            config.setAsyncWrite(((Boolean) isAsyncWriteObj).booleanValue());
+        }
+
+        config.setCompressionCodec((String) stormConf.get("hdfsstorebolt.compressioncodec"));
+
+        Object maxFileBytesObj = stormConf.get("hdfsstorebolt.maxfilebytes");
+        if (maxFileBytesObj instanceof Number)
+        {
+            config.setMaxFileBytes(((Number) maxFileBytesObj).longValue());
+        }
+
+        Object maxFileRecordsObj = stormConf.get("hdfsstorebolt.maxfilerecords");
+        if (maxFileRecordsObj instanceof Number)
+        {
+            config.setMaxFileRecords(((Number) maxFileRecordsObj).longValue());
+        }
+
         boolean isPreprocess = true;
         Object isPreprocessObj = stormConf.get("hdfsstorebolt.executepreprocess");
         if (isPreprocessObj != null && isPreprocessObj instanceof Boolean)
@@ -94,6 +183,19 @@ public class HdfsStoreBolt extends AmConfigurationBolt
 
             this.delegate = new HdfsOutputSwitcher();
             this.delegate.initialize(fileSystem, config, System.currentTimeMillis());
+
+            if (ComponentMetrics.isEnabled(stormConf))
+            {
+                context.registerMetric(SYNC_LATENCY_METRIC_NAME, this.delegate.getSyncLatency(),
+                        ComponentMetrics.getBucketSecs(stormConf));
+            }
+
+            if (config.isAsyncWrite())
+            {
+                this.asyncWriter = new HdfsAsyncWriter<>(this.delegate, config,
+                        createFlushListener());
+                this.asyncWriter.start();
+            }
         }
         catch (Exception ex)
         {
@@ -102,9 +204,62 @@ public class HdfsStoreBolt extends AmConfigurationBolt
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Object> getComponentConfiguration()
+    {
+        if (this.tickIntervalSec <= 0)
+        {
+            return null;
+        }
+
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, this.tickIntervalSec);
+        return conf;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Tuple input)
+    {
+        if (isTickTuple(input))
+        {
+            // TickTupleはアンカーされていないためAck不要。
+            if (this.asyncWriter != null)
+            {
+                this.asyncWriter.flushIfExpired();
+                return;
+            }
+
+            try
+            {
+                this.delegate.syncIfExpired();
+            }
+            catch (IOException ex)
+            {
+                logger.warn("Failed to HDFS sync.", ex);
+            }
+            return;
+        }
+
+        super.execute(input);
+    }
+
     @Override
     public void onMessage(StreamMessage message)
     {
+        if (this.asyncWriter != null)
+        {
+            // 同期完了後にFlushListenerからAckする。
+            this.asyncWriter.append(message.toString(), System.currentTimeMillis(),
+                    getExecutingTuple());
+            return;
+        }
+
         try
         {
             this.delegate.appendLine(message.toString(), System.currentTimeMillis());
@@ -126,7 +281,14 @@ public class HdfsStoreBolt extends AmConfigurationBolt
 
         try
         {
-            this.delegate.close();
+            if (this.asyncWriter != null)
+            {
+                this.asyncWriter.close();
+            }
+            else
+            {
+                this.delegate.close();
+            }
         }
         catch (IOException ex)
         {
@@ -144,4 +306,43 @@ public class HdfsStoreBolt extends AmConfigurationBolt
     {
         // This class not has downstream component.
     }
+
+    /**
+     * 非同期出力の同期結果に応じてTupleをAck/Failするリスナを生成する。
+     * 
+     * @return 同期結果の通知先
+     */
+    private HdfsAsyncWriter.FlushListener<Tuple> createFlushListener()
+    {
+        return new HdfsAsyncWriter.FlushListener<Tuple>() {
+            @Override
+            public void onFlushed(List<Tuple> tokens)
+            {
+                for (Tuple tuple : tokens)
+                {
+                    getCollector().ack(tuple);
+                }
+            }
+
+            @Override
+            public void onFailed(List<Tuple> tokens, Exception cause)
+            {
+                String logFormat = "Fail write to hdfs. Fail received tuples. : TupleNum={0}";
+                logger.warn(MessageFormat.format(logFormat, tokens.size()), cause);
+
+                for (Tuple tuple : tokens)
+                {
+                    getCollector().fail(tuple);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param tickIntervalSec the tickIntervalSec to set
+     */
+    public void setTickIntervalSec(int tickIntervalSec)
+    {
+        this.tickIntervalSec = tickIntervalSec;
+    }
 }
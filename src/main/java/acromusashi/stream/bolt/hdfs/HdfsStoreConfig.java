@@ -25,7 +25,16 @@ import org.apache.commons.lang.builder.ToStringStyle;
 public class HdfsStoreConfig
 {
     /** ファイル名切替インターバルデフォルト値 */
-    public static final int DEFAULT_INTERVAL       = 10;
+    public static final int  DEFAULT_INTERVAL          = 10;
+
+    /** バッファ出力時の書込みバッファサイズデフォルト値(byte) */
+    public static final int  DEFAULT_WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /** バッファ出力時の同期閾値デフォルト値(byte) */
+    public static final long DEFAULT_SYNC_BYTES        = 4 * 1024 * 1024;
+
+    /** バッファ出力時の同期間隔デフォルト値(ms) */
+    public static final long DEFAULT_SYNC_INTERVAL_MS  = 1000;
 
     /** HDFS出力先Uri */
     private String          outputUri              = "";
@@ -45,9 +54,57 @@ public class HdfsStoreConfig
     /** ファイル名切替インターバル（単位） */
     private TimeUnit        fileSwitchIntervalUnit = TimeUnit.MINUTES;
 
-    /** 1回の書込みごとにファイル同期するかのフラグ */
+    /** 1回の書込みごとにファイル同期するかのフラグ。バッファ出力時は使用しない。 */
     private boolean         isFileSyncEachTime     = true;
 
+    /**
+     * バッファ出力を行うかのフラグ。<br>
+     * trueの場合はUTF-8でバッファに書込み、同期条件(バイト数、レコード数、経過時間)を満たした時点で同期する。<br>
+     * falseの場合はUTF-16で出力し、1回の書込みごとに同期するかのフラグに従って同期する。
+     */
+    private boolean         isBufferedWrite        = false;
+
+    /**
+     * 非同期出力を行うかのフラグ。<br>
+     * trueの場合は{@link HdfsAsyncWriter}を用いてバックグラウンドスレッドで出力し、バッファ出力として動作する。
+     * 同期閾値(バイト数、レコード数、経過時間)はバッファの入れ替え条件として使用し、書込みごとの同期は行わない。
+     */
+    private boolean         isAsyncWrite           = false;
+
+    /** バッファ出力時の書込みバッファサイズ(byte) */
+    private int             writeBufferSize        = DEFAULT_WRITE_BUFFER_SIZE;
+
+    /** バッファ出力時の同期閾値(byte)。前回同期からの出力バイト数が閾値以上になった時点で同期する。0以下の場合は判定しない。 */
+    private long            syncBytes              = DEFAULT_SYNC_BYTES;
+
+    /** バッファ出力時の同期閾値(レコード数)。前回同期からの出力レコード数が閾値以上になった時点で同期する。0以下の場合は判定しない。 */
+    private long            syncRecords            = 0;
+
+    /** バッファ出力時の同期間隔(ms)。前回同期からの経過時間が間隔以上になった時点で同期する。0以下の場合は判定しない。 */
+    private long            syncIntervalMs         = DEFAULT_SYNC_INTERVAL_MS;
+
+    /**
+     * 圧縮コーデック。nullの場合は圧縮しない。<br>
+     * 「gzip」「snappy」「bzip2」「default」の短縮名、またはCompressionCodecの実装クラス名を指定する。<br>
+     * Lz4CodecはHadoop 1.x系に存在しないため短縮名を用意していない。Hadoop 2.x以降で使用する場合は実装クラス名を指定すること。<br>
+     * 圧縮を行う場合はバッファ出力を行うかのフラグに関わらずバッファ出力として動作する。<br>
+     * そのため、非同期出力を行わない場合はTupleが同期前にAckされ、書込みごとの同期は行われない。
+     * 同期前にWorkerが停止した場合は最大で同期閾値分のAck済みレコードが失われるため、耐久性が必要な場合は非同期出力と併用すること。
+     */
+    private String          compressionCodec       = null;
+
+    /**
+     * ファイル切替閾値(byte)。出力ファイルの圧縮前バイト数が閾値以上になった時点で、切替インターバル内でもファイルを切り替える。<br>
+     * 0以下の場合は判定しない。
+     */
+    private long            maxFileBytes           = 0;
+
+    /**
+     * ファイル切替閾値(レコード数)。出力ファイルのレコード数が閾値以上になった時点で、切替インターバル内でもファイルを切り替える。<br>
+     * 0以下の場合は判定しない。
+     */
+    private long            maxFileRecords         = 0;
+
     /**
      * パラメータを指定せずにインスタンスを生成する。
      */
@@ -166,6 +223,155 @@ public class HdfsStoreConfig
         this.isFileSyncEachTime = isFileSyncEachTime;
     }
 
+    /**
+     * バッファ出力を行うかを取得する。<br>
+     * バッファ出力時、HdfsStoreBoltはバッファへの格納時点でTupleをAckするため、同期前にWorkerが停止した場合は
+     * 最大で同期閾値分(同期間隔、同期バイト数)のAck済みレコードが失われる(at-most-once)。
+     * Ack済みレコードを失わない必要がある場合は、同期完了後にAckする非同期出力を使用すること。
+     * 
+     * @return the isBufferedWrite
+     */
+    public boolean isBufferedWrite()
+    {
+        return this.isBufferedWrite;
+    }
+
+    /**
+     * @param isBufferedWrite the isBufferedWrite to set
+     */
+    public void setBufferedWrite(boolean isBufferedWrite)
+    {
+        this.isBufferedWrite = isBufferedWrite;
+    }
+
+    /**
+     * @return the writeBufferSize
+     */
+    public int getWriteBufferSize()
+    {
+        return this.writeBufferSize;
+    }
+
+    /**
+     * @param writeBufferSize the writeBufferSize to set
+     */
+    public void setWriteBufferSize(int writeBufferSize)
+    {
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    /**
+     * @return the syncBytes
+     */
+    public long getSyncBytes()
+    {
+        return this.syncBytes;
+    }
+
+    /**
+     * @param syncBytes the syncBytes to set
+     */
+    public void setSyncBytes(long syncBytes)
+    {
+        this.syncBytes = syncBytes;
+    }
+
+    /**
+     * @return the syncRecords
+     */
+    public long getSyncRecords()
+    {
+        return this.syncRecords;
+    }
+
+    /**
+     * @param syncRecords the syncRecords to set
+     */
+    public void setSyncRecords(long syncRecords)
+    {
+        this.syncRecords = syncRecords;
+    }
+
+    /**
+     * @return the syncIntervalMs
+     */
+    public long getSyncIntervalMs()
+    {
+        return this.syncIntervalMs;
+    }
+
+    /**
+     * @param syncIntervalMs the syncIntervalMs to set
+     */
+    public void setSyncIntervalMs(long syncIntervalMs)
+    {
+        this.syncIntervalMs = syncIntervalMs;
+    }
+
+    /**
+     * @return the compressionCodec
+     */
+    public String getCompressionCodec()
+    {
+        return this.compressionCodec;
+    }
+
+    /**
+     * @param compressionCodec the compressionCodec to set
+     */
+    public void setCompressionCodec(String compressionCodec)
+    {
+        this.compressionCodec = compressionCodec;
+    }
+
+    /**
+     * @return the isAsyncWrite
+     */
+    public boolean isAsyncWrite()
+    {
+        return this.isAsyncWrite;
+    }
+
+    /**
+     * @param isAsyncWrite the isAsyncWrite to set
+     */
+    public void setAsyncWrite(boolean isAsyncWrite)
+    {
+        this.isAsyncWrite = isAsyncWrite;
+    }
+
+    /**
+     * @return the maxFileBytes
+     */
+    public long getMaxFileBytes()
+    {
+        return this.maxFileBytes;
+    }
+
+    /**
+     * @param maxFileBytes the maxFileBytes to set
+     */
+    public void setMaxFileBytes(long maxFileBytes)
+    {
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    /**
+     * @return the maxFileRecords
+     */
+    public long getMaxFileRecords()
+    {
+        return this.maxFileRecords;
+    }
+
+    /**
+     * @param maxFileRecords the maxFileRecords to set
+     */
+    public void setMaxFileRecords(long maxFileRecords)
+    {
+        this.maxFileRecords = maxFileRecords;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -12,25 +12,93 @@
 */
 package acromusashi.stream.bolt.hdfs;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+
+import acromusashi.stream.metrics.LatencyHistogram;
 
 /**
  * HDFS上のファイルに対してテキストを出力するWriterクラス。<br>
- * HDFS上のファイル1個に対して1インスタンスが対応。
+ * HDFS上のファイル1個に対して1インスタンスが対応。<br>
+ * <br>
+ * バッファ出力を行う場合はテキストをUTF-8に変換して再利用する書込みバッファに格納し、
+ * 同期条件(バイト数、レコード数、経過時間)を満たした時点でバッファをファイルに書き込んで同期する。<br>
+ * バッファ出力を行わない場合はテキストをUTF-16で出力する。<br>
+ * <br>
+ * 圧縮コーデックを指定した場合、同期ごとに圧縮ブロックを終端してから同期するため、
+ * 同期済みの範囲は圧縮ブロック単位で読み出し可能となる。次の圧縮ブロックは次回の書込み時に開始する。
  * 
  * @author kimura
  */
 public class HdfsStreamWriter
 {
+    /** 改行コード */
+    private static final String LINE_SEPARATOR     = System.getProperty("line.separator");
+
+    /** UTF-8変換1文字あたりの最大バイト数 */
+    private static final int    MAX_BYTES_PER_CHAR = 4;
+
     /** 実際に書き込みを行うWriterオブジェクト */
-    private FSDataOutputStream delegateStream;
+    private FSDataOutputStream  delegateStream;
+
+    /** テキストの書込み先。圧縮時は圧縮ストリーム、非圧縮時はWriterオブジェクト。圧縮ブロック開始前はnull。 */
+    private DataOutputStream    outputStream;
+
+    /** 圧縮コーデック。nullの場合は圧縮しない。 */
+    private CompressionCodec    codec;
+
+    /** 圧縮コーデックプールから取得したCompressor */
+    private Compressor          compressor;
+
+    /** 現在の圧縮ブロックを出力する圧縮ストリーム */
+    private CompressionOutputStream compressionStream;
 
     /** 1回の書込みごとにファイルと同期するかのフラグ */
-    private boolean            isFileSyncEachTime = false;
+    private boolean             isFileSyncEachTime = false;
+
+    /** バッファ出力を行うかのフラグ */
+    private boolean             isBufferedWrite    = false;
+
+    /** 書込みバッファ */
+    private byte[]              buffer;
+
+    /** 書込みバッファの使用済みバイト数 */
+    private int                 bufferPosition;
+
+    /** 同期閾値(byte) */
+    private long                syncBytes;
+
+    /** 同期閾値(レコード数) */
+    private long                syncRecords;
+
+    /** 同期間隔(ms) */
+    private long                syncIntervalMs;
+
+    /** 前回同期以降の出力バイト数 */
+    private long                unsyncedBytes;
+
+    /** 前回同期以降の出力レコード数 */
+    private long                unsyncedRecords;
+
+    /** 前回同期時刻 */
+    private long                lastSyncTime;
+
+    /** 前回同期までの出力バイト数(圧縮前) */
+    private long                syncedBytes;
+
+    /** 前回同期までの出力レコード数 */
+    private long                syncedRecords;
+
+    /** 同期時間の記録先。nullの場合は記録しない。 */
+    private LatencyHistogram    syncLatency;
 
     /**
      * パラメータを指定せずにインスタンスを生成する。
@@ -59,9 +127,51 @@ public class HdfsStreamWriter
             this.delegateStream = fs.create(dstPath);
         }
 
+        this.outputStream = this.delegateStream;
         this.isFileSyncEachTime = isFileSyncEachTime;
     }
 
+    /**
+     * 指定したHDFS上パスにあるファイルを、HDFS出力設定に従った出力方式でOpenする。
+     * 
+     * @param filePath HDFSパス
+     * @param fs ファイルシステム
+     * @param config HDFS出力設定
+     * @param codec 圧縮コーデック。nullの場合は圧縮しない。
+     * @param syncLatency 同期時間の記録先。nullの場合は記録しない。
+     * @throws IOException Open失敗時
+     */
+    public void open(String filePath, FileSystem fs, HdfsStoreConfig config,
+            CompressionCodec codec, LatencyHistogram syncLatency) throws IOException
+    {
+        open(filePath, fs, config.isFileSyncEachTime());
+
+        this.codec = codec;
+        if (codec != null)
+        {
+            this.compressor = CodecPool.getCompressor(codec);
+            this.outputStream = null;
+        }
+
+        this.syncLatency = syncLatency;
+        // 圧縮時は書込みごとの同期で圧縮ストリームが終端されるため、バッファ出力として動作させる。
+        this.isBufferedWrite = config.isBufferedWrite() || config.isAsyncWrite() || codec != null;
+        if (this.isBufferedWrite)
+        {
+            this.buffer = new byte[Math.max(config.getWriteBufferSize(), MAX_BYTES_PER_CHAR)];
+            this.bufferPosition = 0;
+            this.lastSyncTime = System.currentTimeMillis();
+        }
+
+        // 非同期出力時は同期をHdfsAsyncWriterが制御するため、同期条件を判定しない。
+        if (this.isBufferedWrite && config.isAsyncWrite() == false)
+        {
+            this.syncBytes = config.getSyncBytes();
+            this.syncRecords = config.getSyncRecords();
+            this.syncIntervalMs = config.getSyncIntervalMs();
+        }
+    }
+
     /**
      * ファイルに対してテキストを追記する。
      * 
@@ -70,7 +180,17 @@ public class HdfsStreamWriter
      */
     public void append(String outputStr) throws IOException
     {
-        this.delegateStream.writeChars(outputStr);
+        if (this.isBufferedWrite)
+        {
+            writeUtf8(outputStr);
+            this.unsyncedRecords++;
+            syncIfRequired();
+            return;
+        }
+
+        getOutputStream().writeChars(outputStr);
+        this.unsyncedBytes += outputStr.length() * 2;
+        this.unsyncedRecords++;
 
         if (this.isFileSyncEachTime)
         {
@@ -86,8 +206,20 @@ public class HdfsStreamWriter
      */
     public void appendLine(String outputLine) throws IOException
     {
-        this.delegateStream.writeChars(outputLine);
-        this.delegateStream.writeChars(System.getProperty("line.separator"));
+        if (this.isBufferedWrite)
+        {
+            writeUtf8(outputLine);
+            writeUtf8(LINE_SEPARATOR);
+            this.unsyncedRecords++;
+            syncIfRequired();
+            return;
+        }
+
+        DataOutputStream stream = getOutputStream();
+        stream.writeChars(outputLine);
+        stream.writeChars(System.getProperty("line.separator"));
+        this.unsyncedBytes += (outputLine.length() + LINE_SEPARATOR.length()) * 2;
+        this.unsyncedRecords++;
 
         if (this.isFileSyncEachTime)
         {
@@ -95,6 +227,20 @@ public class HdfsStreamWriter
         }
     }
 
+    /**
+     * バッファ出力時、前回同期からの経過時間が同期間隔以上の場合に同期する。<br>
+     * 出力が途絶えた場合も同期間隔で同期されるよう、定期的に呼び出すこと。
+     * 
+     * @throws IOException 反映失敗時
+     */
+    public void syncIfExpired() throws IOException
+    {
+        if (this.isBufferedWrite && this.unsyncedRecords > 0 && isSyncIntervalElapsed())
+        {
+            sync();
+        }
+    }
+
     /**
      * これまで追記したファイルをHDFS上に反映する。
      * 
@@ -103,8 +249,52 @@ public class HdfsStreamWriter
      */
     public void sync() throws IOException
     {
+        long startTime = System.nanoTime();
+
+        flushBuffer();
+        if (this.compressionStream != null)
+        {
+            // 圧縮ブロックを終端してから同期する。
+            this.outputStream.flush();
+            this.compressionStream.finish();
+            this.compressionStream = null;
+            this.outputStream = null;
+        }
+
         this.delegateStream.flush();
         this.delegateStream.sync();
+
+        if (this.syncLatency != null)
+        {
+            this.syncLatency.record(System.nanoTime() - startTime);
+        }
+
+        this.syncedBytes += this.unsyncedBytes;
+        this.syncedRecords += this.unsyncedRecords;
+        this.unsyncedBytes = 0;
+        this.unsyncedRecords = 0;
+        this.lastSyncTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Open以降の出力バイト数を取得する。<br>
+     * 圧縮前のバイト数(バッファ出力時はUTF-8、非バッファ出力時はUTF-16でのバイト数)を返す。
+     * 
+     * @return Open以降の出力バイト数
+     */
+    public long getWrittenBytes()
+    {
+        return this.syncedBytes + this.unsyncedBytes;
+    }
+
+    /**
+     * Open以降の出力レコード数を取得する。
+     * 
+     * @return Open以降の出力レコード数
+     */
+    public long getWrittenRecords()
+    {
+        return this.syncedRecords + this.unsyncedRecords;
     }
 
     /**
@@ -117,5 +307,176 @@ public class HdfsStreamWriter
     {
         sync();
         this.delegateStream.close();
+
+        if (this.compressor != null)
+        {
+            CodecPool.returnCompressor(this.compressor);
+            this.compressor = null;
+        }
+    }
+
+    /**
+     * 書込みバッファ内の未出力の内容を破棄し、データストリームをCloseする。<br>
+     * 書込み、または同期に失敗した後、失敗した内容を後続の同期で出力しないために使用する。<br>
+     * データストリームへ出力済みの内容はClose時に永続化される場合があるため、失敗した内容の一部が出力される可能性がある。
+     * 圧縮時は出力済みの範囲を伸長可能とするため、圧縮ブロックの終端を試みる。
+     * 
+     * @throws IOException
+     *             入出力例外発生時
+     */
+    public void abort() throws IOException
+    {
+        this.bufferPosition = 0;
+        this.unsyncedBytes = 0;
+        this.unsyncedRecords = 0;
+
+        try
+        {
+            if (this.compressionStream != null)
+            {
+                this.compressionStream.finish();
+            }
+        }
+        finally
+        {
+            this.compressionStream = null;
+            this.delegateStream.close();
+
+            if (this.compressor != null)
+            {
+                CodecPool.returnCompressor(this.compressor);
+                this.compressor = null;
+            }
+        }
+    }
+
+    /**
+     * テキストの書込み先を取得する。圧縮時に圧縮ブロックが開始されていない場合は開始する。
+     * 
+     * @return テキストの書込み先
+     * @throws IOException 圧縮ブロック開始失敗時
+     */
+    private DataOutputStream getOutputStream() throws IOException
+    {
+        if (this.outputStream == null)
+        {
+            if (this.compressor != null)
+            {
+                this.compressor.reset();
+                this.compressionStream = this.codec.createOutputStream(this.delegateStream,
+                        this.compressor);
+            }
+            else
+            {
+                this.compressionStream = this.codec.createOutputStream(this.delegateStream);
+            }
+
+            this.outputStream = new DataOutputStream(this.compressionStream);
+        }
+
+        return this.outputStream;
+    }
+
+    /**
+     * 同期条件を満たしている場合に同期する。
+     * 
+     * @throws IOException 反映失敗時
+     */
+    private void syncIfRequired() throws IOException
+    {
+        if ((this.syncBytes > 0 && this.unsyncedBytes >= this.syncBytes)
+                || (this.syncRecords > 0 && this.unsyncedRecords >= this.syncRecords)
+                || isSyncIntervalElapsed())
+        {
+            sync();
+        }
+    }
+
+    /**
+     * 前回同期からの経過時間が同期間隔以上かを判定する。
+     * 
+     * @return 同期間隔以上の場合true
+     */
+    private boolean isSyncIntervalElapsed()
+    {
+        return this.syncIntervalMs > 0
+                && System.currentTimeMillis() - this.lastSyncTime >= this.syncIntervalMs;
+    }
+
+    /**
+     * 書込みバッファの内容をファイルに書き込む。
+     * 
+     * @throws IOException 書込み失敗時
+     */
+    private void flushBuffer() throws IOException
+    {
+        if (this.bufferPosition > 0)
+        {
+            getOutputStream().write(this.buffer, 0, this.bufferPosition);
+            this.bufferPosition = 0;
+        }
+    }
+
+    /**
+     * テキストをUTF-8に変換して書込みバッファに格納する。バッファが不足した場合はファイルに書き込む。<br>
+     * 対になっていないサロゲート文字は'?'として出力する。
+     * 
+     * @param text テキスト
+     * @throws IOException 書込み失敗時
+     */
+    private void writeUtf8(String text) throws IOException
+    {
+        byte[] buf = this.buffer;
+        int position = this.bufferPosition;
+        int startPosition = position;
+        int length = text.length();
+
+        for (int index = 0; index < length; index++)
+        {
+            if (buf.length - position < MAX_BYTES_PER_CHAR)
+            {
+                this.unsyncedBytes += position - startPosition;
+                this.bufferPosition = position;
+                flushBuffer();
+                position = 0;
+                startPosition = 0;
+            }
+
+            char ch = text.charAt(index);
+            if (ch < 0x80)
+            {
+                buf[position++] = (byte) ch;
+            }
+            else if (ch < 0x800)
+            {
+                buf[position++] = (byte) (0xC0 | (ch >> 6));
+                buf[position++] = (byte) (0x80 | (ch & 0x3F));
+            }
+            else if (Character.isSurrogate(ch))
+            {
+                if (Character.isHighSurrogate(ch) && index + 1 < length
+                        && Character.isLowSurrogate(text.charAt(index + 1)))
+                {
+                    int codePoint = Character.toCodePoint(ch, text.charAt(++index));
+                    buf[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    buf[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buf[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buf[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                }
+                else
+                {
+                    buf[position++] = (byte) '?';
+                }
+            }
+            else
+            {
+                buf[position++] = (byte) (0xE0 | (ch >> 12));
+                buf[position++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                buf[position++] = (byte) (0x80 | (ch & 0x3F));
+            }
+        }
+
+        this.unsyncedBytes += position - startPosition;
+        this.bufferPosition = position;
     }
 }
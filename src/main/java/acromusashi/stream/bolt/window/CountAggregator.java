@@ -0,0 +1,59 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.window;
+
+import acromusashi.stream.entity.StreamMessage;
+
+/**
+ * Aggregator that counts messages in window.
+ *
+ * @author kimura
+ */
+public class CountAggregator implements WindowAggregator<long[]>
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = 4021719457839147201L;
+
+    /**
+     * Constructs instance.
+     */
+    public CountAggregator()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long[] createAccumulator()
+    {
+        return new long[1];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(long[] accumulator, StreamMessage message)
+    {
+        accumulator[0]++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getResult(long[] accumulator)
+    {
+        return accumulator[0];
+    }
+}
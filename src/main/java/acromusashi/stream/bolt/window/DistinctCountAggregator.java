@@ -0,0 +1,197 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.window;
+
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.util.HashUtil;
+
+/**
+ * Aggregator that estimates number of distinct values of field in window by HyperLogLog.<br>
+ * Accumulator is fixed size register array of 2^precision bytes regardless of number of values,
+ * and standard error of result is about 1.04 / sqrt(2^precision).<br>
+ * Field value is hashed by its string representation. Message whose field is missing is ignored.
+ *
+ * @author kimura
+ */
+public class DistinctCountAggregator implements WindowAggregator<byte[]>
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID  = -1584387236512938455L;
+
+    /** Default precision. (4096 registers, about 1.6% standard error) */
+    public static final int   DEFAULT_PRECISION = 12;
+
+    /** Min precision */
+    public static final int   MIN_PRECISION     = 4;
+
+    /** Max precision */
+    public static final int   MAX_PRECISION     = 16;
+
+    /** Target field name */
+    private String            fieldName;
+
+    /** Precision. Number of registers is 2^precision. */
+    private int               precision;
+
+    /**
+     * Constructs instance with default precision.
+     *
+     * @param fieldName target field name
+     */
+    public DistinctCountAggregator(String fieldName)
+    {
+        this(fieldName, DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructs instance.
+     *
+     * @param fieldName target field name
+     * @param precision precision({@value #MIN_PRECISION} - {@value #MAX_PRECISION})
+     */
+    public DistinctCountAggregator(String fieldName, int precision)
+    {
+        if (fieldName == null)
+        {
+            throw new IllegalArgumentException("FieldName must not be null.");
+        }
+
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+        {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION
+                    + " and " + MAX_PRECISION + ". : Precision=" + precision);
+        }
+
+        this.fieldName = fieldName;
+        this.precision = precision;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] createAccumulator()
+    {
+        return new byte[1 << this.precision];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(byte[] accumulator, StreamMessage message)
+    {
+        Object value = message.getField(this.fieldName);
+        if (value == null)
+        {
+            return;
+        }
+
+        addHash(accumulator, this.precision, HashUtil.hash64(value.toString()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getResult(byte[] accumulator)
+    {
+        return estimate(accumulator);
+    }
+
+    /**
+     * Update register by hash value.
+     *
+     * @param registers registers
+     * @param precision precision
+     * @param hash 64bit hash value
+     */
+    static void addHash(byte[] registers, int precision, long hash)
+    {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // Sentinel bit limits rank to (64 - precision + 1) when remaining bits are all zero.
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[index])
+        {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Estimate cardinality from registers.
+     *
+     * @param registers registers
+     * @return estimated cardinality
+     */
+    static long estimate(byte[] registers)
+    {
+        int registerNum = registers.length;
+        double sum = 0.0d;
+        int zeroNum = 0;
+        for (byte register : registers)
+        {
+            sum += 1.0d / (1L << register);
+            if (register == 0)
+            {
+                zeroNum++;
+            }
+        }
+
+        double estimate = alpha(registerNum) * registerNum * registerNum / sum;
+        if (estimate <= 2.5d * registerNum && zeroNum > 0)
+        {
+            // Small range correction by linear counting.
+            estimate = registerNum * Math.log((double) registerNum / zeroNum);
+        }
+
+        return Math.round(estimate);
+    }
+
+    /**
+     * Get bias correction constant for number of registers.
+     *
+     * @param registerNum number of registers
+     * @return bias correction constant
+     */
+    private static double alpha(int registerNum)
+    {
+        switch (registerNum)
+        {
+            case 16:
+                return 0.673d;
+            case 32:
+                return 0.697d;
+            case 64:
+                return 0.709d;
+            default:
+                return 0.7213d / (1.0d + 1.079d / registerNum);
+        }
+    }
+
+    /**
+     * @return the fieldName
+     */
+    public String getFieldName()
+    {
+        return this.fieldName;
+    }
+
+    /**
+     * @return the precision
+     */
+    public int getPrecision()
+    {
+        return this.precision;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.window;
+
+/**
+ * Aggregator that calculates minimum of numeric field in window.<br>
+ * Result is {@link Double}, or null if window has no numeric value.
+ *
+ * @author kimura
+ */
+public class MinAggregator extends NumericFieldAggregator<double[]>
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = -3317760712860093482L;
+
+    /**
+     * Constructs instance with target field name.
+     *
+     * @param fieldName target field name
+     */
+    public MinAggregator(String fieldName)
+    {
+        super(fieldName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double[] createAccumulator()
+    {
+        // NaN means no value is added.
+        return new double[] {Double.NaN};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addValue(double[] accumulator, double value)
+    {
+        if (Double.isNaN(accumulator[0]) || value < accumulator[0])
+        {
+            accumulator[0] = value;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getResult(double[] accumulator)
+    {
+        if (Double.isNaN(accumulator[0]))
+        {
+            return null;
+        }
+
+        return accumulator[0];
+    }
+}
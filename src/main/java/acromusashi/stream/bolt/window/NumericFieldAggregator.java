@@ -0,0 +1,75 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.window;
+
+import acromusashi.stream.entity.StreamMessage;
+
+/**
+ * Base class of aggregator that aggregates numeric field of message body.<br>
+ * Message whose field is missing or not {@link Number} is ignored.
+ *
+ * @author kimura
+ * @param <A> accumulator type
+ */
+public abstract class NumericFieldAggregator<A> implements WindowAggregator<A>
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = -6470270190185468133L;
+
+    /** Target field name */
+    protected String          fieldName;
+
+    /**
+     * Constructs instance with target field name.
+     *
+     * @param fieldName target field name
+     */
+    protected NumericFieldAggregator(String fieldName)
+    {
+        if (fieldName == null)
+        {
+            throw new IllegalArgumentException("FieldName must not be null.");
+        }
+
+        this.fieldName = fieldName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(A accumulator, StreamMessage message)
+    {
+        Object value = message.getField(this.fieldName);
+        if (value instanceof Number)
+        {
+            addValue(accumulator, ((Number) value).doubleValue());
+        }
+    }
+
+    /**
+     * Add numeric value to accumulator.
+     *
+     * @param accumulator accumulator
+     * @param value field value
+     */
+    protected abstract void addValue(A accumulator, double value);
+
+    /**
+     * @return the fieldName
+     */
+    public String getFieldName()
+    {
+        return this.fieldName;
+    }
+}
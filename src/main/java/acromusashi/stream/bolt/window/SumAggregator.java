@@ -0,0 +1,61 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.window;
+
+/**
+ * Aggregator that sums numeric field in window. Result is {@link Double}.
+ *
+ * @author kimura
+ */
+public class SumAggregator extends NumericFieldAggregator<double[]>
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = 2356004917337610364L;
+
+    /**
+     * Constructs instance with target field name.
+     *
+     * @param fieldName target field name
+     */
+    public SumAggregator(String fieldName)
+    {
+        super(fieldName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double[] createAccumulator()
+    {
+        return new double[1];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addValue(double[] accumulator, double value)
+    {
+        accumulator[0] += value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getResult(double[] accumulator)
+    {
+        return accumulator[0];
+    }
+}
@@ -0,0 +1,52 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.window;
+
+import java.io.Serializable;
+
+import acromusashi.stream.entity.StreamMessage;
+
+/**
+ * Incremental aggregator used by {@link acromusashi.stream.bolt.AmWindowBolt}.<br>
+ * Each window keeps only an accumulator per aggregator, so received messages are not buffered.<br>
+ * Accumulator must be mutable, because {@link #add(Object, StreamMessage)} updates it in place.
+ *
+ * @author kimura
+ * @param <A> accumulator type
+ */
+public interface WindowAggregator<A> extends Serializable
+{
+    /**
+     * Create empty accumulator for new window.
+     *
+     * @return accumulator
+     */
+    A createAccumulator();
+
+    /**
+     * Add message to accumulator.
+     *
+     * @param accumulator accumulator
+     * @param message received message
+     */
+    void add(A accumulator, StreamMessage message);
+
+    /**
+     * Get aggregation result from accumulator.<br>
+     * This method may be called several times for the same window when late message updates the window.
+     *
+     * @param accumulator accumulator
+     * @return aggregation result
+     */
+    Object getResult(A accumulator);
+}
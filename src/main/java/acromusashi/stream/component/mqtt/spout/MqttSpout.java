@@ -30,6 +30,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import acromusashi.stream.constants.FieldName;
+import acromusashi.stream.entity.LazyBody;
+import acromusashi.stream.entity.StreamMessagePool;
+import acromusashi.stream.entity.StringBodyCodec;
 import acromusashi.stream.entity.StreamMessageHeader;
 import acromusashi.stream.spout.AmConfigurationSpout;
 import backtype.storm.spout.SpoutOutputCollector;
@@ -76,12 +79,18 @@ public class MqttSpout extends AmConfigurationSpout
     /** 受信待ちタイムアウト(秒) */
     private long                           receiveWait          = DEFAULT_RECEIVE_WAIT;
 
+    /** Payloadを文字列に変換せずに保持し、初回参照時に変換するか */
+    private boolean                        lazyDecode           = false;
+
     /** MQTTConnection */
     private transient BlockingConnection   connection;
 
     /** Ack待ちのメッセージMap */
     private transient Map<String, Message> ackWaitMap;
 
+    /** Ack待ちの共通メッセージMap。メッセージプール使用時のみ使用する。 */
+    private transient Map<String, acromusashi.stream.entity.StreamMessage> pooledMessageMap;
+
     /**
      * MQTTBrokerアドレスリスト、購読Topicリストを指定してSpoutを生成する。
      *
@@ -104,6 +113,7 @@ public class MqttSpout extends AmConfigurationSpout
         super.open(conf, context, collector);
 
         this.ackWaitMap = new HashMap<>();
+        this.pooledMessageMap = new HashMap<>();
 
         int taskIndex = context.getThisTaskIndex();
         String targetUrl = this.brokerUrls.get(taskIndex);
@@ -163,19 +173,33 @@ public class MqttSpout extends AmConfigurationSpout
         }
 
         String topic = message.getTopic();
-        String payload = new String(message.getPayload(), Charset.forName("UTF-8"));
-        acromusashi.stream.entity.StreamMessage sendMessage = createMessage(topic, payload);
 
         // 即応答を返す設定がされているか、またはQoSレベルが0の場合はAnchorを用いずに即Ackを返したうえでTupleを流す。
         // 上記以外の場合はランダムで生成したUUIDをAnchorとしてTupleを流す。
         if (this.immidiateAck == true || this.qos == QoS.AT_MOST_ONCE)
         {
+            acromusashi.stream.entity.StreamMessage sendMessage = createSendMessage(topic,
+                    message.getPayload());
             message.ack();
             getCollector().emit(new Values(topic, sendMessage));
         }
         else
         {
             String messageId = UUID.randomUUID().toString();
+            acromusashi.stream.entity.StreamMessage sendMessage = null;
+
+            // メッセージプール使用時はAck/Fail受信時にメッセージをプールに返却する。
+            StreamMessagePool messagePool = getMessagePool();
+            if (messagePool != null)
+            {
+                sendMessage = createPooledMessage(messagePool, topic, message.getPayload());
+                this.pooledMessageMap.put(messageId, sendMessage);
+            }
+            else
+            {
+                sendMessage = createSendMessage(topic, message.getPayload());
+            }
+
             this.ackWaitMap.put(messageId, message);
             getCollector().emit(new Values(topic, sendMessage), messageId);
         }
@@ -192,6 +216,42 @@ public class MqttSpout extends AmConfigurationSpout
         {
             message.ack();
         }
+
+        releasePooledMessage(msgId);
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * Failはタイムアウトでも通知され、Tupleが下流で処理中の可能性があるため、
+     * メッセージはプールに返却せず参照を破棄するのみとする。
+     */
+    @Override
+    public void fail(Object msgId)
+    {
+        if (this.pooledMessageMap != null)
+        {
+            this.pooledMessageMap.remove(msgId);
+        }
+    }
+
+    /**
+     * メッセージプールから取得したメッセージをプールに返却する。<br>
+     * Tupleツリー全体の処理完了を示すAck受信時のみ呼び出すこと。
+     *
+     * @param msgId メッセージID
+     */
+    private void releasePooledMessage(Object msgId)
+    {
+        if (getMessagePool() == null)
+        {
+            return;
+        }
+
+        acromusashi.stream.entity.StreamMessage pooledMessage = this.pooledMessageMap.remove(msgId);
+        if (pooledMessage != null)
+        {
+            getMessagePool().release(pooledMessage);
+        }
     }
 
     /**
@@ -204,24 +264,97 @@ public class MqttSpout extends AmConfigurationSpout
     }
 
     /**
-     * AcroMUSASHI用メッセージを生成する。
+     * 送信するAcroMUSASHI用メッセージを生成する。
      *
      * @param topic Topic
      * @param payload Payload
      * @return AcroMUSASHI用メッセージ
      */
-    protected acromusashi.stream.entity.StreamMessage createMessage(String topic, String payload)
+    private acromusashi.stream.entity.StreamMessage createSendMessage(String topic, byte[] payload)
     {
-        StreamMessageHeader header = new StreamMessageHeader();
+        if (this.lazyDecode == true)
+        {
+            return createMessage(topic, payload);
+        }
+
+        return createMessage(topic, new String(payload, Charset.forName("UTF-8")));
+    }
+
+    /**
+     * メッセージプールから取得したメッセージにヘッダ、Payloadを設定する。
+     *
+     * @param messagePool メッセージプール
+     * @param topic Topic
+     * @param payload Payload
+     * @return AcroMUSASHI用メッセージ
+     */
+    protected acromusashi.stream.entity.StreamMessage createPooledMessage(StreamMessagePool messagePool,
+            String topic, byte[] payload)
+    {
+        acromusashi.stream.entity.StreamMessage message = messagePool.acquire();
+        StreamMessageHeader header = message.getHeader();
         header.setTimestamp(getCurrentTime());
         header.setType("MQTT");
         header.setMessageKey(topic);
 
+        if (this.lazyDecode == true)
+        {
+            message.setBody(new LazyBody(payload, new StringBodyCodec()));
+        }
+        else
+        {
+            message.setBody(new String(payload, Charset.forName("UTF-8")));
+        }
+
+        return message;
+    }
+
+    /**
+     * AcroMUSASHI用メッセージを生成する。
+     *
+     * @param topic Topic
+     * @param payload Payload
+     * @return AcroMUSASHI用メッセージ
+     */
+    protected acromusashi.stream.entity.StreamMessage createMessage(String topic, String payload)
+    {
+        StreamMessageHeader header = createHeader(topic);
         acromusashi.stream.entity.StreamMessage message = new acromusashi.stream.entity.StreamMessage(header,
                 payload);
         return message;
     }
 
+    /**
+     * Payloadを未変換のまま保持するAcroMUSASHI用メッセージを生成する。<br>
+     * Payloadは初回のBody参照時にUTF-8文字列に変換される。
+     *
+     * @param topic Topic
+     * @param payload Payload
+     * @return AcroMUSASHI用メッセージ
+     */
+    protected acromusashi.stream.entity.StreamMessage createMessage(String topic, byte[] payload)
+    {
+        StreamMessageHeader header = createHeader(topic);
+        acromusashi.stream.entity.StreamMessage message = new acromusashi.stream.entity.StreamMessage(header,
+                payload, new StringBodyCodec());
+        return message;
+    }
+
+    /**
+     * AcroMUSASHI用メッセージのヘッダを生成する。
+     *
+     * @param topic Topic
+     * @return ヘッダ
+     */
+    protected StreamMessageHeader createHeader(String topic)
+    {
+        StreamMessageHeader header = new StreamMessageHeader();
+        header.setTimestamp(getCurrentTime());
+        header.setType("MQTT");
+        header.setMessageKey(topic);
+        return header;
+    }
+
     /**
      * 現在時刻を算出する。
      *
@@ -240,6 +373,14 @@ public class MqttSpout extends AmConfigurationSpout
         this.receiveWait = receiveWait;
     }
 
+    /**
+     * @param lazyDecode セットする lazyDecode
+     */
+    public void setLazyDecode(boolean lazyDecode)
+    {
+        this.lazyDecode = lazyDecode;
+    }
+
     /**
      * @param qos セットする qos
      */
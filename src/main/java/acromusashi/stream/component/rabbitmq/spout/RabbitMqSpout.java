@@ -21,8 +21,12 @@ import org.slf4j.LoggerFactory;
 import acromusashi.stream.component.rabbitmq.RabbitmqClient;
 import acromusashi.stream.component.rabbitmq.RabbitmqCommunicateException;
 import acromusashi.stream.constants.FieldName;
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.entity.StreamMessageCodec;
+import acromusashi.stream.exception.ConvertFailException;
 import acromusashi.stream.helper.SpringContextHelper;
 import acromusashi.stream.spout.AmConfigurationSpout;
+import acromusashi.stream.spout.IdleBackoff;
 import backtype.storm.spout.SpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
@@ -59,6 +63,16 @@ public class RabbitMqSpout extends AmConfigurationSpout
     /** RabbitMQ接続クライアント用コンテキストヘルパー */
     protected SpringContextHelper      contextHelper;
 
+    /**
+     * 受信バイト列の変換用コーデック。未設定の場合は受信データの文字列表現を送信する。<br>
+     * 設定した場合、メッセージキーは変換後の共通メッセージのヘッダから取得し、
+     * ヘッダにメッセージキーが無い場合のみ受信バイト列をメッセージキー抽出用インターフェースに渡す。
+     */
+    protected StreamMessageCodec       messageCodec;
+
+    /** メッセージ未受信時の待機方式。未設定の場合は待機しない。 */
+    protected IdleBackoff              idleBackoff      = new IdleBackoff();
+
     /**
      * パラメータを指定せずにインスタンスを生成する。
      */
@@ -98,15 +112,48 @@ public class RabbitMqSpout extends AmConfigurationSpout
 
         if (receiveData == null)
         {
-            // メッセージを取得できなかった場合、メソッドを終了
+            // メッセージを取得できなかった場合、未受信回数に応じて待機した後にメソッドを終了
+            if (this.idleBackoff != null)
+            {
+                this.idleBackoff.idle();
+            }
             return;
         }
 
+        if (this.idleBackoff != null)
+        {
+            this.idleBackoff.reset();
+        }
+
+        Object rawData = receiveData;
         String messageKey = null;
 
+        // コーデックが設定されている場合、受信バイト列を共通メッセージに変換し、ヘッダのメッセージキーを使用する。
+        if (this.messageCodec != null && receiveData instanceof byte[])
+        {
+            try
+            {
+                StreamMessage decoded = this.messageCodec.decode((byte[]) receiveData);
+                messageKey = decoded.getHeader().getMessageKey();
+                receiveData = decoded;
+            }
+            catch (ConvertFailException ex)
+            {
+                // 変換に失敗した場合、受信メッセージを破棄する。
+                String messageFormat = "Message decode failed. QueueName={0}";
+                String message = MessageFormat.format(messageFormat, this.targetQueueName);
+                logger.warn(message, ex);
+                return;
+            }
+        }
+
         try
         {
-            messageKey = this.messageKeyExtractor.extractMessageKey(receiveData);
+            // メッセージキー抽出用インターフェースには変換前の受信データを渡す。
+            if (messageKey == null)
+            {
+                messageKey = this.messageKeyExtractor.extractMessageKey(rawData);
+            }
         }
         catch (RabbitmqCommunicateException ex)
         {
@@ -118,6 +165,12 @@ public class RabbitMqSpout extends AmConfigurationSpout
             return;
         }
 
+        if (this.messageCodec != null)
+        {
+            getCollector().emit(new Values(messageKey, receiveData));
+            return;
+        }
+
         getCollector().emit(new Values(messageKey, receiveData.toString()));
     }
 
@@ -143,6 +196,17 @@ public class RabbitMqSpout extends AmConfigurationSpout
         this.messageKeyExtractor = messageKeyExtractor;
     }
 
+    /**
+     * 受信バイト列の変換用コーデックを設定する。<br>
+     * 設定した場合、メッセージキーは変換後の共通メッセージのヘッダから取得する。
+     * 
+     * @param messageCodec the messageCodec to set
+     */
+    public void setMessageCodec(StreamMessageCodec messageCodec)
+    {
+        this.messageCodec = messageCodec;
+    }
+
     /**
      * @param contextHelper the contextHelper to set
      */
@@ -150,4 +214,12 @@ public class RabbitMqSpout extends AmConfigurationSpout
     {
         this.contextHelper = contextHelper;
     }
+
+    /**
+     * @param idleBackoff the idleBackoff to set
+     */
+    public void setIdleBackoff(IdleBackoff idleBackoff)
+    {
+        this.idleBackoff = idleBackoff;
+    }
 }
@@ -81,6 +81,18 @@ public class ConfigFileWatcher
 
         this.lastWatchTime = nowTime;
 
+        return readIfModified();
+    }
+
+    /**
+     * Read config file if target file's lastmodifytime is newer than lastModifytime, regardless of watch interval.<br>
+     * Used when file change is notified by file system.
+     * 
+     * @return config read result if updated.
+     * @throws IOException If read failed.
+     */
+    public Map<String, Object> readIfModified() throws IOException
+    {
         if (this.targetFile.exists() == false)
         {
             return null;
@@ -97,6 +109,16 @@ public class ConfigFileWatcher
         return StormConfigGenerator.readYaml(this.targetFile);
     }
 
+    /**
+     * Get watch target file.
+     * 
+     * @return watch target file
+     */
+    public File getTargetFile()
+    {
+        return this.targetFile;
+    }
+
     /**
      * Get now time.
      * 
@@ -0,0 +1,60 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.config;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of config file read by {@link ConfigWatchService}.<br>
+ * Version is incremented each time config file is reloaded.
+ * 
+ * @author kimura
+ */
+public final class ConfigSnapshot
+{
+    /** Snapshot version */
+    private final long                version;
+
+    /** Config */
+    private final Map<String, Object> config;
+
+    /**
+     * Constructs instance.
+     * 
+     * @param version snapshot version
+     * @param config config
+     */
+    public ConfigSnapshot(long version, Map<String, Object> config)
+    {
+        this.version = version;
+        this.config = Collections.unmodifiableMap(new LinkedHashMap<>(config));
+    }
+
+    /**
+     * @return the version
+     */
+    public long getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @return unmodifiable config
+     */
+    public Map<String, Object> getConfig()
+    {
+        return this.config;
+    }
+}
@@ -0,0 +1,264 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.MessageFormat;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Config file watch service shared in worker process.<br>
+ * One background thread watches all registered config files, and publishes reloaded config as {@link ConfigSnapshot}.<br>
+ * File change is detected by {@link WatchService}. If WatchService is not available, or the change is not notified
+ * (e.g. file on NFS), config file is checked by polling at watch interval.<br>
+ * Components check the snapshot version on executor thread, so file access and yaml parse are not executed on executor thread.
+ * 
+ * @author kimura
+ */
+public final class ConfigWatchService implements Runnable
+{
+    /** Logger */
+    private static final Logger             logger        = LoggerFactory.getLogger(ConfigWatchService.class);
+
+    /** Max wait time(ms) of watch thread per loop. */
+    private static final long               POLL_TICK_MS  = 1000;
+
+    /** Watch thread name */
+    private static final String             THREAD_NAME   = "ConfigWatchService";
+
+    /** Shared instance */
+    private static final ConfigWatchService INSTANCE      = new ConfigWatchService(true);
+
+    /** Registered configs. Key is absolute path of config file. */
+    private final Map<String, WatchedConfig> watchedConfigs = new ConcurrentHashMap<>();
+
+    /** Watched directories */
+    private final Map<WatchKey, Path>       watchedDirs   = new ConcurrentHashMap<>();
+
+    /** Start watch thread on register flag */
+    private final boolean                   startThread;
+
+    /** WatchService. null if not available. */
+    private WatchService                    watchService;
+
+    /** WatchService initialized flag */
+    private boolean                         watchServiceInitialized;
+
+    /** Watch thread */
+    private Thread                          watchThread;
+
+    /**
+     * Constructs instance.
+     * 
+     * @param startThread start watch thread on register
+     */
+    ConfigWatchService(boolean startThread)
+    {
+        this.startThread = startThread;
+    }
+
+    /**
+     * Get shared instance in worker process.
+     * 
+     * @return shared instance
+     */
+    public static ConfigWatchService getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Register config file to watch.<br>
+     * If the file is already registered, returns registered one. (Watch interval of first registration is used.)
+     * 
+     * @param targetPath watch target path
+     * @param watchIntervalSec polling interval sec
+     * @return registered config
+     */
+    public synchronized WatchedConfig register(String targetPath, long watchIntervalSec)
+    {
+        String absolutePath = new File(targetPath).getAbsolutePath();
+        WatchedConfig watched = this.watchedConfigs.get(absolutePath);
+        if (watched != null)
+        {
+            return watched;
+        }
+
+        ConfigFileWatcher watcher = new ConfigFileWatcher(absolutePath, watchIntervalSec);
+        watcher.init();
+        watched = new WatchedConfig(watcher);
+        this.watchedConfigs.put(absolutePath, watched);
+        registerDirectory(watcher.getTargetFile().getParentFile());
+
+        if (this.startThread && this.watchThread == null)
+        {
+            this.watchThread = new Thread(this, THREAD_NAME);
+            this.watchThread.setDaemon(true);
+            this.watchThread.start();
+        }
+
+        return watched;
+    }
+
+    /**
+     * Register directory to WatchService. If failed, files in the directory are watched by polling.
+     * 
+     * @param directory target directory
+     */
+    private void registerDirectory(File directory)
+    {
+        if (this.watchServiceInitialized == false)
+        {
+            this.watchServiceInitialized = true;
+            try
+            {
+                this.watchService = FileSystems.getDefault().newWatchService();
+            }
+            catch (IOException | UnsupportedOperationException ex)
+            {
+                logger.info("WatchService is not available. Config files are watched by polling.", ex);
+            }
+        }
+
+        if (this.watchService == null || directory == null
+                || this.watchedDirs.containsValue(directory.toPath()))
+        {
+            return;
+        }
+
+        try
+        {
+            WatchKey key = directory.toPath().register(this.watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            this.watchedDirs.put(key, directory.toPath());
+        }
+        catch (IOException | UnsupportedOperationException ex)
+        {
+            String logFormat = "Directory watch failed. Config files are watched by polling. : Directory={0}";
+            logger.info(MessageFormat.format(logFormat, directory), ex);
+        }
+    }
+
+    /**
+     * Watch loop executed on watch thread.
+     */
+    @Override
+    public void run()
+    {
+        while (Thread.currentThread().isInterrupted() == false)
+        {
+            Set<File> changedFiles = null;
+            try
+            {
+                changedFiles = awaitChanges();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            checkAll(changedFiles);
+        }
+    }
+
+    /**
+     * Wait file change notification up to poll tick.
+     * 
+     * @return changed files. null if changes may be lost and all files should be checked.
+     * @throws InterruptedException If interrupted
+     */
+    private Set<File> awaitChanges() throws InterruptedException
+    {
+        Set<File> changedFiles = new HashSet<>();
+        if (this.watchService == null)
+        {
+            Thread.sleep(POLL_TICK_MS);
+            return changedFiles;
+        }
+
+        WatchKey key = this.watchService.poll(POLL_TICK_MS, TimeUnit.MILLISECONDS);
+        while (key != null)
+        {
+            Path directory = this.watchedDirs.get(key);
+            for (WatchEvent<?> event : key.pollEvents())
+            {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null)
+                {
+                    changedFiles = null;
+                }
+                else if (changedFiles != null)
+                {
+                    Path changed = directory.resolve((Path) event.context());
+                    changedFiles.add(changed.toFile().getAbsoluteFile());
+                }
+            }
+
+            key.reset();
+            key = this.watchService.poll();
+        }
+
+        return changedFiles;
+    }
+
+    /**
+     * Check registered config files, and publish snapshot if updated.<br>
+     * Notified files are read regardless of watch interval, and other files are checked at watch interval.
+     * 
+     * @param changedFiles changed files. null means all files are changed.
+     */
+    void checkAll(Set<File> changedFiles)
+    {
+        for (WatchedConfig watched : this.watchedConfigs.values())
+        {
+            ConfigFileWatcher watcher = watched.getWatcher();
+            Map<String, Object> reloadedConfig = null;
+
+            try
+            {
+                if (changedFiles == null || changedFiles.contains(watcher.getTargetFile()))
+                {
+                    reloadedConfig = watcher.readIfModified();
+                }
+                else
+                {
+                    reloadedConfig = watcher.readIfUpdated();
+                }
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                String logFormat = "Config file reload failed. Skip reload config. : File={0}";
+                logger.warn(MessageFormat.format(logFormat, watcher.getTargetFile()), ex);
+            }
+
+            if (reloadedConfig != null)
+            {
+                watched.publish(reloadedConfig);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.config;
+
+import java.util.Map;
+
+/**
+ * Config file registered to {@link ConfigWatchService}.<br>
+ * Latest snapshot is published by watch thread, and components read it with one volatile read.
+ * 
+ * @author kimura
+ */
+public final class WatchedConfig
+{
+    /** Config file watcher. Accessed only from watch thread after registered. */
+    private final ConfigFileWatcher watcher;
+
+    /** Latest snapshot. null if config file is not reloaded yet. */
+    private volatile ConfigSnapshot snapshot;
+
+    /**
+     * Constructs instance.
+     * 
+     * @param watcher config file watcher
+     */
+    WatchedConfig(ConfigFileWatcher watcher)
+    {
+        this.watcher = watcher;
+    }
+
+    /**
+     * Get latest snapshot.
+     * 
+     * @return latest snapshot. null if config file is not reloaded yet.
+     */
+    public ConfigSnapshot getSnapshot()
+    {
+        return this.snapshot;
+    }
+
+    /**
+     * Get latest snapshot version.
+     * 
+     * @return latest snapshot version. 0 if config file is not reloaded yet.
+     */
+    public long getVersion()
+    {
+        ConfigSnapshot current = this.snapshot;
+        if (current == null)
+        {
+            return 0;
+        }
+
+        return current.getVersion();
+    }
+
+    /**
+     * Publish reloaded config as new snapshot.
+     * 
+     * @param config reloaded config
+     */
+    void publish(Map<String, Object> config)
+    {
+        this.snapshot = new ConfigSnapshot(getVersion() + 1, config);
+    }
+
+    /**
+     * @return the watcher
+     */
+    ConfigFileWatcher getWatcher()
+    {
+        return this.watcher;
+    }
+}
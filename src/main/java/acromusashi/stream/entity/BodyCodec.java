@@ -0,0 +1,42 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import java.io.Serializable;
+
+/**
+ * Codec that converts message body between raw bytes and object.<br>
+ * Used by {@link LazyBody} to decode raw payload on first access.
+ *
+ * @author kimura
+ */
+public interface BodyCodec extends Serializable
+{
+    /**
+     * Decode raw bytes to body object.
+     *
+     * @param bytes raw bytes
+     * @param offset start offset
+     * @param length byte length
+     * @return body object
+     */
+    Object decode(byte[] bytes, int offset, int length);
+
+    /**
+     * Encode body object to raw bytes.
+     *
+     * @param body body object
+     * @return raw bytes
+     */
+    byte[] encode(Object body);
+}
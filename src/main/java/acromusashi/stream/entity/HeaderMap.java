@@ -0,0 +1,299 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Small map for additional header that holds keys and values in arrays.<br>
+ * Additional header usually has only one or two entries, so linear search is faster
+ * and smaller than hash map. Keys are shared by {@link HeaderValueDictionary},
+ * values are shared only when they are well-known.<br>
+ * Entries are kept in insertion order. Entries from iterator do not support setValue.
+ * This map is not thread safe.
+ *
+ * @author kimura
+ */
+public class HeaderMap extends AbstractMap<String, String> implements Serializable
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = 4360318829577287914L;
+
+    /** Initial capacity */
+    private static final int  INITIAL_CAPACITY = 2;
+
+    /** Keys */
+    private String[]          keys;
+
+    /** Values */
+    private String[]          values;
+
+    /** Entry count */
+    private int               size;
+
+    /**
+     * Constructs instance.
+     */
+    public HeaderMap()
+    {
+        this.keys = new String[INITIAL_CAPACITY];
+        this.values = new String[INITIAL_CAPACITY];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(Object key)
+    {
+        int index = indexOf(key);
+        if (index < 0)
+        {
+            return null;
+        }
+
+        return this.values[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String put(String key, String value)
+    {
+        String sharedValue = HeaderValueDictionary.shareWellKnown(value);
+        int index = indexOf(key);
+        if (index >= 0)
+        {
+            String before = this.values[index];
+            this.values[index] = sharedValue;
+            return before;
+        }
+
+        if (this.size == this.keys.length)
+        {
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+            this.values = Arrays.copyOf(this.values, this.size * 2);
+        }
+
+        this.keys[this.size] = HeaderValueDictionary.intern(key);
+        this.values[this.size] = sharedValue;
+        this.size++;
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String remove(Object key)
+    {
+        int index = indexOf(key);
+        if (index < 0)
+        {
+            return null;
+        }
+
+        String before = this.values[index];
+        removeAt(index);
+        return before;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        Arrays.fill(this.keys, 0, this.size, null);
+        Arrays.fill(this.values, 0, this.size, null);
+        this.size = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Entry<String, String>> entrySet()
+    {
+        return new EntrySet();
+    }
+
+    /**
+     * Share deserialized keys and values by dictionary.
+     *
+     * @param in input stream
+     * @throws IOException read failed
+     * @throws ClassNotFoundException class not found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        for (int index = 0; index < this.size; index++)
+        {
+            this.keys[index] = HeaderValueDictionary.intern(this.keys[index]);
+            this.values[index] = HeaderValueDictionary.shareWellKnown(this.values[index]);
+        }
+    }
+
+    /**
+     * Search key index.
+     *
+     * @param key key
+     * @return index, -1 if not found
+     */
+    private int indexOf(Object key)
+    {
+        for (int index = 0; index < this.size; index++)
+        {
+            String current = this.keys[index];
+            if (current == key || (current != null && current.equals(key)))
+            {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Remove entry at index, keeping insertion order.
+     *
+     * @param index index
+     */
+    private void removeAt(int index)
+    {
+        int moveNum = this.size - index - 1;
+        System.arraycopy(this.keys, index + 1, this.keys, index, moveNum);
+        System.arraycopy(this.values, index + 1, this.values, index, moveNum);
+        this.size--;
+        this.keys[this.size] = null;
+        this.values[this.size] = null;
+    }
+
+    /**
+     * Entry set view.
+     */
+    private class EntrySet extends AbstractSet<Entry<String, String>>
+    {
+        /**
+         * Constructs instance.
+         */
+        EntrySet()
+        {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Iterator<Entry<String, String>> iterator()
+        {
+            return new EntryIterator();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return HeaderMap.this.size;
+        }
+    }
+
+    /**
+     * Entry iterator.
+     */
+    private class EntryIterator implements Iterator<Entry<String, String>>
+    {
+        /** Next index */
+        private int next    = 0;
+
+        /** Last returned index */
+        private int current = -1;
+
+        /**
+         * Constructs instance.
+         */
+        EntryIterator()
+        {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext()
+        {
+            return this.next < HeaderMap.this.size;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Entry<String, String> next()
+        {
+            if (hasNext() == false)
+            {
+                throw new NoSuchElementException();
+            }
+
+            this.current = this.next;
+            this.next++;
+            return new SimpleImmutableEntry<>(HeaderMap.this.keys[this.current],
+                    HeaderMap.this.values[this.current]);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void remove()
+        {
+            if (this.current < 0)
+            {
+                throw new IllegalStateException();
+            }
+
+            removeAt(this.current);
+            this.next = this.current;
+            this.current = -1;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-worker dictionary for low-cardinality header values (type, version and additional header key).<br>
+ * Equal values are shared as one String instance in the worker process.
+ * The number of entries is bounded, values over the bound are returned as is.<br>
+ * Entries are never evicted, so high-cardinality values such as source (host or IP address)
+ * and additional header value must not be interned. Use {@link #shareWellKnown(String)} for them.<br>
+ * Well-known values also have fixed codes used by serializers.
+ *
+ * @author kimura
+ */
+public final class HeaderValueDictionary
+{
+    /** Max number of interned values */
+    public static final int                           MAX_SIZE           = 4096;
+
+    /** Well-known header values. Order must not be changed because index is used as serialized code. */
+    public static final List<String>                  WELL_KNOWN_VALUES  = Collections.unmodifiableList(Arrays.asList(
+                                                                                 StreamMessageHeader.DEFAULT_VERSION,
+                                                                                 "MQTT", "snmp", "twitterjson",
+                                                                                 "SNMPVersion"));
+
+    /** Interned values */
+    private static final ConcurrentMap<String, String> VALUES             = new ConcurrentHashMap<>();
+
+    static
+    {
+        for (String value : WELL_KNOWN_VALUES)
+        {
+            VALUES.put(value, value);
+        }
+    }
+
+    /**
+     * Default constructor to prevent instantiation.
+     */
+    private HeaderValueDictionary()
+    {}
+
+    /**
+     * Get shared instance of value.
+     *
+     * @param value value
+     * @return shared instance, or value itself if dictionary is full
+     */
+    public static String intern(String value)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+
+        String shared = VALUES.get(value);
+        if (shared != null)
+        {
+            return shared;
+        }
+
+        if (VALUES.size() >= MAX_SIZE)
+        {
+            return value;
+        }
+
+        shared = VALUES.putIfAbsent(value, value);
+        if (shared != null)
+        {
+            return shared;
+        }
+
+        return value;
+    }
+
+    /**
+     * Get shared instance of value only if it is well-known. Other values are returned as is.<br>
+     * Used for high-cardinality values that must not be added to dictionary.
+     *
+     * @param value value
+     * @return shared instance if value is well-known, otherwise value itself
+     */
+    public static String shareWellKnown(String value)
+    {
+        int code = wellKnownCode(value);
+        if (code < 0)
+        {
+            return value;
+        }
+
+        return WELL_KNOWN_VALUES.get(code);
+    }
+
+    /**
+     * Get code of well-known value.
+     *
+     * @param value value
+     * @return code, -1 if value is not well-known
+     */
+    public static int wellKnownCode(String value)
+    {
+        return WELL_KNOWN_VALUES.indexOf(value);
+    }
+
+    /**
+     * Get well-known value from code.
+     *
+     * @param code code
+     * @return value
+     */
+    public static String wellKnownValue(int code)
+    {
+        return WELL_KNOWN_VALUES.get(code);
+    }
+
+    /**
+     * @return number of interned values
+     */
+    public static int size()
+    {
+        return VALUES.size();
+    }
+}
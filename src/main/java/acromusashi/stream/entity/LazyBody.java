@@ -0,0 +1,190 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Message body that holds raw bytes and codec, and decodes on first access.<br>
+ * Decoded object is cached and raw bytes are kept, so untouched body is re-serialized as original bytes.<br>
+ * {@link StreamMessage} replaces this body with decoded object when body is exposed for modification.
+ *
+ * @author kimura
+ */
+public class LazyBody implements Serializable
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = -5297017423046127745L;
+
+    /** Raw bytes */
+    private byte[]            bytes;
+
+    /** Start offset of raw bytes */
+    private int               offset;
+
+    /** Length of raw bytes */
+    private int               length;
+
+    /** Codec */
+    private BodyCodec         codec;
+
+    /** Decoded body */
+    private transient Object  decoded;
+
+    /** Decoded flag */
+    private transient boolean isDecoded;
+
+    /**
+     * Constructs instance with raw bytes and codec.
+     *
+     * @param bytes raw bytes
+     * @param codec codec
+     */
+    public LazyBody(byte[] bytes, BodyCodec codec)
+    {
+        this(bytes, 0, bytes.length, codec);
+    }
+
+    /**
+     * Constructs instance with part of raw bytes and codec.
+     *
+     * @param bytes raw bytes
+     * @param offset start offset
+     * @param length byte length
+     * @param codec codec
+     */
+    public LazyBody(byte[] bytes, int offset, int length, BodyCodec codec)
+    {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.codec = codec;
+    }
+
+    /**
+     * Constructs instance with buffer and codec.<br>
+     * Remaining bytes of buffer are used. Heap buffer is wrapped without copy, direct buffer is copied.
+     *
+     * @param buffer raw buffer
+     * @param codec codec
+     */
+    public LazyBody(ByteBuffer buffer, BodyCodec codec)
+    {
+        this.codec = codec;
+        this.length = buffer.remaining();
+
+        if (buffer.hasArray())
+        {
+            this.bytes = buffer.array();
+            this.offset = buffer.arrayOffset() + buffer.position();
+            return;
+        }
+
+        this.bytes = new byte[this.length];
+        buffer.duplicate().get(this.bytes);
+        this.offset = 0;
+    }
+
+    /**
+     * Get decoded body. Raw bytes are decoded on first call only.
+     *
+     * @return decoded body
+     */
+    public Object getDecoded()
+    {
+        if (this.isDecoded == false)
+        {
+            this.decoded = this.codec.decode(this.bytes, this.offset, this.length);
+            this.isDecoded = true;
+        }
+
+        return this.decoded;
+    }
+
+    /**
+     * Check raw bytes are already decoded.
+     *
+     * @return true if decoded
+     */
+    public boolean isDecoded()
+    {
+        return this.isDecoded;
+    }
+
+    /**
+     * Get raw bytes. Array is copied only when raw bytes are part of larger array.
+     *
+     * @return raw bytes
+     */
+    public byte[] getBytes()
+    {
+        if (this.offset == 0 && this.length == this.bytes.length)
+        {
+            return this.bytes;
+        }
+
+        return Arrays.copyOfRange(this.bytes, this.offset, this.offset + this.length);
+    }
+
+    /**
+     * Get raw bytes as read only buffer without copy.
+     *
+     * @return raw buffer
+     */
+    public ByteBuffer getBuffer()
+    {
+        return ByteBuffer.wrap(this.bytes, this.offset, this.length).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return raw byte length
+     */
+    public int getLength()
+    {
+        return this.length;
+    }
+
+    /**
+     * @return the codec
+     */
+    public BodyCodec getCodec()
+    {
+        return this.codec;
+    }
+
+    /**
+     * Write only target range of raw bytes.
+     *
+     * @param out output stream
+     * @throws IOException write failed
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        this.bytes = getBytes();
+        this.offset = 0;
+        out.defaultWriteObject();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return String.valueOf(getDecoded());
+    }
+}
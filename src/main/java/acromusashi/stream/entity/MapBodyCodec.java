@@ -0,0 +1,562 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import acromusashi.stream.entity.StreamMessageSchema.FieldType;
+
+/**
+ * {@link BodyCodec} that converts {@link Map} body and {@link SchemaBody} to compact tagged binary.<br>
+ * This is the default body codec of {@link StreamMessageCodec}, so bodies built by
+ * {@link StreamMessage#addField(String, Object)} can be encoded without configuration.<br>
+ * <br>
+ * Format:
+ * <ol>
+ * <li>body kind (1 byte, 0 for Map, 1 for SchemaBody)</li>
+ * <li>Map : entry count and entries (length-prefixed UTF-8 key and tagged value)</li>
+ * <li>SchemaBody : schema signature, declared fields in field index order (assigned flag and value), and
+ * undeclared fields as Map</li>
+ * </ol>
+ * Tagged value is 1 byte tag followed by value. String is length-prefixed UTF-8,
+ * Integer and Long are zigzag varint, Float and Double are IEEE 754 bits,
+ * Collection is decoded as {@link ArrayList} and Map as {@link LinkedHashMap}.
+ * LONG and DOUBLE fields of SchemaBody are written without tag and without boxing.<br>
+ * Other value types are rejected with {@link IllegalArgumentException},
+ * and malformed input is also reported as {@link IllegalArgumentException}.
+ *
+ * @author kimura
+ */
+public class MapBodyCodec implements BodyCodec
+{
+    /** serialVersionUID */
+    private static final long                                  serialVersionUID = -5273016436027826398L;
+
+    /** Body kind : Map */
+    private static final int                                   KIND_MAP         = 0;
+
+    /** Body kind : SchemaBody */
+    private static final int                                   KIND_SCHEMA      = 1;
+
+    /** Value tag : null */
+    private static final int                                   TAG_NULL         = 0;
+
+    /** Value tag : String */
+    private static final int                                   TAG_STRING       = 1;
+
+    /** Value tag : Integer */
+    private static final int                                   TAG_INTEGER      = 2;
+
+    /** Value tag : Long */
+    private static final int                                   TAG_LONG         = 3;
+
+    /** Value tag : Double */
+    private static final int                                   TAG_DOUBLE       = 4;
+
+    /** Value tag : Float */
+    private static final int                                   TAG_FLOAT        = 5;
+
+    /** Value tag : Boolean true */
+    private static final int                                   TAG_TRUE         = 6;
+
+    /** Value tag : Boolean false */
+    private static final int                                   TAG_FALSE        = 7;
+
+    /** Value tag : byte[] */
+    private static final int                                   TAG_BYTES        = 8;
+
+    /** Value tag : Map */
+    private static final int                                   TAG_MAP          = 9;
+
+    /** Value tag : Collection */
+    private static final int                                   TAG_LIST         = 10;
+
+    /** Value tag : Short */
+    private static final int                                   TAG_SHORT        = 11;
+
+    /** Value tag : Byte */
+    private static final int                                   TAG_BYTE         = 12;
+
+    /** Max nesting depth of Map and Collection */
+    private static final int                                   MAX_DEPTH        = 64;
+
+    /** Max number of cached schemas */
+    private static final int                                   SCHEMA_CACHE_MAX = 1024;
+
+    /** UTF-8 charset */
+    private static final Charset                               UTF8             = Charset.forName("UTF-8");
+
+    /** Decoded schemas(Key:Signature, Value:Schema) */
+    private transient Map<String, StreamMessageSchema>         schemaCache;
+
+    /**
+     * Constructs instance.
+     */
+    public MapBodyCodec()
+    {}
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if input is malformed
+     */
+    @Override
+    public Object decode(byte[] bytes, int offset, int length)
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+
+        try
+        {
+            int kind = in.readUnsignedByte();
+            if (kind == KIND_MAP)
+            {
+                return readMap(in, 0);
+            }
+            else if (kind == KIND_SCHEMA)
+            {
+                return readSchemaBody(in);
+            }
+
+            String messageFormat = "Unknown body kind. : Kind={0}";
+            throw new IllegalArgumentException(MessageFormat.format(messageFormat, kind));
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw ex;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            throw new IllegalArgumentException("Malformed map body.", ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if body is not Map or contains value of unsupported type
+     */
+    @Override
+    public byte[] encode(Object body)
+    {
+        if (body instanceof Map == false)
+        {
+            String messageFormat = "Body is not Map. : BodyClass={0}";
+            throw new IllegalArgumentException(MessageFormat.format(messageFormat,
+                    body.getClass().getName()));
+        }
+
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(byteStream);
+
+        try
+        {
+            if (body instanceof SchemaBody)
+            {
+                out.writeByte(KIND_SCHEMA);
+                writeSchemaBody(out, (SchemaBody) body);
+            }
+            else
+            {
+                out.writeByte(KIND_MAP);
+                writeMap(out, (Map<?, ?>) body, 0);
+            }
+        }
+        catch (IOException ex)
+        {
+            // ByteArrayOutputStream does not throw IOException.
+            throw new IllegalStateException(ex);
+        }
+
+        return byteStream.toByteArray();
+    }
+
+    /**
+     * Write SchemaBody.
+     *
+     * @param out output
+     * @param body body
+     * @throws IOException write failed
+     */
+    private void writeSchemaBody(DataOutputStream out, SchemaBody body) throws IOException
+    {
+        StreamMessageSchema schema = body.getSchema();
+        writeString(out, schema.getSignature());
+
+        for (int index = 0; index < schema.size(); index++)
+        {
+            if (body.isAssigned(index) == false)
+            {
+                out.writeByte(0);
+                continue;
+            }
+
+            out.writeByte(1);
+            FieldType type = schema.getFieldType(index);
+            if (type == FieldType.LONG)
+            {
+                long value = body.getLong(index);
+                StreamMessageCodec.writeVarLong(out, (value << 1) ^ (value >> 63));
+            }
+            else if (type == FieldType.DOUBLE)
+            {
+                out.writeLong(Double.doubleToLongBits(body.getDouble(index)));
+            }
+            else
+            {
+                writeValue(out, body.getObject(index), 1);
+            }
+        }
+
+        Map<String, Object> additionalFields = body.getAdditionalFields();
+        if (additionalFields == null)
+        {
+            StreamMessageCodec.writeVarLong(out, 0);
+        }
+        else
+        {
+            writeMap(out, additionalFields, 1);
+        }
+    }
+
+    /**
+     * Read SchemaBody.
+     *
+     * @param in input
+     * @return body
+     * @throws IOException read failed
+     */
+    private SchemaBody readSchemaBody(DataInputStream in) throws IOException
+    {
+        SchemaBody body = new SchemaBody(getSchema(readString(in)));
+        StreamMessageSchema schema = body.getSchema();
+
+        for (int index = 0; index < schema.size(); index++)
+        {
+            if (in.readUnsignedByte() == 0)
+            {
+                continue;
+            }
+
+            FieldType type = schema.getFieldType(index);
+            if (type == FieldType.LONG)
+            {
+                long zigzag = StreamMessageCodec.readVarLong(in);
+                body.setLong(index, (zigzag >>> 1) ^ -(zigzag & 1));
+            }
+            else if (type == FieldType.DOUBLE)
+            {
+                body.setDouble(index, Double.longBitsToDouble(in.readLong()));
+            }
+            else
+            {
+                body.setObject(index, readValue(in, 1));
+            }
+        }
+
+        Map<String, Object> additionalFields = readMap(in, 1);
+        for (Entry<String, Object> entry : additionalFields.entrySet())
+        {
+            body.put(entry.getKey(), entry.getValue());
+        }
+
+        return body;
+    }
+
+    /**
+     * Get schema from signature. Parsed schema is cached to avoid parsing on every message.<br>
+     * Cache is cleared when it reaches {@link #SCHEMA_CACHE_MAX} entries.
+     *
+     * @param signature schema signature
+     * @return schema
+     */
+    private StreamMessageSchema getSchema(String signature)
+    {
+        if (this.schemaCache == null)
+        {
+            this.schemaCache = new ConcurrentHashMap<>();
+        }
+
+        StreamMessageSchema schema = this.schemaCache.get(signature);
+        if (schema == null)
+        {
+            schema = StreamMessageSchema.fromSignature(signature);
+            if (this.schemaCache.size() >= SCHEMA_CACHE_MAX)
+            {
+                this.schemaCache.clear();
+            }
+            this.schemaCache.put(signature, schema);
+        }
+
+        return schema;
+    }
+
+    /**
+     * Write entry count and entries of Map.
+     *
+     * @param out output
+     * @param map map
+     * @param depth nesting depth
+     * @throws IOException write failed
+     */
+    private void writeMap(DataOutputStream out, Map<?, ?> map, int depth) throws IOException
+    {
+        StreamMessageCodec.writeVarLong(out, map.size());
+        for (Entry<?, ?> entry : map.entrySet())
+        {
+            writeString(out, String.valueOf(entry.getKey()));
+            writeValue(out, entry.getValue(), depth + 1);
+        }
+    }
+
+    /**
+     * Read Map written by {@link #writeMap(DataOutputStream, Map, int)}.
+     *
+     * @param in input
+     * @param depth nesting depth
+     * @return map
+     * @throws IOException read failed
+     */
+    private Map<String, Object> readMap(DataInputStream in, int depth) throws IOException
+    {
+        int size = readLength(in);
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int count = 0; count < size; count++)
+        {
+            String key = readString(in);
+            map.put(key, readValue(in, depth + 1));
+        }
+
+        return map;
+    }
+
+    /**
+     * Write tagged value.
+     *
+     * @param out output
+     * @param value value
+     * @param depth nesting depth
+     * @throws IOException write failed
+     */
+    private void writeValue(DataOutputStream out, Object value, int depth) throws IOException
+    {
+        checkDepth(depth);
+
+        if (value == null)
+        {
+            out.writeByte(TAG_NULL);
+        }
+        else if (value instanceof String)
+        {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        }
+        else if (value instanceof Integer)
+        {
+            int intValue = ((Integer) value).intValue();
+            out.writeByte(TAG_INTEGER);
+            StreamMessageCodec.writeVarLong(out, ((long) intValue << 1) ^ (intValue >> 31));
+        }
+        else if (value instanceof Long)
+        {
+            long longValue = ((Long) value).longValue();
+            out.writeByte(TAG_LONG);
+            StreamMessageCodec.writeVarLong(out, (longValue << 1) ^ (longValue >> 63));
+        }
+        else if (value instanceof Double)
+        {
+            out.writeByte(TAG_DOUBLE);
+            out.writeLong(Double.doubleToLongBits(((Double) value).doubleValue()));
+        }
+        else if (value instanceof Float)
+        {
+            out.writeByte(TAG_FLOAT);
+            out.writeInt(Float.floatToIntBits(((Float) value).floatValue()));
+        }
+        else if (value instanceof Boolean)
+        {
+            out.writeByte(((Boolean) value).booleanValue() ? TAG_TRUE : TAG_FALSE);
+        }
+        else if (value instanceof byte[])
+        {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(TAG_BYTES);
+            StreamMessageCodec.writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+        else if (value instanceof Map)
+        {
+            out.writeByte(TAG_MAP);
+            writeMap(out, (Map<?, ?>) value, depth);
+        }
+        else if (value instanceof Collection)
+        {
+            Collection<?> collection = (Collection<?>) value;
+            out.writeByte(TAG_LIST);
+            StreamMessageCodec.writeVarLong(out, collection.size());
+            for (Object element : collection)
+            {
+                writeValue(out, element, depth + 1);
+            }
+        }
+        else if (value instanceof Short)
+        {
+            out.writeByte(TAG_SHORT);
+            out.writeShort(((Short) value).shortValue());
+        }
+        else if (value instanceof Byte)
+        {
+            out.writeByte(TAG_BYTE);
+            out.writeByte(((Byte) value).byteValue());
+        }
+        else
+        {
+            String messageFormat = "Unsupported field value type. : ValueClass={0}";
+            throw new IllegalArgumentException(MessageFormat.format(messageFormat,
+                    value.getClass().getName()));
+        }
+    }
+
+    /**
+     * Read tagged value.
+     *
+     * @param in input
+     * @param depth nesting depth
+     * @return value
+     * @throws IOException read failed
+     */
+    private Object readValue(DataInputStream in, int depth) throws IOException
+    {
+        checkDepth(depth);
+
+        int tag = in.readUnsignedByte();
+        switch (tag)
+        {
+        case TAG_NULL:
+            return null;
+        case TAG_STRING:
+            return readString(in);
+        case TAG_INTEGER:
+            long intZigzag = StreamMessageCodec.readVarLong(in);
+            return Integer.valueOf((int) ((intZigzag >>> 1) ^ -(intZigzag & 1)));
+        case TAG_LONG:
+            long longZigzag = StreamMessageCodec.readVarLong(in);
+            return Long.valueOf((longZigzag >>> 1) ^ -(longZigzag & 1));
+        case TAG_DOUBLE:
+            return Double.valueOf(Double.longBitsToDouble(in.readLong()));
+        case TAG_FLOAT:
+            return Float.valueOf(Float.intBitsToFloat(in.readInt()));
+        case TAG_TRUE:
+            return Boolean.TRUE;
+        case TAG_FALSE:
+            return Boolean.FALSE;
+        case TAG_BYTES:
+            byte[] bytes = new byte[readLength(in)];
+            in.readFully(bytes);
+            return bytes;
+        case TAG_MAP:
+            return readMap(in, depth);
+        case TAG_LIST:
+            int size = readLength(in);
+            List<Object> list = new ArrayList<>(size);
+            for (int count = 0; count < size; count++)
+            {
+                list.add(readValue(in, depth + 1));
+            }
+            return list;
+        case TAG_SHORT:
+            return Short.valueOf(in.readShort());
+        case TAG_BYTE:
+            return Byte.valueOf(in.readByte());
+        default:
+            String messageFormat = "Unknown value tag. : Tag={0}";
+            throw new IllegalArgumentException(MessageFormat.format(messageFormat, tag));
+        }
+    }
+
+    /**
+     * Check nesting depth.
+     *
+     * @param depth nesting depth
+     * @throws IllegalArgumentException if depth exceeds {@link #MAX_DEPTH}
+     */
+    private static void checkDepth(int depth)
+    {
+        if (depth > MAX_DEPTH)
+        {
+            String messageFormat = "Nesting is too deep. : MaxDepth={0}";
+            throw new IllegalArgumentException(MessageFormat.format(messageFormat, MAX_DEPTH));
+        }
+    }
+
+    /**
+     * Write length-prefixed UTF-8 string.
+     *
+     * @param out output
+     * @param value value
+     * @throws IOException write failed
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(UTF8);
+        StreamMessageCodec.writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read length-prefixed UTF-8 string.
+     *
+     * @param in input
+     * @return value
+     * @throws IOException read failed
+     */
+    private static String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Read length or count as varint and check it against remaining input.
+     * Every element takes at least 1 byte, so count larger than remaining input is malformed.
+     *
+     * @param in input
+     * @return length
+     * @throws IOException read failed
+     */
+    private static int readLength(DataInputStream in) throws IOException
+    {
+        long length = StreamMessageCodec.readVarLong(in);
+        if (length < 0 || length > in.available())
+        {
+            String messageFormat = "Invalid length. : Length={0}, Remaining={1}";
+            throw new IllegalArgumentException(MessageFormat.format(messageFormat, length,
+                    in.available()));
+        }
+
+        return (int) length;
+    }
+}
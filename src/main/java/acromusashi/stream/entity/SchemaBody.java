@@ -0,0 +1,424 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import java.io.Serializable;
+import java.text.MessageFormat;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import acromusashi.stream.entity.StreamMessageSchema.FieldType;
+
+/**
+ * Message body that stores fields declared in {@link StreamMessageSchema} in Object/long/double slot arrays.<br>
+ * Index-based accessors read and write slots without key hashing and boxing.<br>
+ * This class also implements {@link Map}, so {@link StreamMessage#getField(String)} and
+ * {@link StreamMessage#addField(String, Object)} work as before.
+ * Undeclared fields are stored in additional map.<br>
+ * Typed accessors check the declared field type and throw {@link IllegalArgumentException} on mismatch.<br>
+ * {@link #entrySet()} returns a snapshot, not a view.
+ *
+ * @author kimura
+ */
+public class SchemaBody extends AbstractMap<String, Object> implements Serializable
+{
+    /** serialVersionUID */
+    private static final long   serialVersionUID = -1846027013391950432L;
+
+    /** Field schema */
+    private StreamMessageSchema schema;
+
+    /** Object field slots */
+    private Object[]            objects;
+
+    /** Long field slots */
+    private long[]              longs;
+
+    /** Double field slots */
+    private double[]            doubles;
+
+    /** Field assigned flags(index is field index) */
+    private boolean[]           assigned;
+
+    /** Undeclared fields */
+    private Map<String, Object> additionalFields;
+
+    /**
+     * Constructs instance with schema.
+     *
+     * @param schema field schema
+     */
+    public SchemaBody(StreamMessageSchema schema)
+    {
+        this.schema = schema;
+        this.objects = new Object[schema.getObjectNum()];
+        this.longs = new long[schema.getLongNum()];
+        this.doubles = new double[schema.getDoubleNum()];
+        this.assigned = new boolean[schema.size()];
+    }
+
+    /**
+     * @return the schema
+     */
+    public StreamMessageSchema getSchema()
+    {
+        return this.schema;
+    }
+
+    /**
+     * Get object field value.
+     *
+     * @param index field index
+     * @return field value
+     * @throws IllegalArgumentException if field type is not OBJECT
+     */
+    public Object getObject(int index)
+    {
+        checkType(index, FieldType.OBJECT);
+        return this.objects[this.schema.getFieldSlot(index)];
+    }
+
+    /**
+     * Set object field value.
+     *
+     * @param index field index
+     * @param value field value
+     * @throws IllegalArgumentException if field type is not OBJECT
+     */
+    public void setObject(int index, Object value)
+    {
+        checkType(index, FieldType.OBJECT);
+        this.objects[this.schema.getFieldSlot(index)] = value;
+        this.assigned[index] = true;
+    }
+
+    /**
+     * Get long field value.
+     *
+     * @param index field index
+     * @return field value
+     * @throws IllegalArgumentException if field type is not LONG
+     */
+    public long getLong(int index)
+    {
+        checkType(index, FieldType.LONG);
+        return this.longs[this.schema.getFieldSlot(index)];
+    }
+
+    /**
+     * Set long field value.
+     *
+     * @param index field index
+     * @param value field value
+     * @throws IllegalArgumentException if field type is not LONG
+     */
+    public void setLong(int index, long value)
+    {
+        checkType(index, FieldType.LONG);
+        this.longs[this.schema.getFieldSlot(index)] = value;
+        this.assigned[index] = true;
+    }
+
+    /**
+     * Get double field value.
+     *
+     * @param index field index
+     * @return field value
+     * @throws IllegalArgumentException if field type is not DOUBLE
+     */
+    public double getDouble(int index)
+    {
+        checkType(index, FieldType.DOUBLE);
+        return this.doubles[this.schema.getFieldSlot(index)];
+    }
+
+    /**
+     * Set double field value.
+     *
+     * @param index field index
+     * @param value field value
+     * @throws IllegalArgumentException if field type is not DOUBLE
+     */
+    public void setDouble(int index, double value)
+    {
+        checkType(index, FieldType.DOUBLE);
+        this.doubles[this.schema.getFieldSlot(index)] = value;
+        this.assigned[index] = true;
+    }
+
+    /**
+     * Check field value is assigned.
+     *
+     * @param index field index
+     * @return true if assigned
+     */
+    public boolean isAssigned(int index)
+    {
+        return this.assigned[index];
+    }
+
+    /**
+     * Get field value as object. Primitive values are boxed.
+     *
+     * @param index field index
+     * @return field value, null if not assigned
+     */
+    public Object getValue(int index)
+    {
+        if (this.assigned[index] == false)
+        {
+            return null;
+        }
+
+        switch (this.schema.getFieldType(index))
+        {
+        case LONG:
+            return Long.valueOf(getLong(index));
+        case DOUBLE:
+            return Double.valueOf(getDouble(index));
+        default:
+            return getObject(index);
+        }
+    }
+
+    /**
+     * Set field value from object.
+     *
+     * @param index field index
+     * @param value field value. If null, field is unassigned.
+     */
+    public void setValue(int index, Object value)
+    {
+        if (value == null)
+        {
+            unassign(index);
+            return;
+        }
+
+        FieldType type = this.schema.getFieldType(index);
+        if (type == FieldType.LONG)
+        {
+            setLong(index, ((Number) value).longValue());
+        }
+        else if (type == FieldType.DOUBLE)
+        {
+            setDouble(index, ((Number) value).doubleValue());
+        }
+        else
+        {
+            setObject(index, value);
+        }
+    }
+
+    /**
+     * Get undeclared fields.
+     *
+     * @return undeclared fields, null if not exists
+     */
+    public Map<String, Object> getAdditionalFields()
+    {
+        return this.additionalFields;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(Object key)
+    {
+        if ((key instanceof String) == false)
+        {
+            return null;
+        }
+
+        int index = this.schema.indexOf((String) key);
+        if (index >= 0)
+        {
+            return getValue(index);
+        }
+
+        if (this.additionalFields == null)
+        {
+            return null;
+        }
+
+        return this.additionalFields.get(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(Object key)
+    {
+        if ((key instanceof String) == false)
+        {
+            return false;
+        }
+
+        int index = this.schema.indexOf((String) key);
+        if (index >= 0)
+        {
+            return this.assigned[index];
+        }
+
+        return this.additionalFields != null && this.additionalFields.containsKey(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object put(String key, Object value)
+    {
+        int index = this.schema.indexOf(key);
+        if (index >= 0)
+        {
+            Object before = getValue(index);
+            setValue(index, value);
+            return before;
+        }
+
+        if (this.additionalFields == null)
+        {
+            this.additionalFields = new LinkedHashMap<>();
+        }
+
+        return this.additionalFields.put(key, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object remove(Object key)
+    {
+        if ((key instanceof String) == false)
+        {
+            return null;
+        }
+
+        int index = this.schema.indexOf((String) key);
+        if (index >= 0)
+        {
+            Object before = getValue(index);
+            unassign(index);
+            return before;
+        }
+
+        if (this.additionalFields == null)
+        {
+            return null;
+        }
+
+        return this.additionalFields.remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        for (int index = 0; index < this.assigned.length; index++)
+        {
+            unassign(index);
+        }
+
+        this.additionalFields = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        int result = 0;
+        for (boolean isAssigned : this.assigned)
+        {
+            if (isAssigned)
+            {
+                result++;
+            }
+        }
+
+        if (this.additionalFields != null)
+        {
+            result += this.additionalFields.size();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns snapshot of assigned fields in declared order, and then undeclared fields.
+     *
+     * @return snapshot entry set
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet()
+    {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (int index = 0; index < this.assigned.length; index++)
+        {
+            if (this.assigned[index])
+            {
+                snapshot.put(this.schema.getFieldName(index), getValue(index));
+            }
+        }
+
+        if (this.additionalFields != null)
+        {
+            snapshot.putAll(this.additionalFields);
+        }
+
+        return Collections.unmodifiableMap(snapshot).entrySet();
+    }
+
+    /**
+     * Check declared field type.
+     *
+     * @param index field index
+     * @param expected expected field type
+     * @throws IllegalArgumentException if declared field type is not expected type
+     */
+    private void checkType(int index, FieldType expected)
+    {
+        FieldType declared = this.schema.getFieldType(index);
+        if (declared != expected)
+        {
+            String messageFormat = "Field type mismatch. : Field={0}, Declared={1}, Accessed={2}";
+            throw new IllegalArgumentException(MessageFormat.format(messageFormat,
+                    this.schema.getFieldName(index), declared, expected));
+        }
+    }
+
+    /**
+     * Unassign field value.
+     *
+     * @param index field index
+     */
+    private void unassign(int index)
+    {
+        if (this.schema.getFieldType(index) == FieldType.OBJECT)
+        {
+            this.objects[this.schema.getFieldSlot(index)] = null;
+        }
+
+        this.assigned[index] = false;
+    }
+}
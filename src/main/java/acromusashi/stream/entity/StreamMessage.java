@@ -53,6 +53,32 @@ public class StreamMessage implements Serializable
         this.body = body;
     }
 
+    /**
+     * Constructs instance with Header and raw body.<br>
+     * Raw body is decoded by codec on first {@link #getBody()} or {@link #getField(String)}.
+     *
+     * @param header Message Header
+     * @param rawBody raw body bytes
+     * @param codec codec to decode raw body
+     */
+    public StreamMessage(StreamMessageHeader header, byte[] rawBody, BodyCodec codec)
+    {
+        this.header = header;
+        this.body = new LazyBody(rawBody, codec);
+    }
+
+    /**
+     * Constructs instance with body schema.<br>
+     * Message body is {@link SchemaBody}, so fields can be accessed by index.
+     *
+     * @param schema body schema
+     */
+    public StreamMessage(StreamMessageSchema schema)
+    {
+        this.header = new StreamMessageHeader();
+        this.body = new SchemaBody(schema);
+    }
+
     /**
      * @return the header
      */
@@ -70,13 +96,37 @@ public class StreamMessage implements Serializable
     }
 
     /**
+     * Get message body.<br>
+     * If body is raw body, it is decoded and replaced with decoded object,
+     * because returned object may be modified by caller.
+     *
      * @return the body
      */
     public Object getBody()
     {
+        if (this.body instanceof LazyBody)
+        {
+            this.body = ((LazyBody) this.body).getDecoded();
+        }
+
         return this.body;
     }
 
+    /**
+     * Get raw body that is not modified after receiving.
+     *
+     * @return raw body, null if body is not raw body or already exposed by {@link #getBody()}
+     */
+    public LazyBody getLazyBody()
+    {
+        if (this.body instanceof LazyBody)
+        {
+            return (LazyBody) this.body;
+        }
+
+        return null;
+    }
+
     /**
      * @param body the body to set
      */
@@ -94,6 +144,8 @@ public class StreamMessage implements Serializable
     @SuppressWarnings({"unchecked", "rawtypes"})
     public void addField(String key, Object value)
     {
+        getBody();
+
         if (this.body == null || Map.class.isAssignableFrom(this.body.getClass()) == false)
         {
             this.body = Maps.newLinkedHashMap();
@@ -111,12 +163,126 @@ public class StreamMessage implements Serializable
     @SuppressWarnings("rawtypes")
     public Object getField(String key)
     {
-        if (this.body == null || Map.class.isAssignableFrom(this.body.getClass()) == false)
+        // Raw body is decoded but kept, because reading field does not modify body.
+        Object target = this.body;
+        if (target instanceof LazyBody)
+        {
+            target = ((LazyBody) target).getDecoded();
+        }
+
+        if (target == null || Map.class.isAssignableFrom(target.getClass()) == false)
         {
             return null;
         }
 
-        return ((Map) this.body).get(key);
+        return ((Map) target).get(key);
+    }
+
+    /**
+     * Get field from schema body by field index.
+     *
+     * @param index field index
+     * @return field value, null if not assigned
+     */
+    public Object getField(int index)
+    {
+        return getSchemaBody().getValue(index);
+    }
+
+    /**
+     * Set field to schema body by field index.
+     *
+     * @param index field index
+     * @param value field value
+     */
+    public void setField(int index, Object value)
+    {
+        getSchemaBody().setValue(index, value);
+    }
+
+    /**
+     * Get long field from schema body by field index.
+     *
+     * @param index field index
+     * @return field value
+     */
+    public long getLongField(int index)
+    {
+        return getSchemaBody().getLong(index);
+    }
+
+    /**
+     * Set long field to schema body by field index.
+     *
+     * @param index field index
+     * @param value field value
+     */
+    public void setLongField(int index, long value)
+    {
+        getSchemaBody().setLong(index, value);
+    }
+
+    /**
+     * Get double field from schema body by field index.
+     *
+     * @param index field index
+     * @return field value
+     */
+    public double getDoubleField(int index)
+    {
+        return getSchemaBody().getDouble(index);
+    }
+
+    /**
+     * Set double field to schema body by field index.
+     *
+     * @param index field index
+     * @param value field value
+     */
+    public void setDoubleField(int index, double value)
+    {
+        getSchemaBody().setDouble(index, value);
+    }
+
+    /**
+     * Clear header and body for reuse. Map body is cleared and kept, other body is removed.
+     */
+    @SuppressWarnings("rawtypes")
+    public void clear()
+    {
+        if (this.header == null)
+        {
+            this.header = new StreamMessageHeader();
+        }
+        else
+        {
+            this.header.clear();
+        }
+
+        if (this.body instanceof Map)
+        {
+            ((Map) this.body).clear();
+        }
+        else
+        {
+            this.body = null;
+        }
+    }
+
+    /**
+     * Get message body as schema body.
+     *
+     * @return schema body
+     * @throws IllegalStateException body is not schema body
+     */
+    private SchemaBody getSchemaBody()
+    {
+        if ((getBody() instanceof SchemaBody) == false)
+        {
+            throw new IllegalStateException("Message body is not schema body.");
+        }
+
+        return (SchemaBody) this.body;
     }
 
     /**
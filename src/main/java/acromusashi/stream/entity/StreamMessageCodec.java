@@ -0,0 +1,753 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import acromusashi.stream.exception.ConvertFailException;
+import acromusashi.stream.trace.KeyHistory;
+import acromusashi.stream.trace.KeyHistoryMode;
+
+/**
+ * Versioned binary codec for {@link StreamMessage} that does not depend on Java serialization.<br>
+ * The same bytes can be used as queue payload (Kestrel, RabbitMQ) and as length-prefixed record
+ * written by {@link #writeRecord(StreamMessage, DataOutput)}.
+ * {@link acromusashi.stream.bolt.hdfs.HdfsStoreBolt} still writes text lines, so it does not use this format.<br>
+ * <br>
+ * Format (version 1):
+ * <ol>
+ * <li>format version (1 byte)</li>
+ * <li>messageKey, messageId (length-prefixed UTF-8)</li>
+ * <li>timestamp (zigzag varint)</li>
+ * <li>source, type, version (dictionary-encoded)</li>
+ * <li>key history (mode, max size, keys)</li>
+ * <li>additional header (dictionary-encoded key and value)</li>
+ * <li>body tag (1 byte) and length-prefixed body bytes</li>
+ * </ol>
+ * Lengths and counts are varint with +1 offset, 0 means null.
+ * Dictionary-encoded value is 0 for null, 1 for literal string that follows, and dictionary index + 2 otherwise.<br>
+ * Encoder and decoder must use the same dictionary.
+ * The dictionary is part of the wire format, so {@link #FORMAT_VERSION} must be incremented
+ * whenever {@link #DEFAULT_DICTIONARY} is changed.<br>
+ * Body of String and byte[] is written as is, other body is written by configured {@link BodyCodec}.
+ * The default body codec is {@link MapBodyCodec}, which encodes Map body created by
+ * {@link StreamMessage#addField(String, Object)} and {@link SchemaBody}.
+ * Decoded String or codec-encoded body is held as {@link LazyBody}, so it is decoded on first access
+ * and re-encoded as original bytes when untouched.<br>
+ * Malformed or truncated input is always reported as {@link ConvertFailException},
+ * except body bytes that are decoded lazily and reported by body codec on first access.
+ *
+ * @author kimura
+ */
+public class StreamMessageCodec implements Serializable
+{
+    /** serialVersionUID */
+    private static final long                serialVersionUID   = -2408633197406315587L;
+
+    /** Format version. Must be incremented when format or {@link #DEFAULT_DICTIONARY} is changed. */
+    public static final int                  FORMAT_VERSION     = 1;
+
+    /**
+     * Default dictionary. Contains well-known header values in {@link HeaderValueDictionary}.<br>
+     * Values must not be added, removed or reordered without incrementing {@link #FORMAT_VERSION}.
+     */
+    public static final List<String>         DEFAULT_DICTIONARY = HeaderValueDictionary.WELL_KNOWN_VALUES;
+
+    /** Body tag : null */
+    private static final int                 BODY_NULL          = 0;
+
+    /** Body tag : UTF-8 string */
+    private static final int                 BODY_STRING        = 1;
+
+    /** Body tag : byte array */
+    private static final int                 BODY_BYTES         = 2;
+
+    /** Body tag : bytes encoded by body codec */
+    private static final int                 BODY_ENCODED       = 3;
+
+    /** Max length of record, string and body read from input other than byte array */
+    private static final int                 MAX_LENGTH         = 64 * 1024 * 1024;
+
+    /** UTF-8 charset */
+    private static final Charset             UTF8               = Charset.forName("UTF-8");
+
+    /** Codec for string body */
+    private static final StringBodyCodec     STRING_CODEC       = new StringBodyCodec();
+
+    /** Dictionary */
+    private List<String>                     dictionary;
+
+    /** Body codec for body other than String and byte[] */
+    private BodyCodec                        bodyCodec;
+
+    /** Dictionary index(Key:Value, Value:Index) */
+    private transient Map<String, Integer>   dictionaryIndex;
+
+    /**
+     * Constructs instance with default dictionary and {@link MapBodyCodec}.
+     */
+    public StreamMessageCodec()
+    {
+        this(DEFAULT_DICTIONARY, new MapBodyCodec());
+    }
+
+    /**
+     * Constructs instance with dictionary and body codec.
+     *
+     * @param dictionary dictionary for source, type, version and additional header
+     * @param bodyCodec body codec for body other than String and byte[]. If null, such body cannot be encoded.
+     */
+    public StreamMessageCodec(List<String> dictionary, BodyCodec bodyCodec)
+    {
+        this.dictionary = dictionary;
+        this.bodyCodec = bodyCodec;
+    }
+
+    /**
+     * Encode message to bytes.
+     *
+     * @param message message
+     * @return encoded bytes
+     * @throws ConvertFailException body cannot be encoded
+     */
+    public byte[] encode(StreamMessage message) throws ConvertFailException
+    {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try
+        {
+            encode(message, new DataOutputStream(byteStream));
+        }
+        catch (IOException ex)
+        {
+            throw new ConvertFailException(ex);
+        }
+
+        return byteStream.toByteArray();
+    }
+
+    /**
+     * Decode message from bytes.
+     *
+     * @param bytes encoded bytes
+     * @return message
+     * @throws ConvertFailException bytes are malformed or format version is not supported
+     */
+    public StreamMessage decode(byte[] bytes) throws ConvertFailException
+    {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Decode message from part of bytes.
+     *
+     * @param bytes encoded bytes
+     * @param offset start offset
+     * @param length byte length
+     * @return message
+     * @throws ConvertFailException bytes are malformed or format version is not supported
+     */
+    public StreamMessage decode(byte[] bytes, int offset, int length) throws ConvertFailException
+    {
+        try
+        {
+            return decode(new ByteArrayDataInput(bytes, offset, length));
+        }
+        catch (IOException ex)
+        {
+            throw new ConvertFailException(ex);
+        }
+    }
+
+    /**
+     * Write message as length-prefixed record. Used for record files like HDFS.
+     *
+     * @param message message
+     * @param out output
+     * @throws IOException write failed
+     * @throws ConvertFailException body cannot be encoded
+     */
+    public void writeRecord(StreamMessage message, DataOutput out) throws IOException,
+            ConvertFailException
+    {
+        byte[] record = encode(message);
+        writeVarLong(out, record.length);
+        out.write(record);
+    }
+
+    /**
+     * Read length-prefixed record written by {@link #writeRecord(StreamMessage, DataOutput)}.
+     *
+     * @param in input
+     * @return message, null if input reached end
+     * @throws IOException read failed
+     * @throws ConvertFailException record is malformed
+     */
+    public StreamMessage readRecord(DataInput in) throws IOException, ConvertFailException
+    {
+        long length;
+        try
+        {
+            length = readVarLong(in);
+        }
+        catch (EOFException ex)
+        {
+            return null;
+        }
+
+        byte[] record = new byte[checkLength(in, length)];
+        in.readFully(record);
+        return decode(record);
+    }
+
+    /**
+     * Encode message to output.
+     *
+     * @param message message
+     * @param out output
+     * @throws IOException write failed
+     * @throws ConvertFailException body cannot be encoded
+     */
+    public void encode(StreamMessage message, DataOutput out) throws IOException,
+            ConvertFailException
+    {
+        out.writeByte(FORMAT_VERSION);
+
+        StreamMessageHeader header = message.getHeader();
+        writeString(out, header.getMessageKey());
+        writeString(out, header.getMessageId());
+        writeVarLong(out, (header.getTimestamp() << 1) ^ (header.getTimestamp() >> 63));
+        writeDictionaryString(out, header.getSource());
+        writeDictionaryString(out, header.getType());
+        writeDictionaryString(out, header.getVersion());
+        writeHistory(out, header.getHistory());
+
+        Map<String, String> additionalHeader = header.getAdditionalHeader();
+        if (additionalHeader == null)
+        {
+            writeVarLong(out, 0);
+        }
+        else
+        {
+            writeVarLong(out, additionalHeader.size() + 1);
+            for (Entry<String, String> entry : additionalHeader.entrySet())
+            {
+                writeDictionaryString(out, entry.getKey());
+                writeDictionaryString(out, entry.getValue());
+            }
+        }
+
+        writeBody(out, message);
+    }
+
+    /**
+     * Decode message from input.
+     *
+     * @param in input
+     * @return message
+     * @throws IOException read failed
+     * @throws ConvertFailException input is malformed or format version is not supported
+     */
+    public StreamMessage decode(DataInput in) throws IOException, ConvertFailException
+    {
+        try
+        {
+            return decodeMessage(in);
+        }
+        catch (RuntimeException ex)
+        {
+            throw new ConvertFailException("Malformed input.", ex);
+        }
+    }
+
+    /**
+     * Decode message from input without wrapping runtime exception.
+     *
+     * @param in input
+     * @return message
+     * @throws IOException read failed
+     * @throws ConvertFailException input is malformed or format version is not supported
+     */
+    private StreamMessage decodeMessage(DataInput in) throws IOException, ConvertFailException
+    {
+        int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION)
+        {
+            String messageFormat = "Unsupported format version. : Version={0}";
+            throw new ConvertFailException(MessageFormat.format(messageFormat, version));
+        }
+
+        StreamMessageHeader header = new StreamMessageHeader();
+        header.setMessageKey(readString(in));
+        header.setMessageId(readString(in));
+        long zigzag = readVarLong(in);
+        header.setTimestamp((zigzag >>> 1) ^ -(zigzag & 1));
+        header.setSource(readDictionaryString(in));
+        header.setType(readDictionaryString(in));
+        header.setVersion(readDictionaryString(in));
+        header.setHistory(readHistory(in));
+
+        int additionalSize = readLength(in) - 1;
+        for (int index = 0; index < additionalSize; index++)
+        {
+            header.addAdditionalHeader(readDictionaryString(in), readDictionaryString(in));
+        }
+
+        return new StreamMessage(header, readBody(in));
+    }
+
+    /**
+     * Write key history.
+     *
+     * @param out output
+     * @param history key history
+     * @throws IOException write failed
+     */
+    private void writeHistory(DataOutput out, KeyHistory history) throws IOException
+    {
+        if (history == null)
+        {
+            writeVarLong(out, 0);
+            return;
+        }
+
+        writeVarLong(out, history.getMode().ordinal() + 1);
+        writeVarLong(out, history.getMaxSize());
+
+        if (history.getMode() == KeyHistoryMode.HASHED)
+        {
+            long[] hashes = history.getKeyHashes();
+            writeVarLong(out, hashes.length);
+            for (long hash : hashes)
+            {
+                out.writeLong(hash);
+            }
+            return;
+        }
+
+        List<String> keys = history.getKeys();
+        writeVarLong(out, keys.size());
+        for (String key : keys)
+        {
+            writeString(out, key);
+        }
+    }
+
+    /**
+     * Read key history.
+     *
+     * @param in input
+     * @return key history
+     * @throws IOException read failed
+     * @throws ConvertFailException mode or max size is invalid
+     */
+    private KeyHistory readHistory(DataInput in) throws IOException, ConvertFailException
+    {
+        long modeValue = readVarLong(in);
+        if (modeValue == 0)
+        {
+            return null;
+        }
+
+        KeyHistoryMode[] modes = KeyHistoryMode.values();
+        if (modeValue > modes.length)
+        {
+            String messageFormat = "Unknown key history mode. : Mode={0}";
+            throw new ConvertFailException(MessageFormat.format(messageFormat, modeValue));
+        }
+
+        KeyHistoryMode mode = modes[(int) modeValue - 1];
+        long maxSize = readVarLong(in);
+        if (maxSize > Integer.MAX_VALUE || (mode == KeyHistoryMode.BOUNDED && maxSize <= 0))
+        {
+            String messageFormat = "Invalid key history max size. : MaxSize={0}";
+            throw new ConvertFailException(MessageFormat.format(messageFormat, maxSize));
+        }
+
+        KeyHistory history = new KeyHistory(mode, (int) maxSize);
+        int size = readLength(in);
+
+        for (int index = 0; index < size; index++)
+        {
+            if (mode == KeyHistoryMode.HASHED)
+            {
+                history.addKeyHash(in.readLong());
+            }
+            else
+            {
+                history.addKey(readString(in));
+            }
+        }
+
+        return history;
+    }
+
+    /**
+     * Write message body with body tag.
+     *
+     * @param out output
+     * @param message message
+     * @throws IOException write failed
+     * @throws ConvertFailException body codec is not set or body cannot be encoded by body codec
+     */
+    private void writeBody(DataOutput out, StreamMessage message) throws IOException,
+            ConvertFailException
+    {
+        LazyBody lazyBody = message.getLazyBody();
+        Object body = null;
+
+        if (lazyBody != null)
+        {
+            BodyCodec lazyCodec = lazyBody.getCodec();
+            if (lazyCodec instanceof StringBodyCodec
+                    && UTF8.name().equals(((StringBodyCodec) lazyCodec).getCharsetName()))
+            {
+                writeBodyBytes(out, BODY_STRING, lazyBody.getBytes());
+                return;
+            }
+
+            if (this.bodyCodec != null && this.bodyCodec.getClass() == lazyCodec.getClass())
+            {
+                writeBodyBytes(out, BODY_ENCODED, lazyBody.getBytes());
+                return;
+            }
+
+            body = lazyBody.getDecoded();
+        }
+        else
+        {
+            body = message.getBody();
+        }
+
+        if (body == null)
+        {
+            out.writeByte(BODY_NULL);
+        }
+        else if (body instanceof String)
+        {
+            writeBodyBytes(out, BODY_STRING, ((String) body).getBytes(UTF8));
+        }
+        else if (body instanceof byte[])
+        {
+            writeBodyBytes(out, BODY_BYTES, (byte[]) body);
+        }
+        else if (this.bodyCodec != null)
+        {
+            byte[] encoded;
+            try
+            {
+                encoded = this.bodyCodec.encode(body);
+            }
+            catch (RuntimeException ex)
+            {
+                String messageFormat = "Body encode failed. : BodyClass={0}";
+                throw new ConvertFailException(MessageFormat.format(messageFormat,
+                        body.getClass().getName()), ex);
+            }
+            writeBodyBytes(out, BODY_ENCODED, encoded);
+        }
+        else
+        {
+            String messageFormat = "Body codec is not set. : BodyClass={0}";
+            throw new ConvertFailException(MessageFormat.format(messageFormat,
+                    body.getClass().getName()));
+        }
+    }
+
+    /**
+     * Write body tag and length-prefixed body bytes.
+     *
+     * @param out output
+     * @param tag body tag
+     * @param bytes body bytes
+     * @throws IOException write failed
+     */
+    private void writeBodyBytes(DataOutput out, int tag, byte[] bytes) throws IOException
+    {
+        out.writeByte(tag);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read message body.
+     *
+     * @param in input
+     * @return message body
+     * @throws IOException read failed
+     * @throws ConvertFailException body tag is unknown or body codec is not set
+     */
+    private Object readBody(DataInput in) throws IOException, ConvertFailException
+    {
+        int tag = in.readUnsignedByte();
+        if (tag == BODY_NULL)
+        {
+            return null;
+        }
+
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+
+        switch (tag)
+        {
+        case BODY_STRING:
+            return new LazyBody(bytes, STRING_CODEC);
+        case BODY_BYTES:
+            return bytes;
+        case BODY_ENCODED:
+            if (this.bodyCodec == null)
+            {
+                throw new ConvertFailException("Body codec is not set.");
+            }
+            return new LazyBody(bytes, this.bodyCodec);
+        default:
+            String messageFormat = "Unknown body tag. : Tag={0}";
+            throw new ConvertFailException(MessageFormat.format(messageFormat, tag));
+        }
+    }
+
+    /**
+     * Write dictionary-encoded string.
+     *
+     * @param out output
+     * @param value value
+     * @throws IOException write failed
+     */
+    private void writeDictionaryString(DataOutput out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            writeVarLong(out, 0);
+            return;
+        }
+
+        Integer index = getDictionaryIndex().get(value);
+        if (index != null)
+        {
+            writeVarLong(out, index + 2);
+            return;
+        }
+
+        writeVarLong(out, 1);
+        byte[] bytes = value.getBytes(UTF8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read dictionary-encoded string.
+     *
+     * @param in input
+     * @return value
+     * @throws IOException read failed
+     * @throws ConvertFailException dictionary code is out of range
+     */
+    private String readDictionaryString(DataInput in) throws IOException, ConvertFailException
+    {
+        long code = readVarLong(in);
+        if (code == 0)
+        {
+            return null;
+        }
+
+        if (code >= 2)
+        {
+            if (code - 2 >= this.dictionary.size())
+            {
+                String messageFormat = "Unknown dictionary code. : Code={0}, DictionarySize={1}";
+                throw new ConvertFailException(MessageFormat.format(messageFormat, code,
+                        this.dictionary.size()));
+            }
+            return this.dictionary.get((int) code - 2);
+        }
+
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Get dictionary index. Index is created on first use.
+     *
+     * @return dictionary index
+     */
+    private Map<String, Integer> getDictionaryIndex()
+    {
+        if (this.dictionaryIndex == null)
+        {
+            Map<String, Integer> index = new HashMap<>();
+            for (int position = 0; position < this.dictionary.size(); position++)
+            {
+                index.put(this.dictionary.get(position), position);
+            }
+            this.dictionaryIndex = index;
+        }
+
+        return this.dictionaryIndex;
+    }
+
+    /**
+     * Write length-prefixed UTF-8 string.
+     *
+     * @param out output
+     * @param value value
+     * @throws IOException write failed
+     */
+    private static void writeString(DataOutput out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            writeVarLong(out, 0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(UTF8);
+        writeVarLong(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    /**
+     * Read length-prefixed UTF-8 string.
+     *
+     * @param in input
+     * @return value
+     * @throws IOException read failed
+     * @throws ConvertFailException length is invalid
+     */
+    private static String readString(DataInput in) throws IOException, ConvertFailException
+    {
+        int length = readLength(in) - 1;
+        if (length < 0)
+        {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Read length or count as varint and check it against remaining input.
+     *
+     * @param in input
+     * @return length
+     * @throws IOException read failed
+     * @throws ConvertFailException length is negative or larger than remaining input
+     */
+    private static int readLength(DataInput in) throws IOException, ConvertFailException
+    {
+        return checkLength(in, readVarLong(in));
+    }
+
+    /**
+     * Check length against remaining input.<br>
+     * Remaining length is exact for byte array input, otherwise {@link #MAX_LENGTH} is used as upper bound.
+     *
+     * @param in input
+     * @param length length
+     * @return length as int
+     * @throws IOException read failed
+     * @throws ConvertFailException length is negative or larger than remaining input
+     */
+    private static int checkLength(DataInput in, long length) throws IOException,
+            ConvertFailException
+    {
+        long limit = MAX_LENGTH;
+        if (in instanceof ByteArrayDataInput)
+        {
+            // 0 means null for length with +1 offset, so remaining + 1 is allowed.
+            limit = ((ByteArrayDataInput) in).available() + 1L;
+        }
+
+        if (length < 0 || length > limit)
+        {
+            String messageFormat = "Invalid length. : Length={0}, Limit={1}";
+            throw new ConvertFailException(MessageFormat.format(messageFormat, length, limit));
+        }
+
+        return (int) length;
+    }
+
+    /**
+     * Write unsigned varint.
+     *
+     * @param out output
+     * @param value value
+     * @throws IOException write failed
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException
+    {
+        long remain = value;
+        while ((remain & ~0x7FL) != 0)
+        {
+            out.writeByte((int) ((remain & 0x7F) | 0x80));
+            remain >>>= 7;
+        }
+        out.writeByte((int) remain);
+    }
+
+    /**
+     * Read unsigned varint.
+     *
+     * @param in input
+     * @return value
+     * @throws IOException read failed
+     */
+    static long readVarLong(DataInput in) throws IOException
+    {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int current = in.readUnsignedByte();
+            result |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0)
+            {
+                return result;
+            }
+        }
+
+        throw new IOException("Malformed varint.");
+    }
+
+    /**
+     * Input over byte array. Remaining length is known exactly.
+     */
+    private static final class ByteArrayDataInput extends DataInputStream
+    {
+        /**
+         * Constructs instance over part of bytes.
+         *
+         * @param bytes bytes
+         * @param offset start offset
+         * @param length byte length
+         */
+        ByteArrayDataInput(byte[] bytes, int offset, int length)
+        {
+            super(new ByteArrayInputStream(bytes, offset, length));
+        }
+    }
+}
@@ -12,6 +12,8 @@
 */
 package acromusashi.stream.entity;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Map;
 
@@ -20,10 +22,10 @@ import org.apache.commons.lang.builder.ToStringStyle;
 
 import acromusashi.stream.trace.KeyHistory;
 
-import com.google.common.collect.Maps;
-
 /**
- * Common message header used in AcroMUSASHI Stream
+ * Common message header used in AcroMUSASHI Stream<br>
+ * Type, version and additional header keys are shared in worker by {@link HeaderValueDictionary}.
+ * Source and additional header values are shared only when they are well-known.
  *
  * @author kimura
  */
@@ -157,7 +159,7 @@ public class StreamMessageHeader implements Serializable
      */
     public void setSource(String source)
     {
-        this.source = source;
+        this.source = HeaderValueDictionary.shareWellKnown(source);
     }
 
     /**
@@ -173,7 +175,7 @@ public class StreamMessageHeader implements Serializable
      */
     public void setType(String type)
     {
-        this.type = type;
+        this.type = HeaderValueDictionary.intern(type);
     }
 
     /**
@@ -189,7 +191,7 @@ public class StreamMessageHeader implements Serializable
      */
     public void setVersion(String version)
     {
-        this.version = version;
+        this.version = HeaderValueDictionary.intern(version);
     }
 
     /**
@@ -218,12 +220,46 @@ public class StreamMessageHeader implements Serializable
     {
         if (this.additionalHeader == null)
         {
-            this.additionalHeader = Maps.newLinkedHashMap();
+            this.additionalHeader = new HeaderMap();
         }
 
         this.additionalHeader.put(key, value);
     }
 
+    /**
+     * Reset all fields to initial values for reuse. Additional header map is cleared and kept.
+     */
+    public void clear()
+    {
+        this.messageKey = "";
+        this.messageId = "";
+        this.history = null;
+        this.timestamp = 0;
+        this.source = "";
+        this.type = "";
+        this.version = DEFAULT_VERSION;
+
+        if (this.additionalHeader != null)
+        {
+            this.additionalHeader.clear();
+        }
+    }
+
+    /**
+     * Share deserialized header values by dictionary.
+     *
+     * @param in input stream
+     * @throws IOException read failed
+     * @throws ClassNotFoundException class not found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        this.source = HeaderValueDictionary.shareWellKnown(this.source);
+        this.type = HeaderValueDictionary.intern(this.type);
+        this.version = HeaderValueDictionary.intern(this.version);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,116 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Per-executor pool of {@link StreamMessage} recycled after the tuple tree emitted from a spout is fully acked.<br>
+ * This pool is not thread safe. Create one pool for each spout executor and use it only on executor thread.<br>
+ * <br>
+ * Ownership contract:
+ * <ol>
+ * <li>Only spouts acquire messages, and only for emits with message id.
+ * Bolts never acquire pooled messages, because a bolt may emit its input and tuples are passed by reference
+ * inside a worker, so there is no point in a bolt at which nothing references the message.</li>
+ * <li>The spout releases a message only on {@code ack(msgId)}, which Storm calls after every anchored
+ * tuple in the tree is acked. Message of a failed message id is not released, because fail is also
+ * called on timeout while tuples may still be in flight. It is left to garbage collection.</li>
+ * <li>Released message is cleared and reused, so any reference held after the tree is acked
+ * will see other content. Bolts must anchor emits that carry a received message,
+ * and must not keep reference to message, header or body after acking the tuple. Copy values needed later.</li>
+ * <li>Message emitted without message id must not be acquired from pool,
+ * because there is no point at which it can be released safely.</li>
+ * </ol>
+ *
+ * @author kimura
+ */
+public class StreamMessagePool
+{
+    /** Default max number of pooled messages */
+    public static final int      DEFAULT_MAX_SIZE = 1024;
+
+    /** Pooled messages */
+    private Deque<StreamMessage> pooled;
+
+    /** Max number of pooled messages */
+    private int                  maxSize;
+
+    /**
+     * Constructs instance with default max size.
+     */
+    public StreamMessagePool()
+    {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructs instance with max size.
+     *
+     * @param maxSize max number of pooled messages
+     */
+    public StreamMessagePool(int maxSize)
+    {
+        this.maxSize = maxSize;
+        this.pooled = new ArrayDeque<>(Math.min(maxSize, DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * Acquire message. If pool is empty, new message is created.
+     *
+     * @return cleared message
+     */
+    public StreamMessage acquire()
+    {
+        StreamMessage message = this.pooled.pollLast();
+        if (message == null)
+        {
+            message = new StreamMessage();
+        }
+
+        return message;
+    }
+
+    /**
+     * Clear message and return it to pool. If pool is full, message is discarded.
+     *
+     * @param message message to release
+     */
+    public void release(StreamMessage message)
+    {
+        if (message == null || this.pooled.size() >= this.maxSize)
+        {
+            return;
+        }
+
+        message.clear();
+        this.pooled.offerLast(message);
+    }
+
+    /**
+     * @return number of pooled messages
+     */
+    public int size()
+    {
+        return this.pooled.size();
+    }
+
+    /**
+     * @return max number of pooled messages
+     */
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+}
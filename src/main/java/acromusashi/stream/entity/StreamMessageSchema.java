@@ -0,0 +1,324 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import java.io.Serializable;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import acromusashi.stream.util.HashUtil;
+
+/**
+ * Field schema for {@link SchemaBody}.<br>
+ * Each declared field is assigned an index and a slot in the Object/long/double array of its type.<br>
+ * Declare all fields before creating messages, the schema is shared by all messages created from it.<br>
+ * A schema registered by {@link #register(StreamMessageSchema)} is serialized as its 64bit id instead of its signature.
+ * Register the same schema in every worker (e.g. in prepare/open of the components that use it)
+ * before messages of the schema are received.
+ *
+ * @author kimura
+ */
+public class StreamMessageSchema implements Serializable
+{
+    /** serialVersionUID */
+    private static final long   serialVersionUID = 2387391405431734525L;
+
+    /** Separator used in schema signature. */
+    private static final char   FIELD_SEPARATOR  = ',';
+
+    /** Separator of field name and type in schema signature. */
+    private static final char   TYPE_SEPARATOR   = ':';
+
+    /**
+     * Field value type.
+     */
+    public enum FieldType
+    {
+        /** Stored in Object array. */
+        OBJECT,
+
+        /** Stored in long array. */
+        LONG,
+
+        /** Stored in double array. */
+        DOUBLE;
+    }
+
+    /** Registered schemas(Key:Schema id, Value:Schema) */
+    private static final ConcurrentMap<Long, StreamMessageSchema> REGISTERED_SCHEMAS = new ConcurrentHashMap<>();
+
+    /** Field names */
+    private List<String>         fieldNames       = new ArrayList<>();
+
+    /** Field types */
+    private List<FieldType>      fieldTypes       = new ArrayList<>();
+
+    /** Field slots in array of its type */
+    private List<Integer>        fieldSlots       = new ArrayList<>();
+
+    /** Field index map */
+    private Map<String, Integer> indexMap         = new HashMap<>();
+
+    /** Object field num */
+    private int                  objectNum        = 0;
+
+    /** Long field num */
+    private int                  longNum          = 0;
+
+    /** Double field num */
+    private int                  doubleNum        = 0;
+
+    /** Schema signature cache */
+    private transient String     signature;
+
+    /** Schema id cache, valid while signature cache is set */
+    private transient long       schemaId;
+
+    /**
+     * Constructs instance.
+     */
+    public StreamMessageSchema()
+    {}
+
+    /**
+     * Parse schema from signature.
+     *
+     * @param signature schema signature created by {@link #getSignature()}
+     * @return schema
+     */
+    public static StreamMessageSchema fromSignature(String signature)
+    {
+        StreamMessageSchema schema = new StreamMessageSchema();
+        if (signature.isEmpty())
+        {
+            return schema;
+        }
+
+        for (String field : signature.split(String.valueOf(FIELD_SEPARATOR)))
+        {
+            int separatorIndex = field.lastIndexOf(TYPE_SEPARATOR);
+            schema.addField(field.substring(0, separatorIndex),
+                    FieldType.valueOf(field.substring(separatorIndex + 1)));
+        }
+
+        return schema;
+    }
+
+    /**
+     * Register schema so that it is serialized as its id. Do not add fields after registration.
+     *
+     * @param schema schema
+     * @return schema id
+     * @throws IllegalArgumentException if other schema that has the same id is already registered
+     */
+    public static long register(StreamMessageSchema schema)
+    {
+        long schemaId = schema.getSchemaId();
+        StreamMessageSchema registered = REGISTERED_SCHEMAS.putIfAbsent(schemaId, schema);
+        if (registered != null && registered.getSignature().equals(schema.getSignature()) == false)
+        {
+            String messageFormat = "Schema id conflicts with registered schema. : Schema={0}, Registered={1}";
+            throw new IllegalArgumentException(MessageFormat.format(messageFormat, schema,
+                    registered));
+        }
+
+        return schemaId;
+    }
+
+    /**
+     * Get registered schema.
+     *
+     * @param schemaId schema id
+     * @return registered schema, null if not registered
+     */
+    public static StreamMessageSchema getRegistered(long schemaId)
+    {
+        return REGISTERED_SCHEMAS.get(schemaId);
+    }
+
+    /**
+     * Get schema id, 64bit hash of schema signature.
+     *
+     * @return schema id
+     */
+    public long getSchemaId()
+    {
+        getSignature();
+        return this.schemaId;
+    }
+
+    /**
+     * Declare field.
+     *
+     * @param name field name
+     * @param type field type
+     * @return field index
+     */
+    public int addField(String name, FieldType type)
+    {
+        if (this.indexMap.containsKey(name))
+        {
+            String messageFormat = "Field already declared. : Name={0}";
+            throw new IllegalArgumentException(MessageFormat.format(messageFormat, name));
+        }
+
+        if (name.indexOf(FIELD_SEPARATOR) >= 0)
+        {
+            String messageFormat = "Field name must not contain \"{0}\". : Name={1}";
+            throw new IllegalArgumentException(MessageFormat.format(messageFormat,
+                    FIELD_SEPARATOR, name));
+        }
+
+        int slot = 0;
+        switch (type)
+        {
+        case LONG:
+            slot = this.longNum++;
+            break;
+        case DOUBLE:
+            slot = this.doubleNum++;
+            break;
+        default:
+            slot = this.objectNum++;
+            break;
+        }
+
+        int index = this.fieldNames.size();
+        this.fieldNames.add(name);
+        this.fieldTypes.add(type);
+        this.fieldSlots.add(slot);
+        this.indexMap.put(name, index);
+        this.signature = null;
+
+        return index;
+    }
+
+    /**
+     * Get field index.
+     *
+     * @param name field name
+     * @return field index, -1 if not declared
+     */
+    public int indexOf(String name)
+    {
+        Integer index = this.indexMap.get(name);
+        if (index == null)
+        {
+            return -1;
+        }
+
+        return index.intValue();
+    }
+
+    /**
+     * @return declared field num
+     */
+    public int size()
+    {
+        return this.fieldNames.size();
+    }
+
+    /**
+     * @param index field index
+     * @return field name
+     */
+    public String getFieldName(int index)
+    {
+        return this.fieldNames.get(index);
+    }
+
+    /**
+     * @param index field index
+     * @return field type
+     */
+    public FieldType getFieldType(int index)
+    {
+        return this.fieldTypes.get(index);
+    }
+
+    /**
+     * @param index field index
+     * @return slot in array of field type
+     */
+    public int getFieldSlot(int index)
+    {
+        return this.fieldSlots.get(index).intValue();
+    }
+
+    /**
+     * @return the objectNum
+     */
+    public int getObjectNum()
+    {
+        return this.objectNum;
+    }
+
+    /**
+     * @return the longNum
+     */
+    public int getLongNum()
+    {
+        return this.longNum;
+    }
+
+    /**
+     * @return the doubleNum
+     */
+    public int getDoubleNum()
+    {
+        return this.doubleNum;
+    }
+
+    /**
+     * Get schema signature. (ex. "name:OBJECT,count:LONG")
+     *
+     * @return schema signature
+     */
+    public String getSignature()
+    {
+        if (this.signature != null)
+        {
+            return this.signature;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int index = 0; index < this.fieldNames.size(); index++)
+        {
+            if (index > 0)
+            {
+                builder.append(FIELD_SEPARATOR);
+            }
+
+            builder.append(this.fieldNames.get(index)).append(TYPE_SEPARATOR).append(
+                    this.fieldTypes.get(index).name());
+        }
+
+        this.signature = builder.toString();
+        this.schemaId = HashUtil.hash64(this.signature);
+        return this.signature;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "StreamMessageSchema[" + getSignature() + "]";
+    }
+}
@@ -0,0 +1,94 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import java.nio.charset.Charset;
+
+/**
+ * {@link BodyCodec} that converts raw bytes to String with specified charset.
+ *
+ * @author kimura
+ */
+public class StringBodyCodec implements BodyCodec
+{
+    /** serialVersionUID */
+    private static final long   serialVersionUID = 2817380458337226134L;
+
+    /** Default charset name */
+    public static final String  DEFAULT_CHARSET  = "UTF-8";
+
+    /** Charset name */
+    private String              charsetName;
+
+    /** Charset */
+    private transient Charset   charset;
+
+    /**
+     * Constructs instance with UTF-8 charset.
+     */
+    public StringBodyCodec()
+    {
+        this(DEFAULT_CHARSET);
+    }
+
+    /**
+     * Constructs instance with charset name.
+     *
+     * @param charsetName charset name
+     */
+    public StringBodyCodec(String charsetName)
+    {
+        this.charsetName = charsetName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object decode(byte[] bytes, int offset, int length)
+    {
+        return new String(bytes, offset, length, getCharset());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] encode(Object body)
+    {
+        return body.toString().getBytes(getCharset());
+    }
+
+    /**
+     * @return the charsetName
+     */
+    public String getCharsetName()
+    {
+        return this.charsetName;
+    }
+
+    /**
+     * Get charset. Charset is resolved on first use, because Charset is not serializable.
+     *
+     * @return charset
+     */
+    private Charset getCharset()
+    {
+        if (this.charset == null)
+        {
+            this.charset = Charset.forName(this.charsetName);
+        }
+
+        return this.charset;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.grouping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import acromusashi.stream.constants.FieldName;
+import acromusashi.stream.util.HashUtil;
+import backtype.storm.generated.GlobalStreamId;
+import backtype.storm.grouping.CustomStreamGrouping;
+import backtype.storm.task.WorkerTopologyContext;
+
+/**
+ * Base class of grouping that chooses one target task by grouping key.<br>
+ * Grouping key is the first field of tuple ({@link FieldName#MESSAGE_KEY}), which is set by emit methods of
+ * AcroMUSASHI Stream's basis components. Tuple whose grouping key is null or empty is sent to target tasks in
+ * round robin.<br>
+ * Target tasks are sorted by task id, so all source tasks choose tasks from the same ordered list.
+ *
+ * @author kimura
+ */
+public abstract class BaseKeyGrouping implements CustomStreamGrouping
+{
+    /** serialVersionUID */
+    private static final long       serialVersionUID = -2982640312708370917L;
+
+    /** Target tasks sorted by task id */
+    protected transient List<Integer> targetTasks;
+
+    /** Singleton task lists returned by chooseTasks, indexed same as target tasks */
+    private transient List<List<Integer>> choices;
+
+    /** Round robin index for empty grouping key */
+    private transient int           roundRobinIndex;
+
+    /**
+     * Constructs instance.
+     */
+    protected BaseKeyGrouping()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prepare(WorkerTopologyContext context, GlobalStreamId stream,
+            List<Integer> targetTasks)
+    {
+        List<Integer> sortedTasks = new ArrayList<>(targetTasks);
+        Collections.sort(sortedTasks);
+        this.targetTasks = Collections.unmodifiableList(sortedTasks);
+
+        List<List<Integer>> taskChoices = new ArrayList<>(sortedTasks.size());
+        for (Integer task : sortedTasks)
+        {
+            taskChoices.add(Collections.singletonList(task));
+        }
+        this.choices = taskChoices;
+
+        onPrepare(context, this.targetTasks);
+    }
+
+    /**
+     * Initialize method for individual grouping.
+     *
+     * @param context worker topology context
+     * @param targetTasks target tasks sorted by task id
+     */
+    protected abstract void onPrepare(WorkerTopologyContext context, List<Integer> targetTasks);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Integer> chooseTasks(int taskId, List<Object> values)
+    {
+        Object key = null;
+        if (values.isEmpty() == false)
+        {
+            key = values.get(0);
+        }
+
+        String keyStr = null;
+        if (key != null)
+        {
+            keyStr = key.toString();
+        }
+
+        if (keyStr == null || keyStr.isEmpty())
+        {
+            this.roundRobinIndex = (this.roundRobinIndex + 1) % this.choices.size();
+            return this.choices.get(this.roundRobinIndex);
+        }
+
+        return this.choices.get(chooseIndex(HashUtil.hash64(keyStr)));
+    }
+
+    /**
+     * Choose target task by hash of grouping key.
+     *
+     * @param keyHash 64bit hash of grouping key
+     * @return index of target tasks
+     */
+    protected abstract int chooseIndex(long keyHash);
+
+    /**
+     * Calculate non-negative remainder.
+     *
+     * @param value dividend
+     * @param divisor divisor
+     * @return remainder
+     */
+    protected static int floorMod(long value, int divisor)
+    {
+        int result = (int) (value % divisor);
+        if (result < 0)
+        {
+            result += divisor;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,122 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.grouping;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import acromusashi.stream.util.HashUtil;
+import backtype.storm.task.WorkerTopologyContext;
+
+/**
+ * Grouping that chooses target task by consistent hashing with virtual nodes.<br>
+ * Each target task is placed on hash ring as virtual nodes, and grouping key is sent to the task of the first node
+ * clockwise from its hash. Node position is derived from task's index in sorted target tasks, so when parallelism is
+ * changed from N to N+1 only about 1/(N+1) of keys move to the new task.<br>
+ * Same grouping key is always sent to the same task like fields grouping.
+ *
+ * @author kimura
+ */
+public class ConsistentHashGrouping extends BaseKeyGrouping
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID      = 8317431040962377413L;
+
+    /** Default number of virtual nodes per task */
+    public static final int   DEFAULT_VIRTUAL_NODES = 128;
+
+    /** Number of virtual nodes per task */
+    private int               virtualNodes;
+
+    /** Node hashes in ascending order */
+    private transient long[]  ringHashes;
+
+    /** Target task index of nodes, indexed same as node hashes */
+    private transient int[]   ringTasks;
+
+    /**
+     * Constructs instance with default virtual nodes.
+     */
+    public ConsistentHashGrouping()
+    {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Constructs instance.
+     *
+     * @param virtualNodes number of virtual nodes per task
+     */
+    public ConsistentHashGrouping(int virtualNodes)
+    {
+        if (virtualNodes <= 0)
+        {
+            throw new IllegalArgumentException("Virtual nodes must be positive. : VirtualNodes="
+                    + virtualNodes);
+        }
+
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onPrepare(WorkerTopologyContext context, List<Integer> targetTasks)
+    {
+        TreeMap<Long, Integer> ring = new TreeMap<>();
+        for (int taskIndex = 0; taskIndex < targetTasks.size(); taskIndex++)
+        {
+            for (int node = 0; node < this.virtualNodes; node++)
+            {
+                long nodeHash = HashUtil.mix64(((long) taskIndex << 32) | node);
+                // On rare hash collision, the node of smaller task index is kept.
+                if (ring.containsKey(nodeHash) == false)
+                {
+                    ring.put(nodeHash, taskIndex);
+                }
+            }
+        }
+
+        this.ringHashes = new long[ring.size()];
+        this.ringTasks = new int[ring.size()];
+        int index = 0;
+        for (Entry<Long, Integer> entry : ring.entrySet())
+        {
+            this.ringHashes[index] = entry.getKey();
+            this.ringTasks[index] = entry.getValue();
+            index++;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int chooseIndex(long keyHash)
+    {
+        int position = Arrays.binarySearch(this.ringHashes, keyHash);
+        if (position < 0)
+        {
+            position = -(position + 1);
+            if (position == this.ringHashes.length)
+            {
+                position = 0;
+            }
+        }
+
+        return this.ringTasks[position];
+    }
+}
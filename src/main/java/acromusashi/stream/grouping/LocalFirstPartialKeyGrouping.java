@@ -0,0 +1,69 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.grouping;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import backtype.storm.task.WorkerTopologyContext;
+
+/**
+ * {@link PartialKeyGrouping} that chooses candidate tasks from target tasks in the same worker.<br>
+ * Tuples are not transferred between workers when the worker has target tasks, so serialization and network cost
+ * are avoided. If the worker has no target task, all target tasks are candidates.<br>
+ * <br>
+ * Same grouping key may be processed by two tasks per worker, so stateful downstream component must merge partial
+ * results of the tasks.
+ *
+ * @author kimura
+ */
+public class LocalFirstPartialKeyGrouping extends PartialKeyGrouping
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = 5569287719094601852L;
+
+    /**
+     * Constructs instance.
+     */
+    public LocalFirstPartialKeyGrouping()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int[] selectCandidates(WorkerTopologyContext context, List<Integer> targetTasks)
+    {
+        List<Integer> workerTasks = context.getThisWorkerTasks();
+        List<Integer> localIndexes = new ArrayList<>();
+        for (int index = 0; index < targetTasks.size(); index++)
+        {
+            if (workerTasks.contains(targetTasks.get(index)))
+            {
+                localIndexes.add(index);
+            }
+        }
+
+        if (localIndexes.isEmpty())
+        {
+            return super.selectCandidates(context, targetTasks);
+        }
+
+        int[] result = new int[localIndexes.size()];
+        for (int index = 0; index < result.length; index++)
+        {
+            result[index] = localIndexes.get(index);
+        }
+        return result;
+    }
+}
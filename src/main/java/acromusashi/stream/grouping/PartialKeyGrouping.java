@@ -0,0 +1,92 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.grouping;
+
+import java.util.List;
+
+import acromusashi.stream.util.HashUtil;
+import backtype.storm.task.WorkerTopologyContext;
+
+/**
+ * Grouping that splits grouping key to two candidate tasks by power of two choices. (Partial key grouping)<br>
+ * Each grouping key has two candidate tasks chosen by two hash functions, and tuple is sent to the candidate which
+ * this source task has sent fewer tuples to. Hot key is spread over two tasks instead of overloading one task.<br>
+ * <br>
+ * Same grouping key may be processed by two tasks, so stateful downstream component must merge partial results of
+ * the two tasks. (e.g. Aggregate per task, then aggregate results again by fields grouping.)
+ *
+ * @author kimura
+ */
+public class PartialKeyGrouping extends BaseKeyGrouping
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = -4478190934052151437L;
+
+    /** Candidate task indexes of target tasks */
+    private transient int[]   candidates;
+
+    /** Number of tuples sent to each target task from this source task */
+    private transient long[]  sentCounts;
+
+    /**
+     * Constructs instance.
+     */
+    public PartialKeyGrouping()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onPrepare(WorkerTopologyContext context, List<Integer> targetTasks)
+    {
+        this.candidates = selectCandidates(context, targetTasks);
+        this.sentCounts = new long[targetTasks.size()];
+    }
+
+    /**
+     * Select target tasks that can be candidates. Default implementation selects all target tasks.
+     *
+     * @param context worker topology context
+     * @param targetTasks target tasks sorted by task id
+     * @return candidate task indexes of target tasks
+     */
+    protected int[] selectCandidates(WorkerTopologyContext context, List<Integer> targetTasks)
+    {
+        int[] result = new int[targetTasks.size()];
+        for (int index = 0; index < result.length; index++)
+        {
+            result[index] = index;
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int chooseIndex(long keyHash)
+    {
+        int first = this.candidates[floorMod(keyHash, this.candidates.length)];
+        int second = this.candidates[floorMod(HashUtil.mix64(keyHash), this.candidates.length)];
+
+        int chosen = first;
+        if (this.sentCounts[second] < this.sentCounts[first])
+        {
+            chosen = second;
+        }
+
+        this.sentCounts[chosen]++;
+        return chosen;
+    }
+}
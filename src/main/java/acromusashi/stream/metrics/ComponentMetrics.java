@@ -0,0 +1,246 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import backtype.storm.metric.api.IMetric;
+import backtype.storm.task.TopologyContext;
+
+/**
+ * Built-in metrics of AcroMUSASHI Stream's basis components.<br>
+ * Following metrics are registered to topology context.
+ * <ul>
+ * <li>{@value #COUNTERS_NAME} : processed, acked, failed, emitted, autoAcked counts, and explicitAcked count for bolt</li>
+ * <li>{@value #EXECUTE_LATENCY_NAME} : execute (bolt) or nextTuple (spout) latency histogram</li>
+ * <li>{@value #CONFIG_RELOAD_LATENCY_NAME} : onUpdate latency histogram</li>
+ * </ul>
+ * Acked, failed and emitted counts are recorded by emit, ack and fail methods of basis components
+ * without task hook, so ack/emit by collector directly is not counted.<br>
+ * Counters are updated and reported on executor thread, so they are not synchronized.<br>
+ * <br>
+ * Storm config keys
+ * <ul>
+ * <li>{@value #ENABLED_KEY} : Enable built-in metrics (default: true)</li>
+ * <li>{@value #BUCKET_SECS_KEY} : Metrics report interval sec (default: {@value #DEFAULT_BUCKET_SECS})</li>
+ * </ul>
+ *
+ * @author kimura
+ */
+public class ComponentMetrics implements IMetric
+{
+    /** Enable flag config key */
+    public static final String     ENABLED_KEY                = "component.metrics.enabled";
+
+    /** Report interval config key */
+    public static final String     BUCKET_SECS_KEY            = "component.metrics.bucketsecs";
+
+    /** Default report interval sec */
+    public static final int        DEFAULT_BUCKET_SECS        = 60;
+
+    /** Counters metric name */
+    public static final String     COUNTERS_NAME              = "am-counters";
+
+    /** Execute latency metric name */
+    public static final String     EXECUTE_LATENCY_NAME       = "am-execute-latency";
+
+    /** Config reload latency metric name */
+    public static final String     CONFIG_RELOAD_LATENCY_NAME = "am-config-reload-latency";
+
+    /** Execute latency */
+    private final LatencyHistogram executeLatency             = new LatencyHistogram();
+
+    /** Config reload latency */
+    private final LatencyHistogram configReloadLatency        = new LatencyHistogram();
+
+    /** Processed count */
+    private long                   processed;
+
+    /** Acked count */
+    private long                   acked;
+
+    /** Failed count */
+    private long                   failed;
+
+    /** Emitted count */
+    private long                   emitted;
+
+    /** Auto acked count */
+    private long                   autoAcked;
+
+    /** Bolt metrics flag. explicitAcked is reported only for bolt. */
+    private final boolean          bolt;
+
+    /**
+     * Constructs instance.
+     *
+     * @param bolt true if metrics of bolt, false if metrics of spout
+     */
+    public ComponentMetrics(boolean bolt)
+    {
+        this.bolt = bolt;
+    }
+
+    /**
+     * Create metrics and register to topology context if enabled.
+     *
+     * @param stormConf Storm configuration
+     * @param context Topology context
+     * @param componentEnabled component's metrics enable flag
+     * @param bolt true if metrics of bolt, false if metrics of spout
+     * @return registered metrics, null if disabled
+     */
+    @SuppressWarnings("rawtypes")
+    public static ComponentMetrics register(Map stormConf, TopologyContext context,
+            boolean componentEnabled, boolean bolt)
+    {
+        if (componentEnabled == false || isEnabled(stormConf) == false)
+        {
+            return null;
+        }
+
+        int bucketSecs = getBucketSecs(stormConf);
+        ComponentMetrics metrics = new ComponentMetrics(bolt);
+        context.registerMetric(COUNTERS_NAME, metrics, bucketSecs);
+        context.registerMetric(EXECUTE_LATENCY_NAME, metrics.executeLatency, bucketSecs);
+        context.registerMetric(CONFIG_RELOAD_LATENCY_NAME, metrics.configReloadLatency, bucketSecs);
+        return metrics;
+    }
+
+    /**
+     * Check built-in metrics are enabled by storm configuration.
+     *
+     * @param stormConf Storm configuration
+     * @return true if enabled
+     */
+    @SuppressWarnings("rawtypes")
+    public static boolean isEnabled(Map stormConf)
+    {
+        Object enabledObj = stormConf.get(ENABLED_KEY);
+        return enabledObj == null || Boolean.parseBoolean(enabledObj.toString());
+    }
+
+    /**
+     * Get metrics bucket size(sec) from storm configuration.
+     *
+     * @param stormConf Storm configuration
+     * @return bucket size(sec)
+     */
+    @SuppressWarnings("rawtypes")
+    public static int getBucketSecs(Map stormConf)
+    {
+        Object bucketSecsObj = stormConf.get(BUCKET_SECS_KEY);
+        if (bucketSecsObj == null)
+        {
+            return DEFAULT_BUCKET_SECS;
+        }
+
+        return Integer.parseInt(bucketSecsObj.toString());
+    }
+
+    /**
+     * Record processed message and its latency.
+     *
+     * @param latencyNanos execute latency(ns)
+     */
+    public void recordExecute(long latencyNanos)
+    {
+        this.processed++;
+        this.executeLatency.record(latencyNanos);
+    }
+
+    /**
+     * Record auto ack.
+     */
+    public void recordAutoAck()
+    {
+        this.autoAcked++;
+    }
+
+    /**
+     * Record config reload latency.
+     *
+     * @param latencyNanos config reload latency(ns)
+     */
+    public void recordConfigReload(long latencyNanos)
+    {
+        this.configReloadLatency.record(latencyNanos);
+    }
+
+    /**
+     * Record emit.
+     */
+    public void recordEmit()
+    {
+        this.emitted++;
+    }
+
+    /**
+     * Record ack.
+     */
+    public void recordAck()
+    {
+        this.acked++;
+    }
+
+    /**
+     * Record fail.
+     */
+    public void recordFail()
+    {
+        this.failed++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getValueAndReset()
+    {
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("processed", this.processed);
+        result.put("acked", this.acked);
+        result.put("failed", this.failed);
+        result.put("emitted", this.emitted);
+        result.put("autoAcked", this.autoAcked);
+        if (this.bolt)
+        {
+            // Spout's ack is notified from downstream, so it is not divided into auto and explicit ack.
+            result.put("explicitAcked", this.acked - this.autoAcked);
+        }
+
+        this.processed = 0;
+        this.acked = 0;
+        this.failed = 0;
+        this.emitted = 0;
+        this.autoAcked = 0;
+        return result;
+    }
+
+    /**
+     * @return the executeLatency
+     */
+    public LatencyHistogram getExecuteLatency()
+    {
+        return this.executeLatency;
+    }
+
+    /**
+     * @return the configReloadLatency
+     */
+    public LatencyHistogram getConfigReloadLatency()
+    {
+        return this.configReloadLatency;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import backtype.storm.metric.api.IMetric;
+
+/**
+ * Metric that reports received and duplicated message counts and duplicate rate.<br>
+ * Counters are updated and reported on executor thread, so they are not synchronized.
+ *
+ * @author kimura
+ */
+public class DuplicateRateMetric implements IMetric
+{
+    /** Received count */
+    private long received;
+
+    /** Duplicated count */
+    private long duplicated;
+
+    /** Count of messages without message id */
+    private long noId;
+
+    /**
+     * Constructs instance.
+     */
+    public DuplicateRateMetric()
+    {}
+
+    /**
+     * Record unique message.
+     */
+    public void recordUnique()
+    {
+        this.received++;
+    }
+
+    /**
+     * Record duplicated message.
+     */
+    public void recordDuplicate()
+    {
+        this.received++;
+        this.duplicated++;
+    }
+
+    /**
+     * Record message without message id. It is passed through, and not counted as received.
+     */
+    public void recordNoId()
+    {
+        this.noId++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getValueAndReset()
+    {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("received", this.received);
+        result.put("duplicated", this.duplicated);
+        result.put("noId", this.noId);
+        double rate = 0.0d;
+        if (this.received > 0)
+        {
+            rate = (double) this.duplicated / this.received;
+        }
+        result.put("duplicateRate", rate);
+
+        this.received = 0;
+        this.duplicated = 0;
+        this.noId = 0;
+        return result;
+    }
+}
@@ -0,0 +1,172 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import backtype.storm.metric.api.IMetric;
+
+/**
+ * Lock-free latency histogram metric.<br>
+ * Latency is recorded in nanoseconds into log-linear buckets (HDR histogram style).
+ * Each power of two range is split into {@value #SUB_BUCKET_COUNT} linear sub buckets, so relative error is about 3%.<br>
+ * Reported value is map of count, mean, max and percentiles in microseconds. Buckets are reset on report.
+ *
+ * @author kimura
+ */
+public class LatencyHistogram implements IMetric
+{
+    /** Bits of sub bucket index */
+    private static final int     SUB_BUCKET_BITS  = 5;
+
+    /** Number of sub buckets per power of two range */
+    static final int             SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** Number of buckets */
+    private static final int     BUCKET_COUNT     = SUB_BUCKET_COUNT * (Long.SIZE - SUB_BUCKET_BITS);
+
+    /** Reported percentiles */
+    private static final double[] PERCENTILES     = {50.0d, 90.0d, 99.0d, 99.9d};
+
+    /** Reported percentile names */
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    /** Bucket counts */
+    private final AtomicLongArray buckets         = new AtomicLongArray(BUCKET_COUNT);
+
+    /** Sum of recorded latency(ns) */
+    private final AtomicLong     sum              = new AtomicLong();
+
+    /** Max of recorded latency(ns) */
+    private final AtomicLong     max              = new AtomicLong();
+
+    /**
+     * Constructs instance.
+     */
+    public LatencyHistogram()
+    {}
+
+    /**
+     * Record latency.
+     *
+     * @param latencyNanos latency(ns). Negative value is recorded as 0.
+     */
+    public void record(long latencyNanos)
+    {
+        long value = Math.max(latencyNanos, 0);
+        this.buckets.incrementAndGet(bucketIndex(value));
+        this.sum.addAndGet(value);
+
+        long currentMax = this.max.get();
+        while (value > currentMax && this.max.compareAndSet(currentMax, value) == false)
+        {
+            currentMax = this.max.get();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getValueAndReset()
+    {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++)
+        {
+            counts[index] = this.buckets.getAndSet(index, 0);
+            total += counts[index];
+        }
+
+        long sumNanos = this.sum.getAndSet(0);
+        long maxNanos = this.max.getAndSet(0);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", total);
+        if (total == 0)
+        {
+            return result;
+        }
+
+        result.put("mean", toMicros(sumNanos / total));
+        result.put("max", toMicros(maxNanos));
+
+        int percentileIndex = 0;
+        long accumulated = 0;
+        for (int index = 0; index < BUCKET_COUNT && percentileIndex < PERCENTILES.length; index++)
+        {
+            accumulated += counts[index];
+            while (percentileIndex < PERCENTILES.length
+                    && accumulated >= Math.ceil(total * PERCENTILES[percentileIndex] / 100.0d))
+            {
+                long value = Math.min(bucketUpperBound(index), maxNanos);
+                result.put(PERCENTILE_NAMES[percentileIndex], toMicros(value));
+                percentileIndex++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get bucket index of value.
+     *
+     * @param value value (0 or positive)
+     * @return bucket index
+     */
+    static int bucketIndex(long value)
+    {
+        if (value < SUB_BUCKET_COUNT)
+        {
+            return (int) value;
+        }
+
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subIndex = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subIndex;
+    }
+
+    /**
+     * Get max value of bucket.
+     *
+     * @param index bucket index
+     * @return max value of bucket
+     */
+    static long bucketUpperBound(int index)
+    {
+        if (index < SUB_BUCKET_COUNT)
+        {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int subIndex = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        long lowerBound = ((long) (SUB_BUCKET_COUNT + subIndex)) << shift;
+        return lowerBound + ((1L << shift) - 1);
+    }
+
+    /**
+     * Convert nanoseconds to microseconds.
+     *
+     * @param nanos nanoseconds
+     * @return microseconds
+     */
+    private static long toMicros(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,96 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.serializer;
+
+import java.util.List;
+
+import acromusashi.stream.trace.KeyHistory;
+import acromusashi.stream.trace.KeyHistoryMode;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo serializer for {@link KeyHistory}.<br>
+ * Writes mode and max size, key count as varint, then each key as string (or 64bit hash in HASHED mode).
+ *
+ * @author kimura
+ */
+public class KeyHistorySerializer extends Serializer<KeyHistory>
+{
+    /**
+     * Constructs instance.
+     */
+    public KeyHistorySerializer()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(Kryo kryo, Output output, KeyHistory history)
+    {
+        output.writeInt(history.getMode().ordinal(), true);
+        output.writeInt(history.getMaxSize(), true);
+
+        if (history.getMode() == KeyHistoryMode.HASHED)
+        {
+            long[] hashes = history.getKeyHashes();
+            output.writeInt(hashes.length, true);
+            for (long hash : hashes)
+            {
+                output.writeLong(hash);
+            }
+            return;
+        }
+
+        List<String> keys = history.getKeys();
+        output.writeInt(keys.size(), true);
+
+        for (String key : keys)
+        {
+            output.writeString(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KeyHistory read(Kryo kryo, Input input, Class<KeyHistory> type)
+    {
+        KeyHistoryMode mode = KeyHistoryMode.values()[input.readInt(true)];
+        int maxSize = input.readInt(true);
+        KeyHistory history = new KeyHistory(mode, maxSize);
+        int size = input.readInt(true);
+
+        if (mode == KeyHistoryMode.HASHED)
+        {
+            for (int index = 0; index < size; index++)
+            {
+                history.addKeyHash(input.readLong());
+            }
+
+            return history;
+        }
+
+        for (int index = 0; index < size; index++)
+        {
+            history.addKey(input.readString());
+        }
+
+        return history;
+    }
+}
@@ -0,0 +1,60 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.serializer;
+
+import acromusashi.stream.entity.BodyCodec;
+import acromusashi.stream.entity.LazyBody;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo serializer for {@link LazyBody}.<br>
+ * Writes codec with its class, then raw bytes with varint length. Raw bytes are never decoded.
+ *
+ * @author kimura
+ */
+public class LazyBodySerializer extends Serializer<LazyBody>
+{
+    /**
+     * Constructs instance.
+     */
+    public LazyBodySerializer()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(Kryo kryo, Output output, LazyBody body)
+    {
+        kryo.writeClassAndObject(output, body.getCodec());
+        byte[] bytes = body.getBytes();
+        output.writeInt(bytes.length, true);
+        output.writeBytes(bytes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LazyBody read(Kryo kryo, Input input, Class<LazyBody> type)
+    {
+        BodyCodec codec = (BodyCodec) kryo.readClassAndObject(input);
+        int length = input.readInt(true);
+        byte[] bytes = input.readBytes(length);
+        return new LazyBody(bytes, codec);
+    }
+}
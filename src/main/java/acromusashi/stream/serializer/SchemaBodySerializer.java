@@ -0,0 +1,181 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.serializer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import acromusashi.stream.entity.SchemaBody;
+import acromusashi.stream.entity.StreamMessageSchema;
+import acromusashi.stream.entity.StreamMessageSchema.FieldType;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo serializer for {@link SchemaBody}.<br>
+ * Writes schema reference, then each declared field as assigned flag and value (long as varlong, double as 8 bytes,
+ * object with its class), then undeclared fields.<br>
+ * Schema reference is the schema id when the schema is registered by {@link StreamMessageSchema#register},
+ * otherwise the schema signature. Reading an id that is not registered fails.<br>
+ * Schemas read by signature are cached, so messages of the same schema share one schema instance.
+ *
+ * @author kimura
+ */
+public class SchemaBodySerializer extends Serializer<SchemaBody>
+{
+    /** Schema cache(Key:Signature, Value:Schema) */
+    private Map<String, StreamMessageSchema> schemaCache = new HashMap<>();
+
+    /**
+     * Constructs instance.
+     */
+    public SchemaBodySerializer()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(Kryo kryo, Output output, SchemaBody body)
+    {
+        StreamMessageSchema schema = body.getSchema();
+        long schemaId = schema.getSchemaId();
+        if (StreamMessageSchema.getRegistered(schemaId) != null)
+        {
+            output.writeBoolean(true);
+            output.writeLong(schemaId);
+        }
+        else
+        {
+            output.writeBoolean(false);
+            output.writeString(schema.getSignature());
+        }
+
+        int fieldNum = schema.size();
+        for (int index = 0; index < fieldNum; index++)
+        {
+            if (body.isAssigned(index) == false)
+            {
+                output.writeBoolean(false);
+                continue;
+            }
+
+            output.writeBoolean(true);
+            FieldType fieldType = schema.getFieldType(index);
+            if (fieldType == FieldType.LONG)
+            {
+                output.writeLong(body.getLong(index), false);
+            }
+            else if (fieldType == FieldType.DOUBLE)
+            {
+                output.writeDouble(body.getDouble(index));
+            }
+            else
+            {
+                kryo.writeClassAndObject(output, body.getObject(index));
+            }
+        }
+
+        // Additional field size is written with +1 offset, 0 means null.
+        Map<String, Object> additionalFields = body.getAdditionalFields();
+        if (additionalFields == null)
+        {
+            output.writeInt(0, true);
+            return;
+        }
+
+        output.writeInt(additionalFields.size() + 1, true);
+        for (Entry<String, Object> entry : additionalFields.entrySet())
+        {
+            output.writeString(entry.getKey());
+            kryo.writeClassAndObject(output, entry.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SchemaBody read(Kryo kryo, Input input, Class<SchemaBody> type)
+    {
+        StreamMessageSchema schema = readSchema(input);
+        SchemaBody body = new SchemaBody(schema);
+        int fieldNum = schema.size();
+        for (int index = 0; index < fieldNum; index++)
+        {
+            if (input.readBoolean() == false)
+            {
+                continue;
+            }
+
+            FieldType fieldType = schema.getFieldType(index);
+            if (fieldType == FieldType.LONG)
+            {
+                body.setLong(index, input.readLong(false));
+            }
+            else if (fieldType == FieldType.DOUBLE)
+            {
+                body.setDouble(index, input.readDouble());
+            }
+            else
+            {
+                body.setObject(index, kryo.readClassAndObject(input));
+            }
+        }
+
+        int additionalSize = input.readInt(true) - 1;
+        for (int index = 0; index < additionalSize; index++)
+        {
+            body.put(input.readString(), kryo.readClassAndObject(input));
+        }
+
+        return body;
+    }
+
+    /**
+     * Read schema reference written by {@link #write(Kryo, Output, SchemaBody)}.
+     *
+     * @param input input
+     * @return schema
+     * @throws KryoException if schema id is not registered
+     */
+    private StreamMessageSchema readSchema(Input input)
+    {
+        if (input.readBoolean())
+        {
+            long schemaId = input.readLong();
+            StreamMessageSchema schema = StreamMessageSchema.getRegistered(schemaId);
+            if (schema == null)
+            {
+                throw new KryoException("Schema is not registered. : SchemaId=" + schemaId);
+            }
+
+            return schema;
+        }
+
+        String signature = input.readString();
+        StreamMessageSchema schema = this.schemaCache.get(signature);
+        if (schema == null)
+        {
+            schema = StreamMessageSchema.fromSignature(signature);
+            this.schemaCache.put(signature, schema);
+        }
+
+        return schema;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.serializer;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import acromusashi.stream.entity.HeaderValueDictionary;
+import acromusashi.stream.entity.StreamMessageHeader;
+import acromusashi.stream.trace.KeyHistory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo serializer for {@link StreamMessageHeader}.<br>
+ * Writes header fields in fixed order without reflection and class tags.<br>
+ * Source, type, version and additional header are written as code when the value is well-known
+ * in {@link HeaderValueDictionary}.
+ *
+ * @author kimura
+ */
+public class StreamMessageHeaderSerializer extends Serializer<StreamMessageHeader>
+{
+    /**
+     * Constructs instance.
+     */
+    public StreamMessageHeaderSerializer()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(Kryo kryo, Output output, StreamMessageHeader header)
+    {
+        output.writeString(header.getMessageKey());
+        output.writeString(header.getMessageId());
+        output.writeLong(header.getTimestamp(), true);
+        writeHeaderValue(output, header.getSource());
+        writeHeaderValue(output, header.getType());
+        writeHeaderValue(output, header.getVersion());
+        kryo.writeObjectOrNull(output, header.getHistory(), KeyHistory.class);
+
+        // Additional header size is written with +1 offset, 0 means null.
+        Map<String, String> additionalHeader = header.getAdditionalHeader();
+        if (additionalHeader == null)
+        {
+            output.writeInt(0, true);
+            return;
+        }
+
+        output.writeInt(additionalHeader.size() + 1, true);
+        for (Entry<String, String> entry : additionalHeader.entrySet())
+        {
+            writeHeaderValue(output, entry.getKey());
+            writeHeaderValue(output, entry.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamMessageHeader read(Kryo kryo, Input input, Class<StreamMessageHeader> type)
+    {
+        StreamMessageHeader header = new StreamMessageHeader();
+        header.setMessageKey(input.readString());
+        header.setMessageId(input.readString());
+        header.setTimestamp(input.readLong(true));
+        header.setSource(readHeaderValue(input));
+        header.setType(readHeaderValue(input));
+        header.setVersion(readHeaderValue(input));
+        header.setHistory(kryo.readObjectOrNull(input, KeyHistory.class));
+
+        int additionalSize = input.readInt(true) - 1;
+        for (int index = 0; index < additionalSize; index++)
+        {
+            header.addAdditionalHeader(readHeaderValue(input), readHeaderValue(input));
+        }
+
+        return header;
+    }
+
+    /**
+     * Write header value. 0 means null, 1 means literal string that follows, and well-known code + 2 otherwise.
+     *
+     * @param output output
+     * @param value header value
+     */
+    private void writeHeaderValue(Output output, String value)
+    {
+        if (value == null)
+        {
+            output.writeInt(0, true);
+            return;
+        }
+
+        int code = HeaderValueDictionary.wellKnownCode(value);
+        if (code >= 0)
+        {
+            output.writeInt(code + 2, true);
+            return;
+        }
+
+        output.writeInt(1, true);
+        output.writeString(value);
+    }
+
+    /**
+     * Read header value written by {@link #writeHeaderValue(Output, String)}.
+     *
+     * @param input input
+     * @return header value
+     */
+    private String readHeaderValue(Input input)
+    {
+        int code = input.readInt(true);
+        if (code == 0)
+        {
+            return null;
+        }
+
+        if (code == 1)
+        {
+            return input.readString();
+        }
+
+        return HeaderValueDictionary.wellKnownValue(code - 2);
+    }
+}
@@ -0,0 +1,67 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.serializer;
+
+import acromusashi.stream.entity.LazyBody;
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.entity.StreamMessageHeader;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo serializer for {@link StreamMessage}.<br>
+ * Header is written by {@link StreamMessageHeaderSerializer}, body is written with its class.<br>
+ * Raw body that is not modified is written as original bytes without decoding.
+ *
+ * @author kimura
+ */
+public class StreamMessageSerializer extends Serializer<StreamMessage>
+{
+    /**
+     * Constructs instance.
+     */
+    public StreamMessageSerializer()
+    {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(Kryo kryo, Output output, StreamMessage message)
+    {
+        kryo.writeObjectOrNull(output, message.getHeader(), StreamMessageHeader.class);
+        LazyBody lazyBody = message.getLazyBody();
+        if (lazyBody != null)
+        {
+            kryo.writeClassAndObject(output, lazyBody);
+            return;
+        }
+
+        kryo.writeClassAndObject(output, message.getBody());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamMessage read(Kryo kryo, Input input, Class<StreamMessage> type)
+    {
+        StreamMessageHeader header = kryo.readObjectOrNull(input, StreamMessageHeader.class);
+        Object body = kryo.readClassAndObject(input);
+        StreamMessage message = new StreamMessage(header, body);
+        return message;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.serializer;
+
+import acromusashi.stream.entity.LazyBody;
+import acromusashi.stream.entity.MapBodyCodec;
+import acromusashi.stream.entity.SchemaBody;
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.entity.StreamMessageHeader;
+import acromusashi.stream.entity.StringBodyCodec;
+import acromusashi.stream.trace.KeyHistory;
+import backtype.storm.Config;
+
+/**
+ * Utility class that registers AcroMUSASHI Stream's message serializers to Storm config.
+ *
+ * @author kimura
+ */
+public class StreamSerializerUtil
+{
+    /**
+     * Default constructor to prevent instantiation.
+     */
+    private StreamSerializerUtil()
+    {}
+
+    /**
+     * Register serializers for {@link StreamMessage}, {@link StreamMessageHeader}, {@link KeyHistory},
+     * {@link SchemaBody}, {@link LazyBody}, {@link StringBodyCodec} and {@link MapBodyCodec}.
+     *
+     * @param config Storm config
+     */
+    public static void register(Config config)
+    {
+        config.registerSerialization(StreamMessage.class, StreamMessageSerializer.class);
+        config.registerSerialization(StreamMessageHeader.class, StreamMessageHeaderSerializer.class);
+        config.registerSerialization(KeyHistory.class, KeyHistorySerializer.class);
+        config.registerSerialization(SchemaBody.class, SchemaBodySerializer.class);
+        config.registerSerialization(LazyBody.class, LazyBodySerializer.class);
+        config.registerSerialization(StringBodyCodec.class);
+        config.registerSerialization(MapBodyCodec.class);
+    }
+}
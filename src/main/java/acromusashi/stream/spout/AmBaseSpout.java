@@ -22,9 +22,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import acromusashi.stream.config.ConfigFileWatcher;
+import acromusashi.stream.config.ConfigSnapshot;
+import acromusashi.stream.config.ConfigWatchService;
 import acromusashi.stream.config.StormConfigGenerator;
+import acromusashi.stream.config.WatchedConfig;
 import acromusashi.stream.constants.FieldName;
 import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.entity.StreamMessageHeader;
+import acromusashi.stream.metrics.ComponentMetrics;
+import acromusashi.stream.trace.KeyHistoryFactory;
+import backtype.storm.Config;
 import backtype.storm.spout.SpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
@@ -39,6 +46,7 @@ import com.google.common.collect.Lists;
  * <ol>
  * <li>Has message's key history.</li>
  * <li>If config updated, reload config.</li>
+ * <li>Records built-in metrics. ({@link ComponentMetrics})</li>
  * </ol>
  * 
  * If needs config reload function, do following.
@@ -60,12 +68,21 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     /** Default config update interval. */
     protected static final long           DEFAULT_INTERVAL        = 30;
 
+    /** Default max number of buffered messages emitted per nextTuple. */
+    public static final int               DEFAULT_EMIT_BUDGET     = 100;
+
+    /** Default emit buffer capacity. */
+    public static final int               DEFAULT_EMIT_BUFFER_CAPACITY = 4096;
+
     /** Task id. */
     protected String                      taskId;
 
     /** Record key history flag. */
     protected boolean                     recordHistory           = true;
 
+    /** Trace key history flag. If false, key history is not created. */
+    protected boolean                     traceHistory            = true;
+
     /** Config reload flag. */
     protected boolean                     reloadConfig            = false;
 
@@ -75,9 +92,48 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     /** Component Specific Config */
     protected Map<String, Object>         specificConfig;
 
-    /** Config file watcher */
+    /**
+     * Config file watcher.
+     *
+     * @deprecated Not set any more, config file is watched by {@link ConfigWatchService} and
+     * published to {@link #watchedConfig}. If a subclass sets this field, it is still checked on executor thread.
+     */
+    @Deprecated
     protected transient ConfigFileWatcher watcher;
 
+    /** Watched config file */
+    protected transient WatchedConfig     watchedConfig;
+
+    /** Applied config snapshot version */
+    protected transient long              appliedConfigVersion;
+
+    /** Key history factory */
+    protected KeyHistoryFactory           historyFactory          = new KeyHistoryFactory();
+
+    /** Built-in metrics enable flag. */
+    protected boolean                     metricsEnabled          = true;
+
+    /** Built-in metrics. null if disabled. */
+    protected transient ComponentMetrics  metrics;
+
+    /** Idle wait strategy. null means no wait on idle. */
+    protected IdleBackoff                 idleBackoff             = new IdleBackoff();
+
+    /** No data reported flag in current nextTuple. */
+    private transient boolean             noData;
+
+    /** Max number of buffered messages emitted per nextTuple. */
+    protected int                         emitBudget              = DEFAULT_EMIT_BUDGET;
+
+    /** Max spout pending of topology. 0 means not configured. */
+    private transient int                 maxSpoutPending;
+
+    /** Emit buffer capacity. */
+    protected int                         emitBufferCapacity      = DEFAULT_EMIT_BUFFER_CAPACITY;
+
+    /** Emit buffer. Created on first buffered emit. */
+    private transient EmitBuffer          emitBuffer;
+
     /**
      * Initialize method called after extracted for worker processes.<br>
      * <br>
@@ -94,6 +150,15 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
         super.open(conf, context, collector);
 
         this.taskId = context.getThisComponentId() + "_" + context.getThisTaskId();
+        this.historyFactory = KeyHistoryFactory.fromStormConf(conf);
+        this.traceHistory = this.traceHistory && this.historyFactory.isTraceEnabled();
+        this.metrics = ComponentMetrics.register(conf, context, this.metricsEnabled, false);
+
+        Object maxSpoutPendingObj = conf.get(Config.TOPOLOGY_MAX_SPOUT_PENDING);
+        if (maxSpoutPendingObj != null)
+        {
+            this.maxSpoutPending = Integer.parseInt(maxSpoutPendingObj.toString());
+        }
 
         if (this.reloadConfig)
         {
@@ -103,8 +168,9 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
                 String logFormat = "Config reload watch start. : WatchPath={0}, Interval(Sec)={1}";
                 logger.info(MessageFormat.format(logFormat, watchPath, this.reloadConfigIntervalSec));
 
-                this.watcher = new ConfigFileWatcher(watchPath, this.reloadConfigIntervalSec);
-                this.watcher.init();
+                this.watchedConfig = ConfigWatchService.getInstance().register(watchPath,
+                        this.reloadConfigIntervalSec);
+                this.appliedConfigVersion = this.watchedConfig.getVersion();
             }
         }
 
@@ -130,27 +196,221 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     @Override
     public void nextTuple()
     {
-        if (this.reloadConfig && this.watcher != null)
+        long startTime = 0;
+        if (this.metrics != null)
         {
-            Map<String, Object> reloadedConfig = null;
+            startTime = System.nanoTime();
+        }
 
-            try
+        if (this.reloadConfig && this.watchedConfig != null)
+        {
+            // Config file is read by watch thread. Only check published snapshot here.
+            ConfigSnapshot snapshot = this.watchedConfig.getSnapshot();
+            if (snapshot != null && snapshot.getVersion() != this.appliedConfigVersion)
             {
-                reloadedConfig = this.watcher.readIfUpdated();
+                this.appliedConfigVersion = snapshot.getVersion();
+                applyConfig(snapshot.getConfig());
             }
-            catch (IOException ex)
+        }
+        else if (this.reloadConfig && this.watcher != null)
+        {
+            applyLegacyWatcherConfig();
+        }
+
+        this.noData = false;
+
+        // Get next messages only after buffered messages are emitted.
+        if (this.emitBuffer == null || this.emitBuffer.isEmpty())
+        {
+            onNextTuple();
+        }
+
+        drainEmitBuffer();
+
+        if (this.metrics != null)
+        {
+            this.metrics.recordExecute(System.nanoTime() - startTime);
+        }
+
+        if (this.idleBackoff != null)
+        {
+            if (this.noData)
             {
-                String logFormat = "Config file reload failed. Skip reload config.";
-                logger.warn(logFormat, ex);
+                this.idleBackoff.idle();
             }
+            else
+            {
+                this.idleBackoff.reset();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * Records ack to built-in metrics. Subclasses overriding this method must call super.
+     */
+    @Override
+    public void ack(Object msgId)
+    {
+        if (this.metrics != null)
+        {
+            this.metrics.recordAck();
+        }
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * Records fail to built-in metrics. Subclasses overriding this method must call super.
+     */
+    @Override
+    public void fail(Object msgId)
+    {
+        if (this.metrics != null)
+        {
+            this.metrics.recordFail();
+        }
+    }
 
-            if (reloadedConfig != null)
+    /**
+     * Emit buffered messages up to emit budget.<br>
+     * Emit budget is capped by max spout pending, because Storm checks max spout pending only before nextTuple.
+     */
+    private void drainEmitBuffer()
+    {
+        if (this.emitBuffer == null)
+        {
+            return;
+        }
+
+        int budget = this.emitBudget;
+        if (this.maxSpoutPending > 0 && this.maxSpoutPending < budget)
+        {
+            budget = this.maxSpoutPending;
+        }
+
+        int emitted = 0;
+        while (emitted < budget && this.emitBuffer.isEmpty() == false)
+        {
+            StreamMessage message = this.emitBuffer.getMessage();
+            Object messageKey = this.emitBuffer.getMessageKey();
+            Object messageId = this.emitBuffer.getMessageId();
+            String groupingKey = this.emitBuffer.getGroupingKey();
+            String streamId = this.emitBuffer.getStreamId();
+            this.emitBuffer.remove();
+
+            if (streamId == null)
             {
-                onUpdate(reloadedConfig);
+                emitWithGrouping(message, messageKey, messageId, groupingKey);
             }
+            else
+            {
+                emitWithGroupingStream(message, messageKey, messageId, groupingKey, streamId);
+            }
+
+            emitted++;
         }
+    }
 
-        onNextTuple();
+    /**
+     * Add message to emit buffer. Buffered messages are emitted on nextTuple up to emit budget per call,
+     * and onNextTuple is not called until all buffered messages are emitted.<br>
+     * Use when message source returns many messages at once.
+     *
+     * @param message sending message
+     * @param messageKey MessageKey(Use key history's value)
+     * @param messageId MessageId(Id identify by storm)
+     * @return true if added, false if emit buffer is full
+     */
+    protected boolean bufferEmit(StreamMessage message, Object messageKey, Object messageId)
+    {
+        return bufferEmitWithGroupingStream(message, messageKey, messageId, "", null);
+    }
+
+    /**
+     * Add message to emit buffer with grouping key and streamId.<br>
+     * Buffered messages are emitted on nextTuple up to emit budget per call.
+     *
+     * @param message sending message
+     * @param messageKey MessageKey(Use key history's value)
+     * @param messageId MessageId(Id identify by storm)
+     * @param groupingKey grouping key
+     * @param streamId streamId. null means default stream.
+     * @return true if added, false if emit buffer is full
+     */
+    protected boolean bufferEmitWithGroupingStream(StreamMessage message, Object messageKey,
+            Object messageId, String groupingKey, String streamId)
+    {
+        if (this.emitBuffer == null)
+        {
+            this.emitBuffer = new EmitBuffer(this.emitBufferCapacity);
+        }
+
+        return this.emitBuffer.offer(message, messageKey, messageId, groupingKey, streamId);
+    }
+
+    /**
+     * Get number of messages that can be added to emit buffer.
+     *
+     * @return remaining capacity of emit buffer
+     */
+    protected int getEmitBufferRemaining()
+    {
+        if (this.emitBuffer == null)
+        {
+            return this.emitBufferCapacity;
+        }
+
+        return this.emitBuffer.remaining();
+    }
+
+    /**
+     * Report that no data is received in current onNextTuple.<br>
+     * nextTuple waits according to idle backoff after onNextTuple, so that idle spout does not busy-loop.
+     */
+    protected void reportNoData()
+    {
+        this.noData = true;
+    }
+
+    /**
+     * Read config by deprecated {@link #watcher} set by subclass, and apply it if updated.
+     */
+    private void applyLegacyWatcherConfig()
+    {
+        Map<String, Object> reloadedConfig = null;
+
+        try
+        {
+            reloadedConfig = this.watcher.readIfUpdated();
+        }
+        catch (IOException ex)
+        {
+            String logFormat = "Config file reload failed. Skip reload config.";
+            logger.warn(logFormat, ex);
+        }
+
+        if (reloadedConfig != null)
+        {
+            applyConfig(reloadedConfig);
+        }
+    }
+
+    /**
+     * Call onUpdate with reloaded config, and record its latency.
+     *
+     * @param reloadedConfig reloaded config
+     */
+    private void applyConfig(Map<String, Object> reloadedConfig)
+    {
+        if (this.metrics == null)
+        {
+            onUpdate(reloadedConfig);
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        onUpdate(reloadedConfig);
+        this.metrics.recordConfigReload(System.nanoTime() - startTime);
     }
 
     /**
@@ -160,7 +420,8 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
 
     /**
      * Notify updated config if config file updated.<br>
-     * If needs config reload, override this method.
+     * If needs config reload, override this method.<br>
+     * Reloaded config is unmodifiable and shared with other components in the worker.
      * 
      * @param reloadedConfig reloaded config
      */
@@ -238,6 +499,35 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
         return result;
     }
 
+    /**
+     * Record emit to built-in metrics.
+     */
+    protected void recordEmit()
+    {
+        if (this.metrics != null)
+        {
+            this.metrics.recordEmit();
+        }
+    }
+
+    /**
+     * Add message key to message's key history.<br>
+     * If message has no key history, create key history in the mode specified by storm config.
+     *
+     * @param message sending message
+     * @param messageKey MessageKey(Use key history's value)
+     */
+    protected void recordKeyHistory(StreamMessage message, Object messageKey)
+    {
+        StreamMessageHeader header = message.getHeader();
+        if (header.getHistory() == null)
+        {
+            header.setHistory(this.historyFactory.create());
+        }
+
+        header.addHistory(messageKey.toString());
+    }
+
     /**
      * Use MessageKey(Use key history's value), MessageId(Id identify by storm).<br>
      * Send message to downstream component.<br>
@@ -254,12 +544,13 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
      */
     protected void emit(StreamMessage message, Object messageKey, Object messageId)
     {
-        if (this.recordHistory)
+        if (this.recordHistory && this.traceHistory)
         {
-            message.getHeader().addHistory(messageKey.toString());
+            recordKeyHistory(message, messageKey);
         }
 
         this.getCollector().emit(new Values("", message), messageId);
+        recordEmit();
     }
 
     /**
@@ -280,12 +571,13 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     protected void emitWithGrouping(StreamMessage message, Object messageKey, Object messageId,
             String groupingKey)
     {
-        if (this.recordHistory)
+        if (this.recordHistory && this.traceHistory)
         {
-            message.getHeader().addHistory(messageKey.toString());
+            recordKeyHistory(message, messageKey);
         }
 
         this.getCollector().emit(new Values(groupingKey, message), messageId);
+        recordEmit();
     }
 
     /**
@@ -306,12 +598,13 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     protected void emitWithStream(StreamMessage message, Object messageKey, Object messageId,
             String streamId)
     {
-        if (this.recordHistory)
+        if (this.recordHistory && this.traceHistory)
         {
-            message.getHeader().addHistory(messageKey.toString());
+            recordKeyHistory(message, messageKey);
         }
 
         this.getCollector().emit(streamId, new Values("", message), messageId);
+        recordEmit();
     }
 
     /**
@@ -333,12 +626,13 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     protected void emitWithGroupingStream(StreamMessage message, Object messageKey,
             Object messageId, String groupingKey, String streamId)
     {
-        if (this.recordHistory)
+        if (this.recordHistory && this.traceHistory)
         {
-            message.getHeader().addHistory(messageKey.toString());
+            recordKeyHistory(message, messageKey);
         }
 
         this.getCollector().emit(streamId, new Values(groupingKey, message), messageId);
+        recordEmit();
     }
 
     /**
@@ -355,6 +649,7 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     protected void emitWithNoKeyId(StreamMessage message)
     {
         this.getCollector().emit(new Values("", message));
+        recordEmit();
     }
 
     /**
@@ -372,6 +667,7 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     protected void emitWithNoKeyIdAndGrouping(StreamMessage message, String groupingKey)
     {
         this.getCollector().emit(new Values(groupingKey, message));
+        recordEmit();
     }
 
     /**
@@ -389,6 +685,7 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     protected void emitWithNoKeyIdAndStream(StreamMessage message, String streamId)
     {
         this.getCollector().emit(streamId, new Values("", message));
+        recordEmit();
     }
 
     /**
@@ -408,6 +705,7 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
             String streamId)
     {
         this.getCollector().emit(streamId, new Values(groupingKey, message));
+        recordEmit();
     }
 
     /**
@@ -424,12 +722,13 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
      */
     protected void emitWithOnlyKey(StreamMessage message, Object messageKey)
     {
-        if (this.recordHistory)
+        if (this.recordHistory && this.traceHistory)
         {
-            message.getHeader().addHistory(messageKey.toString());
+            recordKeyHistory(message, messageKey);
         }
 
         this.getCollector().emit(new Values("", message));
+        recordEmit();
     }
 
     /**
@@ -448,12 +747,13 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     protected void emitWithOnlyKeyAndGrouping(StreamMessage message, Object messageKey,
             String groupingKey)
     {
-        if (this.recordHistory)
+        if (this.recordHistory && this.traceHistory)
         {
-            message.getHeader().addHistory(messageKey.toString());
+            recordKeyHistory(message, messageKey);
         }
 
         this.getCollector().emit(new Values(groupingKey, message));
+        recordEmit();
     }
 
     /**
@@ -472,12 +772,13 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     protected void emitWithOnlyKeyAndStream(StreamMessage message, Object messageKey,
             String streamId)
     {
-        if (this.recordHistory)
+        if (this.recordHistory && this.traceHistory)
         {
-            message.getHeader().addHistory(messageKey.toString());
+            recordKeyHistory(message, messageKey);
         }
 
         this.getCollector().emit(streamId, new Values("", message));
+        recordEmit();
     }
 
     /**
@@ -497,12 +798,13 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     protected void emitWithOnlyKeyAndGroupingStream(StreamMessage message, Object messageKey,
             String groupingKey, String streamId)
     {
-        if (this.recordHistory)
+        if (this.recordHistory && this.traceHistory)
         {
-            message.getHeader().addHistory(messageKey.toString());
+            recordKeyHistory(message, messageKey);
         }
 
         this.getCollector().emit(streamId, new Values(groupingKey, message));
+        recordEmit();
     }
 
     /**
@@ -513,6 +815,14 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
         this.recordHistory = recordHistory;
     }
 
+    /**
+     * @param traceHistory the traceHistory to set
+     */
+    public void setTraceHistory(boolean traceHistory)
+    {
+        this.traceHistory = traceHistory;
+    }
+
     /**
      * @param reloadConfig the reloadConfig to set
      */
@@ -536,4 +846,41 @@ public abstract class AmBaseSpout extends AmConfigurationSpout
     {
         this.specificConfig = specificConfig;
     }
+
+    /**
+     * Set max number of buffered messages emitted per nextTuple.<br>
+     * Storm checks topology.max.spout.pending only before calling nextTuple, so pending messages can exceed
+     * max spout pending by up to (emit budget - 1). Emit budget is capped by max spout pending on each nextTuple.
+     * Set 1 to keep pending messages strictly within max spout pending.
+     *
+     * @param emitBudget the emitBudget to set
+     */
+    public void setEmitBudget(int emitBudget)
+    {
+        this.emitBudget = emitBudget;
+    }
+
+    /**
+     * @param emitBufferCapacity the emitBufferCapacity to set
+     */
+    public void setEmitBufferCapacity(int emitBufferCapacity)
+    {
+        this.emitBufferCapacity = emitBufferCapacity;
+    }
+
+    /**
+     * @param idleBackoff the idleBackoff to set. null means no wait on idle.
+     */
+    public void setIdleBackoff(IdleBackoff idleBackoff)
+    {
+        this.idleBackoff = idleBackoff;
+    }
+
+    /**
+     * @param metricsEnabled the metricsEnabled to set
+     */
+    public void setMetricsEnabled(boolean metricsEnabled)
+    {
+        this.metricsEnabled = metricsEnabled;
+    }
 }
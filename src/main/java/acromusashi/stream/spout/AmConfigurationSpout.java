@@ -14,6 +14,7 @@ package acromusashi.stream.spout;
 
 import java.util.Map;
 
+import acromusashi.stream.entity.StreamMessagePool;
 import backtype.storm.spout.SpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.base.BaseRichSpout;
@@ -27,6 +28,10 @@ import backtype.storm.topology.base.BaseRichSpout;
  * <li>SpoutOutputCollector</li>
  * </ol>
  *
+ * If message pool size is set, per-executor {@link StreamMessagePool} is created on open.
+ * Subclasses acquire messages for emit with message id from it and release them only on ack of the message id.
+ * See {@link StreamMessagePool} for the ownership contract.
+ *
  * @author kimura
  */
 public abstract class AmConfigurationSpout extends BaseRichSpout
@@ -44,6 +49,12 @@ public abstract class AmConfigurationSpout extends BaseRichSpout
     /** SpoutOutputCollector */
     private SpoutOutputCollector collector;
 
+    /** Max number of pooled messages. 0 means message pooling is disabled. */
+    private int                  messagePoolSize  = 0;
+
+    /** Message pool */
+    private transient StreamMessagePool messagePool;
+
     /**
      * {@inheritDoc}
      */
@@ -54,6 +65,11 @@ public abstract class AmConfigurationSpout extends BaseRichSpout
         this.stormConf = stormConf;
         this.context = context;
         this.collector = collector;
+
+        if (this.messagePoolSize > 0)
+        {
+            this.messagePool = new StreamMessagePool(this.messagePoolSize);
+        }
     }
 
     /**
@@ -86,4 +102,24 @@ public abstract class AmConfigurationSpout extends BaseRichSpout
     {
         return this.collector;
     }
+
+    /**
+     * Get message pool.
+     *
+     * @return message pool, null if message pooling is disabled
+     */
+    protected StreamMessagePool getMessagePool()
+    {
+        return this.messagePool;
+    }
+
+    /**
+     * Set max number of pooled messages. 0 means message pooling is disabled.
+     *
+     * @param messagePoolSize max number of pooled messages
+     */
+    public void setMessagePoolSize(int messagePoolSize)
+    {
+        this.messagePoolSize = messagePoolSize;
+    }
 }
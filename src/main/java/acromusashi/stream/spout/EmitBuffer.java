@@ -0,0 +1,186 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.spout;
+
+import acromusashi.stream.entity.StreamMessage;
+
+/**
+ * Fixed capacity ring buffer of messages waiting to be emitted by {@link AmBaseSpout}.<br>
+ * Entries are held in parallel arrays, so buffering does not allocate per message.
+ * Capacity is rounded up to power of two.
+ *
+ * @author kimura
+ */
+final class EmitBuffer
+{
+    /** Buffered messages */
+    private final StreamMessage[] messages;
+
+    /** Message keys */
+    private final Object[]        messageKeys;
+
+    /** Message ids */
+    private final Object[]        messageIds;
+
+    /** Grouping keys */
+    private final String[]        groupingKeys;
+
+    /** Stream ids. null means default stream. */
+    private final String[]        streamIds;
+
+    /** Index mask */
+    private final int             mask;
+
+    /** Head index */
+    private int                   head;
+
+    /** Number of buffered entries */
+    private int                   size;
+
+    /**
+     * Constructs instance.
+     *
+     * @param capacity min capacity
+     */
+    EmitBuffer(int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be positive. : Capacity=" + capacity);
+        }
+
+        int actualCapacity = Integer.highestOneBit(capacity);
+        if (actualCapacity < capacity)
+        {
+            actualCapacity <<= 1;
+        }
+
+        this.messages = new StreamMessage[actualCapacity];
+        this.messageKeys = new Object[actualCapacity];
+        this.messageIds = new Object[actualCapacity];
+        this.groupingKeys = new String[actualCapacity];
+        this.streamIds = new String[actualCapacity];
+        this.mask = actualCapacity - 1;
+    }
+
+    /**
+     * Add entry to tail.
+     *
+     * @param message message
+     * @param messageKey message key
+     * @param messageId message id
+     * @param groupingKey grouping key
+     * @param streamId stream id. null means default stream.
+     * @return true if added, false if buffer is full
+     */
+    boolean offer(StreamMessage message, Object messageKey, Object messageId, String groupingKey,
+            String streamId)
+    {
+        if (this.size == this.messages.length)
+        {
+            return false;
+        }
+
+        int index = (this.head + this.size) & this.mask;
+        this.messages[index] = message;
+        this.messageKeys[index] = messageKey;
+        this.messageIds[index] = messageId;
+        this.groupingKeys[index] = groupingKey;
+        this.streamIds[index] = streamId;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Remove head entry. References are cleared so that emitted messages can be collected.
+     */
+    void remove()
+    {
+        if (this.size == 0)
+        {
+            throw new IllegalStateException("Buffer is empty.");
+        }
+
+        this.messages[this.head] = null;
+        this.messageKeys[this.head] = null;
+        this.messageIds[this.head] = null;
+        this.groupingKeys[this.head] = null;
+        this.streamIds[this.head] = null;
+        this.head = (this.head + 1) & this.mask;
+        this.size--;
+    }
+
+    /**
+     * @return head message
+     */
+    StreamMessage getMessage()
+    {
+        return this.messages[this.head];
+    }
+
+    /**
+     * @return head message key
+     */
+    Object getMessageKey()
+    {
+        return this.messageKeys[this.head];
+    }
+
+    /**
+     * @return head message id
+     */
+    Object getMessageId()
+    {
+        return this.messageIds[this.head];
+    }
+
+    /**
+     * @return head grouping key
+     */
+    String getGroupingKey()
+    {
+        return this.groupingKeys[this.head];
+    }
+
+    /**
+     * @return head stream id
+     */
+    String getStreamId()
+    {
+        return this.streamIds[this.head];
+    }
+
+    /**
+     * @return number of buffered entries
+     */
+    int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return number of entries that can be added
+     */
+    int remaining()
+    {
+        return this.messages.length - this.size;
+    }
+
+    /**
+     * @return true if no entry is buffered
+     */
+    boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+}
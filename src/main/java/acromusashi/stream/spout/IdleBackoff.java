@@ -0,0 +1,160 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.spout;
+
+import java.io.Serializable;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Adaptive wait strategy for idle spout.<br>
+ * Each time spout reports no data, wait is escalated as follows, and is reset on the first hit.
+ * <ol>
+ * <li>Spin : return immediately up to spin count.</li>
+ * <li>Yield : Thread.yield() up to yield count.</li>
+ * <li>Park : park from min park time, doubled on each idle up to max park time.</li>
+ * </ol>
+ *
+ * @author kimura
+ */
+public class IdleBackoff implements Serializable
+{
+    /** serialVersionUID */
+    private static final long  serialVersionUID       = -1585429214418563893L;
+
+    /** Default spin count */
+    public static final int    DEFAULT_SPIN_COUNT     = 100;
+
+    /** Default yield count */
+    public static final int    DEFAULT_YIELD_COUNT    = 10;
+
+    /** Default min park time(ns) */
+    public static final long   DEFAULT_MIN_PARK_NANOS = 10000L;
+
+    /** Default max park time(ns) */
+    public static final long   DEFAULT_MAX_PARK_NANOS = 1000000L;
+
+    /** Spin count */
+    private int                spinCount              = DEFAULT_SPIN_COUNT;
+
+    /** Yield count */
+    private int                yieldCount             = DEFAULT_YIELD_COUNT;
+
+    /** Min park time(ns) */
+    private long               minParkNanos           = DEFAULT_MIN_PARK_NANOS;
+
+    /** Max park time(ns) */
+    private long               maxParkNanos           = DEFAULT_MAX_PARK_NANOS;
+
+    /** Continuous idle count */
+    private transient int      idleCount;
+
+    /** Current park time(ns). 0 means not parked yet. */
+    private transient long     parkNanos;
+
+    /**
+     * Constructs instance with default thresholds.
+     */
+    public IdleBackoff()
+    {}
+
+    /**
+     * Constructs instance with thresholds.
+     *
+     * @param spinCount spin count
+     * @param yieldCount yield count
+     * @param minParkNanos min park time(ns)
+     * @param maxParkNanos max park time(ns)
+     */
+    public IdleBackoff(int spinCount, int yieldCount, long minParkNanos, long maxParkNanos)
+    {
+        if (spinCount < 0 || yieldCount < 0 || minParkNanos <= 0 || maxParkNanos < minParkNanos)
+        {
+            String message = "Invalid backoff thresholds. : SpinCount=" + spinCount + ", YieldCount="
+                    + yieldCount + ", MinParkNanos=" + minParkNanos + ", MaxParkNanos="
+                    + maxParkNanos;
+            throw new IllegalArgumentException(message);
+        }
+
+        this.spinCount = spinCount;
+        this.yieldCount = yieldCount;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    /**
+     * Wait according to continuous idle count.
+     */
+    public void idle()
+    {
+        if (this.idleCount < this.spinCount)
+        {
+            this.idleCount++;
+            return;
+        }
+
+        if (this.idleCount < this.spinCount + this.yieldCount)
+        {
+            this.idleCount++;
+            yieldThread();
+            return;
+        }
+
+        if (this.parkNanos == 0)
+        {
+            this.parkNanos = this.minParkNanos;
+        }
+        else
+        {
+            this.parkNanos = Math.min(this.parkNanos * 2, this.maxParkNanos);
+        }
+
+        park(this.parkNanos);
+    }
+
+    /**
+     * Reset wait because data is received.
+     */
+    public void reset()
+    {
+        this.idleCount = 0;
+        this.parkNanos = 0;
+    }
+
+    /**
+     * Get current park time.
+     *
+     * @return current park time(ns). 0 means not parked yet.
+     */
+    public long getParkNanos()
+    {
+        return this.parkNanos;
+    }
+
+    /**
+     * Yield current thread.
+     */
+    protected void yieldThread()
+    {
+        Thread.yield();
+    }
+
+    /**
+     * Park current thread.
+     *
+     * @param nanos park time(ns)
+     */
+    protected void park(long nanos)
+    {
+        LockSupport.parkNanos(nanos);
+    }
+}
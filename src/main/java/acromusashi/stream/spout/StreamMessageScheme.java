@@ -0,0 +1,91 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.spout;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import acromusashi.stream.constants.FieldName;
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.entity.StreamMessageCodec;
+import acromusashi.stream.exception.ConvertFailException;
+import backtype.storm.spout.Scheme;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Values;
+
+/**
+ * Scheme that decodes queue payload encoded by {@link StreamMessageCodec}.<br>
+ * Outputs message key in header and decoded message.
+ *
+ * @author kimura
+ */
+public class StreamMessageScheme implements Scheme
+{
+    /** serialVersionUID */
+    private static final long  serialVersionUID = -6193245519718416034L;
+
+    /** logger */
+    private static final Logger logger          = LoggerFactory.getLogger(StreamMessageScheme.class);
+
+    /** Message codec */
+    private StreamMessageCodec codec;
+
+    /**
+     * Constructs instance with default codec.
+     */
+    public StreamMessageScheme()
+    {
+        this(new StreamMessageCodec());
+    }
+
+    /**
+     * Constructs instance with codec.
+     *
+     * @param codec message codec
+     */
+    public StreamMessageScheme(StreamMessageCodec codec)
+    {
+        this.codec = codec;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Object> deserialize(byte[] ser)
+    {
+        StreamMessage message = null;
+        try
+        {
+            message = this.codec.decode(ser);
+        }
+        catch (ConvertFailException ex)
+        {
+            logger.warn("Received payload decode failed. Skip payload.", ex);
+            return null;
+        }
+
+        return new Values(message.getHeader().getMessageKey(), message);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Fields getOutputFields()
+    {
+        return new Fields(FieldName.MESSAGE_KEY, FieldName.MESSAGE_VALUE);
+    }
+}
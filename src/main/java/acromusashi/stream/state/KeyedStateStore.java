@@ -0,0 +1,1011 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.state;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import acromusashi.stream.util.HashUtil;
+
+/**
+ * Keyed local state store that holds values off-heap.<br>
+ * <br>
+ * Entries are held in open addressing hash table on direct buffer. Each slot holds key hash, key reference with dirty flag, and value.
+ * Key hash and key reference of dirty slots are also recorded in arrays, so delta snapshot costs only updated entries.
+ * Keys are appended to direct buffer segments as UTF-16 chars, so lookup does not allocate.
+ * Segment size starts small and doubles per segment up to max segment size, so small stores do not reserve large buffers.
+ * Values are 8 bytes primitives, accessed as long or double without boxing.<br>
+ * <br>
+ * If snapshot directory is specified, entries are written to local files.
+ * <ol>
+ * <li>Full snapshot : all entries.</li>
+ * <li>Delta snapshot : entries updated or removed since previous snapshot.</li>
+ * </ol>
+ * Full snapshot is written first time and after max delta count, then older files are deleted.
+ * On open, latest full snapshot and following deltas are restored.<br>
+ * <br>
+ * This class is not thread-safe. Use from bolt's executor thread.
+ *
+ * @author kimura
+ */
+public class KeyedStateStore implements Closeable
+{
+    /** Default initial capacity */
+    public static final int      DEFAULT_INITIAL_CAPACITY = 1 << 16;
+
+    /** Default max delta snapshot count between full snapshots */
+    public static final int      DEFAULT_MAX_DELTAS       = 10;
+
+    /** Max capacity of hash table */
+    static final int             MAX_CAPACITY             = 1 << 26;
+
+    /** Load factor of hash table */
+    private static final double  LOAD_FACTOR              = 0.7d;
+
+    /** Slot size(bytes) */
+    private static final int     SLOT_SIZE                = 24;
+
+    /** Offset of key hash in slot */
+    private static final int     HASH_OFFSET              = 0;
+
+    /** Offset of key reference in slot. 0 means empty slot. Highest bit is dirty flag. */
+    private static final int     KEY_OFFSET               = 8;
+
+    /** Offset of value in slot */
+    private static final int     VALUE_OFFSET             = 16;
+
+    /** Dirty flag in key reference */
+    private static final long    FLAG_DIRTY               = Long.MIN_VALUE;
+
+    /** Mask of key reference */
+    private static final long    KEY_REF_MASK             = Long.MAX_VALUE;
+
+    /** Initial capacity of dirty entry arrays */
+    private static final int     INITIAL_DIRTY_CAPACITY   = 1024;
+
+    /** Initial key segment size(bytes) */
+    static final int             INITIAL_KEY_SEGMENT_SIZE = 1 << 16;
+
+    /** Max key segment size(bytes) */
+    static final int             MAX_KEY_SEGMENT_SIZE     = 1 << 26;
+
+    /** Snapshot file magic number */
+    private static final int     MAGIC                    = 0x414D5353;
+
+    /** Snapshot format version */
+    private static final int     FORMAT_VERSION           = 1;
+
+    /** Entry tag : end of entries */
+    private static final byte    TAG_END                  = 0;
+
+    /** Entry tag : put */
+    private static final byte    TAG_PUT                  = 1;
+
+    /** Entry tag : remove */
+    private static final byte    TAG_REMOVE               = 2;
+
+    /** Full snapshot file suffix */
+    private static final String  FULL_SUFFIX              = ".full";
+
+    /** Delta snapshot file suffix */
+    private static final String  DELTA_SUFFIX             = ".delta";
+
+    /** Snapshot file name pattern */
+    private static final Pattern SNAPSHOT_PATTERN         = Pattern.compile("state-(\\d{20})(\\.full|\\.delta)");
+
+    /** Snapshot directory. null means snapshot is disabled. */
+    private final File           directory;
+
+    /** Max delta snapshot count between full snapshots */
+    private final int            maxDeltas;
+
+    /** Hash table */
+    private ByteBuffer           table;
+
+    /** Hash table capacity */
+    private int                  capacity;
+
+    /** Number of entries */
+    private int                  size;
+
+    /** Key segments */
+    private List<ByteBuffer>     keySegments              = new ArrayList<>();
+
+    /** Key hashes of slots updated since previous snapshot */
+    private long[]               dirtyHashes              = new long[INITIAL_DIRTY_CAPACITY];
+
+    /** Key references of slots updated since previous snapshot */
+    private long[]               dirtyKeyRefs             = new long[INITIAL_DIRTY_CAPACITY];
+
+    /** Number of slots updated since previous snapshot */
+    private int                  dirtyCount;
+
+    /** Keys removed since previous snapshot */
+    private Set<String>          removedKeys              = new HashSet<>();
+
+    /** Last snapshot sequence. 0 means no snapshot. */
+    private long                 snapshotSeq;
+
+    /** Delta count since last full snapshot */
+    private int                  deltaCount;
+
+    /**
+     * Constructs in-memory store without snapshot.
+     */
+    public KeyedStateStore()
+    {
+        this(null, DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_DELTAS);
+    }
+
+    /**
+     * Constructs store. Use {@link #open(File, int, int)} to restore from snapshot directory.
+     *
+     * @param directory snapshot directory. null means snapshot is disabled.
+     * @param initialCapacity initial capacity
+     * @param maxDeltas max delta snapshot count between full snapshots
+     */
+    KeyedStateStore(File directory, int initialCapacity, int maxDeltas)
+    {
+        this.directory = directory;
+        this.maxDeltas = maxDeltas;
+
+        int tableCapacity = Integer.highestOneBit(Math.max(initialCapacity, 16));
+        if (tableCapacity < initialCapacity)
+        {
+            tableCapacity <<= 1;
+        }
+        allocateTable(Math.min(tableCapacity, MAX_CAPACITY));
+    }
+
+    /**
+     * Open store that takes snapshots to the directory, and restore entries from latest snapshot.
+     *
+     * @param directory snapshot directory
+     * @param initialCapacity initial capacity
+     * @param maxDeltas max delta snapshot count between full snapshots
+     * @return restored store
+     * @throws IOException If restore failed
+     */
+    public static KeyedStateStore open(File directory, int initialCapacity, int maxDeltas)
+            throws IOException
+    {
+        if (directory.exists() == false && directory.mkdirs() == false)
+        {
+            throw new IOException("State directory create failed. : Directory=" + directory);
+        }
+
+        KeyedStateStore store = new KeyedStateStore(directory, initialCapacity, maxDeltas);
+        store.restore();
+        return store;
+    }
+
+    /**
+     * Get long value.
+     *
+     * @param key key
+     * @param defaultValue value returned if key does not exist
+     * @return value
+     */
+    public long getLong(String key, long defaultValue)
+    {
+        int slot = findSlot(key, hash(key));
+        if (slot < 0)
+        {
+            return defaultValue;
+        }
+
+        return this.table.getLong(slot * SLOT_SIZE + VALUE_OFFSET);
+    }
+
+    /**
+     * Put long value.
+     *
+     * @param key key
+     * @param value value
+     */
+    public void putLong(String key, long value)
+    {
+        int slot = findOrInsertSlot(key);
+        setValue(slot, value);
+    }
+
+    /**
+     * Add delta to long value. Not existing value is treated as 0.
+     *
+     * @param key key
+     * @param delta delta
+     * @return value after added
+     */
+    public long addLong(String key, long delta)
+    {
+        int slot = findOrInsertSlot(key);
+        long value = this.table.getLong(slot * SLOT_SIZE + VALUE_OFFSET) + delta;
+        setValue(slot, value);
+        return value;
+    }
+
+    /**
+     * Get double value.
+     *
+     * @param key key
+     * @param defaultValue value returned if key does not exist
+     * @return value
+     */
+    public double getDouble(String key, double defaultValue)
+    {
+        int slot = findSlot(key, hash(key));
+        if (slot < 0)
+        {
+            return defaultValue;
+        }
+
+        return Double.longBitsToDouble(this.table.getLong(slot * SLOT_SIZE + VALUE_OFFSET));
+    }
+
+    /**
+     * Put double value.
+     *
+     * @param key key
+     * @param value value
+     */
+    public void putDouble(String key, double value)
+    {
+        int slot = findOrInsertSlot(key);
+        setValue(slot, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Add delta to double value. Not existing value is treated as 0.
+     *
+     * @param key key
+     * @param delta delta
+     * @return value after added
+     */
+    public double addDouble(String key, double delta)
+    {
+        int slot = findOrInsertSlot(key);
+        double value = Double.longBitsToDouble(this.table.getLong(slot * SLOT_SIZE + VALUE_OFFSET))
+                + delta;
+        setValue(slot, Double.doubleToRawLongBits(value));
+        return value;
+    }
+
+    /**
+     * Check key exists.
+     *
+     * @param key key
+     * @return true if exists
+     */
+    public boolean contains(String key)
+    {
+        return findSlot(key, hash(key)) >= 0;
+    }
+
+    /**
+     * Remove key.<br>
+     * Removed key's bytes remain in key segment until store is restored from snapshot.
+     *
+     * @param key key
+     * @return true if removed
+     */
+    public boolean remove(String key)
+    {
+        int slot = findSlot(key, hash(key));
+        if (slot < 0)
+        {
+            return false;
+        }
+
+        // Backward shift deletion keeps probe sequences without tombstones.
+        int mask = this.capacity - 1;
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while (this.table.getLong(next * SLOT_SIZE + KEY_OFFSET) != 0)
+        {
+            int ideal = (int) this.table.getLong(next * SLOT_SIZE + HASH_OFFSET) & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask))
+            {
+                copySlot(this.table, next, this.table, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        clearSlot(hole);
+        this.size--;
+
+        if (this.directory != null)
+        {
+            this.removedKeys.add(key);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Take snapshot. Full snapshot is written first time and after max delta count, otherwise delta snapshot is written.<br>
+     * If snapshot is disabled or nothing is changed, do nothing.
+     *
+     * @throws IOException If write failed
+     */
+    public void snapshot() throws IOException
+    {
+        if (this.directory == null)
+        {
+            return;
+        }
+
+        if (this.snapshotSeq == 0 || this.deltaCount >= this.maxDeltas)
+        {
+            writeSnapshot(true);
+            this.deltaCount = 0;
+            deleteSnapshotsBefore(this.snapshotSeq);
+            return;
+        }
+
+        if (this.removedKeys.isEmpty() && this.dirtyCount == 0)
+        {
+            return;
+        }
+
+        writeSnapshot(false);
+        this.deltaCount++;
+    }
+
+    /**
+     * Drop references to off-heap buffers so that they are freed by GC. Store can not be used after closed.<br>
+     * Direct buffers are not freed explicitly, because it requires JDK internal API.
+     */
+    @Override
+    public void close()
+    {
+        this.table = null;
+        this.keySegments = null;
+        this.removedKeys = null;
+        this.dirtyHashes = null;
+        this.dirtyKeyRefs = null;
+    }
+
+    /**
+     * Allocate empty hash table.
+     *
+     * @param newCapacity capacity (power of two)
+     */
+    private void allocateTable(int newCapacity)
+    {
+        this.table = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+        this.capacity = newCapacity;
+    }
+
+    /**
+     * Find slot of key.
+     *
+     * @param key key
+     * @param hash key hash
+     * @return slot index, or -(insertion slot + 1) if not found
+     */
+    private int findSlot(String key, long hash)
+    {
+        int mask = this.capacity - 1;
+        int slot = (int) hash & mask;
+        while (true)
+        {
+            int position = slot * SLOT_SIZE;
+            long keyWord = this.table.getLong(position + KEY_OFFSET);
+            if (keyWord == 0)
+            {
+                return -(slot + 1);
+            }
+
+            if (this.table.getLong(position + HASH_OFFSET) == hash
+                    && keyEquals(keyWord & KEY_REF_MASK, key))
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Find slot by key reference. Key references are unique, so stored keys are not compared.
+     *
+     * @param hash key hash
+     * @param keyRef key reference
+     * @return slot index, -1 if not found
+     */
+    private int findSlotByRef(long hash, long keyRef)
+    {
+        int mask = this.capacity - 1;
+        int slot = (int) hash & mask;
+        while (true)
+        {
+            long keyWord = this.table.getLong(slot * SLOT_SIZE + KEY_OFFSET);
+            if (keyWord == 0)
+            {
+                return -1;
+            }
+
+            if ((keyWord & KEY_REF_MASK) == keyRef)
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Find slot of key, or insert key if not found.
+     *
+     * @param key key
+     * @return slot index
+     */
+    private int findOrInsertSlot(String key)
+    {
+        long hash = hash(key);
+        int slot = findSlot(key, hash);
+        if (slot >= 0)
+        {
+            return slot;
+        }
+
+        if (this.size + 1 > this.capacity * LOAD_FACTOR)
+        {
+            grow();
+            slot = findSlot(key, hash);
+        }
+
+        int insertSlot = -(slot + 1);
+        int position = insertSlot * SLOT_SIZE;
+        this.table.putLong(position + HASH_OFFSET, hash);
+        this.table.putLong(position + KEY_OFFSET, appendKey(key));
+        this.table.putLong(position + VALUE_OFFSET, 0L);
+        markDirty(insertSlot);
+        this.size++;
+
+        if (this.removedKeys.isEmpty() == false)
+        {
+            this.removedKeys.remove(key);
+        }
+
+        return insertSlot;
+    }
+
+    /**
+     * Set value and mark slot dirty.
+     *
+     * @param slot slot index
+     * @param value value bits
+     */
+    private void setValue(int slot, long value)
+    {
+        this.table.putLong(slot * SLOT_SIZE + VALUE_OFFSET, value);
+        markDirty(slot);
+    }
+
+    /**
+     * Mark slot dirty, and record its key hash and key reference if it was not dirty.
+     *
+     * @param slot slot index
+     */
+    private void markDirty(int slot)
+    {
+        int position = slot * SLOT_SIZE;
+        long keyWord = this.table.getLong(position + KEY_OFFSET);
+        if ((keyWord & FLAG_DIRTY) != 0)
+        {
+            return;
+        }
+
+        this.table.putLong(position + KEY_OFFSET, keyWord | FLAG_DIRTY);
+
+        if (this.dirtyCount == this.dirtyHashes.length)
+        {
+            this.dirtyHashes = Arrays.copyOf(this.dirtyHashes, this.dirtyCount * 2);
+            this.dirtyKeyRefs = Arrays.copyOf(this.dirtyKeyRefs, this.dirtyCount * 2);
+        }
+
+        this.dirtyHashes[this.dirtyCount] = this.table.getLong(position + HASH_OFFSET);
+        this.dirtyKeyRefs[this.dirtyCount] = keyWord & KEY_REF_MASK;
+        this.dirtyCount++;
+    }
+
+    /**
+     * Double hash table capacity.
+     */
+    private void grow()
+    {
+        if (this.capacity >= MAX_CAPACITY)
+        {
+            throw new IllegalStateException("State store is full. : Size=" + this.size);
+        }
+
+        ByteBuffer oldTable = this.table;
+        int oldCapacity = this.capacity;
+        allocateTable(oldCapacity * 2);
+
+        int mask = this.capacity - 1;
+        for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++)
+        {
+            if (oldTable.getLong(oldSlot * SLOT_SIZE + KEY_OFFSET) == 0)
+            {
+                continue;
+            }
+
+            int slot = (int) oldTable.getLong(oldSlot * SLOT_SIZE + HASH_OFFSET) & mask;
+            while (this.table.getLong(slot * SLOT_SIZE + KEY_OFFSET) != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            copySlot(oldTable, oldSlot, this.table, slot);
+        }
+    }
+
+    /**
+     * Copy slot.
+     *
+     * @param source source table
+     * @param sourceSlot source slot index
+     * @param dest destination table
+     * @param destSlot destination slot index
+     */
+    private static void copySlot(ByteBuffer source, int sourceSlot, ByteBuffer dest, int destSlot)
+    {
+        int sourcePosition = sourceSlot * SLOT_SIZE;
+        int destPosition = destSlot * SLOT_SIZE;
+        for (int offset = 0; offset < SLOT_SIZE; offset += 8)
+        {
+            dest.putLong(destPosition + offset, source.getLong(sourcePosition + offset));
+        }
+    }
+
+    /**
+     * Clear slot.
+     *
+     * @param slot slot index
+     */
+    private void clearSlot(int slot)
+    {
+        int position = slot * SLOT_SIZE;
+        for (int offset = 0; offset < SLOT_SIZE; offset += 8)
+        {
+            this.table.putLong(position + offset, 0L);
+        }
+    }
+
+    /**
+     * Append key to key segment.
+     *
+     * @param key key
+     * @return key reference (segment index and offset, +1 so that 0 means empty)
+     */
+    private long appendKey(String key)
+    {
+        int required = 4 + key.length() * 2;
+        ByteBuffer segment = null;
+        if (this.keySegments.isEmpty() == false)
+        {
+            segment = this.keySegments.get(this.keySegments.size() - 1);
+        }
+
+        if (segment == null || segment.remaining() < required)
+        {
+            int segmentSize = INITIAL_KEY_SEGMENT_SIZE;
+            if (segment != null)
+            {
+                segmentSize = Math.min(segment.capacity() * 2, MAX_KEY_SEGMENT_SIZE);
+            }
+
+            segment = ByteBuffer.allocateDirect(Math.max(segmentSize, required));
+            this.keySegments.add(segment);
+        }
+
+        int offset = segment.position();
+        segment.putInt(key.length());
+        for (int index = 0; index < key.length(); index++)
+        {
+            segment.putChar(key.charAt(index));
+        }
+
+        long segmentIndex = this.keySegments.size() - 1;
+        return ((segmentIndex << 32) | offset) + 1;
+    }
+
+    /**
+     * Compare stored key with key.
+     *
+     * @param keyRef key reference
+     * @param key key
+     * @return true if equals
+     */
+    private boolean keyEquals(long keyRef, String key)
+    {
+        long ref = keyRef - 1;
+        ByteBuffer segment = this.keySegments.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        int length = segment.getInt(offset);
+        if (length != key.length())
+        {
+            return false;
+        }
+
+        int charOffset = offset + 4;
+        for (int index = 0; index < length; index++)
+        {
+            if (segment.getChar(charOffset + index * 2) != key.charAt(index))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Read stored key.
+     *
+     * @param keyRef key reference
+     * @return key
+     */
+    private String readKey(long keyRef)
+    {
+        long ref = keyRef - 1;
+        ByteBuffer segment = this.keySegments.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        int length = segment.getInt(offset);
+        char[] chars = new char[length];
+        for (int index = 0; index < length; index++)
+        {
+            chars[index] = segment.getChar(offset + 4 + index * 2);
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Calculate 64bit hash of key.
+     *
+     * @param key key
+     * @return hash
+     */
+    static long hash(String key)
+    {
+        return HashUtil.hash64(key);
+    }
+
+    /**
+     * Write snapshot file, then clear dirty flags and removed keys.
+     *
+     * @param full true if full snapshot
+     * @throws IOException If write failed
+     */
+    private void writeSnapshot(boolean full) throws IOException
+    {
+        long seq = this.snapshotSeq + 1;
+        File file = snapshotFile(seq, full);
+        File tmpFile = new File(this.directory, file.getName() + ".tmp");
+
+        try (FileOutputStream fileOutput = new FileOutputStream(tmpFile))
+        {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(seq);
+
+            if (full == false)
+            {
+                for (String removedKey : this.removedKeys)
+                {
+                    output.writeByte(TAG_REMOVE);
+                    writeKey(output, removedKey);
+                }
+            }
+
+            if (full)
+            {
+                for (int slot = 0; slot < this.capacity; slot++)
+                {
+                    writeSlot(output, slot);
+                }
+            }
+            else
+            {
+                for (int index = 0; index < this.dirtyCount; index++)
+                {
+                    // Slot not found means the entry was removed after update.
+                    int slot = findSlotByRef(this.dirtyHashes[index], this.dirtyKeyRefs[index]);
+                    if (slot >= 0)
+                    {
+                        writeSlot(output, slot);
+                    }
+                }
+            }
+
+            output.writeByte(TAG_END);
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+
+        if (tmpFile.renameTo(file) == false)
+        {
+            throw new IOException("Snapshot file rename failed. : File=" + file);
+        }
+
+        this.snapshotSeq = seq;
+        clearDirtyFlags();
+        this.removedKeys.clear();
+    }
+
+    /**
+     * Write entry of slot. Empty slot is skipped.
+     *
+     * @param output output
+     * @param slot slot index
+     * @throws IOException If write failed
+     */
+    private void writeSlot(DataOutputStream output, int slot) throws IOException
+    {
+        int position = slot * SLOT_SIZE;
+        long keyWord = this.table.getLong(position + KEY_OFFSET);
+        if (keyWord == 0)
+        {
+            return;
+        }
+
+        output.writeByte(TAG_PUT);
+        writeKey(output, readKey(keyWord & KEY_REF_MASK));
+        output.writeLong(this.table.getLong(position + VALUE_OFFSET));
+    }
+
+    /**
+     * Write key.
+     *
+     * @param output output
+     * @param key key
+     * @throws IOException If write failed
+     */
+    private static void writeKey(DataOutputStream output, String key) throws IOException
+    {
+        output.writeInt(key.length());
+        output.writeChars(key);
+    }
+
+    /**
+     * Read key.
+     *
+     * @param input input
+     * @return key
+     * @throws IOException If read failed
+     */
+    private static String readKey(DataInputStream input) throws IOException
+    {
+        int length = input.readInt();
+        char[] chars = new char[length];
+        for (int index = 0; index < length; index++)
+        {
+            chars[index] = input.readChar();
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Clear dirty flags of recorded dirty slots.
+     */
+    private void clearDirtyFlags()
+    {
+        for (int index = 0; index < this.dirtyCount; index++)
+        {
+            int slot = findSlotByRef(this.dirtyHashes[index], this.dirtyKeyRefs[index]);
+            if (slot >= 0)
+            {
+                int position = slot * SLOT_SIZE + KEY_OFFSET;
+                this.table.putLong(position, this.table.getLong(position) & KEY_REF_MASK);
+            }
+        }
+
+        int usedCount = this.dirtyCount;
+        this.dirtyCount = 0;
+
+        // Arrays grown by restore or burst of updates are released to keep heap small.
+        if (this.dirtyHashes.length > INITIAL_DIRTY_CAPACITY
+                && this.dirtyHashes.length > usedCount * 4)
+        {
+            this.dirtyHashes = new long[INITIAL_DIRTY_CAPACITY];
+            this.dirtyKeyRefs = new long[INITIAL_DIRTY_CAPACITY];
+        }
+    }
+
+    /**
+     * Restore entries from latest full snapshot and following delta snapshots.
+     *
+     * @throws IOException If read failed
+     */
+    private void restore() throws IOException
+    {
+        List<Long> fullSeqs = new ArrayList<>();
+        List<Long> deltaSeqs = new ArrayList<>();
+        listSnapshots(fullSeqs, deltaSeqs);
+        if (fullSeqs.isEmpty())
+        {
+            return;
+        }
+
+        long fullSeq = Collections.max(fullSeqs);
+        readSnapshot(snapshotFile(fullSeq, true));
+        this.snapshotSeq = fullSeq;
+
+        Collections.sort(deltaSeqs);
+        for (long deltaSeq : deltaSeqs)
+        {
+            if (deltaSeq > fullSeq)
+            {
+                readSnapshot(snapshotFile(deltaSeq, false));
+                this.snapshotSeq = deltaSeq;
+                this.deltaCount++;
+            }
+        }
+
+        clearDirtyFlags();
+        this.removedKeys.clear();
+    }
+
+    /**
+     * Read snapshot file and apply entries.
+     *
+     * @param file snapshot file
+     * @throws IOException If read failed
+     */
+    private void readSnapshot(File file) throws IOException
+    {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file))))
+        {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION)
+            {
+                throw new IOException("Unsupported snapshot file. : File=" + file);
+            }
+            input.readLong();
+
+            byte tag = input.readByte();
+            while (tag != TAG_END)
+            {
+                if (tag == TAG_PUT)
+                {
+                    String key = readKey(input);
+                    setValue(findOrInsertSlot(key), input.readLong());
+                }
+                else if (tag == TAG_REMOVE)
+                {
+                    remove(readKey(input));
+                }
+                else
+                {
+                    throw new IOException("Snapshot file is broken. : File=" + file);
+                }
+
+                tag = input.readByte();
+            }
+        }
+        catch (EOFException ex)
+        {
+            throw new IOException("Snapshot file is truncated. : File=" + file, ex);
+        }
+    }
+
+    /**
+     * List sequences of snapshot files in directory.
+     *
+     * @param fullSeqs full snapshot sequences
+     * @param deltaSeqs delta snapshot sequences
+     */
+    private void listSnapshots(List<Long> fullSeqs, List<Long> deltaSeqs)
+    {
+        String[] names = this.directory.list();
+        if (names == null)
+        {
+            return;
+        }
+
+        for (String name : names)
+        {
+            Matcher matcher = SNAPSHOT_PATTERN.matcher(name);
+            if (matcher.matches() == false)
+            {
+                continue;
+            }
+
+            long seq = Long.parseLong(matcher.group(1));
+            if (FULL_SUFFIX.equals(matcher.group(2)))
+            {
+                fullSeqs.add(seq);
+            }
+            else
+            {
+                deltaSeqs.add(seq);
+            }
+        }
+    }
+
+    /**
+     * Delete snapshot files older than sequence.
+     *
+     * @param seq sequence
+     */
+    private void deleteSnapshotsBefore(long seq)
+    {
+        List<Long> fullSeqs = new ArrayList<>();
+        List<Long> deltaSeqs = new ArrayList<>();
+        listSnapshots(fullSeqs, deltaSeqs);
+
+        for (long fullSeq : fullSeqs)
+        {
+            if (fullSeq < seq)
+            {
+                snapshotFile(fullSeq, true).delete();
+            }
+        }
+
+        for (long deltaSeq : deltaSeqs)
+        {
+            if (deltaSeq < seq)
+            {
+                snapshotFile(deltaSeq, false).delete();
+            }
+        }
+    }
+
+    /**
+     * Get snapshot file.
+     *
+     * @param seq sequence
+     * @param full true if full snapshot
+     * @return snapshot file
+     */
+    private File snapshotFile(long seq, boolean full)
+    {
+        String suffix = DELTA_SUFFIX;
+        if (full)
+        {
+            suffix = FULL_SUFFIX;
+        }
+
+        return new File(this.directory, String.format("state-%020d", seq) + suffix);
+    }
+}
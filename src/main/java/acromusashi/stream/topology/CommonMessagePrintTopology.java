@@ -20,8 +20,7 @@ import acromusashi.stream.config.StormConfigGenerator;
 import acromusashi.stream.config.StormConfigUtil;
 import acromusashi.stream.constants.FieldName;
 import acromusashi.stream.entity.MessageEntity;
-import acromusashi.stream.entity.StreamMessage;
-import acromusashi.stream.entity.StreamMessageHeader;
+import acromusashi.stream.serializer.StreamSerializerUtil;
 import backtype.storm.Config;
 import backtype.storm.scheme.StringScheme;
 import backtype.storm.tuple.Fields;
@@ -113,8 +112,7 @@ public class CommonMessagePrintTopology extends BaseTopology
                 "KestrelJsonSpout", new Fields(FieldName.MESSAGE_KEY));
 
         // Regist Serialize Setting.
-        getConfig().registerSerialization(StreamMessage.class);
-        getConfig().registerSerialization(StreamMessageHeader.class);
+        StreamSerializerUtil.register(getConfig());
         getConfig().registerSerialization(MessageEntity.class);
     }
 }
@@ -0,0 +1,98 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.trace;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * キー情報のハッシュ値を保持する追記専用のlong配列クラス<br>
+ * 複数のKeyHistoryから共有され、各KeyHistoryは自身の使用数までの範囲のみ参照する。<br>
+ * いずれの共有先も追加していない位置への追加は配列に直接書き込み、
+ * 既に他の共有先が追加済みの位置への追加は使用数分を複製した新しい配列に書き込む。
+ *
+ * @author kimura
+ */
+final class KeyHashBuffer
+{
+    /** 配列の初期サイズ */
+    private static final int    INITIAL_CAPACITY = 8;
+
+    /** ハッシュ値配列 */
+    private final long[]        hashes;
+
+    /** 共有先のいずれかが書き込み済みの要素数 */
+    private final AtomicInteger written;
+
+    /**
+     * 初期サイズの空配列でインスタンスを生成する。
+     */
+    KeyHashBuffer()
+    {
+        this(new long[INITIAL_CAPACITY], 0);
+    }
+
+    /**
+     * ハッシュ値配列と書き込み済み要素数を指定してインスタンスを生成する。
+     *
+     * @param hashes ハッシュ値配列
+     * @param written 書き込み済み要素数
+     */
+    private KeyHashBuffer(long[] hashes, int written)
+    {
+        this.hashes = hashes;
+        this.written = new AtomicInteger(written);
+    }
+
+    /**
+     * 指定位置にハッシュ値を追加する。
+     *
+     * @param size 追加元KeyHistoryの使用数。追加位置となる。
+     * @param hash ハッシュ値
+     * @return 追加後に追加元KeyHistoryが参照する配列
+     */
+    KeyHashBuffer append(int size, long hash)
+    {
+        if (size < this.hashes.length && this.written.compareAndSet(size, size + 1))
+        {
+            this.hashes[size] = hash;
+            return this;
+        }
+
+        long[] copied = Arrays.copyOf(this.hashes, Math.max(size * 2, INITIAL_CAPACITY));
+        copied[size] = hash;
+        return new KeyHashBuffer(copied, size + 1);
+    }
+
+    /**
+     * 指定位置のハッシュ値を取得する。
+     *
+     * @param index 位置
+     * @return ハッシュ値
+     */
+    long get(int index)
+    {
+        return this.hashes[index];
+    }
+
+    /**
+     * 先頭から指定数分のハッシュ値を複製して返す。
+     *
+     * @param size 複製数
+     * @return ハッシュ値配列
+     */
+    long[] copyOf(int size)
+    {
+        return Arrays.copyOf(this.hashes, size);
+    }
+}
@@ -12,28 +12,65 @@
 */
 package acromusashi.stream.trace;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
-import org.apache.commons.lang.SerializationUtils;
-
 /**
- * キー情報の履歴を保持するValueObjectクラス
+ * キー情報の履歴を保持するValueObjectクラス<br>
+ * キー情報は不変のノードを連結したリストとして保持し、コピー時はノードを共有する。<br>
+ * そのため、コピー生成とコピー後のキー追加はいずれも履歴長に依存しない。<br>
+ * キー追加時の重複確認は直前に追加したキーとのみ行う。
+ * 連続しない位置で同じキーを再度通過した場合(A→B→A)は、経路として両方を保持する。<br>
+ * <br>
+ * 保持方式は{@link KeyHistoryMode}で指定する。
+ * <ul>
+ * <li>FULL : 全てのキー情報を保持する。（デフォルト）</li>
+ * <li>BOUNDED : 直近の最大保持件数分のキー情報のみ保持する。</li>
+ * <li>HASHED : キー情報を64bitハッシュ値としてlong配列に保持する。配列はコピー間で共有し、
+ * 共有先が追加していない位置には複製せずに追記する。</li>
+ * </ul>
  *
  * @author kimura
  */
 public class KeyHistory implements Serializable
 {
     /** serialVersionUID */
-    private static final long   serialVersionUID = -7488577569585048930L;
+    private static final long        serialVersionUID = -7488577569585048930L;
 
     /** キー情報を出力する際のフォーマット */
-    private static final String TOSTRING_FORMAT  = "KeyHistory={0}";
+    private static final String      TOSTRING_FORMAT  = "KeyHistory={0}";
+
+    /** ハッシュ値を出力する際のフォーマット */
+    private static final String      HASH_FORMAT      = "#%016x";
+
+    /** FNV-1aハッシュの初期値 */
+    private static final long        FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /** FNV-1aハッシュの乗数 */
+    private static final long        FNV_PRIME        = 0x100000001b3L;
+
+    /** 保持方式 */
+    private KeyHistoryMode           mode             = KeyHistoryMode.FULL;
+
+    /** 最大保持件数。BOUNDEDの場合のみ使用する。 */
+    private int                      maxSize          = 0;
+
+    /** 蓄積キー情報履歴の末尾ノード。親ノードは他のKeyHistoryと共有される。*/
+    private transient KeyHistoryNode tail;
+
+    /** 蓄積キー情報ハッシュ値。HASHEDの場合のみ使用し、他のKeyHistoryと共有される。 */
+    private transient KeyHashBuffer  hashBuffer;
 
-    /** 蓄積キー情報履歴。同様の値を重複して保持しないためにSetとして定義。*/
-    protected Set<String>       keyHistory       = new LinkedHashSet<>();
+    /** 保持しているキー情報数。FULL/BOUNDEDは末尾ノードから辿れるノード数、HASHEDはハッシュ値配列の使用数。 */
+    private transient int            size;
 
     /**
      * パラメータを指定せずにインスタンスを作成する。
@@ -43,35 +80,358 @@ public class KeyHistory implements Serializable
         // Do nothing.
     }
 
+    /**
+     * 保持方式と最大保持件数を指定してインスタンスを作成する。
+     *
+     * @param mode 保持方式
+     * @param maxSize 最大保持件数。BOUNDEDの場合のみ使用する。
+     */
+    public KeyHistory(KeyHistoryMode mode, int maxSize)
+    {
+        if (mode == KeyHistoryMode.BOUNDED && maxSize <= 0)
+        {
+            String messageFormat = "MaxSize must be positive in BOUNDED mode. : MaxSize={0}";
+            throw new IllegalArgumentException(MessageFormat.format(messageFormat, maxSize));
+        }
+
+        this.mode = mode;
+        this.maxSize = maxSize;
+    }
+
     /**
      * キー情報履歴に指定されたキーを追加する。<br>
-     * ただし、既に同様の値がキー情報履歴に保持されている場合は追加を行わない。
+     * ただし、直前に追加したキーと同様の値の場合は追加を行わない。
      *
      * @param messageKey キー情報
      */
     public void addKey(String messageKey)
     {
-        this.keyHistory.add(messageKey);
+        if (this.mode == KeyHistoryMode.HASHED)
+        {
+            addKeyHash(hashKey(messageKey));
+            return;
+        }
+
+        if (this.tail != null && this.tail.getKey().equals(messageKey))
+        {
+            return;
+        }
+
+        append(new KeyHistoryNode(messageKey, this.tail));
+    }
+
+    /**
+     * キー情報履歴に指定されたキーのハッシュ値を追加する。<br>
+     * HASHED以外の保持方式の場合、または直前に追加したハッシュ値と同じ場合は何もしない。
+     *
+     * @param keyHash キー情報のハッシュ値
+     */
+    public void addKeyHash(long keyHash)
+    {
+        if (this.mode != KeyHistoryMode.HASHED)
+        {
+            return;
+        }
+
+        if (this.size > 0 && this.hashBuffer.get(this.size - 1) == keyHash)
+        {
+            return;
+        }
+
+        if (this.hashBuffer == null)
+        {
+            this.hashBuffer = new KeyHashBuffer();
+        }
+
+        this.hashBuffer = this.hashBuffer.append(this.size, keyHash);
+        this.size++;
+    }
+
+    /**
+     * キー情報履歴に指定されたキーが含まれるかを判定する。<br>
+     * 履歴全体を走査するため、処理時間は履歴長に比例する。<br>
+     * HASHEDの場合はハッシュ値で判定するため、衝突時は誤ってtrueを返す場合がある。
+     *
+     * @param messageKey キー情報
+     * @return 含まれる場合true、含まれない場合false
+     */
+    public boolean contains(String messageKey)
+    {
+        if (this.mode == KeyHistoryMode.HASHED)
+        {
+            return containsHash(hashKey(messageKey));
+        }
+
+        int visibleSize = size();
+        KeyHistoryNode node = this.tail;
+        for (int index = 0; index < visibleSize; index++)
+        {
+            if (node.getKey().equals(messageKey))
+            {
+                return true;
+            }
+
+            node = node.getParent();
+        }
+
+        return false;
+    }
+
+    /**
+     * 保持しているキー情報履歴を追加順に返す。<br>
+     * HASHEDの場合はハッシュ値の16進表現を返す。
+     *
+     * @return キー情報履歴（変更不可）
+     */
+    public List<String> getKeys()
+    {
+        int visibleSize = size();
+        String[] keys = new String[visibleSize];
+
+        if (this.mode == KeyHistoryMode.HASHED)
+        {
+            for (int index = 0; index < visibleSize; index++)
+            {
+                keys[index] = String.format(HASH_FORMAT, this.hashBuffer.get(index));
+            }
+        }
+        else
+        {
+            KeyHistoryNode node = this.tail;
+            for (int index = visibleSize - 1; index >= 0; index--)
+            {
+                keys[index] = node.getKey();
+                node = node.getParent();
+            }
+        }
+
+        List<String> result = Collections.unmodifiableList(Arrays.asList(keys));
+        return result;
+    }
+
+    /**
+     * 保持しているキー情報のハッシュ値を追加順に返す。<br>
+     * HASHED以外の場合は保持しているキー情報からハッシュ値を算出して返す。
+     *
+     * @return キー情報のハッシュ値配列
+     */
+    public long[] getKeyHashes()
+    {
+        int visibleSize = size();
+
+        if (this.mode == KeyHistoryMode.HASHED)
+        {
+            return visibleSize == 0 ? new long[0] : this.hashBuffer.copyOf(visibleSize);
+        }
+
+        long[] result = new long[visibleSize];
+        KeyHistoryNode node = this.tail;
+        for (int index = visibleSize - 1; index >= 0; index--)
+        {
+            result[index] = hashKey(node.getKey());
+            node = node.getParent();
+        }
+
+        return result;
     }
 
     /**
-     * 対象KeyHistoryInfoのディープコピーを生成し、返す。
+     * 保持しているキー情報数を返す。
      *
-     * @return 対象KeyHistoryInfoのディープコピー
+     * @return キー情報数
+     */
+    public int size()
+    {
+        if (this.mode == KeyHistoryMode.BOUNDED)
+        {
+            return Math.min(this.size, this.maxSize);
+        }
+
+        return this.size;
+    }
+
+    /**
+     * @return the mode
+     */
+    public KeyHistoryMode getMode()
+    {
+        return this.mode;
+    }
+
+    /**
+     * @return the maxSize
+     */
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    /**
+     * 対象KeyHistoryInfoのコピーを生成し、返す。<br>
+     * 履歴のノード、ハッシュ値配列は共有し、コピー後の追加は互いに影響しない。
+     *
+     * @return 対象KeyHistoryInfoのコピー
      */
     public KeyHistory createDeepCopy()
     {
-        KeyHistory result = (KeyHistory) SerializationUtils.clone(this);
+        KeyHistory result = new KeyHistory();
+        result.mode = this.mode;
+        result.maxSize = this.maxSize;
+        result.tail = this.tail;
+        result.hashBuffer = this.hashBuffer;
+        result.size = this.size;
         return result;
     }
 
+    /**
+     * キー情報を64bitハッシュ値(FNV-1a)に変換する。
+     *
+     * @param messageKey キー情報
+     * @return ハッシュ値
+     */
+    public static long hashKey(String messageKey)
+    {
+        long hash = FNV_OFFSET_BASIS;
+        int length = messageKey.length();
+        for (int index = 0; index < length; index++)
+        {
+            hash ^= messageKey.charAt(index);
+            hash *= FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * キー情報履歴を重複の無いSetとして返す。
+     *
+     * @return キー情報履歴のスナップショット
+     * @deprecated 旧来のkeyHistoryフィールドの代替。キー情報履歴は{@link #getKeys()}で取得すること。
+     */
+    @Deprecated
+    protected Set<String> getKeyHistory()
+    {
+        return new LinkedHashSet<>(getKeys());
+    }
+
+    /**
+     * キー情報履歴に指定されたハッシュ値が含まれるかを判定する。
+     *
+     * @param keyHash ハッシュ値
+     * @return 含まれる場合true、含まれない場合false
+     */
+    private boolean containsHash(long keyHash)
+    {
+        for (int index = 0; index < this.size; index++)
+        {
+            if (this.hashBuffer.get(index) == keyHash)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 末尾にノードを追加する。<br>
+     * BOUNDEDの場合、保持ノード数が最大保持件数の2倍に達した時点で直近分のみのノードに詰め直す。
+     *
+     * @param node 追加ノード
+     */
+    private void append(KeyHistoryNode node)
+    {
+        this.tail = node;
+        this.size++;
+
+        if (this.mode == KeyHistoryMode.BOUNDED && this.size >= this.maxSize * 2)
+        {
+            List<String> keys = getKeys();
+            KeyHistoryNode compacted = null;
+            for (String key : keys)
+            {
+                compacted = new KeyHistoryNode(key, compacted);
+            }
+
+            this.tail = compacted;
+            this.size = keys.size();
+        }
+    }
+
+    /**
+     * シリアライズ時にキー情報履歴を追加順に出力する。
+     *
+     * @param out 出力ストリーム
+     * @throws IOException 出力失敗時
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        out.defaultWriteObject();
+
+        if (this.mode == KeyHistoryMode.HASHED)
+        {
+            long[] hashes = getKeyHashes();
+            out.writeInt(hashes.length);
+            for (long hash : hashes)
+            {
+                out.writeLong(hash);
+            }
+            return;
+        }
+
+        List<String> keys = getKeys();
+        out.writeInt(keys.size());
+        for (String key : keys)
+        {
+            out.writeUTF(key);
+        }
+    }
+
+    /**
+     * デシリアライズ時にキー情報履歴を復元する。
+     *
+     * @param in 入力ストリーム
+     * @throws IOException 入力失敗時
+     * @throws ClassNotFoundException クラス解決失敗時
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+
+        if (this.mode == null)
+        {
+            this.mode = KeyHistoryMode.FULL;
+        }
+
+        int keyNum = in.readInt();
+        for (int index = 0; index < keyNum; index++)
+        {
+            // 出力時点で重複は除かれているため、重複確認を行わずに連結する。
+            if (this.mode == KeyHistoryMode.HASHED)
+            {
+                if (this.hashBuffer == null)
+                {
+                    this.hashBuffer = new KeyHashBuffer();
+                }
+
+                this.hashBuffer = this.hashBuffer.append(index, in.readLong());
+            }
+            else
+            {
+                this.tail = new KeyHistoryNode(in.readUTF(), this.tail);
+            }
+        }
+
+        this.size = keyNum;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public String toString()
     {
-        String keyHistoryStr = this.keyHistory.toString();
+        String keyHistoryStr = getKeys().toString();
         String result = MessageFormat.format(TOSTRING_FORMAT, keyHistoryStr);
         return result;
     }
@@ -0,0 +1,149 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.trace;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Storm設定で指定された保持方式のKeyHistoryを生成するクラス<br>
+ * <br>
+ * yamlファイルから読み込む設定値
+ * <ul>
+ * <li>keyhistory.mode : キー情報履歴の保持方式(FULL|BOUNDED|HASHED)(デフォルト値:FULL)</li>
+ * <li>keyhistory.maxsize : BOUNDEDの場合の最大保持件数(デフォルト値:16)</li>
+ * <li>keyhistory.trace : キー情報履歴を伝播させるか(デフォルト値:true)。falseの場合KeyHistoryを生成しない。</li>
+ * </ul>
+ *
+ * @author kimura
+ */
+public class KeyHistoryFactory implements Serializable
+{
+    /** serialVersionUID */
+    private static final long  serialVersionUID = 4417216069432337164L;
+
+    /** 保持方式の設定キー */
+    public static final String MODE_KEY         = "keyhistory.mode";
+
+    /** 最大保持件数の設定キー */
+    public static final String MAXSIZE_KEY      = "keyhistory.maxsize";
+
+    /** 履歴伝播有無の設定キー */
+    public static final String TRACE_KEY        = "keyhistory.trace";
+
+    /** 最大保持件数のデフォルト値 */
+    public static final int    DEFAULT_MAXSIZE  = 16;
+
+    /** 保持方式 */
+    private KeyHistoryMode     mode             = KeyHistoryMode.FULL;
+
+    /** 最大保持件数 */
+    private int                maxSize          = DEFAULT_MAXSIZE;
+
+    /** 履歴伝播有無 */
+    private boolean            traceEnabled     = true;
+
+    /**
+     * パラメータを指定せずにインスタンスを生成する。保持方式はFULLとなる。
+     */
+    public KeyHistoryFactory()
+    {
+        // Do nothing.
+    }
+
+    /**
+     * 保持方式と最大保持件数を指定してインスタンスを生成する。
+     *
+     * @param mode 保持方式
+     * @param maxSize 最大保持件数
+     */
+    public KeyHistoryFactory(KeyHistoryMode mode, int maxSize)
+    {
+        this.mode = mode;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Storm設定からインスタンスを生成する。設定が存在しない場合はデフォルト値を用いる。
+     *
+     * @param stormConf Storm設定
+     * @return KeyHistory生成クラス
+     */
+    @SuppressWarnings("rawtypes")
+    public static KeyHistoryFactory fromStormConf(Map stormConf)
+    {
+        KeyHistoryMode mode = KeyHistoryMode.FULL;
+        int maxSize = DEFAULT_MAXSIZE;
+
+        Object modeObj = stormConf.get(MODE_KEY);
+        if (modeObj != null)
+        {
+            mode = KeyHistoryMode.valueOf(modeObj.toString().toUpperCase());
+        }
+
+        Object maxSizeObj = stormConf.get(MAXSIZE_KEY);
+        if (maxSizeObj != null)
+        {
+            maxSize = Integer.parseInt(maxSizeObj.toString());
+        }
+
+        KeyHistoryFactory result = new KeyHistoryFactory(mode, maxSize);
+
+        Object traceObj = stormConf.get(TRACE_KEY);
+        if (traceObj != null)
+        {
+            result.traceEnabled = Boolean.parseBoolean(traceObj.toString());
+        }
+
+        return result;
+    }
+
+    /**
+     * 設定された保持方式で空のKeyHistoryを生成する。
+     *
+     * @return KeyHistory
+     */
+    public KeyHistory create()
+    {
+        if (this.mode == KeyHistoryMode.FULL)
+        {
+            return new KeyHistory();
+        }
+
+        return new KeyHistory(this.mode, this.maxSize);
+    }
+
+    /**
+     * @return the mode
+     */
+    public KeyHistoryMode getMode()
+    {
+        return this.mode;
+    }
+
+    /**
+     * @return the maxSize
+     */
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the traceEnabled
+     */
+    public boolean isTraceEnabled()
+    {
+        return this.traceEnabled;
+    }
+}
@@ -0,0 +1,30 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.trace;
+
+/**
+ * キー情報履歴の保持方式を示す列挙型
+ *
+ * @author kimura
+ */
+public enum KeyHistoryMode
+{
+    /** 全てのキー情報を文字列で保持する。 */
+    FULL,
+
+    /** 直近の指定件数分のキー情報のみ文字列で保持する。 */
+    BOUNDED,
+
+    /** キー情報を64bitハッシュ値に変換して保持する。 */
+    HASHED;
+}
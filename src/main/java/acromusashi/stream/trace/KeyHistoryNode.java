@@ -0,0 +1,56 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.trace;
+
+/**
+ * キー情報履歴を構成する不変ノードクラス<br>
+ * 生成後に変更されないため、複数のKeyHistoryから共有して参照することができる。
+ *
+ * @author kimura
+ */
+final class KeyHistoryNode
+{
+    /** キー情報 */
+    private final String         key;
+
+    /** 直前に追加されたキー情報のノード。先頭の場合はnull。 */
+    private final KeyHistoryNode parent;
+
+    /**
+     * キー情報、親ノードを指定してインスタンスを生成する。
+     *
+     * @param key キー情報
+     * @param parent 親ノード
+     */
+    KeyHistoryNode(String key, KeyHistoryNode parent)
+    {
+        this.key = key;
+        this.parent = parent;
+    }
+
+    /**
+     * @return the key
+     */
+    String getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * @return the parent
+     */
+    KeyHistoryNode getParent()
+    {
+        return this.parent;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.util;
+
+/**
+ * 文字列の64bitハッシュ値を算出するユーティリティクラス
+ * 
+ * @author kimura
+ */
+public class HashUtil
+{
+    /** FNV-1a 64bit オフセット基底 */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /** FNV-1a 64bit 素数 */
+    private static final long FNV_PRIME        = 0x100000001b3L;
+
+    /**
+     * インスタンス化を防止するためのコンストラクタ
+     */
+    private HashUtil()
+    {}
+
+    /**
+     * 文字列の64bitハッシュ値を算出する。<br>
+     * FNV-1aで算出した値を、下位ビットも分散するようにMurmurHash3のfmix64で撹拌する。
+     * 
+     * @param value 対象文字列
+     * @return ハッシュ値
+     */
+    public static long hash64(String value)
+    {
+        long hash = FNV_OFFSET_BASIS;
+        int length = value.length();
+        for (int index = 0; index < length; index++)
+        {
+            hash ^= value.charAt(index);
+            hash *= FNV_PRIME;
+        }
+
+        return mix64(hash);
+    }
+
+    /**
+     * 64bit値をMurmurHash3のfmix64で撹拌する。
+     * 
+     * @param value 対象値
+     * @return 撹拌後の値
+     */
+    public static long mix64(long value)
+    {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,357 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import acromusashi.stream.entity.StreamMessage;
+import backtype.storm.Constants;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
+
+/**
+ * AmAsyncBoltクラスのテストクラス
+ *
+ * @author kimura
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AmAsyncBoltTest
+{
+    /** テスト対象 */
+    private RecordingAsyncBolt target;
+
+    /** テスト用のOutputCollector */
+    @Mock
+    private OutputCollector    mockCollector;
+
+    /** テスト用のStormConfigMap */
+    @SuppressWarnings("rawtypes")
+    @Mock
+    private Map                mockConfMap;
+
+    /** テスト用のTopologyContext */
+    @Mock
+    private TopologyContext    mockContext;
+
+    /**
+     * 初期化メソッド
+     */
+    @Before
+    public void setUp()
+    {
+        Mockito.when(this.mockContext.getThisComponentId()).thenReturn("ComponentId");
+        this.target = new RecordingAsyncBolt();
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+    }
+
+    /**
+     * 完了通知後、Executorスレッド上でEmitとAckが行われることを確認する。
+     *
+     * @target {@link AmAsyncBolt#execute(Tuple)}
+     * @test 完了通知時点ではAckされず、TickTuple受信時にEmit、Ackされること
+     *    condition:: 別スレッドから完了通知後、TickTupleを受信
+     *    result:: 完了通知時点ではAckされず、TickTuple受信時にEmit、Ackされること
+     */
+    @Test
+    public void testExecute_完了通知後Ack() throws Exception
+    {
+        // 準備
+        Tuple first = createTuple("Message1");
+        this.target.execute(first);
+        final AmAsyncResponse response = this.target.responses.get(0);
+
+        // 実施
+        Thread thread = new Thread() {
+            @Override
+            public void run()
+            {
+                response.emit(new StreamMessage(), "EmitKey");
+                response.complete();
+            }
+        };
+        thread.start();
+        thread.join();
+
+        // 検証
+        Mockito.verify(this.mockCollector, Mockito.never()).ack(Matchers.any(Tuple.class));
+        assertThat(this.target.getInFlightCount(), equalTo(1));
+
+        // 実施
+        this.target.execute(createTickTuple());
+
+        // 検証
+        Mockito.verify(this.mockCollector).emit(Matchers.eq(first), Matchers.anyList());
+        Mockito.verify(this.mockCollector).ack(first);
+        assertThat(this.target.getInFlightCount(), equalTo(0));
+    }
+
+    /**
+     * 失敗通知後、TupleがFailされることを確認する。
+     *
+     * @target {@link AmAsyncBolt#execute(Tuple)}
+     * @test TupleがFailされ、Emitされないこと
+     *    condition:: Emit対象追加後に失敗通知
+     *    result:: TupleがFailされ、Emitされないこと
+     */
+    @Test
+    public void testExecute_失敗通知後Fail()
+    {
+        // 準備
+        Tuple first = createTuple("Message1");
+        this.target.execute(first);
+        AmAsyncResponse response = this.target.responses.get(0);
+        response.emit(new StreamMessage(), "EmitKey");
+
+        // 実施
+        response.fail(new Exception("Lookup failed."));
+        this.target.execute(createTickTuple());
+
+        // 検証
+        Mockito.verify(this.mockCollector).fail(first);
+        Mockito.verify(this.mockCollector, Mockito.never()).emit(Matchers.any(Tuple.class),
+                Matchers.anyList());
+        Mockito.verify(this.mockCollector, Mockito.never()).ack(Matchers.any(Tuple.class));
+    }
+
+    /**
+     * 完了通知後、指定したMessageKey、GroupingKey、StreamIdでEmitされることを確認する。
+     *
+     * @target {@link AmAsyncBolt#execute(Tuple)}
+     * @test 指定したGroupingKey、StreamIdでEmitされ、KeyHistoryに指定したMessageKeyが追加されること
+     *    condition:: MessageKey、GroupingKey、StreamIdを指定してEmit対象を追加後、完了通知
+     *    result:: 指定したGroupingKey、StreamIdでEmitされ、KeyHistoryに指定したMessageKeyが追加されること
+     */
+    @Test
+    public void testExecute_Key指定Emit()
+    {
+        // 準備
+        Tuple first = createTuple("Message1");
+        this.target.execute(first);
+        AmAsyncResponse response = this.target.responses.get(0);
+        StreamMessage message = new StreamMessage();
+
+        // 実施
+        response.emitWithGroupingStream(message, "EmitKey", "GroupingKey", "StreamId");
+        response.complete();
+        this.target.execute(createTickTuple());
+
+        // 検証
+        Mockito.verify(this.mockCollector).emit("StreamId", first,
+                new Values("GroupingKey", message));
+        Mockito.verify(this.mockCollector).ack(first);
+        assertThat(message.getHeader().getHistory().toString(),
+                equalTo("KeyHistory=[EmitKey]"));
+    }
+
+    /**
+     * 処理中件数が上限に達した場合に完了を待ち合わせることを確認する。
+     *
+     * @target {@link AmAsyncBolt#execute(Tuple)}
+     * @test 先行メッセージの完了後に後続メッセージの処理が開始されること
+     *    condition:: 最大処理中件数1で、処理中に次のTupleを受信
+     *    result:: 先行メッセージの完了後に後続メッセージの処理が開始されること
+     */
+    @Test
+    public void testExecute_処理中件数上限() throws Exception
+    {
+        // 準備
+        this.target.setMaxInFlight(1);
+        Tuple first = createTuple("Message1");
+        Tuple second = createTuple("Message2");
+        this.target.execute(first);
+        final AmAsyncResponse response = this.target.responses.get(0);
+
+        Thread thread = new Thread() {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException ex)
+                {
+                    return;
+                }
+                response.complete();
+            }
+        };
+        thread.start();
+
+        // 実施
+        this.target.execute(second);
+        thread.join();
+
+        // 検証
+        Mockito.verify(this.mockCollector).ack(first);
+        assertThat(this.target.responses.size(), equalTo(2));
+        assertThat(this.target.getInFlightCount(), equalTo(1));
+    }
+
+    /**
+     * 応答タイムアウト経過後に未完了のTupleがFailされることを確認する。
+     *
+     * @target {@link AmAsyncBolt#execute(Tuple)}
+     * @test タイムアウト経過後のTickTuple受信時にFailされ、以降の完了通知は無視されること
+     *    condition:: 応答タイムアウト1000msで1件受信後、タイムアウト経過前と経過後にTickTupleを受信し、その後完了通知
+     *    result:: タイムアウト経過後のTickTuple受信時にFailされ、以降の完了通知は無視されること
+     */
+    @Test
+    public void testExecute_応答タイムアウト()
+    {
+        // 準備
+        this.target.setResponseTimeoutMs(1000);
+        this.target.currentTime = 10000;
+        Tuple first = createTuple("Message1");
+        this.target.execute(first);
+        AmAsyncResponse response = this.target.responses.get(0);
+
+        // 実施
+        this.target.currentTime = 10999;
+        this.target.execute(createTickTuple());
+
+        // 検証
+        Mockito.verify(this.mockCollector, Mockito.never()).fail(Matchers.any(Tuple.class));
+
+        // 実施
+        this.target.currentTime = 11000;
+        this.target.execute(createTickTuple());
+        response.emit(new StreamMessage(), "EmitKey");
+        response.complete();
+        this.target.execute(createTickTuple());
+
+        // 検証
+        Mockito.verify(this.mockCollector).fail(first);
+        Mockito.verify(this.mockCollector, Mockito.never()).ack(Matchers.any(Tuple.class));
+        Mockito.verify(this.mockCollector, Mockito.never()).emit(Matchers.any(Tuple.class),
+                Matchers.anyList());
+        assertThat(this.target.getInFlightCount(), equalTo(0));
+    }
+
+    /**
+     * 処理中件数上限で待ち合わせ中に応答タイムアウトした場合に待ち合わせが終了することを確認する。
+     *
+     * @target {@link AmAsyncBolt#execute(Tuple)}
+     * @test 先行メッセージがFailされ、後続メッセージの処理が開始されること
+     *    condition:: 最大処理中件数1、応答タイムアウト1000msで、完了しない先行メッセージのタイムアウト経過後に次のTupleを受信
+     *    result:: 先行メッセージがFailされ、後続メッセージの処理が開始されること
+     */
+    @Test
+    public void testExecute_処理中件数上限タイムアウト()
+    {
+        // 準備
+        this.target.setMaxInFlight(1);
+        this.target.setResponseTimeoutMs(1000);
+        this.target.currentTime = 10000;
+        Tuple first = createTuple("Message1");
+        Tuple second = createTuple("Message2");
+        this.target.execute(first);
+
+        // 実施
+        this.target.currentTime = 11000;
+        this.target.execute(second);
+
+        // 検証
+        Mockito.verify(this.mockCollector).fail(first);
+        assertThat(this.target.responses.size(), equalTo(2));
+        assertThat(this.target.getInFlightCount(), equalTo(1));
+    }
+
+    /**
+     * StreamMessageを保持するTupleを生成する。
+     *
+     * @param body メッセージボディ
+     * @return Tuple
+     */
+    private Tuple createTuple(String body)
+    {
+        StreamMessage message = new StreamMessage();
+        message.setBody(body);
+
+        Tuple mockTuple = Mockito.mock(Tuple.class);
+        Mockito.doReturn("messageKey").when(mockTuple).getValueByField("messageKey");
+        Mockito.doReturn(message).when(mockTuple).getValueByField("messageValue");
+        Mockito.doReturn(new Fields("messageKey", "messageValue")).when(mockTuple).getFields();
+        Mockito.doReturn(true).when(mockTuple).contains("messageValue");
+        return mockTuple;
+    }
+
+    /**
+     * TickTupleを生成する。
+     *
+     * @return TickTuple
+     */
+    private Tuple createTickTuple()
+    {
+        Tuple tick = Mockito.mock(Tuple.class);
+        Mockito.doReturn(Constants.SYSTEM_COMPONENT_ID).when(tick).getSourceComponent();
+        Mockito.doReturn(Constants.SYSTEM_TICK_STREAM_ID).when(tick).getSourceStreamId();
+        return tick;
+    }
+
+    /**
+     * 受信したレスポンスを記録するテスト用Bolt
+     */
+    private static class RecordingAsyncBolt extends AmAsyncBolt
+    {
+        /** serialVersionUID */
+        private static final long     serialVersionUID = 1L;
+
+        /** 受信したレスポンス */
+        List<AmAsyncResponse>         responses        = new ArrayList<>();
+
+        /** 現在時刻 */
+        long                          currentTime      = 0;
+
+        /**
+         * パラメータを指定せずにインスタンスを生成する。
+         */
+        RecordingAsyncBolt()
+        {}
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public void onPrepare(Map stormConf, TopologyContext context)
+        {
+            // Do nothing.
+        }
+
+        @Override
+        public void onExecuteAsync(StreamMessage input, AmAsyncResponse response)
+        {
+            this.responses.add(response);
+        }
+
+        @Override
+        protected long getCurrentTime()
+        {
+            return this.currentTime;
+        }
+    }
+}
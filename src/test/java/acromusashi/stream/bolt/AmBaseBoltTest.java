@@ -19,10 +19,12 @@ import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.spy;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +38,8 @@ import org.mockito.internal.util.reflection.Whitebox;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import acromusashi.stream.entity.StreamMessage;
+import backtype.storm.generated.GlobalStreamId;
+import backtype.storm.generated.Grouping;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
@@ -181,6 +185,54 @@ public class AmBaseBoltTest
                 equalTo("KeyHistory=[KeyHistory]"));
     }
 
+    /**
+     * 送信元Streamが既知のTuple受信時、フィールド位置を用いてメッセージを抽出することを確認する。
+     *
+     * @target {@link AmBaseBolt#execute(Tuple)}
+     * @test フィールド名による値取得を行わずにメッセージを抽出すること
+     *    condition:: prepare時に送信元Streamのフィールドが取得可能なTuple受信時
+     *    result:: フィールド名による値取得を行わずにメッセージを抽出すること
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void testExecute_変換プラン使用()
+    {
+        // 準備
+        Mockito.when(this.mockContext.getThisComponentId()).thenReturn("ComponentId");
+        Mockito.when(this.mockContext.getThisTaskIndex()).thenReturn(0);
+        Map<GlobalStreamId, Grouping> sources = new HashMap<>();
+        sources.put(new GlobalStreamId("SourceSpout", "default"), new Grouping());
+        Mockito.when(this.mockContext.getThisSources()).thenReturn(sources);
+        Mockito.when(this.mockContext.getComponentOutputFields("SourceSpout", "default")).thenReturn(
+                new Fields("messageKey", "messageValue", "Extra"));
+
+        AmBaseThroughBolt targetBolt = new AmBaseThroughBolt();
+        targetBolt.setFields(Lists.newArrayList("Param1", "Extra"));
+        targetBolt.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+
+        StreamMessage message = new StreamMessage();
+        message.addField("Param1", "Param1");
+
+        Tuple mockTuple = Mockito.mock(Tuple.class);
+        Mockito.doReturn("SourceSpout").when(mockTuple).getSourceComponent();
+        Mockito.doReturn("default").when(mockTuple).getSourceStreamId();
+        Mockito.doReturn("messageKey").when(mockTuple).getValue(0);
+        Mockito.doReturn(message).when(mockTuple).getValue(1);
+        Mockito.doReturn("ExtraValue").when(mockTuple).getValue(2);
+
+        // 実施
+        targetBolt.execute(mockTuple);
+
+        // 検証
+        ArgumentCaptor<List> argument = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(this.mockCollector).emit(any(Tuple.class), argument.capture());
+        Mockito.verify(mockTuple, Mockito.never()).getValueByField(anyString());
+
+        StreamMessage sendMessage = (StreamMessage) argument.getValue().get(1);
+        assertThat(sendMessage.getField("Param1").toString(), equalTo("Param1"));
+        assertThat(sendMessage.getField("Extra").toString(), equalTo("ExtraValue"));
+    }
+
     /**
      * Tuple処理時、onExecuteメソッド実行中に例外が発生した場合、処理が終了することを確認する。
      *
@@ -382,4 +434,46 @@ public class AmBaseBoltTest
         assertThat(sendMessage.getHeader().getHistory().toString(),
                 equalTo("KeyHistory=[MessageKey]"));
     }
+
+    /**
+     * キー履歴伝播無効の状態でメッセージ送信確認を行う。
+     *
+     * @target {@link AmBaseBolt#emit(StreamMessage, Object)}
+     * @test 送信メッセージのKeyHistoryが破棄されていること
+     *    condition:: キー履歴伝播無効、受信メッセージがKeyHistoryを保持した状態でメッセージ送信
+     *    result:: 送信メッセージのKeyHistoryが破棄されていること
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Test
+    public void testEmit_キー履歴伝播無効()
+    {
+        // 準備
+        Mockito.when(this.mockContext.getThisComponentId()).thenReturn("ComponentId");
+        Mockito.when(this.mockContext.getThisTaskIndex()).thenReturn(0);
+
+        AmBaseThroughBolt targetBolt = new AmBaseThroughBolt();
+        targetBolt.setFields(Lists.newArrayList("Param1"));
+        targetBolt.setTraceHistory(false);
+        targetBolt.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+
+        StreamMessage message = new StreamMessage();
+        message.addField("Param1", "Param1");
+        message.getHeader().addHistory("BeforeMessageKey");
+
+        Tuple mockTuple = Mockito.mock(Tuple.class);
+        Mockito.doReturn("messageKey").when(mockTuple).getValueByField("messageKey");
+        Mockito.doReturn(message).when(mockTuple).getValueByField("messageValue");
+        Mockito.doReturn(new Fields("messageKey", "messageValue")).when(mockTuple).getFields();
+        Mockito.doReturn(true).when(mockTuple).contains("messageValue");
+
+        // 実施
+        targetBolt.execute(mockTuple);
+
+        // 検証
+        ArgumentCaptor<List> argument = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(this.mockCollector).emit(eq(mockTuple), argument.capture());
+
+        StreamMessage sendMessage = (StreamMessage) argument.getValue().get(1);
+        assertThat(sendMessage.getHeader().getHistory(), nullValue());
+    }
 }
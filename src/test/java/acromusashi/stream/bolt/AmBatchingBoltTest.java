@@ -0,0 +1,379 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import acromusashi.stream.entity.StreamMessage;
+import backtype.storm.Constants;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+
+/**
+ * AmBatchingBoltクラスのテストクラス
+ *
+ * @author kimura
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AmBatchingBoltTest
+{
+    /** テスト対象 */
+    private RecordingBatchingBolt target;
+
+    /** テスト用のOutputCollector */
+    @Mock
+    private OutputCollector       mockCollector;
+
+    /** テスト用のStormConfigMap */
+    @SuppressWarnings("rawtypes")
+    @Mock
+    private Map                   mockConfMap;
+
+    /** テスト用のTopologyContext */
+    @Mock
+    private TopologyContext       mockContext;
+
+    /**
+     * 初期化メソッド
+     */
+    @Before
+    public void setUp()
+    {
+        Mockito.when(this.mockContext.getThisComponentId()).thenReturn("ComponentId");
+        this.target = new RecordingBatchingBolt();
+        this.target.setMaxBatchCount(3);
+        this.target.setMaxBatchDelayMs(1000);
+    }
+
+    /**
+     * 最大件数に到達した場合にバッチ単位でAckされることを確認する。
+     *
+     * @target {@link AmBatchingBolt#execute(Tuple)}
+     * @test 最大件数到達時にonFlushが呼ばれ、全TupleがAckされること
+     *    condition:: 最大件数3件の設定で3件のTupleを受信
+     *    result:: 最大件数到達時にonFlushが呼ばれ、全TupleがAckされること
+     */
+    @Test
+    public void testExecute_最大件数到達()
+    {
+        // 準備
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+        Tuple first = createTuple("Message1");
+        Tuple second = createTuple("Message2");
+        Tuple third = createTuple("Message3");
+
+        // 実施
+        this.target.execute(first);
+        this.target.execute(second);
+
+        // 検証
+        assertThat(this.target.flushed.size(), equalTo(0));
+        Mockito.verify(this.mockCollector, Mockito.never()).ack(Mockito.any(Tuple.class));
+
+        // 実施
+        this.target.execute(third);
+
+        // 検証
+        assertThat(this.target.flushed.size(), equalTo(1));
+        assertThat(this.target.flushed.get(0).size(), equalTo(3));
+        Mockito.verify(this.mockCollector).ack(first);
+        Mockito.verify(this.mockCollector).ack(second);
+        Mockito.verify(this.mockCollector).ack(third);
+    }
+
+    /**
+     * onFlushで例外が発生した場合にバッチ単位でFailされることを確認する。
+     *
+     * @target {@link AmBatchingBolt#execute(Tuple)}
+     * @test 全TupleがFailされること
+     *    condition:: onFlushで例外が発生
+     *    result:: 全TupleがFailされること
+     */
+    @Test
+    public void testExecute_Flush失敗()
+    {
+        // 準備
+        this.target.setMaxBatchCount(2);
+        this.target.failFlush = true;
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+        Tuple first = createTuple("Message1");
+        Tuple second = createTuple("Message2");
+
+        // 実施
+        this.target.execute(first);
+        this.target.execute(second);
+
+        // 検証
+        Mockito.verify(this.mockCollector).fail(first);
+        Mockito.verify(this.mockCollector).fail(second);
+        Mockito.verify(this.mockCollector, Mockito.never()).ack(Mockito.any(Tuple.class));
+    }
+
+    /**
+     * 最大遅延時間経過後のTickTuple受信時にFlushされることを確認する。
+     *
+     * @target {@link AmBatchingBolt#execute(Tuple)}
+     * @test 最大遅延時間経過後のTickTuple受信時にFlushされること
+     *    condition:: 1件受信後、最大遅延時間経過前と経過後にTickTupleを受信
+     *    result:: 最大遅延時間経過後のTickTuple受信時にFlushされること
+     */
+    @Test
+    public void testExecute_TickTupleによるFlush()
+    {
+        // 準備
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+        Tuple first = createTuple("Message1");
+        Tuple tick = Mockito.mock(Tuple.class);
+        Mockito.doReturn(Constants.SYSTEM_COMPONENT_ID).when(tick).getSourceComponent();
+        Mockito.doReturn(Constants.SYSTEM_TICK_STREAM_ID).when(tick).getSourceStreamId();
+
+        // 実施
+        this.target.currentTime = 10000;
+        this.target.execute(first);
+        this.target.currentTime = 10999;
+        this.target.execute(tick);
+
+        // 検証
+        assertThat(this.target.flushed.size(), equalTo(0));
+
+        // 実施
+        this.target.currentTime = 11000;
+        this.target.execute(tick);
+
+        // 検証
+        assertThat(this.target.flushed.size(), equalTo(1));
+        Mockito.verify(this.mockCollector).ack(first);
+        Mockito.verify(this.mockCollector, Mockito.never()).ack(tick);
+    }
+
+    /**
+     * 最大件数到達によるFlush時にonFlushで送信したメッセージがバッチの全Tupleにアンカーされることを確認する。
+     *
+     * @target {@link AmBatchingBolt#execute(Tuple)}
+     * @test onFlushで送信したメッセージがバッチの全Tupleにアンカーされること
+     *    condition:: 最大件数3件の設定で3件のTupleを受信し、onFlushでメッセージを送信
+     *    result:: 送信したメッセージがバッチの全Tupleにアンカーされること
+     */
+    @Test
+    public void testExecute_最大件数到達時バッチアンカー()
+    {
+        // 準備
+        this.target.emitOnFlush = true;
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+        Tuple first = createTuple("Message1");
+        Tuple second = createTuple("Message2");
+        Tuple third = createTuple("Message3");
+
+        // 実施
+        this.target.execute(first);
+        this.target.execute(second);
+        this.target.execute(third);
+
+        // 検証
+        Mockito.verify(this.mockCollector).emit(Mockito.eq(Arrays.asList(first, second, third)),
+                Mockito.anyListOf(Object.class));
+        Mockito.verify(this.mockCollector, Mockito.never()).emit(Mockito.any(Tuple.class),
+                Mockito.anyListOf(Object.class));
+        Mockito.verify(this.mockCollector).ack(first);
+        Mockito.verify(this.mockCollector).ack(second);
+        Mockito.verify(this.mockCollector).ack(third);
+    }
+
+    /**
+     * TickTupleによるFlush時にonFlushで送信したメッセージがバッチの全Tupleにアンカーされることを確認する。
+     *
+     * @target {@link AmBatchingBolt#execute(Tuple)}
+     * @test onFlushで送信したメッセージがバッチの全Tupleにアンカーされること
+     *    condition:: 2件受信後、最大遅延時間経過後にTickTupleを受信し、onFlushでメッセージを送信
+     *    result:: 送信したメッセージがTickTupleではなくバッチの全Tupleにアンカーされること
+     */
+    @Test
+    public void testExecute_TickTupleによるFlush時バッチアンカー()
+    {
+        // 準備
+        this.target.emitOnFlush = true;
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+        Tuple first = createTuple("Message1");
+        Tuple second = createTuple("Message2");
+        Tuple tick = Mockito.mock(Tuple.class);
+        Mockito.doReturn(Constants.SYSTEM_COMPONENT_ID).when(tick).getSourceComponent();
+        Mockito.doReturn(Constants.SYSTEM_TICK_STREAM_ID).when(tick).getSourceStreamId();
+
+        // 実施
+        this.target.currentTime = 10000;
+        this.target.execute(first);
+        this.target.execute(second);
+        this.target.currentTime = 11000;
+        this.target.execute(tick);
+
+        // 検証
+        Mockito.verify(this.mockCollector).emit(Mockito.eq(Arrays.asList(first, second)),
+                Mockito.anyListOf(Object.class));
+        Mockito.verify(this.mockCollector, Mockito.never()).emit(Mockito.any(Tuple.class),
+                Mockito.anyListOf(Object.class));
+        Mockito.verify(this.mockCollector).ack(first);
+        Mockito.verify(this.mockCollector).ack(second);
+    }
+
+    /**
+     * Mapボディのメッセージで最大バイト数に到達した場合にFlushされることを確認する。
+     *
+     * @target {@link AmBatchingBolt#execute(Tuple)}
+     * @test 推定サイズの合計が最大バイト数に到達した時点でFlushされること
+     *    condition:: 最大バイト数20の設定で推定サイズ13バイトのMapボディのTupleを2件受信
+     *    result:: 2件目受信時にFlushされること
+     */
+    @Test
+    public void testExecute_Mapボディ最大バイト数到達()
+    {
+        // 準備
+        this.target.setMaxBatchCount(100);
+        this.target.setMaxBatchBytes(20);
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+        Map<String, Object> firstBody = new HashMap<>();
+        firstBody.put("Key", "ValueValue");
+        Map<String, Object> secondBody = new HashMap<>();
+        secondBody.put("Key", "ValueValue");
+        Tuple first = createTuple(firstBody);
+        Tuple second = createTuple(secondBody);
+
+        // 実施
+        this.target.execute(first);
+
+        // 検証
+        assertThat(this.target.flushed.size(), equalTo(0));
+
+        // 実施
+        this.target.execute(second);
+
+        // 検証
+        assertThat(this.target.flushed.size(), equalTo(1));
+        Mockito.verify(this.mockCollector).ack(first);
+        Mockito.verify(this.mockCollector).ack(second);
+    }
+
+    /**
+     * 文字列ボディの推定サイズがUTF-8のバイト数であることを確認する。
+     *
+     * @target {@link AmBatchingBolt#estimateSize(StreamMessage)}
+     * @test 推定サイズがUTF-8のバイト数となること
+     *    condition:: マルチバイト文字を含む文字列ボディのメッセージの推定サイズを取得
+     *    result:: 推定サイズがUTF-8のバイト数となること
+     */
+    @Test
+    public void testEstimateSize_UTF8バイト数()
+    {
+        // 準備
+        StreamMessage message = new StreamMessage();
+        message.setBody("aあ\uD842\uDFB7");
+
+        // 実施
+        long result = this.target.estimateSize(message);
+
+        // 検証
+        assertThat(result, equalTo(8L));
+    }
+
+    /**
+     * StreamMessageを保持するTupleを生成する。
+     *
+     * @param body メッセージボディ
+     * @return Tuple
+     */
+    private Tuple createTuple(Object body)
+    {
+        StreamMessage message = new StreamMessage();
+        message.setBody(body);
+
+        Tuple mockTuple = Mockito.mock(Tuple.class);
+        Mockito.doReturn("messageKey").when(mockTuple).getValueByField("messageKey");
+        Mockito.doReturn(message).when(mockTuple).getValueByField("messageValue");
+        Mockito.doReturn(new Fields("messageKey", "messageValue")).when(mockTuple).getFields();
+        Mockito.doReturn(true).when(mockTuple).contains("messageValue");
+        return mockTuple;
+    }
+
+    /**
+     * Flushされたメッセージを記録するテスト用Bolt
+     */
+    private static class RecordingBatchingBolt extends AmBatchingBolt
+    {
+        /** serialVersionUID */
+        private static final long         serialVersionUID = 1L;
+
+        /** Flushされたメッセージ */
+        List<List<StreamMessage>>         flushed          = new ArrayList<>();
+
+        /** Flush失敗フラグ */
+        boolean                           failFlush        = false;
+
+        /** 現在時刻 */
+        long                              currentTime      = 0;
+
+        /** Flush時メッセージ送信フラグ */
+        boolean                           emitOnFlush      = false;
+
+        /**
+         * パラメータを指定せずにインスタンスを生成する。
+         */
+        RecordingBatchingBolt()
+        {}
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public void onPrepare(Map stormConf, TopologyContext context)
+        {
+            // Do nothing.
+        }
+
+        @Override
+        public void onFlush(List<StreamMessage> messages) throws Exception
+        {
+            if (this.failFlush)
+            {
+                throw new Exception("Flush failed.");
+            }
+
+            this.flushed.add(messages);
+
+            if (this.emitOnFlush)
+            {
+                StreamMessage message = new StreamMessage();
+                message.setBody(messages.size());
+                emit(message, "BatchKey");
+            }
+        }
+
+        @Override
+        protected long getCurrentTime()
+        {
+            return this.currentTime;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.metrics.DuplicateRateMetric;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+
+/**
+ * AmDedupBoltクラスのテストクラス
+ *
+ * @author kimura
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AmDedupBoltTest
+{
+    /** テスト対象 */
+    private AmDedupBolt     target;
+
+    /** テスト用のOutputCollector */
+    @Mock
+    private OutputCollector mockCollector;
+
+    /** テスト用のStormConfigMap */
+    @SuppressWarnings("rawtypes")
+    @Mock
+    private Map             mockConfMap;
+
+    /** テスト用のTopologyContext */
+    @Mock
+    private TopologyContext mockContext;
+
+    /**
+     * 初期化メソッド
+     */
+    @Before
+    public void setUp()
+    {
+        Mockito.when(this.mockContext.getThisComponentId()).thenReturn("ComponentId");
+        this.target = new AmDedupBolt();
+        this.target.setExpectedMessagesPerBucket(1000);
+    }
+
+    /**
+     * 重複したメッセージIDのメッセージが送信されずにAckされることを確認する。
+     *
+     * @target {@link AmDedupBolt#execute(Tuple)}
+     * @test 初回のメッセージのみ送信され、全TupleがAckされ、重複率が記録されること
+     *    condition:: 同一メッセージIDのメッセージを2件、異なるメッセージIDのメッセージを1件受信
+     *    result:: 初回のメッセージのみ送信され、全TupleがAckされ、重複率が記録されること
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void testExecute_重複破棄()
+    {
+        // 準備
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+        ArgumentCaptor<DuplicateRateMetric> metricCaptor = ArgumentCaptor.forClass(DuplicateRateMetric.class);
+        Mockito.verify(this.mockContext).registerMetric(Mockito.eq(AmDedupBolt.METRIC_NAME),
+                metricCaptor.capture(), Mockito.eq(60));
+        Tuple first = createTuple("MessageId1");
+        Tuple duplicated = createTuple("MessageId1");
+        Tuple second = createTuple("MessageId2");
+
+        // 実施
+        this.target.execute(first);
+        this.target.execute(duplicated);
+        this.target.execute(second);
+
+        // 検証
+        Mockito.verify(this.mockCollector).emit(Mockito.eq(first), Mockito.anyList());
+        Mockito.verify(this.mockCollector, Mockito.never()).emit(Mockito.eq(duplicated),
+                Mockito.anyList());
+        Mockito.verify(this.mockCollector).emit(Mockito.eq(second), Mockito.anyList());
+        Mockito.verify(this.mockCollector).ack(first);
+        Mockito.verify(this.mockCollector).ack(duplicated);
+        Mockito.verify(this.mockCollector).ack(second);
+
+        Map<String, Object> metric = (Map<String, Object>) metricCaptor.getValue().getValueAndReset();
+        assertThat((Long) metric.get("received"), equalTo(3L));
+        assertThat((Long) metric.get("duplicated"), equalTo(1L));
+        assertThat((Double) metric.get("duplicateRate"), equalTo(1.0d / 3));
+    }
+
+    /**
+     * メッセージIDを持たないメッセージが常に送信されることを確認する。
+     *
+     * @target {@link AmDedupBolt#execute(Tuple)}
+     * @test 全メッセージが送信されること
+     *    condition:: メッセージIDを持たないメッセージを2件受信
+     *    result:: 全メッセージが送信されること
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExecute_メッセージID無し()
+    {
+        // 準備
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+        Tuple first = createTuple(null);
+        Tuple second = createTuple(null);
+
+        // 実施
+        this.target.execute(first);
+        this.target.execute(second);
+
+        // 検証
+        Mockito.verify(this.mockCollector).emit(Mockito.eq(first), Mockito.anyList());
+        Mockito.verify(this.mockCollector).emit(Mockito.eq(second), Mockito.anyList());
+    }
+
+    /**
+     * 処理に失敗したメッセージの再送が送信されることを確認する。
+     *
+     * @target {@link AmDedupBolt#execute(Tuple)}
+     * @test 失敗したTupleがFailされ、同一メッセージIDの再送が送信されてAckされること
+     *    condition:: 初回のonUniqueでFailし、同一メッセージIDのメッセージを再受信
+     *    result:: 失敗したTupleがFailされ、同一メッセージIDの再送が送信されてAckされること
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExecute_失敗後再送()
+    {
+        // 準備
+        this.target = new AmDedupBolt() {
+            private static final long serialVersionUID = 1L;
+
+            private boolean           failed           = false;
+
+            @Override
+            protected void onUnique(StreamMessage input)
+            {
+                if (this.failed == false)
+                {
+                    this.failed = true;
+                    fail();
+                    return;
+                }
+
+                super.onUnique(input);
+            }
+        };
+        this.target.setExpectedMessagesPerBucket(1000);
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+        Tuple first = createTuple("MessageId1");
+        Tuple replayed = createTuple("MessageId1");
+        Tuple duplicated = createTuple("MessageId1");
+
+        // 実施
+        this.target.execute(first);
+        this.target.execute(replayed);
+        this.target.execute(duplicated);
+
+        // 検証
+        Mockito.verify(this.mockCollector).fail(first);
+        Mockito.verify(this.mockCollector, Mockito.never()).emit(Mockito.eq(first), Mockito.anyList());
+        Mockito.verify(this.mockCollector).emit(Mockito.eq(replayed), Mockito.anyList());
+        Mockito.verify(this.mockCollector).ack(replayed);
+        Mockito.verify(this.mockCollector, Mockito.never()).emit(Mockito.eq(duplicated),
+                Mockito.anyList());
+        Mockito.verify(this.mockCollector).ack(duplicated);
+    }
+
+    /**
+     * 自動登録無効時、markSeen呼び出し後のみ重複と判定されることを確認する。
+     *
+     * @target {@link AmDedupBolt#markSeen(StreamMessage)}
+     * @test markSeen呼び出し前の再受信は送信され、呼び出し後の再受信は破棄されること
+     *    condition:: 自動登録無効で同一メッセージIDのメッセージを受信し、2件目の処理後にmarkSeenを呼び出し
+     *    result:: markSeen呼び出し前の再受信は送信され、呼び出し後の再受信は破棄されること
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMarkSeen_処理完了後登録()
+    {
+        // 準備
+        this.target.setMarkSeenOnUnique(false);
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+        Tuple first = createTuple("MessageId1");
+        Tuple second = createTuple("MessageId1");
+        Tuple third = createTuple("MessageId1");
+
+        // 実施
+        this.target.execute(first);
+        this.target.execute(second);
+        StreamMessage committed = new StreamMessage();
+        committed.getHeader().setMessageId("MessageId1");
+        this.target.markSeen(committed);
+        this.target.execute(third);
+
+        // 検証
+        Mockito.verify(this.mockCollector).emit(Mockito.eq(first), Mockito.anyList());
+        Mockito.verify(this.mockCollector).emit(Mockito.eq(second), Mockito.anyList());
+        Mockito.verify(this.mockCollector, Mockito.never()).emit(Mockito.eq(third),
+                Mockito.anyList());
+    }
+
+    /**
+     * StreamMessageを保持するTupleを生成する。
+     *
+     * @param messageId メッセージID
+     * @return Tuple
+     */
+    private Tuple createTuple(String messageId)
+    {
+        StreamMessage message = new StreamMessage();
+        message.getHeader().setMessageKey("MessageKey");
+        message.getHeader().setMessageId(messageId);
+        message.setBody("Body");
+
+        Tuple mockTuple = Mockito.mock(Tuple.class);
+        Mockito.doReturn("messageKey").when(mockTuple).getValueByField("messageKey");
+        Mockito.doReturn(message).when(mockTuple).getValueByField("messageValue");
+        Mockito.doReturn(new Fields("messageKey", "messageValue")).when(mockTuple).getFields();
+        Mockito.doReturn(true).when(mockTuple).contains("messageValue");
+        return mockTuple;
+    }
+}
@@ -0,0 +1,397 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import acromusashi.stream.bolt.window.CountAggregator;
+import acromusashi.stream.bolt.window.MaxAggregator;
+import acromusashi.stream.bolt.window.SumAggregator;
+import acromusashi.stream.bolt.window.WindowTimeType;
+import acromusashi.stream.entity.StreamMessage;
+import backtype.storm.Constants;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+
+/**
+ * AmWindowBoltクラスのテストクラス
+ *
+ * @author kimura
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AmWindowBoltTest
+{
+    /** テスト対象 */
+    private RecordingWindowBolt target;
+
+    /** テスト用のOutputCollector */
+    @Mock
+    private OutputCollector     mockCollector;
+
+    /** テスト用のStormConfigMap */
+    @SuppressWarnings("rawtypes")
+    @Mock
+    private Map                 mockConfMap;
+
+    /** テスト用のTopologyContext */
+    @Mock
+    private TopologyContext     mockContext;
+
+    /**
+     * 初期化メソッド
+     */
+    @Before
+    public void setUp()
+    {
+        Mockito.when(this.mockContext.getThisComponentId()).thenReturn("ComponentId");
+        this.target = new RecordingWindowBolt();
+        this.target.setWindowSizeMs(10000);
+        this.target.addAggregator("count", new CountAggregator());
+        this.target.addAggregator("sum", new SumAggregator("value"));
+    }
+
+    /**
+     * イベント時刻のタンブリングウィンドウがウォーターマーク到達時に出力されることを確認する。
+     *
+     * @target {@link AmWindowBolt#execute(Tuple)}
+     * @test ウォーターマークがウィンドウ終端に到達した時点で集計結果が出力されること
+     *    condition:: 順序乱れ許容2秒の設定で、ウィンドウ[0,10000)と[10000,20000)のメッセージを受信
+     *    result:: ウォーターマークがウィンドウ終端に到達した時点で集計結果が出力されること
+     */
+    @Test
+    public void testExecute_イベント時刻タンブリング()
+    {
+        // 準備
+        this.target.setTimeType(WindowTimeType.EVENT_TIME);
+        this.target.setMaxOutOfOrdernessMs(2000);
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+
+        // 実施
+        this.target.execute(createTuple(1000, 1));
+        this.target.execute(createTuple(9000, 2));
+        this.target.execute(createTuple(11000, 4));
+        // 順序乱れ許容範囲内の遅延メッセージ
+        this.target.execute(createTuple(8000, 8));
+
+        // 検証
+        assertThat(this.target.results.size(), equalTo(0));
+
+        // 実施
+        this.target.execute(createTuple(12000, 16));
+
+        // 検証
+        assertThat(this.target.results.size(), equalTo(1));
+        WindowResult result = this.target.results.get(0);
+        assertThat(result.start, equalTo(0L));
+        assertThat(result.end, equalTo(10000L));
+        assertThat((Long) result.values.get("count"), equalTo(3L));
+        assertThat((Double) result.values.get("sum"), equalTo(11.0d));
+        assertThat(this.target.getWatermark(), equalTo(10000L));
+    }
+
+    /**
+     * 許容遅延時間内の遅延メッセージで結果が再出力され、許容遅延時間経過後は破棄されることを確認する。
+     *
+     * @target {@link AmWindowBolt#execute(Tuple)}
+     * @test 許容遅延時間内は更新後の結果が再出力され、経過後は破棄件数に計上されること
+     *    condition:: 許容遅延時間5秒の設定で、ウィンドウ終了後に遅延メッセージを受信
+     *    result:: 許容遅延時間内は更新後の結果が再出力され、経過後は破棄件数に計上されること
+     */
+    @Test
+    public void testExecute_許容遅延()
+    {
+        // 準備
+        this.target.setTimeType(WindowTimeType.EVENT_TIME);
+        this.target.setAllowedLatenessMs(5000);
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+
+        // 実施
+        this.target.execute(createTuple(1000, 1));
+        this.target.execute(createTuple(12000, 2));
+        this.target.execute(createTuple(3000, 4));
+
+        // 検証
+        assertThat(this.target.results.size(), equalTo(2));
+        assertThat((Long) this.target.results.get(0).values.get("count"), equalTo(1L));
+        assertThat((Long) this.target.results.get(1).values.get("count"), equalTo(2L));
+        assertThat((Double) this.target.results.get(1).values.get("sum"), equalTo(5.0d));
+
+        // 実施
+        this.target.execute(createTuple(15000, 8));
+        this.target.execute(createTuple(4000, 16));
+
+        // 検証
+        assertThat(this.target.results.size(), equalTo(2));
+        assertThat(this.target.getDroppedCount(), equalTo(1L));
+        assertThat(this.target.getWindowCount(), equalTo(1));
+    }
+
+    /**
+     * スライディングウィンドウで1メッセージが複数ウィンドウに集計されることを確認する。
+     *
+     * @target {@link AmWindowBolt#execute(Tuple)}
+     * @test メッセージが所属する全ウィンドウに集計されること
+     *    condition:: ウィンドウ10秒、スライド5秒の設定でメッセージを受信
+     *    result:: メッセージが所属する全ウィンドウに集計されること
+     */
+    @Test
+    public void testExecute_スライディング()
+    {
+        // 準備
+        this.target.setTimeType(WindowTimeType.EVENT_TIME);
+        this.target.setWindowSlideMs(5000);
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+
+        // 実施
+        this.target.execute(createTuple(7000, 1));
+        this.target.execute(createTuple(12000, 2));
+        this.target.execute(createTuple(20000, 4));
+
+        // 検証
+        assertThat(this.target.results.size(), equalTo(3));
+        assertThat(this.target.results.get(0).start, equalTo(0L));
+        assertThat((Double) this.target.results.get(0).values.get("sum"), equalTo(1.0d));
+        assertThat(this.target.results.get(1).start, equalTo(5000L));
+        assertThat((Double) this.target.results.get(1).values.get("sum"), equalTo(3.0d));
+        assertThat(this.target.results.get(2).start, equalTo(10000L));
+        assertThat((Double) this.target.results.get(2).values.get("sum"), equalTo(2.0d));
+    }
+
+    /**
+     * 処理時刻のウィンドウがTickTuple受信時に出力されることを確認する。
+     *
+     * @target {@link AmWindowBolt#execute(Tuple)}
+     * @test ウィンドウ終端経過後のTickTuple受信時にグループ単位で結果が出力されること
+     *    condition:: 処理時刻、グループ項目指定の設定でメッセージ受信後、ウィンドウ終端前後にTickTupleを受信
+     *    result:: ウィンドウ終端経過後のTickTuple受信時にグループ単位で結果が出力されること
+     */
+    @Test
+    public void testExecute_処理時刻TickTuple()
+    {
+        // 準備
+        this.target.setGroupField("host");
+        this.target.addAggregator("max", new MaxAggregator("value"));
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+        Tuple tick = Mockito.mock(Tuple.class);
+        Mockito.doReturn(Constants.SYSTEM_COMPONENT_ID).when(tick).getSourceComponent();
+        Mockito.doReturn(Constants.SYSTEM_TICK_STREAM_ID).when(tick).getSourceStreamId();
+
+        // 実施
+        this.target.currentTime = 20000;
+        this.target.execute(createTuple(0, 1, "host1"));
+        this.target.currentTime = 25000;
+        this.target.execute(createTuple(0, 5, "host1"));
+        this.target.execute(createTuple(0, 3, "host2"));
+        this.target.currentTime = 29999;
+        this.target.execute(tick);
+
+        // 検証
+        assertThat(this.target.results.size(), equalTo(0));
+
+        // 実施
+        this.target.currentTime = 30000;
+        this.target.execute(tick);
+
+        // 検証
+        assertThat(this.target.results.size(), equalTo(2));
+        for (WindowResult result : this.target.results)
+        {
+            assertThat(result.start, equalTo(20000L));
+            if ("host1".equals(result.group))
+            {
+                assertThat((Long) result.values.get("count"), equalTo(2L));
+                assertThat((Double) result.values.get("max"), equalTo(5.0d));
+            }
+            else
+            {
+                assertThat(result.group, equalTo((Object) "host2"));
+                assertThat((Long) result.values.get("count"), equalTo(1L));
+            }
+        }
+        Mockito.verify(this.mockCollector, Mockito.never()).ack(tick);
+    }
+
+    /**
+     * 集計結果がアンカーなしのメッセージとして送信されることを確認する。
+     *
+     * @target {@link AmWindowBolt#onWindowResult(long, long, Object, Map)}
+     * @test ウィンドウ開始、終了時刻と集計結果を保持するメッセージが送信されること
+     *    condition:: ウィンドウ終了時に既定の結果出力処理を実行
+     *    result:: ウィンドウ開始、終了時刻と集計結果を保持するメッセージが送信されること
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void testOnWindowResult_結果送信()
+    {
+        // 準備
+        AmWindowBolt bolt = new AmWindowBolt();
+        bolt.setTimeType(WindowTimeType.EVENT_TIME);
+        bolt.setWindowSizeMs(10000);
+        bolt.addAggregator("count", new CountAggregator());
+        bolt.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+
+        // 実施
+        bolt.execute(createTuple(1000, 1));
+        bolt.execute(createTuple(10000, 1));
+
+        // 検証
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(this.mockCollector).emit(captor.capture());
+        StreamMessage emitted = (StreamMessage) captor.getValue().get(1);
+        assertThat(emitted.getHeader().getTimestamp(), equalTo(10000L));
+        assertThat((Long) emitted.getField(AmWindowBolt.FIELD_WINDOW_START), equalTo(0L));
+        assertThat((Long) emitted.getField(AmWindowBolt.FIELD_WINDOW_END), equalTo(10000L));
+        assertThat((Long) emitted.getField("count"), equalTo(1L));
+        assertThat(emitted.getField(AmWindowBolt.FIELD_GROUP), nullValue());
+    }
+
+    /**
+     * 不正なウィンドウ設定の場合に初期化時に例外が発生することを確認する。
+     *
+     * @target {@link AmWindowBolt#onPrepare(Map, TopologyContext)}
+     * @test IllegalStateExceptionが発生すること
+     *    condition:: ウィンドウサイズより大きいスライドを設定
+     *    result:: IllegalStateExceptionが発生すること
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testOnPrepare_不正スライド()
+    {
+        // 準備
+        this.target.setWindowSlideMs(20000);
+
+        // 実施
+        this.target.prepare(this.mockConfMap, this.mockContext, this.mockCollector);
+    }
+
+    /**
+     * StreamMessageを保持するTupleを生成する。
+     *
+     * @param timestamp メッセージ時刻
+     * @param value 集計対象値
+     * @return Tuple
+     */
+    private Tuple createTuple(long timestamp, int value)
+    {
+        return createTuple(timestamp, value, null);
+    }
+
+    /**
+     * StreamMessageを保持するTupleを生成する。
+     *
+     * @param timestamp メッセージ時刻
+     * @param value 集計対象値
+     * @param host グループ項目値
+     * @return Tuple
+     */
+    private Tuple createTuple(long timestamp, int value, String host)
+    {
+        StreamMessage message = new StreamMessage();
+        message.getHeader().setTimestamp(timestamp);
+        message.addField("value", value);
+        if (host != null)
+        {
+            message.addField("host", host);
+        }
+
+        Tuple mockTuple = Mockito.mock(Tuple.class);
+        Mockito.doReturn("messageKey").when(mockTuple).getValueByField("messageKey");
+        Mockito.doReturn(message).when(mockTuple).getValueByField("messageValue");
+        Mockito.doReturn(new Fields("messageKey", "messageValue")).when(mockTuple).getFields();
+        Mockito.doReturn(true).when(mockTuple).contains("messageValue");
+        return mockTuple;
+    }
+
+    /**
+     * ウィンドウ集計結果
+     */
+    private static class WindowResult
+    {
+        /** ウィンドウ開始時刻 */
+        long                start;
+
+        /** ウィンドウ終了時刻 */
+        long                end;
+
+        /** グループ項目値 */
+        Object              group;
+
+        /** 集計結果 */
+        Map<String, Object> values;
+
+        /**
+         * パラメータを指定してインスタンスを生成する。
+         *
+         * @param start ウィンドウ開始時刻
+         * @param end ウィンドウ終了時刻
+         * @param group グループ項目値
+         * @param values 集計結果
+         */
+        WindowResult(long start, long end, Object group, Map<String, Object> values)
+        {
+            this.start = start;
+            this.end = end;
+            this.group = group;
+            this.values = values;
+        }
+    }
+
+    /**
+     * 集計結果を記録するテスト用Bolt
+     */
+    private static class RecordingWindowBolt extends AmWindowBolt
+    {
+        /** serialVersionUID */
+        private static final long serialVersionUID = 1L;
+
+        /** 出力された集計結果 */
+        List<WindowResult>        results          = new ArrayList<>();
+
+        /** 現在時刻 */
+        long                      currentTime      = 0;
+
+        /**
+         * パラメータを指定せずにインスタンスを生成する。
+         */
+        RecordingWindowBolt()
+        {}
+
+        @Override
+        protected void onWindowResult(long windowStart, long windowEnd, Object group,
+                Map<String, Object> results)
+        {
+            this.results.add(new WindowResult(windowStart, windowEnd, group, results));
+        }
+
+        @Override
+        protected long getCurrentTime()
+        {
+            return this.currentTime;
+        }
+    }
+}
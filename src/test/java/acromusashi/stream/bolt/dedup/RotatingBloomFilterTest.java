@@ -0,0 +1,123 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.dedup;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import acromusashi.stream.util.HashUtil;
+
+/**
+ * RotatingBloomFilterクラスのテストクラス
+ *
+ * @author kimura
+ */
+public class RotatingBloomFilterTest
+{
+    /**
+     * 保持期間内の重複が検出され、保持期間経過後は未登録と判定されることを確認する。
+     *
+     * @target {@link RotatingBloomFilter#putIfAbsent(long, long)}
+     * @test 保持期間内はfalse、全世代の入れ替え後はtrueが返ること
+     *    condition:: 世代数3、世代期間1000msのフィルタに同一ハッシュを時刻を進めながら登録
+     *    result:: 保持期間内はfalse、全世代の入れ替え後はtrueが返ること
+     */
+    @Test
+    public void testPutIfAbsent_世代入れ替え()
+    {
+        // 準備
+        RotatingBloomFilter target = new RotatingBloomFilter(1000, 0.01d, 3, 1000);
+
+        // 実施/検証
+        assertThat(target.putIfAbsent(1L, 0), equalTo(true));
+        assertThat(target.putIfAbsent(1L, 500), equalTo(false));
+        assertThat(target.putIfAbsent(1L, 1500), equalTo(false));
+        assertThat(target.putIfAbsent(1L, 2500), equalTo(false));
+        assertThat(target.putIfAbsent(1L, 3100), equalTo(true));
+        assertThat(target.putIfAbsent(1L, 3200), equalTo(false));
+        assertThat(target.putIfAbsent(1L, 100000), equalTo(true));
+    }
+
+    /**
+     * 偽陽性率が指定値以下に収まることを確認する。
+     *
+     * @target {@link RotatingBloomFilter#putIfAbsent(long, long)}
+     * @test 一意なハッシュに対する偽陽性率が指定値以下であること
+     *    condition:: 偽陽性率0.01、世代あたり想定件数10000件のフィルタに一意なハッシュを50000件登録
+     *    result:: 一意なハッシュに対する偽陽性率が指定値以下であること
+     */
+    @Test
+    public void testPutIfAbsent_偽陽性率()
+    {
+        // 準備
+        RotatingBloomFilter target = new RotatingBloomFilter(10000, 0.01d, 4, 1000);
+        int falsePositive = 0;
+
+        // 実施
+        for (int count = 0; count < 50000; count++)
+        {
+            if (target.putIfAbsent(HashUtil.hash64("Message" + count), count / 10) == false)
+            {
+                falsePositive++;
+            }
+        }
+
+        // 検証
+        assertTrue("FalsePositive=" + falsePositive, falsePositive <= 500);
+    }
+
+    /**
+     * 想定件数到達時に世代が入れ替わりメモリ量が一定に保たれることを確認する。
+     *
+     * @target {@link RotatingBloomFilter#putIfAbsent(long, long)}
+     * @test 想定件数を超えて登録しても、最古世代の内容のみが失われること
+     *    condition:: 世代数2、世代あたり想定件数2件のフィルタに同一時刻で4件登録
+     *    result:: 最古世代の内容のみが失われること
+     */
+    @Test
+    public void testPutIfAbsent_件数による入れ替え()
+    {
+        // 準備
+        RotatingBloomFilter target = new RotatingBloomFilter(2, 0.01d, 2, 1000);
+        long memoryBytes = target.getMemoryBytes();
+
+        // 実施
+        target.putIfAbsent(HashUtil.hash64("Message1"), 0);
+        target.putIfAbsent(HashUtil.hash64("Message2"), 0);
+        target.putIfAbsent(HashUtil.hash64("Message3"), 0);
+        target.putIfAbsent(HashUtil.hash64("Message4"), 0);
+
+        // 検証
+        assertThat(target.putIfAbsent(HashUtil.hash64("Message3"), 0), equalTo(false));
+        assertThat(target.putIfAbsent(HashUtil.hash64("Message1"), 0), equalTo(true));
+        assertThat(target.getMemoryBytes(), equalTo(memoryBytes));
+    }
+
+    /**
+     * 不正な偽陽性率を指定した場合に例外が発生することを確認する。
+     *
+     * @target {@link RotatingBloomFilter#RotatingBloomFilter(long, double, int, long)}
+     * @test IllegalArgumentExceptionが発生すること
+     *    condition:: 偽陽性率に1.0を指定
+     *    result:: IllegalArgumentExceptionが発生すること
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_不正偽陽性率()
+    {
+        // 実施
+        new RotatingBloomFilter(1000, 1.0d, 3, 1000);
+    }
+}
@@ -0,0 +1,249 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.hdfs;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+/**
+ * HdfsAsyncWriterクラスのテストクラス
+ *
+ * @author kimura
+ */
+public class HdfsAsyncWriterTest
+{
+    /** テスト用のHdfsOutputSwitcher */
+    private HdfsOutputSwitcher  switcher;
+
+    /** 同期が完了したトークン */
+    private List<String>        flushedTokens;
+
+    /** 同期に失敗したトークン */
+    private List<String>        failedTokens;
+
+    /** テスト用の通知先 */
+    private HdfsAsyncWriter.FlushListener<String> listener;
+
+    /**
+     * 初期化メソッド
+     */
+    @Before
+    public void setUp()
+    {
+        this.switcher = Mockito.mock(HdfsOutputSwitcher.class);
+        this.flushedTokens = new ArrayList<>();
+        this.failedTokens = new ArrayList<>();
+        this.listener = new HdfsAsyncWriter.FlushListener<String>() {
+            @Override
+            public void onFlushed(List<String> tokens)
+            {
+                HdfsAsyncWriterTest.this.flushedTokens.addAll(tokens);
+            }
+
+            @Override
+            public void onFailed(List<String> tokens, Exception cause)
+            {
+                HdfsAsyncWriterTest.this.failedTokens.addAll(tokens);
+            }
+        };
+    }
+
+    /**
+     * レコード数閾値でバッファが入れ替えられ、同期完了後にトークンが通知されることを確認する。
+     *
+     * @target {@link HdfsAsyncWriter#append(String, long, Object)}
+     * @test バッファごとに書込み、同期されること
+     *    condition:: 同期レコード数2件の設定で3行出力後、Close
+     *    result:: 2行、1行の単位で書込み、同期され、全トークンが通知されること
+     */
+    @Test
+    public void testAppend_レコード数閾値入れ替え() throws IOException
+    {
+        // 準備
+        HdfsStoreConfig config = createConfig(2);
+        HdfsAsyncWriter<String> target = new HdfsAsyncWriter<>(this.switcher, config, this.listener);
+        target.start();
+
+        // 実施
+        target.append("Message1", 100L, "Token1");
+        target.append("Message2", 101L, "Token2");
+        target.append("Message3", 102L, "Token3");
+        target.close();
+
+        // 検証
+        InOrder inOrder = Mockito.inOrder(this.switcher);
+        inOrder.verify(this.switcher).appendLine("Message1", 100L);
+        inOrder.verify(this.switcher).appendLine("Message2", 101L);
+        inOrder.verify(this.switcher).sync();
+        inOrder.verify(this.switcher).appendLine("Message3", 102L);
+        inOrder.verify(this.switcher).sync();
+        inOrder.verify(this.switcher).close();
+        assertThat(this.flushedTokens, equalTo(Arrays.asList("Token1", "Token2", "Token3")));
+        assertThat(this.failedTokens.size(), equalTo(0));
+    }
+
+    /**
+     * 同期に失敗した場合、失敗したバッファのトークンが失敗として通知されることを確認する。
+     *
+     * @target {@link HdfsAsyncWriter#append(String, long, Object)}
+     * @test 失敗したバッファのトークンのみ失敗として通知され、次のバッファの前に出力中ファイルが破棄されること
+     *    condition:: 同期レコード数2件の設定で、1回目の同期のみ失敗させて3行出力後、Close
+     *    result:: 1回目のバッファのトークンが失敗、2回目のバッファのトークンが完了として通知され、
+     *             2回目のバッファの書込み前に出力中ファイルが破棄されること
+     */
+    @Test
+    public void testAppend_同期失敗() throws IOException
+    {
+        // 準備
+        Mockito.doThrow(new IOException()).doNothing().when(this.switcher).sync();
+        HdfsStoreConfig config = createConfig(2);
+        HdfsAsyncWriter<String> target = new HdfsAsyncWriter<>(this.switcher, config, this.listener);
+        target.start();
+
+        // 実施
+        target.append("Message1", 100L, "Token1");
+        target.append("Message2", 101L, "Token2");
+        target.append("Message3", 102L, "Token3");
+        target.close();
+
+        // 検証
+        InOrder inOrder = Mockito.inOrder(this.switcher);
+        inOrder.verify(this.switcher).appendLine("Message2", 101L);
+        inOrder.verify(this.switcher).sync();
+        inOrder.verify(this.switcher).discardWriter();
+        inOrder.verify(this.switcher).appendLine("Message3", 102L);
+        inOrder.verify(this.switcher).sync();
+        Mockito.verify(this.switcher, Mockito.times(1)).discardWriter();
+        assertThat(this.failedTokens, equalTo(Arrays.asList("Token1", "Token2")));
+        assertThat(this.flushedTokens, equalTo(Arrays.asList("Token3")));
+    }
+
+    /**
+     * 書込み中にErrorが発生した場合、失敗として通知され、以降の書込みが継続されることを確認する。
+     *
+     * @target {@link HdfsAsyncWriter#append(String, long, Object)}
+     * @test Errorが発生したバッファのトークンが失敗として通知され、以降のバッファが書き込まれること
+     *    condition:: 同期レコード数1件の設定で、1行目の書込みでErrorを発生させて2行出力後、Close
+     *    result:: 1行目のトークンが失敗、2行目のトークンが完了として通知され、Closeが完了すること
+     */
+    @Test(timeout = 10000)
+    public void testAppend_書込みError() throws IOException
+    {
+        // 準備
+        Mockito.doThrow(new AssertionError()).when(this.switcher).appendLine("Message1", 100L);
+        HdfsStoreConfig config = createConfig(1);
+        HdfsAsyncWriter<String> target = new HdfsAsyncWriter<>(this.switcher, config, this.listener);
+        target.start();
+
+        // 実施
+        target.append("Message1", 100L, "Token1");
+        target.append("Message2", 101L, "Token2");
+        target.close();
+
+        // 検証
+        Mockito.verify(this.switcher).discardWriter();
+        Mockito.verify(this.switcher).close();
+        assertThat(this.failedTokens, equalTo(Arrays.asList("Token1")));
+        assertThat(this.flushedTokens, equalTo(Arrays.asList("Token2")));
+    }
+
+    /**
+     * バックグラウンドスレッドが停止した場合、失敗として通知され、スレッドが再起動されることを確認する。
+     *
+     * @target {@link HdfsAsyncWriter#append(String, long, Object)}
+     * @test 停止時のバッファのトークンが失敗として通知され、再起動したスレッドで以降のバッファが書き込まれること
+     *    condition:: 同期レコード数1件の設定で、1行目の書込み失敗後のファイル切替でErrorを発生させて2行出力後、Close
+     *    result:: 1行目のトークンが失敗、2行目のトークンが完了として通知され、Closeが完了すること
+     */
+    @Test(timeout = 10000)
+    public void testAppend_スレッド停止時再起動() throws IOException
+    {
+        // 準備
+        Mockito.doThrow(new IOException()).when(this.switcher).appendLine("Message1", 100L);
+        Mockito.doThrow(new AssertionError()).doNothing().when(this.switcher).discardWriter();
+        HdfsStoreConfig config = createConfig(1);
+        HdfsAsyncWriter<String> target = new HdfsAsyncWriter<>(this.switcher, config, this.listener);
+        target.start();
+
+        // 実施
+        target.append("Message1", 100L, "Token1");
+        target.append("Message2", 101L, "Token2");
+        target.close();
+
+        // 検証
+        Mockito.verify(this.switcher, Mockito.times(2)).discardWriter();
+        Mockito.verify(this.switcher).appendLine("Message2", 101L);
+        Mockito.verify(this.switcher).close();
+        assertThat(this.failedTokens, equalTo(Arrays.asList("Token1")));
+        assertThat(this.flushedTokens, equalTo(Arrays.asList("Token2")));
+    }
+
+    /**
+     * 同期間隔経過前はバッファが入れ替えられないことを確認する。
+     *
+     * @target {@link HdfsAsyncWriter#flushIfExpired()}
+     * @test 同期間隔経過前は書込まれず、トークンが通知されないこと
+     *    condition:: 同期間隔1時間の設定で1行出力後、flushIfExpiredを呼び出し
+     *    result:: 書込まれず、トークンが通知されないこと
+     */
+    @Test
+    public void testFlushIfExpired_同期間隔未経過() throws IOException
+    {
+        // 準備
+        HdfsStoreConfig config = createConfig(0);
+        config.setSyncIntervalMs(60 * 60 * 1000L);
+        HdfsAsyncWriter<String> target = new HdfsAsyncWriter<>(this.switcher, config, this.listener);
+        target.start();
+
+        // 実施
+        target.append("Message1", 100L, "Token1");
+        target.flushIfExpired();
+
+        // 検証
+        Mockito.verify(this.switcher, Mockito.never()).appendLine(Mockito.anyString(),
+                Mockito.anyLong());
+        assertThat(this.flushedTokens.size(), equalTo(0));
+
+        // 実施
+        target.close();
+
+        // 検証
+        assertThat(this.flushedTokens, equalTo(Arrays.asList("Token1")));
+    }
+
+    /**
+     * 非同期出力の設定を生成する。
+     *
+     * @param syncRecords 同期レコード数
+     * @return 非同期出力の設定
+     */
+    private HdfsStoreConfig createConfig(long syncRecords)
+    {
+        HdfsStoreConfig config = new HdfsStoreConfig();
+        config.setAsyncWrite(true);
+        config.setSyncBytes(0);
+        config.setSyncRecords(syncRecords);
+        config.setSyncIntervalMs(0);
+        return config;
+    }
+}
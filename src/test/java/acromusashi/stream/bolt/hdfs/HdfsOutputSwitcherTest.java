@@ -0,0 +1,278 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.hdfs;
+
+import java.io.ByteArrayOutputStream;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * HdfsOutputSwitcherクラスのテストクラス
+ *
+ * @author kimura
+ */
+public class HdfsOutputSwitcherTest
+{
+    /** 出力ファイルのベースURI */
+    private static final String BASE_URI = "hdfs://localhost/output/HDFSStore201310301630";
+
+    /** テスト用のFileSystem */
+    private FileSystem          fileSystem;
+
+    /**
+     * 初期化メソッド
+     *
+     * @throws Exception 初期化失敗時
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        this.fileSystem = Mockito.mock(FileSystem.class);
+        Mockito.when(this.fileSystem.getConf()).thenReturn(new Configuration());
+        Mockito.when(this.fileSystem.create(Mockito.any(Path.class))).thenAnswer(
+                new Answer<FSDataOutputStream>() {
+                    @Override
+                    public FSDataOutputStream answer(InvocationOnMock invocation)
+                            throws Throwable
+                    {
+                        return new FSDataOutputStream(new ByteArrayOutputStream(), null);
+                    }
+                });
+    }
+
+    /**
+     * ファイル切替閾値(レコード数)に達した時点でファイルが切り替えられることを確認する。
+     *
+     * @target {@link HdfsOutputSwitcher#appendLine(String, long)}
+     * @test 閾値に達した時点で出力中ファイルがリネームされ、「_1」を付与したファイルに切り替えられること
+     *    condition:: ファイル切替閾値(レコード数)2件の設定で、同一インターバル内に3行出力
+     *    result:: 閾値に達した時点で出力中ファイルがリネームされ、「_1」を付与したファイルに切り替えられること
+     */
+    @Test
+    public void testAppendLine_レコード数閾値切替() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = createConfig();
+        config.setMaxFileRecords(2);
+        HdfsOutputSwitcher target = new HdfsOutputSwitcher();
+        long initializeTime = convertToDateStrToMillis("20131030163811");
+        target.initialize(this.fileSystem, config, initializeTime);
+
+        // 実施
+        target.appendLine("Message1", initializeTime);
+        target.appendLine("Message2", initializeTime);
+        target.appendLine("Message3", initializeTime);
+
+        // 検証
+        InOrder inOrder = Mockito.inOrder(this.fileSystem);
+        inOrder.verify(this.fileSystem).create(new Path(BASE_URI + ".tmp"));
+        inOrder.verify(this.fileSystem).rename(new Path(BASE_URI + ".tmp"), new Path(BASE_URI));
+        inOrder.verify(this.fileSystem).create(new Path(BASE_URI + "_1.tmp"));
+        Mockito.verify(this.fileSystem, Mockito.times(2)).create(Mockito.any(Path.class));
+    }
+
+    /**
+     * ファイル切替閾値(バイト数)に達した時点でファイルが切り替えられることを確認する。
+     *
+     * @target {@link HdfsOutputSwitcher#appendLine(String, long)}
+     * @test 閾値に達した時点で出力中ファイルがリネームされ、「_1」を付与したファイルに切り替えられること
+     *    condition:: ファイル切替閾値(バイト数)16byteの設定で、同一インターバル内に8文字の行を3行出力
+     *    result:: 閾値に達した時点で出力中ファイルがリネームされ、「_1」を付与したファイルに切り替えられること
+     */
+    @Test
+    public void testAppendLine_バイト数閾値切替() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = createConfig();
+        config.setMaxFileBytes(16);
+        HdfsOutputSwitcher target = new HdfsOutputSwitcher();
+        long initializeTime = convertToDateStrToMillis("20131030163811");
+        target.initialize(this.fileSystem, config, initializeTime);
+
+        // 実施
+        target.appendLine("Message1", initializeTime);
+        target.appendLine("Message2", initializeTime);
+        target.appendLine("Message3", initializeTime);
+
+        // 検証
+        InOrder inOrder = Mockito.inOrder(this.fileSystem);
+        inOrder.verify(this.fileSystem).create(new Path(BASE_URI + ".tmp"));
+        inOrder.verify(this.fileSystem).rename(new Path(BASE_URI + ".tmp"), new Path(BASE_URI));
+        inOrder.verify(this.fileSystem).create(new Path(BASE_URI + "_1.tmp"));
+        Mockito.verify(this.fileSystem, Mockito.times(2)).create(Mockito.any(Path.class));
+    }
+
+    /**
+     * 圧縮出力時に連番が圧縮コーデックの拡張子の前に付与されることを確認する。
+     *
+     * @target {@link HdfsOutputSwitcher#appendLine(String, long)}
+     * @test 「_1」が圧縮コーデックの拡張子の前に付与されること
+     *    condition:: gzip圧縮、ファイル切替閾値(レコード数)1件の設定で、同一インターバル内に2行出力
+     *    result:: 「_1」が圧縮コーデックの拡張子の前に付与されること
+     */
+    @Test
+    public void testAppendLine_圧縮時連番付与() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = createConfig();
+        config.setCompressionCodec("gzip");
+        config.setMaxFileRecords(1);
+        HdfsOutputSwitcher target = new HdfsOutputSwitcher();
+        long initializeTime = convertToDateStrToMillis("20131030163811");
+        target.initialize(this.fileSystem, config, initializeTime);
+
+        // 実施
+        target.appendLine("Message1", initializeTime);
+        target.appendLine("Message2", initializeTime);
+
+        // 検証
+        InOrder inOrder = Mockito.inOrder(this.fileSystem);
+        inOrder.verify(this.fileSystem).create(new Path(BASE_URI + ".gz.tmp"));
+        inOrder.verify(this.fileSystem).rename(new Path(BASE_URI + ".gz.tmp"),
+                new Path(BASE_URI + ".gz"));
+        inOrder.verify(this.fileSystem).create(new Path(BASE_URI + "_1.gz.tmp"));
+    }
+
+    /**
+     * インターバル経過によるファイル切替時に連番が初期化されることを確認する。
+     *
+     * @target {@link HdfsOutputSwitcher#appendLine(String, long)}
+     * @test 次のインターバルのファイルに連番が付与されないこと
+     *    condition:: ファイル切替閾値(レコード数)1件の設定で、同一インターバル内に2行出力後、次のインターバルで1行出力
+     *    result:: 次のインターバルのファイルに連番が付与されないこと
+     */
+    @Test
+    public void testAppendLine_時刻切替時連番初期化() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = createConfig();
+        config.setMaxFileRecords(1);
+        HdfsOutputSwitcher target = new HdfsOutputSwitcher();
+        long initializeTime = convertToDateStrToMillis("20131030163811");
+        long switchTime = convertToDateStrToMillis("20131030164811");
+        String nextBaseUri = "hdfs://localhost/output/HDFSStore201310301640";
+        target.initialize(this.fileSystem, config, initializeTime);
+
+        // 実施
+        target.appendLine("Message1", initializeTime);
+        target.appendLine("Message2", initializeTime);
+        target.appendLine("Message3", switchTime);
+
+        // 検証
+        InOrder inOrder = Mockito.inOrder(this.fileSystem);
+        inOrder.verify(this.fileSystem).create(new Path(BASE_URI + ".tmp"));
+        inOrder.verify(this.fileSystem).create(new Path(BASE_URI + "_1.tmp"));
+        inOrder.verify(this.fileSystem).rename(new Path(BASE_URI + "_1.tmp"),
+                new Path(BASE_URI + "_1"));
+        inOrder.verify(this.fileSystem).create(new Path(nextBaseUri + ".tmp"));
+    }
+
+    /**
+     * 初期化時に出力済みのファイルが存在する連番を使用しないことを確認する。
+     *
+     * @target {@link HdfsOutputSwitcher#initialize(FileSystem, HdfsStoreConfig, long)}
+     * @test 出力済みのファイルが存在しない連番のファイルに出力されること
+     *    condition:: 連番無し、「_1」のファイルが出力済みの状態で初期化
+     *    result:: 「_2」を付与したファイルに出力されること
+     */
+    @Test
+    public void testInitialize_出力済みファイル回避() throws Exception
+    {
+        // 準備
+        Mockito.when(this.fileSystem.exists(new Path(BASE_URI))).thenReturn(true);
+        Mockito.when(this.fileSystem.exists(new Path(BASE_URI + "_1"))).thenReturn(true);
+        HdfsStoreConfig config = createConfig();
+        HdfsOutputSwitcher target = new HdfsOutputSwitcher();
+
+        // 実施
+        target.initialize(this.fileSystem, config, convertToDateStrToMillis("20131030163811"));
+
+        // 検証
+        Mockito.verify(this.fileSystem).create(new Path(BASE_URI + "_2.tmp"));
+        Mockito.verify(this.fileSystem, Mockito.times(1)).create(Mockito.any(Path.class));
+    }
+
+    /**
+     * 出力中ファイルの破棄時に次の連番のファイルに切り替えられることを確認する。
+     *
+     * @target {@link HdfsOutputSwitcher#discardWriter()}
+     * @test 出力中ファイルがリネームされ、「_1」を付与したファイルに切り替えられること
+     *    condition:: 1行出力後、出力中ファイルを破棄して1行出力
+     *    result:: 出力中ファイルがリネームされ、「_1」を付与したファイルに切り替えられること
+     */
+    @Test
+    public void testDiscardWriter_次連番切替() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = createConfig();
+        HdfsOutputSwitcher target = new HdfsOutputSwitcher();
+        long initializeTime = convertToDateStrToMillis("20131030163811");
+        target.initialize(this.fileSystem, config, initializeTime);
+        target.appendLine("Message1", initializeTime);
+
+        // 実施
+        target.discardWriter();
+        target.appendLine("Message2", initializeTime);
+
+        // 検証
+        InOrder inOrder = Mockito.inOrder(this.fileSystem);
+        inOrder.verify(this.fileSystem).create(new Path(BASE_URI + ".tmp"));
+        inOrder.verify(this.fileSystem).rename(new Path(BASE_URI + ".tmp"), new Path(BASE_URI));
+        inOrder.verify(this.fileSystem).create(new Path(BASE_URI + "_1.tmp"));
+        Mockito.verify(this.fileSystem, Mockito.times(2)).create(Mockito.any(Path.class));
+    }
+
+    /**
+     * テスト用のHDFS出力設定を生成する。
+     *
+     * @return HDFS出力設定
+     */
+    private HdfsStoreConfig createConfig()
+    {
+        HdfsStoreConfig config = new HdfsStoreConfig();
+        config.setOutputUri("hdfs://localhost/output");
+        config.setFileSwitchIntarval(10);
+        config.setFileSwitchIntervalUnit(TimeUnit.MINUTES);
+        config.setBufferedWrite(true);
+        config.setSyncBytes(0);
+        config.setSyncRecords(0);
+        config.setSyncIntervalMs(0);
+        return config;
+    }
+
+    /**
+     * 指定した日付文字列（パターン：「yyyyMMddHHmmss」）を基にlong形式の時刻を生成する。
+     *
+     * @param dateStr 日付文字列
+     * @return long形式の時刻
+     * @throws ParseException パース失敗時
+     */
+    private long convertToDateStrToMillis(String dateStr) throws ParseException
+    {
+        DateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmmss");
+        return dateFormat.parse(dateStr).getTime();
+    }
+}
@@ -0,0 +1,321 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.hdfs;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import acromusashi.stream.metrics.LatencyHistogram;
+
+/**
+ * HdfsStreamWriterクラスのテストクラス
+ *
+ * @author kimura
+ */
+public class HdfsStreamWriterTest
+{
+    /** 出力先 */
+    private ByteArrayOutputStream output;
+
+    /** テスト用のFSDataOutputStream */
+    private FSDataOutputStream    stream;
+
+    /** テスト用のFileSystem */
+    private FileSystem            fileSystem;
+
+    /**
+     * 初期化メソッド
+     *
+     * @throws Exception 初期化失敗時
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        this.output = new ByteArrayOutputStream();
+        this.stream = Mockito.spy(new FSDataOutputStream(this.output, null));
+        this.fileSystem = Mockito.mock(FileSystem.class);
+        Mockito.when(this.fileSystem.create(Mockito.any(Path.class))).thenReturn(this.stream);
+    }
+
+    /**
+     * バッファ出力時にUTF-8で出力され、同期レコード数ごとに同期されることを確認する。
+     *
+     * @target {@link HdfsStreamWriter#appendLine(String)}
+     * @test UTF-8で出力され、同期レコード数ごとに同期されて同期時間が記録されること
+     *    condition:: 同期レコード数2件、書込みバッファ8byteの設定でマルチバイト文字を含む行を3行出力
+     *    result:: UTF-8で出力され、同期レコード数ごとに同期されて同期時間が記録されること
+     */
+    @Test
+    public void testAppendLine_バッファ出力() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = new HdfsStoreConfig();
+        config.setBufferedWrite(true);
+        config.setWriteBufferSize(8);
+        config.setSyncBytes(0);
+        config.setSyncRecords(2);
+        config.setSyncIntervalMs(0);
+        LatencyHistogram syncLatency = new LatencyHistogram();
+        HdfsStreamWriter target = new HdfsStreamWriter();
+        target.open("hdfs://localhost/test.txt.tmp", this.fileSystem, config, null, syncLatency);
+        String lineSeparator = System.getProperty("line.separator");
+
+        // 実施
+        target.appendLine("Message1");
+        target.appendLine("メッセージ2");
+
+        // 検証
+        Mockito.verify(this.stream, Mockito.times(1)).sync();
+        assertThat(this.output.toString("UTF-8"), equalTo("Message1" + lineSeparator + "メッセージ2"
+                + lineSeparator));
+
+        // 実施
+        target.appendLine("\uD83D\uDE00");
+        target.close();
+
+        // 検証
+        Mockito.verify(this.stream, Mockito.times(2)).sync();
+        assertThat(this.output.toString("UTF-8"), equalTo("Message1" + lineSeparator + "メッセージ2"
+                + lineSeparator + "\uD83D\uDE00" + lineSeparator));
+        assertThat(((Map<?, ?>) syncLatency.getValueAndReset()).get("count"),
+                equalTo((Object) 2L));
+    }
+
+    /**
+     * バッファ出力時に同期バイト数に到達した場合に同期されることを確認する。
+     *
+     * @target {@link HdfsStreamWriter#append(String)}
+     * @test 同期バイト数到達時のみ同期されること
+     *    condition:: 同期バイト数10byteの設定で6byteのテキストを2回出力
+     *    result:: 同期バイト数到達時のみ同期されること
+     */
+    @Test
+    public void testAppend_同期バイト数() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = new HdfsStoreConfig();
+        config.setBufferedWrite(true);
+        config.setSyncBytes(10);
+        config.setSyncIntervalMs(0);
+        HdfsStreamWriter target = new HdfsStreamWriter();
+        target.open("hdfs://localhost/test.txt.tmp", this.fileSystem, config, null, null);
+
+        // 実施
+        target.append("Value1");
+
+        // 検証
+        Mockito.verify(this.stream, Mockito.never()).sync();
+        assertThat(this.output.size(), equalTo(0));
+
+        // 実施
+        target.append("Value2");
+
+        // 検証
+        Mockito.verify(this.stream, Mockito.times(1)).sync();
+        assertThat(this.output.toString("UTF-8"), equalTo("Value1Value2"));
+    }
+
+    /**
+     * 出力バイト数、出力レコード数が同期前後で累積されることを確認する。
+     *
+     * @target {@link HdfsStreamWriter#getWrittenBytes()}
+     * @test 同期前の出力分を含めて累積されること
+     *    condition:: 同期レコード数2件の設定でマルチバイト文字を含む3行出力
+     *    result:: UTF-8でのバイト数、レコード数が累積されること
+     */
+    @Test
+    public void testGetWritten_同期前後累積() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = new HdfsStoreConfig();
+        config.setBufferedWrite(true);
+        config.setSyncBytes(0);
+        config.setSyncRecords(2);
+        config.setSyncIntervalMs(0);
+        HdfsStreamWriter target = new HdfsStreamWriter();
+        target.open("hdfs://localhost/test.txt.tmp", this.fileSystem, config, null, null);
+        int lineSeparatorLength = System.getProperty("line.separator").length();
+
+        // 実施
+        target.appendLine("Message1");
+        target.appendLine("Message2");
+        target.appendLine("メッセージ");
+
+        // 検証
+        assertThat(target.getWrittenRecords(), equalTo(3L));
+        assertThat(target.getWrittenBytes(), equalTo(8L + 8L + 15L + lineSeparatorLength * 3));
+    }
+
+    /**
+     * 圧縮出力時に同期ごとに圧縮ブロックが終端されることを確認する。
+     *
+     * @target {@link HdfsStreamWriter#sync()}
+     * @test 同期済みの範囲が伸長可能であること
+     *    condition:: gzip圧縮、同期レコード数2件の設定で3行出力後、Close
+     *    result:: 同期済みの範囲が伸長可能であること
+     */
+    @Test
+    public void testSync_圧縮ブロック終端() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = new HdfsStoreConfig();
+        config.setBufferedWrite(true);
+        config.setSyncBytes(0);
+        config.setSyncRecords(2);
+        config.setSyncIntervalMs(0);
+        HdfsStreamWriter target = new HdfsStreamWriter();
+        target.open("hdfs://localhost/test.txt.gz.tmp", this.fileSystem, config,
+                HdfsOutputSwitcher.createCodec("gzip", new Configuration()), null);
+        String lineSeparator = System.getProperty("line.separator");
+
+        // 実施
+        target.appendLine("Message1");
+        target.appendLine("Message2");
+        target.appendLine("Message3");
+
+        // 検証
+        assertThat(decompress(this.output.toByteArray()), equalTo("Message1" + lineSeparator
+                + "Message2" + lineSeparator));
+
+        // 実施
+        target.close();
+
+        // 検証
+        assertThat(decompress(this.output.toByteArray()), equalTo("Message1" + lineSeparator
+                + "Message2" + lineSeparator + "Message3" + lineSeparator));
+    }
+
+    /**
+     * バッファ出力を指定せずに圧縮出力した場合にバッファ出力として動作することを確認する。
+     *
+     * @target {@link HdfsStreamWriter#appendLine(String)}
+     * @test 書込みごとに同期されず、同期条件を満たした時点で同期されること
+     *    condition:: バッファ出力無し、書込みごとの同期有り、gzip圧縮、同期レコード数2件の設定で3行出力
+     *    result:: 書込みごとに同期されず、同期条件を満たした時点で同期されること
+     */
+    @Test
+    public void testAppendLine_圧縮時バッファ出力() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = new HdfsStoreConfig();
+        config.setSyncBytes(0);
+        config.setSyncRecords(2);
+        config.setSyncIntervalMs(0);
+        HdfsStreamWriter target = new HdfsStreamWriter();
+        target.open("hdfs://localhost/test.txt.gz.tmp", this.fileSystem, config,
+                HdfsOutputSwitcher.createCodec("gzip", new Configuration()), null);
+        String lineSeparator = System.getProperty("line.separator");
+
+        // 実施
+        target.appendLine("Message1");
+        target.appendLine("Message2");
+        target.appendLine("Message3");
+
+        // 検証
+        Mockito.verify(this.stream, Mockito.times(1)).sync();
+        assertThat(decompress(this.output.toByteArray()), equalTo("Message1" + lineSeparator
+                + "Message2" + lineSeparator));
+    }
+
+    /**
+     * 破棄時に未同期の内容が出力されないことを確認する。
+     *
+     * @target {@link HdfsStreamWriter#abort()}
+     * @test 同期済みの内容のみ出力され、データストリームがCloseされること
+     *    condition:: 同期レコード数2件の設定で3行出力後、破棄
+     *    result:: 同期済みの内容のみ出力され、データストリームがCloseされること
+     */
+    @Test
+    public void testAbort_未同期内容破棄() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = new HdfsStoreConfig();
+        config.setBufferedWrite(true);
+        config.setSyncBytes(0);
+        config.setSyncRecords(2);
+        config.setSyncIntervalMs(0);
+        HdfsStreamWriter target = new HdfsStreamWriter();
+        target.open("hdfs://localhost/test.txt.tmp", this.fileSystem, config, null, null);
+        String lineSeparator = System.getProperty("line.separator");
+        target.appendLine("Message1");
+        target.appendLine("Message2");
+        target.appendLine("Message3");
+
+        // 実施
+        target.abort();
+
+        // 検証
+        Mockito.verify(this.stream).close();
+        assertThat(this.output.toString("UTF-8"), equalTo("Message1" + lineSeparator + "Message2"
+                + lineSeparator));
+    }
+
+    /**
+     * バッファ出力しない場合に従来通りUTF-16で出力され、書込みごとに同期されることを確認する。
+     *
+     * @target {@link HdfsStreamWriter#append(String)}
+     * @test UTF-16で出力され、書込みごとに同期されること
+     *    condition:: バッファ出力無し、書込みごとの同期有りの設定でテキストを出力
+     *    result:: UTF-16で出力され、書込みごとに同期されること
+     */
+    @Test
+    public void testAppend_バッファ出力無し() throws Exception
+    {
+        // 準備
+        HdfsStoreConfig config = new HdfsStoreConfig();
+        HdfsStreamWriter target = new HdfsStreamWriter();
+        target.open("hdfs://localhost/test.txt.tmp", this.fileSystem, config, null, null);
+
+        // 実施
+        target.append("Value1");
+
+        // 検証
+        Mockito.verify(this.stream, Mockito.times(1)).sync();
+        assertThat(this.output.toString("UTF-16BE"), equalTo("Value1"));
+    }
+
+    /**
+     * gzip形式のバイト列を伸長する。
+     *
+     * @param compressed gzip形式のバイト列
+     * @return 伸長結果
+     * @throws IOException 伸長失敗時
+     */
+    private String decompress(byte[] compressed) throws IOException
+    {
+        GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = input.read(buffer)) > 0)
+        {
+            result.write(buffer, 0, length);
+        }
+        input.close();
+        return result.toString("UTF-8");
+    }
+}
@@ -0,0 +1,109 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.bolt.window;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import acromusashi.stream.entity.StreamMessage;
+
+/**
+ * DistinctCountAggregatorクラスのテストクラス
+ *
+ * @author kimura
+ */
+public class DistinctCountAggregatorTest
+{
+    /**
+     * 少数の値の場合に正確な件数が推定されることを確認する。
+     *
+     * @target {@link DistinctCountAggregator#getResult(byte[])}
+     * @test 重複を除いた件数が返ること
+     *    condition:: 100種類の値を重複ありで追加
+     *    result:: 重複を除いた件数が返ること
+     */
+    @Test
+    public void testGetResult_少数値()
+    {
+        // 準備
+        DistinctCountAggregator target = new DistinctCountAggregator("user");
+        byte[] accumulator = target.createAccumulator();
+
+        // 実施
+        for (int count = 0; count < 300; count++)
+        {
+            target.add(accumulator, createMessage("User" + (count % 100)));
+        }
+        target.add(accumulator, new StreamMessage());
+
+        // 検証
+        assertThat((Long) target.getResult(accumulator), equalTo(100L));
+    }
+
+    /**
+     * 多数の値の場合に誤差範囲内の件数が推定されることを確認する。
+     *
+     * @target {@link DistinctCountAggregator#getResult(byte[])}
+     * @test 推定件数の誤差が5%以内であること
+     *    condition:: 100000種類の値を追加
+     *    result:: 推定件数の誤差が5%以内であること
+     */
+    @Test
+    public void testGetResult_多数値()
+    {
+        // 準備
+        DistinctCountAggregator target = new DistinctCountAggregator("user");
+        byte[] accumulator = target.createAccumulator();
+
+        // 実施
+        for (int count = 0; count < 100000; count++)
+        {
+            target.add(accumulator, createMessage("User" + count));
+        }
+
+        // 検証
+        long result = (Long) target.getResult(accumulator);
+        assertTrue("Estimate=" + result, Math.abs(result - 100000) < 5000);
+    }
+
+    /**
+     * 範囲外の精度を指定した場合に例外が発生することを確認する。
+     *
+     * @target {@link DistinctCountAggregator#DistinctCountAggregator(String, int)}
+     * @test IllegalArgumentExceptionが発生すること
+     *    condition:: 精度に17を指定
+     *    result:: IllegalArgumentExceptionが発生すること
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_範囲外精度()
+    {
+        // 実施
+        new DistinctCountAggregator("user", 17);
+    }
+
+    /**
+     * 集計対象項目を保持するメッセージを生成する。
+     *
+     * @param user 集計対象値
+     * @return メッセージ
+     */
+    private StreamMessage createMessage(String user)
+    {
+        StreamMessage message = new StreamMessage();
+        message.addField("user", user);
+        return message;
+    }
+}
@@ -2,6 +2,8 @@ package acromusashi.stream.component.mqtt.spout;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyList;
 import static org.mockito.Matchers.anyObject;
@@ -24,6 +26,7 @@ import org.mockito.Mockito;
 import org.mockito.internal.util.reflection.Whitebox;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import acromusashi.stream.entity.StreamMessagePool;
 import backtype.storm.spout.SpoutOutputCollector;
 
 /**
@@ -148,6 +151,40 @@ public class MqttSpoutTest
         assertThat(message.getBody().toString(), is("TestMessage"));
     }
 
+    /**
+     * Payload遅延変換設定でメッセージを受信した場合、未変換のPayloadを保持したメッセージがemitされることを確認する。
+     *
+     * @target {@link MqttSpout#nextTuple()}
+     * @test 未変換のPayloadを保持し、Body参照時に文字列に変換されること
+     *    condition::  Payload遅延変換設定でメッセージを受信
+     *    result:: 未変換のPayloadを保持し、Body参照時に文字列に変換されること
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void testNextTuple_Payload遅延変換() throws Exception
+    {
+        // 準備
+        this.target.setImmidiateAck(true);
+        this.target.setLazyDecode(true);
+        Mockito.when(this.mqttMessage.getTopic()).thenReturn("TestTopic");
+        Mockito.when(this.mqttMessage.getPayload()).thenReturn("TestMessage".getBytes("UTF-8"));
+        Mockito.when(this.connection.receive(10L, TimeUnit.SECONDS)).thenReturn(this.mqttMessage);
+
+        // 実施
+        this.target.nextTuple();
+
+        // 検証
+        ArgumentCaptor<List> tupleCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(this.mockCollector).emit(tupleCaptor.capture());
+
+        List tuple = tupleCaptor.getValue();
+        acromusashi.stream.entity.StreamMessage message = (acromusashi.stream.entity.StreamMessage) tuple.get(1);
+        assertThat(message.getHeader().getMessageKey(), is("TestTopic"));
+        assertThat(message.getLazyBody().isDecoded(), is(false));
+        assertThat(message.getBody().toString(), is("TestMessage"));
+        assertThat(message.getLazyBody(), nullValue());
+    }
+
     /**
      * QoS0設定でメッセージを受信した場合、Anchor無しでemitされることを確認する。
      *
@@ -223,4 +260,78 @@ public class MqttSpoutTest
         Mockito.verify(this.mqttMessage).ack();
         assertThat(this.ackWaitMap.values().size(), is(0));
     }
+
+    /**
+     * メッセージプール使用時、Ack受信時にメッセージがプールに返却されることを確認する。
+     *
+     * @target {@link MqttSpout#ack(Object)}
+     * @test Ack受信時にメッセージがクリアされてプールに返却されること
+     *    condition::  メッセージプール使用時にQoS1でメッセージを受信後、Ackを受信
+     *    result:: Ack受信時にメッセージがクリアされてプールに返却されること
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Test
+    public void testAck_メッセージプール返却() throws Exception
+    {
+        // 準備
+        StreamMessagePool messagePool = new StreamMessagePool();
+        Whitebox.setInternalState(this.target, "messagePool", messagePool);
+        Whitebox.setInternalState(this.target, "pooledMessageMap",
+                Maps.<String, acromusashi.stream.entity.StreamMessage> newHashMap());
+        Mockito.when(this.mqttMessage.getTopic()).thenReturn("TestTopic");
+        Mockito.when(this.mqttMessage.getPayload()).thenReturn("TestMessage".getBytes("UTF-8"));
+        Mockito.when(this.connection.receive(10L, TimeUnit.SECONDS)).thenReturn(this.mqttMessage);
+        this.target.nextTuple();
+
+        ArgumentCaptor<List> tupleCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Object> anchorCaptor = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(this.mockCollector).emit(tupleCaptor.capture(), anchorCaptor.capture());
+        acromusashi.stream.entity.StreamMessage message = (acromusashi.stream.entity.StreamMessage) tupleCaptor.getValue().get(1);
+        assertThat(message.getBody().toString(), is("TestMessage"));
+
+        // 実施
+        this.target.ack(anchorCaptor.getValue());
+
+        // 検証
+        assertThat(messagePool.size(), is(1));
+        assertThat(message.getHeader().getMessageKey(), is(""));
+        assertThat(message.getBody(), nullValue());
+        assertThat(messagePool.acquire(), sameInstance(message));
+    }
+
+    /**
+     * メッセージプール使用時、Fail受信時にメッセージがプールに返却されないことを確認する。
+     *
+     * @target {@link MqttSpout#fail(Object)}
+     * @test Fail受信時にメッセージがクリアされず、プールにも返却されないこと
+     *    condition::  メッセージプール使用時にQoS1でメッセージを受信後、Failを受信
+     *    result:: Fail受信時にメッセージがクリアされず、プールにも返却されないこと
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Test
+    public void testFail_メッセージプール非返却() throws Exception
+    {
+        // 準備
+        StreamMessagePool messagePool = new StreamMessagePool();
+        Map<String, acromusashi.stream.entity.StreamMessage> pooledMessageMap = Maps.newHashMap();
+        Whitebox.setInternalState(this.target, "messagePool", messagePool);
+        Whitebox.setInternalState(this.target, "pooledMessageMap", pooledMessageMap);
+        Mockito.when(this.mqttMessage.getTopic()).thenReturn("TestTopic");
+        Mockito.when(this.mqttMessage.getPayload()).thenReturn("TestMessage".getBytes("UTF-8"));
+        Mockito.when(this.connection.receive(10L, TimeUnit.SECONDS)).thenReturn(this.mqttMessage);
+        this.target.nextTuple();
+
+        ArgumentCaptor<List> tupleCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Object> anchorCaptor = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(this.mockCollector).emit(tupleCaptor.capture(), anchorCaptor.capture());
+        acromusashi.stream.entity.StreamMessage message = (acromusashi.stream.entity.StreamMessage) tupleCaptor.getValue().get(1);
+
+        // 実施
+        this.target.fail(anchorCaptor.getValue());
+
+        // 検証
+        assertThat(messagePool.size(), is(0));
+        assertThat(pooledMessageMap.size(), is(0));
+        assertThat(message.getBody().toString(), is("TestMessage"));
+    }
 }
@@ -0,0 +1,172 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.config;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * ConfigWatchServiceのテストクラス
+ * 
+ * @author kimura
+ */
+public class ConfigWatchServiceTest
+{
+    /** 一時ディレクトリ */
+    @Rule
+    public TemporaryFolder     folder = new TemporaryFolder();
+
+    /** テスト対象 */
+    private ConfigWatchService target;
+
+    /** 監視対象ファイル */
+    private File               configFile;
+
+    /**
+     * 初期化メソッド
+     * 
+     * @throws IOException 初期化失敗時
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        this.target = new ConfigWatchService(false);
+        this.configFile = this.folder.newFile("config.yaml");
+        writeConfig("key: value1\n", 1000000L);
+    }
+
+    /**
+     * 同一ファイルを複数回登録した場合に同一の監視設定が返ることを確認する。
+     * 
+     * @target {@link ConfigWatchService#register(String, long)}
+     * @test 同一の監視設定が返ること
+     *    condition:: 同一ファイルを2回登録
+     *    result:: 同一の監視設定が返ること
+     */
+    @Test
+    public void testRegister_同一ファイル登録()
+    {
+        // 実施
+        WatchedConfig first = this.target.register(this.configFile.getAbsolutePath(), 30L);
+        WatchedConfig second = this.target.register(this.configFile.getAbsolutePath(), 30L);
+
+        // 検証
+        assertThat(second, sameInstance(first));
+        assertThat(first.getSnapshot(), nullValue());
+        assertThat(first.getVersion(), equalTo(0L));
+    }
+
+    /**
+     * 変更通知を受けたファイルが監視間隔に関わらず読み込まれることを確認する。
+     * 
+     * @target {@link ConfigWatchService#checkAll(java.util.Set)}
+     * @test 更新後の設定がスナップショットとして公開されること
+     *    condition:: ファイル更新後、変更通知付きで確認
+     *    result:: 更新後の設定がスナップショットとして公開されること
+     */
+    @Test
+    public void testCheckAll_変更通知あり() throws IOException
+    {
+        // 準備
+        WatchedConfig watched = this.target.register(this.configFile.getAbsolutePath(), 30L);
+        writeConfig("key: value2\n", 2000000L);
+
+        // 実施
+        this.target.checkAll(Collections.singleton(this.configFile.getAbsoluteFile()));
+
+        // 検証
+        assertThat(watched.getVersion(), equalTo(1L));
+        assertThat(watched.getSnapshot().getConfig().get("key").toString(), equalTo("value2"));
+    }
+
+    /**
+     * 変更通知がなく、監視間隔未経過の場合にファイルが読み込まれないことを確認する。
+     * 
+     * @target {@link ConfigWatchService#checkAll(java.util.Set)}
+     * @test スナップショットが公開されないこと
+     *    condition:: ファイル更新後、変更通知なしで監視間隔経過前に確認
+     *    result:: スナップショットが公開されないこと
+     */
+    @Test
+    public void testCheckAll_変更通知なし監視間隔未経過() throws IOException
+    {
+        // 準備
+        WatchedConfig watched = this.target.register(this.configFile.getAbsolutePath(), 30L);
+        writeConfig("key: value2\n", 2000000L);
+
+        // 実施
+        this.target.checkAll(Collections.<File> emptySet());
+
+        // 検証
+        assertThat(watched.getSnapshot(), nullValue());
+    }
+
+    /**
+     * 変更通知が欠落した可能性がある場合に全ファイルが確認されることを確認する。
+     * 
+     * @target {@link ConfigWatchService#checkAll(java.util.Set)}
+     * @test 更新毎にスナップショットのバージョンが増加すること
+     *    condition:: ファイルを2回更新し、都度全ファイル確認
+     *    result:: 更新毎にスナップショットのバージョンが増加すること
+     */
+    @Test
+    public void testCheckAll_全ファイル確認() throws IOException
+    {
+        // 準備
+        WatchedConfig watched = this.target.register(this.configFile.getAbsolutePath(), 30L);
+
+        // 実施
+        writeConfig("key: value2\n", 2000000L);
+        this.target.checkAll(null);
+        ConfigSnapshot first = watched.getSnapshot();
+        this.target.checkAll(null);
+        writeConfig("key: value3\n", 3000000L);
+        this.target.checkAll(null);
+
+        // 検証
+        assertThat(first.getVersion(), equalTo(1L));
+        assertThat(first.getConfig().get("key").toString(), equalTo("value2"));
+        assertThat(watched.getVersion(), equalTo(2L));
+        assertThat(watched.getSnapshot().getConfig().get("key").toString(), equalTo("value3"));
+    }
+
+    /**
+     * 設定ファイルを書き込み、最終更新時刻を設定する。
+     * 
+     * @param content 設定内容
+     * @param lastModified 最終更新時刻
+     * @throws IOException 書き込み失敗時
+     */
+    private void writeConfig(String content, long lastModified) throws IOException
+    {
+        try (OutputStream output = new FileOutputStream(this.configFile))
+        {
+            output.write(content.getBytes("UTF-8"));
+        }
+
+        this.configFile.setLastModified(lastModified);
+    }
+}
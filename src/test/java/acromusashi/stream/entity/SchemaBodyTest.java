@@ -0,0 +1,144 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import acromusashi.stream.entity.StreamMessageSchema.FieldType;
+
+/**
+ * SchemaBodyのテストクラス
+ *
+ * @author kimura
+ */
+public class SchemaBodyTest
+{
+    /** テスト用のスキーマ */
+    private StreamMessageSchema schema;
+
+    /** Object型項目のインデックス */
+    private int                 nameIndex;
+
+    /** long型項目のインデックス */
+    private int                 countIndex;
+
+    /** double型項目のインデックス */
+    private int                 rateIndex;
+
+    /**
+     * 初期化メソッド
+     */
+    @Before
+    public void setUp()
+    {
+        this.schema = new StreamMessageSchema();
+        this.nameIndex = this.schema.addField("Name", FieldType.OBJECT);
+        this.countIndex = this.schema.addField("Count", FieldType.LONG);
+        this.rateIndex = this.schema.addField("Rate", FieldType.DOUBLE);
+    }
+
+    /**
+     * 型に合致したアクセサで値を設定、取得できることを確認する。
+     *
+     * @target {@link SchemaBody#setLong(int, long)}
+     * @test 設定した値が取得できること
+     *    condition:: Object/long/double型項目にそれぞれの型のアクセサで値を設定
+     *    result:: 設定した値が取得できること
+     */
+    @Test
+    public void testSetLong_型合致()
+    {
+        // 準備
+        SchemaBody target = new SchemaBody(this.schema);
+
+        // 実施
+        target.setObject(this.nameIndex, "Value1");
+        target.setLong(this.countIndex, 3L);
+        target.setDouble(this.rateIndex, 0.5d);
+
+        // 検証
+        assertThat(target.getObject(this.nameIndex).toString(), equalTo("Value1"));
+        assertThat(target.getLong(this.countIndex), equalTo(3L));
+        assertThat(target.getDouble(this.rateIndex), equalTo(0.5d));
+    }
+
+    /**
+     * double型項目にlong型アクセサで値を設定した場合、例外が発生することを確認する。
+     *
+     * @target {@link SchemaBody#setLong(int, long)}
+     * @test IllegalArgumentExceptionが発生すること
+     *    condition:: double型項目にsetLongで値を設定
+     *    result:: IllegalArgumentExceptionが発生すること
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetLong_型不一致()
+    {
+        // 準備
+        SchemaBody target = new SchemaBody(this.schema);
+
+        // 実施
+        target.setLong(this.rateIndex, 1L);
+    }
+
+    /**
+     * Object型項目からdouble型アクセサで値を取得した場合、例外が発生することを確認する。
+     *
+     * @target {@link SchemaBody#getDouble(int)}
+     * @test IllegalArgumentExceptionが発生すること
+     *    condition:: Object型項目からgetDoubleで値を取得
+     *    result:: IllegalArgumentExceptionが発生すること
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetDouble_型不一致()
+    {
+        // 準備
+        SchemaBody target = new SchemaBody(this.schema);
+
+        // 実施
+        target.getDouble(this.nameIndex);
+    }
+
+    /**
+     * String以外のキーでMapとしてアクセスした場合、例外が発生せず未設定として扱われることを確認する。
+     *
+     * @target {@link SchemaBody#get(Object)}
+     * @test get、removeがnull、containsKeyがfalseを返し、値が保持されること
+     *    condition:: 値を設定後、Integer型のキーでget、containsKey、removeを実行
+     *    result:: get、removeがnull、containsKeyがfalseを返し、値が保持されること
+     */
+    @Test
+    public void testGet_String以外のキー()
+    {
+        // 準備
+        SchemaBody target = new SchemaBody(this.schema);
+        target.setObject(this.nameIndex, "Value1");
+        target.put("Additional", "Value2");
+
+        // 実施
+        Object getResult = target.get(Integer.valueOf(1));
+        boolean containsResult = target.containsKey(Integer.valueOf(1));
+        Object removeResult = target.remove(Integer.valueOf(1));
+
+        // 検証
+        assertThat(getResult, nullValue());
+        assertThat(containsResult, equalTo(false));
+        assertThat(removeResult, nullValue());
+        assertThat(target.get("Name").toString(), equalTo("Value1"));
+        assertThat(target.get("Additional").toString(), equalTo("Value2"));
+    }
+}
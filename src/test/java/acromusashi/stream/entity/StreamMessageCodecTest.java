@@ -0,0 +1,382 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import acromusashi.stream.entity.StreamMessageSchema.FieldType;
+import acromusashi.stream.exception.ConvertFailException;
+
+/**
+ * StreamMessageCodecのテストクラス
+ *
+ * @author kimura
+ */
+public class StreamMessageCodecTest
+{
+    /** 試験対象 */
+    private StreamMessageCodec target;
+
+    /**
+     * 初期化メソッド
+     */
+    @Before
+    public void setUp()
+    {
+        this.target = new StreamMessageCodec();
+    }
+
+    /**
+     * 全項目を設定したメッセージのエンコード/デコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#encode(StreamMessage)}
+     * @test ヘッダ、キー履歴、ボディが復元されること
+     *    condition:: 全項目を設定したメッセージをエンコード後デコード
+     *    result:: ヘッダ、キー履歴、ボディが復元されること
+     */
+    @Test
+    public void testEncodeDecode_全項目復元確認() throws ConvertFailException
+    {
+        // 準備
+        StreamMessage message = new StreamMessage();
+        StreamMessageHeader header = message.getHeader();
+        header.setMessageKey("MessageKey");
+        header.setMessageId("MessageId");
+        header.setTimestamp(1400000000000L);
+        header.setSource("192.168.0.1");
+        header.setType("snmp");
+        header.addAdditionalHeader("SNMPVersion", "v2c");
+        header.addHistory("Key1");
+        header.addHistory("Key2");
+        message.setBody("Body");
+
+        // 実施
+        StreamMessage result = this.target.decode(this.target.encode(message));
+
+        // 検証
+        StreamMessageHeader resultHeader = result.getHeader();
+        assertThat(resultHeader.getMessageKey(), equalTo("MessageKey"));
+        assertThat(resultHeader.getMessageId(), equalTo("MessageId"));
+        assertThat(resultHeader.getTimestamp(), equalTo(1400000000000L));
+        assertThat(resultHeader.getSource(), equalTo("192.168.0.1"));
+        assertThat(resultHeader.getType(), equalTo("snmp"));
+        assertThat(resultHeader.getVersion(), equalTo(StreamMessageHeader.DEFAULT_VERSION));
+        assertThat(resultHeader.getAdditionalHeader().get("SNMPVersion"), equalTo("v2c"));
+        assertThat(resultHeader.getHistory().toString(), equalTo("KeyHistory=[Key1, Key2]"));
+        assertThat(result.getLazyBody().isDecoded(), equalTo(false));
+        assertThat(result.getBody().toString(), equalTo("Body"));
+    }
+
+    /**
+     * 辞書に登録された値のエンコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#encode(StreamMessage)}
+     * @test 辞書登録値は辞書未登録値よりも短くエンコードされること
+     *    condition:: 辞書登録済のTypeと未登録のTypeのメッセージをエンコード
+     *    result:: 辞書登録値は辞書未登録値よりも短くエンコードされること
+     */
+    @Test
+    public void testEncode_辞書エンコード() throws ConvertFailException
+    {
+        // 準備
+        StreamMessage dictionaryMessage = new StreamMessage();
+        dictionaryMessage.getHeader().setType("snmp");
+        StreamMessage literalMessage = new StreamMessage();
+        literalMessage.getHeader().setType("sNmP");
+
+        // 実施
+        byte[] dictionaryResult = this.target.encode(dictionaryMessage);
+        byte[] literalResult = this.target.encode(literalMessage);
+
+        // 検証
+        assertTrue(dictionaryResult.length < literalResult.length);
+        assertThat(this.target.decode(literalResult).getHeader().getType(), equalTo("sNmP"));
+    }
+
+    /**
+     * レコード形式の書き込み/読み込み確認を行う。
+     *
+     * @target {@link StreamMessageCodec#writeRecord(StreamMessage, java.io.DataOutput)}
+     * @test 書き込んだ順にメッセージが読み込まれ、終端でnullが返ること
+     *    condition:: 2件のメッセージをレコード形式で書き込み後読み込み
+     *    result:: 書き込んだ順にメッセージが読み込まれ、終端でnullが返ること
+     */
+    @Test
+    public void testWriteReadRecord_複数レコード() throws Exception
+    {
+        // 準備
+        StreamMessage first = new StreamMessage();
+        first.setBody("First");
+        StreamMessage second = new StreamMessage();
+        second.setBody("Second".getBytes("UTF-8"));
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(byteStream);
+
+        // 実施
+        this.target.writeRecord(first, out);
+        this.target.writeRecord(second, out);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(byteStream.toByteArray()));
+
+        // 検証
+        assertThat(this.target.readRecord(in).getBody().toString(), equalTo("First"));
+        assertThat((byte[]) this.target.readRecord(in).getBody(), equalTo("Second".getBytes("UTF-8")));
+        assertThat(this.target.readRecord(in), nullValue());
+    }
+
+    /**
+     * 未対応のフォーマットバージョンのデコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#decode(byte[])}
+     * @test ConvertFailExceptionが発生すること
+     *    condition:: 未対応のフォーマットバージョンのバイト列をデコード
+     *    result:: ConvertFailExceptionが発生すること
+     */
+    @Test(expected = ConvertFailException.class)
+    public void testDecode_未対応バージョン() throws ConvertFailException
+    {
+        // 実施
+        this.target.decode(new byte[]{(byte) 99});
+    }
+
+    /**
+     * 辞書範囲外のコードのデコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#decode(byte[])}
+     * @test ConvertFailExceptionが発生すること
+     *    condition:: Sourceに辞書範囲外のコードを持つバイト列をデコード
+     *    result:: ConvertFailExceptionが発生すること
+     */
+    @Test(expected = ConvertFailException.class)
+    public void testDecode_辞書範囲外コード() throws ConvertFailException
+    {
+        // 実施
+        this.target.decode(new byte[]{1, 0, 0, 0, 100});
+    }
+
+    /**
+     * 未定義のキー履歴モードのデコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#decode(byte[])}
+     * @test ConvertFailExceptionが発生すること
+     *    condition:: 未定義のキー履歴モードを持つバイト列をデコード
+     *    result:: ConvertFailExceptionが発生すること
+     */
+    @Test(expected = ConvertFailException.class)
+    public void testDecode_未定義履歴モード() throws ConvertFailException
+    {
+        // 実施
+        this.target.decode(new byte[]{1, 0, 0, 0, 0, 0, 0, 9});
+    }
+
+    /**
+     * 負の長さのデコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#decode(byte[])}
+     * @test ConvertFailExceptionが発生すること
+     *    condition:: MessageKeyの長さに負の値を持つバイト列をデコード
+     *    result:: ConvertFailExceptionが発生すること
+     */
+    @Test(expected = ConvertFailException.class)
+    public void testDecode_負の長さ() throws ConvertFailException
+    {
+        // 準備
+        byte[] bytes = new byte[11];
+        bytes[0] = 1;
+        Arrays.fill(bytes, 1, 10, (byte) 0xFF);
+        bytes[10] = 1;
+
+        // 実施
+        this.target.decode(bytes);
+    }
+
+    /**
+     * 残りバイト数を超える長さのデコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#decode(byte[])}
+     * @test ConvertFailExceptionが発生すること
+     *    condition:: ボディ長に残りバイト数を超える値を持つバイト列をデコード
+     *    result:: ConvertFailExceptionが発生すること
+     */
+    @Test(expected = ConvertFailException.class)
+    public void testDecode_残りバイト数超過() throws ConvertFailException
+    {
+        // 実施
+        this.target.decode(new byte[]{1, 0, 0, 0, 0, 0, 0, 0, 0, 2, 100});
+    }
+
+    /**
+     * 途中で切れたバイト列のデコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#decode(byte[], int, int)}
+     * @test ConvertFailExceptionが発生すること
+     *    condition:: エンコード結果の前半のみをデコード
+     *    result:: ConvertFailExceptionが発生すること
+     */
+    @Test(expected = ConvertFailException.class)
+    public void testDecode_途中切断() throws ConvertFailException
+    {
+        // 準備
+        StreamMessage message = new StreamMessage();
+        message.getHeader().setMessageKey("MessageKey");
+        message.setBody("Body");
+        byte[] bytes = this.target.encode(message);
+
+        // 実施
+        this.target.decode(bytes, 0, bytes.length / 2);
+    }
+
+    /**
+     * フォーマットバージョンとデフォルト辞書の対応確認を行う。
+     *
+     * @target {@link StreamMessageCodec#DEFAULT_DICTIONARY}
+     * @test デフォルト辞書がフォーマットバージョン1の内容と一致すること
+     *    condition:: デフォルト辞書を取得
+     *    result:: デフォルト辞書がフォーマットバージョン1の内容と一致すること。
+     *             辞書を変更する場合はFORMAT_VERSIONを更新し本試験も更新すること。
+     */
+    @Test
+    public void testDefaultDictionary_フォーマットバージョン対応()
+    {
+        // 検証
+        assertThat(StreamMessageCodec.FORMAT_VERSION, equalTo(1));
+        assertThat(StreamMessageCodec.DEFAULT_DICTIONARY, equalTo(Arrays.asList(
+                StreamMessageHeader.DEFAULT_VERSION, "MQTT", "snmp", "twitterjson",
+                "SNMPVersion")));
+    }
+
+    /**
+     * addFieldで生成したMapボディのエンコード/デコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#encode(StreamMessage)}
+     * @test 各型のフィールド値が型を保って復元されること
+     *    condition:: デフォルト設定で各型のフィールドをaddFieldしたメッセージをエンコード後デコード
+     *    result:: 各型のフィールド値が型を保って復元されること
+     */
+    @Test
+    public void testEncodeDecode_Mapボディ復元確認() throws ConvertFailException
+    {
+        // 準備
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("Inner", Arrays.asList("A", 1L));
+        StreamMessage message = new StreamMessage();
+        message.addField("String", "値");
+        message.addField("Integer", -12);
+        message.addField("Long", 1400000000000L);
+        message.addField("Double", 1.5d);
+        message.addField("Boolean", true);
+        message.addField("Null", null);
+        message.addField("Nested", nested);
+
+        // 実施
+        StreamMessage result = this.target.decode(this.target.encode(message));
+
+        // 検証
+        assertThat(result.getField("String"), equalTo((Object) "値"));
+        assertThat(result.getField("Integer"), equalTo((Object) Integer.valueOf(-12)));
+        assertThat(result.getField("Long"), equalTo((Object) Long.valueOf(1400000000000L)));
+        assertThat(result.getField("Double"), equalTo((Object) Double.valueOf(1.5d)));
+        assertThat(result.getField("Boolean"), equalTo((Object) Boolean.TRUE));
+        assertThat(result.getField("Null"), nullValue());
+        assertThat(result.getField("Nested"), equalTo((Object) nested));
+        assertThat(result.getBody(), equalTo(message.getBody()));
+    }
+
+    /**
+     * SchemaBodyのエンコード/デコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#encode(StreamMessage)}
+     * @test スキーマ、宣言済フィールド、未宣言フィールドが復元されること
+     *    condition:: 宣言済フィールドの一部と未宣言フィールドを設定したSchemaBodyのメッセージをエンコード後デコード
+     *    result:: スキーマ、宣言済フィールド、未宣言フィールドが復元されること
+     */
+    @Test
+    public void testEncodeDecode_SchemaBody復元確認() throws ConvertFailException
+    {
+        // 準備
+        StreamMessageSchema schema = new StreamMessageSchema();
+        int nameIndex = schema.addField("name", FieldType.OBJECT);
+        int countIndex = schema.addField("count", FieldType.LONG);
+        int rateIndex = schema.addField("rate", FieldType.DOUBLE);
+        SchemaBody body = new SchemaBody(schema);
+        body.setObject(nameIndex, "Name");
+        body.setLong(countIndex, -3L);
+        body.put("extra", "Extra");
+        StreamMessage message = new StreamMessage();
+        message.setBody(body);
+
+        // 実施
+        StreamMessage result = this.target.decode(this.target.encode(message));
+
+        // 検証
+        SchemaBody resultBody = (SchemaBody) result.getBody();
+        assertThat(resultBody.getSchema().getSignature(), equalTo(schema.getSignature()));
+        assertThat(resultBody.getObject(nameIndex), equalTo((Object) "Name"));
+        assertThat(resultBody.getLong(countIndex), equalTo(-3L));
+        assertThat(resultBody.isAssigned(rateIndex), equalTo(false));
+        assertThat(resultBody.get("extra"), equalTo((Object) "Extra"));
+    }
+
+    /**
+     * 未対応の型のフィールド値を含むMapボディのエンコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#encode(StreamMessage)}
+     * @test ConvertFailExceptionが発生すること
+     *    condition:: 未対応の型のフィールド値を含むメッセージをエンコード
+     *    result:: ConvertFailExceptionが発生すること
+     */
+    @Test(expected = ConvertFailException.class)
+    public void testEncode_未対応フィールド型() throws ConvertFailException
+    {
+        // 準備
+        StreamMessage message = new StreamMessage();
+        message.addField("Key", new Object());
+
+        // 実施
+        this.target.encode(message);
+    }
+
+    /**
+     * ボディコーデック未設定時のMapボディのエンコード確認を行う。
+     *
+     * @target {@link StreamMessageCodec#encode(StreamMessage)}
+     * @test ConvertFailExceptionが発生すること
+     *    condition:: ボディコーデックにnullを指定してMapボディのメッセージをエンコード
+     *    result:: ConvertFailExceptionが発生すること
+     */
+    @Test(expected = ConvertFailException.class)
+    public void testEncode_ボディコーデック未設定() throws ConvertFailException
+    {
+        // 準備
+        StreamMessageCodec noBodyCodec = new StreamMessageCodec(
+                StreamMessageCodec.DEFAULT_DICTIONARY, null);
+        StreamMessage message = new StreamMessage();
+        message.addField("Key", "Value");
+
+        // 実施
+        noBodyCodec.encode(message);
+    }
+}
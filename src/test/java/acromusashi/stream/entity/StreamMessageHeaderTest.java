@@ -0,0 +1,109 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.entity;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * StreamMessageHeaderのテストクラス
+ *
+ * @author kimura
+ */
+public class StreamMessageHeaderTest
+{
+    /**
+     * 同一の値を設定したヘッダ間で値のインスタンスが共有されることを確認する。
+     *
+     * @target {@link StreamMessageHeader#setType(String)}
+     * @test 値のインスタンスが共有されること
+     *    condition:: 別インスタンスの同一文字列を2つのヘッダのTypeに設定
+     *    result:: 値のインスタンスが共有されること
+     */
+    @Test
+    public void testSetType_値共有確認()
+    {
+        // 準備
+        StreamMessageHeader first = new StreamMessageHeader();
+        StreamMessageHeader second = new StreamMessageHeader();
+
+        // 実施
+        first.setType(new String("TestType"));
+        second.setType(new String("TestType"));
+
+        // 検証
+        assertThat(first.getType(), sameInstance(second.getType()));
+    }
+
+    /**
+     * Sourceが辞書に登録されないことを確認する。
+     *
+     * @target {@link StreamMessageHeader#setSource(String)}
+     * @test 既知でないSourceは辞書に登録されず、既知の値のみ共有されること
+     *    condition:: 既知でないSourceと既知の値のSourceを設定
+     *    result:: 既知でないSourceは辞書に登録されず、既知の値のみ共有されること
+     */
+    @Test
+    public void testSetSource_辞書非登録確認()
+    {
+        // 準備
+        StreamMessageHeader first = new StreamMessageHeader();
+        StreamMessageHeader second = new StreamMessageHeader();
+        int beforeSize = HeaderValueDictionary.size();
+
+        // 実施
+        first.setSource(new String("192.168.0.100"));
+        second.setSource(new String("snmp"));
+
+        // 検証
+        assertThat(first.getSource(), equalTo("192.168.0.100"));
+        assertThat(HeaderValueDictionary.size(), equalTo(beforeSize));
+        assertThat(second.getSource(), sameInstance(HeaderValueDictionary.wellKnownValue(
+                HeaderValueDictionary.wellKnownCode("snmp"))));
+    }
+
+    /**
+     * 追加ヘッダの追加、上書き、削除を確認する。
+     *
+     * @target {@link StreamMessageHeader#addAdditionalHeader(String, String)}
+     * @test 追加順を保持したまま上書き、削除されること
+     *    condition:: 追加ヘッダを3件追加後、1件上書き、1件削除
+     *    result:: 追加順を保持したまま上書き、削除されること
+     */
+    @Test
+    public void testAddAdditionalHeader_追加上書き削除()
+    {
+        // 準備
+        StreamMessageHeader header = new StreamMessageHeader();
+
+        // 実施
+        header.addAdditionalHeader("Key1", "Value1");
+        header.addAdditionalHeader("Key2", "Value2");
+        header.addAdditionalHeader("Key3", "Value3");
+        header.addAdditionalHeader("Key1", "Value1-2");
+        Map<String, String> result = header.getAdditionalHeader();
+        result.remove("Key2");
+
+        // 検証
+        assertThat(result.size(), equalTo(2));
+        assertThat(result.get("Key1"), equalTo("Value1-2"));
+        assertThat(result.get("Key2"), nullValue());
+        assertThat(result.toString(), equalTo("{Key1=Value1-2, Key3=Value3}"));
+    }
+}
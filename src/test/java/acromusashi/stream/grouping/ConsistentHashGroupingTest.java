@@ -0,0 +1,147 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.grouping;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import backtype.storm.task.WorkerTopologyContext;
+import backtype.storm.tuple.Values;
+
+/**
+ * ConsistentHashGroupingクラスのテストクラス
+ *
+ * @author kimura
+ */
+public class ConsistentHashGroupingTest
+{
+    /**
+     * 同一キーが常に同一タスクに送信され、タスク間で偏りなく分散されることを確認する。
+     *
+     * @target {@link ConsistentHashGrouping#chooseTasks(int, List)}
+     * @test 同一キーは同一タスクに送信され、各タスクの件数が平均の±25%以内であること
+     *    condition:: 10タスクに対して10000種類のキーを2回ずつ送信
+     *    result:: 同一キーは同一タスクに送信され、各タスクの件数が平均の±25%以内であること
+     */
+    @Test
+    public void testChooseTasks_分散()
+    {
+        // 準備
+        ConsistentHashGrouping target = new ConsistentHashGrouping();
+        target.prepare(null, null, createTasks(10));
+        int[] counts = new int[10];
+
+        // 実施
+        for (int count = 0; count < 10000; count++)
+        {
+            List<Integer> first = target.chooseTasks(0, new Values("Device" + count, "Message"));
+            List<Integer> second = target.chooseTasks(0, new Values("Device" + count, "Message"));
+
+            // 検証
+            assertThat(second, equalTo(first));
+            counts[first.get(0) - 100]++;
+        }
+
+        // 検証
+        for (int taskCount : counts)
+        {
+            assertTrue("Counts=" + Arrays.toString(counts), taskCount > 750 && taskCount < 1250);
+        }
+    }
+
+    /**
+     * タスク追加時に追加されたタスクへのキーのみ移動することを確認する。
+     *
+     * @target {@link ConsistentHashGrouping#chooseTasks(int, List)}
+     * @test 移動したキーは全て追加タスクに送信され、移動数が全体の1/5以下であること
+     *    condition:: 10タスクと11タスクのグルーピングで10000種類のキーの送信先を比較
+     *    result:: 移動したキーは全て追加タスクに送信され、移動数が全体の1/5以下であること
+     */
+    @Test
+    public void testChooseTasks_タスク追加()
+    {
+        // 準備
+        ConsistentHashGrouping before = new ConsistentHashGrouping();
+        before.prepare(null, null, createTasks(10));
+        ConsistentHashGrouping after = new ConsistentHashGrouping();
+        after.prepare(null, null, createTasks(11));
+        int moved = 0;
+
+        // 実施
+        for (int count = 0; count < 10000; count++)
+        {
+            Values values = new Values("Device" + count, "Message");
+            int beforeTask = before.chooseTasks(0, values).get(0);
+            int afterTask = after.chooseTasks(0, values).get(0);
+
+            // 検証
+            if (beforeTask != afterTask)
+            {
+                assertThat(afterTask, equalTo(110));
+                moved++;
+            }
+        }
+
+        // 検証
+        assertTrue("Moved=" + moved, moved > 0 && moved < 2000);
+    }
+
+    /**
+     * グルーピングキーが空の場合にラウンドロビンで送信されることを確認する。
+     *
+     * @target {@link ConsistentHashGrouping#chooseTasks(int, List)}
+     * @test 全タスクに順に送信されること
+     *    condition:: 3タスクに対して空のグルーピングキーを3回送信
+     *    result:: 全タスクに順に送信されること
+     */
+    @Test
+    public void testChooseTasks_空キー()
+    {
+        // 準備
+        ConsistentHashGrouping target = new ConsistentHashGrouping();
+        target.prepare((WorkerTopologyContext) null, null, Arrays.asList(3, 1, 2));
+        List<Integer> result = new ArrayList<>();
+
+        // 実施
+        for (int count = 0; count < 3; count++)
+        {
+            result.add(target.chooseTasks(0, new Values("", "Message")).get(0));
+        }
+
+        // 検証
+        assertThat(result, equalTo(Arrays.asList(2, 3, 1)));
+    }
+
+    /**
+     * 指定数のタスクIDリストを生成する。
+     *
+     * @param taskNum タスク数
+     * @return タスクIDリスト(100から連番)
+     */
+    private List<Integer> createTasks(int taskNum)
+    {
+        List<Integer> tasks = new ArrayList<>();
+        for (int index = 0; index < taskNum; index++)
+        {
+            tasks.add(100 + index);
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.grouping;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import backtype.storm.task.WorkerTopologyContext;
+import backtype.storm.tuple.Values;
+
+/**
+ * PartialKeyGrouping、LocalFirstPartialKeyGroupingクラスのテストクラス
+ *
+ * @author kimura
+ */
+public class PartialKeyGroupingTest
+{
+    /**
+     * 偏ったキーが2タスクに均等に分散されることを確認する。
+     *
+     * @target {@link PartialKeyGrouping#chooseTasks(int, List)}
+     * @test 2タスクに500件ずつ送信されること
+     *    condition:: 10タスクに対して同一キーを1000回送信
+     *    result:: 2タスクに500件ずつ送信されること
+     */
+    @Test
+    public void testChooseTasks_偏ったキー()
+    {
+        // 準備
+        PartialKeyGrouping target = new PartialKeyGrouping();
+        target.prepare(null, null, Arrays.asList(100, 101, 102, 103, 104, 105, 106, 107, 108, 109));
+        Map<Integer, Integer> counts = new HashMap<>();
+
+        // 実施
+        for (int count = 0; count < 1000; count++)
+        {
+            Integer task = target.chooseTasks(0, new Values("HotDevice", "Message")).get(0);
+            Integer taskCount = counts.get(task);
+            counts.put(task, taskCount == null ? 1 : taskCount + 1);
+        }
+
+        // 検証
+        assertThat(counts.size(), equalTo(2));
+        for (Integer taskCount : counts.values())
+        {
+            assertThat(taskCount, equalTo(500));
+        }
+    }
+
+    /**
+     * 同一ワーカ内のタスクが優先して選択されることを確認する。
+     *
+     * @target {@link LocalFirstPartialKeyGrouping#chooseTasks(int, List)}
+     * @test 同一ワーカ内のタスクのみに送信されること
+     *    condition:: 10タスク中2タスクが同一ワーカに存在する状態で1000種類のキーを送信
+     *    result:: 同一ワーカ内のタスクのみに送信されること
+     */
+    @Test
+    public void testChooseTasks_同一ワーカ優先()
+    {
+        // 準備
+        WorkerTopologyContext context = Mockito.mock(WorkerTopologyContext.class);
+        Mockito.when(context.getThisWorkerTasks()).thenReturn(Arrays.asList(1, 103, 107));
+        LocalFirstPartialKeyGrouping target = new LocalFirstPartialKeyGrouping();
+        target.prepare(context, null, Arrays.asList(100, 101, 102, 103, 104, 105, 106, 107, 108, 109));
+        Map<Integer, Integer> counts = new HashMap<>();
+
+        // 実施
+        for (int count = 0; count < 1000; count++)
+        {
+            Integer task = target.chooseTasks(0, new Values("Device" + count, "Message")).get(0);
+            Integer taskCount = counts.get(task);
+            counts.put(task, taskCount == null ? 1 : taskCount + 1);
+        }
+
+        // 検証
+        assertThat(counts.size(), equalTo(2));
+        assertThat(counts.containsKey(103), equalTo(true));
+        assertThat(counts.containsKey(107), equalTo(true));
+    }
+
+    /**
+     * 同一ワーカ内にタスクが存在しない場合に全タスクが候補となることを確認する。
+     *
+     * @target {@link LocalFirstPartialKeyGrouping#chooseTasks(int, List)}
+     * @test 全タスクに送信されること
+     *    condition:: 同一ワーカ内にタスクが存在しない状態で1000種類のキーを送信
+     *    result:: 全タスクに送信されること
+     */
+    @Test
+    public void testChooseTasks_同一ワーカタスク無し()
+    {
+        // 準備
+        WorkerTopologyContext context = Mockito.mock(WorkerTopologyContext.class);
+        Mockito.when(context.getThisWorkerTasks()).thenReturn(Arrays.asList(1, 2));
+        LocalFirstPartialKeyGrouping target = new LocalFirstPartialKeyGrouping();
+        target.prepare(context, null, Arrays.asList(100, 101, 102));
+        Map<Integer, Integer> counts = new HashMap<>();
+
+        // 実施
+        for (int count = 0; count < 1000; count++)
+        {
+            Integer task = target.chooseTasks(0, new Values("Device" + count, "Message")).get(0);
+            counts.put(task, 1);
+        }
+
+        // 検証
+        assertThat(counts.size(), equalTo(3));
+    }
+}
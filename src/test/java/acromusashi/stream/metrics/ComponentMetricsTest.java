@@ -0,0 +1,168 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.metrics;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import backtype.storm.hooks.ITaskHook;
+import backtype.storm.metric.api.IMetric;
+import backtype.storm.task.TopologyContext;
+
+/**
+ * ComponentMetricsのテストクラス
+ *
+ * @author kimura
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ComponentMetricsTest
+{
+    /** テスト用のTopologyContext */
+    @Mock
+    private TopologyContext mockContext;
+
+    /**
+     * Storm設定でメトリクスが無効化されている場合に登録されないことを確認する。
+     *
+     * @target {@link ComponentMetrics#register(Map, TopologyContext, boolean, boolean)}
+     * @test nullが返り、メトリクスが登録されないこと
+     *    condition:: Storm設定でメトリクス無効
+     *    result:: nullが返り、メトリクスが登録されないこと
+     */
+    @Test
+    public void testRegister_Storm設定で無効()
+    {
+        // 準備
+        Map<String, Object> stormConf = new HashMap<>();
+        stormConf.put(ComponentMetrics.ENABLED_KEY, "false");
+
+        // 実施
+        ComponentMetrics actual = ComponentMetrics.register(stormConf, this.mockContext, true, true);
+
+        // 検証
+        assertThat(actual, nullValue());
+        Mockito.verify(this.mockContext, Mockito.never()).registerMetric(Matchers.anyString(),
+                Matchers.any(IMetric.class), Matchers.anyInt());
+    }
+
+    /**
+     * メトリクスが有効な場合に指定間隔で登録されることを確認する。
+     *
+     * @target {@link ComponentMetrics#register(Map, TopologyContext, boolean, boolean)}
+     * @test メトリクスが登録され、タスクフックは登録されないこと
+     *    condition:: 出力間隔10秒を指定
+     *    result:: メトリクスが登録され、タスクフックは登録されないこと
+     */
+    @Test
+    public void testRegister_有効()
+    {
+        // 準備
+        Map<String, Object> stormConf = new HashMap<>();
+        stormConf.put(ComponentMetrics.BUCKET_SECS_KEY, 10);
+
+        // 実施
+        ComponentMetrics actual = ComponentMetrics.register(stormConf, this.mockContext, true, true);
+
+        // 検証
+        Mockito.verify(this.mockContext).registerMetric(ComponentMetrics.COUNTERS_NAME, actual, 10);
+        Mockito.verify(this.mockContext).registerMetric(ComponentMetrics.EXECUTE_LATENCY_NAME,
+                actual.getExecuteLatency(), 10);
+        Mockito.verify(this.mockContext, Mockito.never()).addTaskHook(
+                Matchers.any(ITaskHook.class));
+    }
+
+    /**
+     * 自動Ackと明示Ackの件数が分けて出力されることを確認する。
+     *
+     * @target {@link ComponentMetrics#getValueAndReset()}
+     * @test 各件数が出力され、出力後にリセットされること
+     *    condition:: 処理3件、Ack3件(うち自動Ack2件)、Fail1件、Emit4件を記録
+     *    result:: 各件数が出力され、出力後にリセットされること
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetValueAndReset_件数出力()
+    {
+        // 準備
+        ComponentMetrics target = new ComponentMetrics(true);
+        for (int count = 0; count < 3; count++)
+        {
+            target.recordExecute(1000L);
+            target.recordAck();
+        }
+        target.recordAutoAck();
+        target.recordAutoAck();
+        target.recordFail();
+        for (int count = 0; count < 4; count++)
+        {
+            target.recordEmit();
+        }
+
+        // 実施
+        Map<String, Long> actual = (Map<String, Long>) target.getValueAndReset();
+        Map<String, Long> reset = (Map<String, Long>) target.getValueAndReset();
+
+        // 検証
+        assertThat(actual.get("processed"), equalTo(3L));
+        assertThat(actual.get("acked"), equalTo(3L));
+        assertThat(actual.get("failed"), equalTo(1L));
+        assertThat(actual.get("emitted"), equalTo(4L));
+        assertThat(actual.get("autoAcked"), equalTo(2L));
+        assertThat(actual.get("explicitAcked"), equalTo(1L));
+        assertThat(reset.get("processed"), equalTo(0L));
+        assertThat(reset.get("acked"), equalTo(0L));
+    }
+
+    /**
+     * Spoutのメトリクスでは明示Ack件数が出力されないことを確認する。
+     *
+     * @target {@link ComponentMetrics#getValueAndReset()}
+     * @test Ack件数が出力され、明示Ack件数が出力されないこと
+     *    condition:: SpoutのメトリクスでAck2件、Fail1件、Emit3件を記録
+     *    result:: Ack件数が出力され、明示Ack件数が出力されないこと
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetValueAndReset_Spout件数出力()
+    {
+        // 準備
+        ComponentMetrics target = new ComponentMetrics(false);
+        target.recordAck();
+        target.recordAck();
+        target.recordFail();
+        for (int count = 0; count < 3; count++)
+        {
+            target.recordEmit();
+        }
+
+        // 実施
+        Map<String, Long> actual = (Map<String, Long>) target.getValueAndReset();
+
+        // 検証
+        assertThat(actual.get("acked"), equalTo(2L));
+        assertThat(actual.get("failed"), equalTo(1L));
+        assertThat(actual.get("emitted"), equalTo(3L));
+        assertThat(actual.containsKey("explicitAcked"), equalTo(false));
+    }
+}
@@ -0,0 +1,124 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.metrics;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * LatencyHistogramのテストクラス
+ *
+ * @author kimura
+ */
+public class LatencyHistogramTest
+{
+    /**
+     * バケットの上限値が記録値以上、かつ相対誤差の範囲内となることを確認する。
+     *
+     * @target {@link LatencyHistogram#bucketIndex(long)}
+     * @test バケットの上限値が記録値以上、かつ相対誤差の範囲内となること
+     *    condition:: 0からLong.MAX_VALUEまでの値のバケットを算出
+     *    result:: バケットの上限値が記録値以上、かつ相対誤差の範囲内となること
+     */
+    @Test
+    public void testBucketIndex_誤差範囲確認()
+    {
+        // 準備
+        long[] values = {0L, 1L, 31L, 32L, 33L, 63L, 64L, 1000L, 123456789L, Long.MAX_VALUE};
+
+        for (long value : values)
+        {
+            // 実施
+            long upperBound = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value));
+
+            // 検証
+            assertTrue(upperBound >= value);
+            assertTrue((upperBound - value) <= value / LatencyHistogram.SUB_BUCKET_COUNT);
+        }
+    }
+
+    /**
+     * 記録した値のパーセンタイルが出力されることを確認する。
+     *
+     * @target {@link LatencyHistogram#getValueAndReset()}
+     * @test 件数、最大値、パーセンタイルがマイクロ秒で出力されること
+     *    condition:: 1～1000マイクロ秒を1件ずつ記録
+     *    result:: 件数、最大値、パーセンタイルがマイクロ秒で出力されること
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetValueAndReset_パーセンタイル出力()
+    {
+        // 準備
+        LatencyHistogram target = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++)
+        {
+            target.record(micros * 1000L);
+        }
+
+        // 実施
+        Map<String, Object> actual = (Map<String, Object>) target.getValueAndReset();
+
+        // 検証
+        assertThat((Long) actual.get("count"), equalTo(1000L));
+        assertThat((Long) actual.get("max"), equalTo(1000L));
+        assertThat((Long) actual.get("mean"), equalTo(500L));
+        assertRange((Long) actual.get("p50"), 500L);
+        assertRange((Long) actual.get("p90"), 900L);
+        assertRange((Long) actual.get("p99"), 990L);
+        assertRange((Long) actual.get("p999"), 999L);
+    }
+
+    /**
+     * 出力後に記録値がリセットされることを確認する。
+     *
+     * @target {@link LatencyHistogram#getValueAndReset()}
+     * @test 件数0のみが出力されること
+     *    condition:: 記録後に2回出力
+     *    result:: 2回目は件数0のみが出力されること
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetValueAndReset_リセット確認()
+    {
+        // 準備
+        LatencyHistogram target = new LatencyHistogram();
+        target.record(5000L);
+        target.getValueAndReset();
+
+        // 実施
+        Map<String, Object> actual = (Map<String, Object>) target.getValueAndReset();
+
+        // 検証
+        assertThat((Long) actual.get("count"), equalTo(0L));
+        assertThat(actual.get("max"), nullValue());
+    }
+
+    /**
+     * 値が期待値から相対誤差の範囲内であることを確認する。
+     *
+     * @param actual 実際の値
+     * @param expected 期待値
+     */
+    private void assertRange(long actual, long expected)
+    {
+        assertTrue(actual >= expected);
+        assertTrue(actual <= expected + expected / LatencyHistogram.SUB_BUCKET_COUNT + 1);
+    }
+}
@@ -0,0 +1,251 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.serializer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.LinkedHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import acromusashi.stream.entity.LazyBody;
+import acromusashi.stream.entity.SchemaBody;
+import acromusashi.stream.entity.StreamMessage;
+import acromusashi.stream.entity.StreamMessageHeader;
+import acromusashi.stream.entity.StreamMessageSchema;
+import acromusashi.stream.entity.StreamMessageSchema.FieldType;
+import acromusashi.stream.entity.StringBodyCodec;
+import acromusashi.stream.trace.KeyHistory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * StreamMessageSerializerのテストクラス
+ *
+ * @author kimura
+ */
+public class StreamMessageSerializerTest
+{
+    /** テスト用のKryo */
+    private Kryo kryo;
+
+    /**
+     * 初期化メソッド
+     */
+    @Before
+    public void setUp()
+    {
+        this.kryo = new Kryo();
+        this.kryo.register(StreamMessage.class, new StreamMessageSerializer());
+        this.kryo.register(StreamMessageHeader.class, new StreamMessageHeaderSerializer());
+        this.kryo.register(KeyHistory.class, new KeyHistorySerializer());
+        this.kryo.register(SchemaBody.class, new SchemaBodySerializer());
+        this.kryo.register(LazyBody.class, new LazyBodySerializer());
+        this.kryo.register(StringBodyCodec.class);
+        this.kryo.register(LinkedHashMap.class);
+    }
+
+    /**
+     * 全項目を設定したメッセージのシリアライズ/デシリアライズ確認を行う。
+     *
+     * @target {@link StreamMessageSerializer#write(Kryo, Output, StreamMessage)}
+     * @test ヘッダ、キー履歴、ボディが復元されること
+     *    condition:: 全項目を設定したメッセージをシリアライズ後デシリアライズ
+     *    result:: ヘッダ、キー履歴、ボディが復元されること
+     */
+    @Test
+    public void testWriteRead_全項目復元確認()
+    {
+        // 準備
+        StreamMessage message = new StreamMessage();
+        StreamMessageHeader header = message.getHeader();
+        header.setMessageKey("MessageKey");
+        header.setMessageId("MessageId");
+        header.setTimestamp(1400000000000L);
+        header.setSource("192.168.0.1");
+        header.setType("snmp");
+        header.addAdditionalHeader("SNMPVersion", "v2c");
+        header.addHistory("Key1");
+        header.addHistory("Key2");
+        message.addField("Param1", "Value1");
+        message.addField("Param2", 2);
+
+        // 実施
+        StreamMessage result = roundTrip(message);
+
+        // 検証
+        StreamMessageHeader resultHeader = result.getHeader();
+        assertThat(resultHeader.getMessageKey(), equalTo("MessageKey"));
+        assertThat(resultHeader.getMessageId(), equalTo("MessageId"));
+        assertThat(resultHeader.getTimestamp(), equalTo(1400000000000L));
+        assertThat(resultHeader.getSource(), equalTo("192.168.0.1"));
+        assertThat(resultHeader.getType(), equalTo("snmp"));
+        assertThat(resultHeader.getVersion(), equalTo(StreamMessageHeader.DEFAULT_VERSION));
+        assertThat(resultHeader.getAdditionalHeader().get("SNMPVersion"), equalTo("v2c"));
+        assertThat(resultHeader.getHistory().toString(), equalTo("KeyHistory=[Key1, Key2]"));
+        assertThat(result.getField("Param1").toString(), equalTo("Value1"));
+        assertThat((Integer) result.getField("Param2"), equalTo(2));
+    }
+
+    /**
+     * 任意項目未設定のメッセージのシリアライズ/デシリアライズ確認を行う。
+     *
+     * @target {@link StreamMessageSerializer#write(Kryo, Output, StreamMessage)}
+     * @test 未設定項目がnullのまま復元されること
+     *    condition:: キー履歴、追加ヘッダ、ボディ未設定のメッセージをシリアライズ後デシリアライズ
+     *    result:: 未設定項目がnullのまま復元されること
+     */
+    @Test
+    public void testWriteRead_未設定項目復元確認()
+    {
+        // 準備
+        StreamMessage message = new StreamMessage();
+
+        // 実施
+        StreamMessage result = roundTrip(message);
+
+        // 検証
+        assertThat(result.getHeader().getHistory(), nullValue());
+        assertThat(result.getHeader().getAdditionalHeader(), nullValue());
+        assertThat(result.getBody(), nullValue());
+    }
+
+    /**
+     * スキーマボディを持つメッセージのシリアライズ/デシリアライズ確認を行う。
+     *
+     * @target {@link SchemaBodySerializer#write(Kryo, Output, SchemaBody)}
+     * @test インデックス指定、キー指定の双方で値が復元されること
+     *    condition:: Object/long/double/未定義項目を設定したメッセージをシリアライズ後デシリアライズ
+     *    result:: インデックス指定、キー指定の双方で値が復元されること
+     */
+    @Test
+    public void testWriteRead_スキーマボディ復元確認()
+    {
+        // 準備
+        StreamMessageSchema schema = new StreamMessageSchema();
+        int nameIndex = schema.addField("Name", FieldType.OBJECT);
+        int countIndex = schema.addField("Count", FieldType.LONG);
+        int rateIndex = schema.addField("Rate", FieldType.DOUBLE);
+        int unsetIndex = schema.addField("Unset", FieldType.LONG);
+        StreamMessage message = new StreamMessage(schema);
+        message.setField(nameIndex, "Value1");
+        message.setLongField(countIndex, -3L);
+        message.setDoubleField(rateIndex, 0.5d);
+        message.addField("Extra", "ExtraValue");
+
+        // 実施
+        StreamMessage result = roundTrip(message);
+
+        // 検証
+        assertThat(result.getField(nameIndex).toString(), equalTo("Value1"));
+        assertThat(result.getLongField(countIndex), equalTo(-3L));
+        assertThat(result.getDoubleField(rateIndex), equalTo(0.5d));
+        assertThat(result.getField(unsetIndex), nullValue());
+        assertThat((Long) result.getField("Count"), equalTo(-3L));
+        assertThat(result.getField("Extra").toString(), equalTo("ExtraValue"));
+        assertThat(((SchemaBody) result.getBody()).size(), equalTo(4));
+    }
+
+    /**
+     * 登録済みスキーマのボディを持つメッセージのシリアライズ/デシリアライズ確認を行う。
+     *
+     * @target {@link SchemaBodySerializer#write(Kryo, Output, SchemaBody)}
+     * @test スキーマIDで出力され、登録済みスキーマで値が復元されること
+     *    condition:: 登録済みスキーマのメッセージを、登録前と登録後にシリアライズ
+     *    result:: 登録後の出力がシグネチャ分小さく、登録済みスキーマで値が復元されること
+     */
+    @Test
+    public void testWriteRead_登録済みスキーマ復元確認()
+    {
+        // 準備
+        StreamMessageSchema schema = new StreamMessageSchema();
+        int nameIndex = schema.addField("RegisteredName", FieldType.OBJECT);
+        int countIndex = schema.addField("RegisteredCount", FieldType.LONG);
+        StreamMessage message = new StreamMessage(schema);
+        message.setField(nameIndex, "Value1");
+        message.setLongField(countIndex, 5L);
+        int unregisteredSize = serialize(message).length;
+
+        // 実施
+        StreamMessageSchema.register(schema);
+        byte[] serialized = serialize(message);
+        StreamMessage result = this.kryo.readObject(new Input(serialized), StreamMessage.class);
+
+        // 検証
+        assertThat(unregisteredSize - serialized.length > schema.getSignature().length() - 8,
+                equalTo(true));
+        assertThat(((SchemaBody) result.getBody()).getSchema() == schema, equalTo(true));
+        assertThat(result.getField(nameIndex).toString(), equalTo("Value1"));
+        assertThat(result.getLongField(countIndex), equalTo(5L));
+    }
+
+    /**
+     * 未変換ボディを持つメッセージのシリアライズ/デシリアライズ確認を行う。
+     *
+     * @target {@link LazyBodySerializer#write(Kryo, Output, LazyBody)}
+     * @test 未変換のまま元のバイト列が復元されること
+     *    condition:: 未変換ボディを持つメッセージのキーのみ参照後シリアライズ、デシリアライズ
+     *    result:: 未変換のまま元のバイト列が復元されること
+     */
+    @Test
+    public void testWriteRead_未変換ボディ復元確認() throws Exception
+    {
+        // 準備
+        byte[] payload = "RawMessage".getBytes("UTF-8");
+        StreamMessage message = new StreamMessage(new StreamMessageHeader(), payload,
+                new StringBodyCodec());
+        message.getHeader().setMessageKey("MessageKey");
+
+        // 実施
+        StreamMessage result = roundTrip(message);
+
+        // 検証
+        assertThat(message.getLazyBody().isDecoded(), equalTo(false));
+        assertThat(result.getHeader().getMessageKey(), equalTo("MessageKey"));
+        assertThat(result.getLazyBody().isDecoded(), equalTo(false));
+        assertThat(result.getLazyBody().getBytes(), equalTo(payload));
+        assertThat(result.getBody().toString(), equalTo("RawMessage"));
+    }
+
+    /**
+     * メッセージをシリアライズして返す。
+     *
+     * @param message 対象メッセージ
+     * @return シリアライズ結果
+     */
+    private byte[] serialize(StreamMessage message)
+    {
+        Output output = new Output(1024, -1);
+        this.kryo.writeObject(output, message);
+        return output.toBytes();
+    }
+
+    /**
+     * メッセージをシリアライズ後、デシリアライズして返す。
+     *
+     * @param message 対象メッセージ
+     * @return デシリアライズ結果
+     */
+    private StreamMessage roundTrip(StreamMessage message)
+    {
+        Output output = new Output(1024, -1);
+        this.kryo.writeObject(output, message);
+        Input input = new Input(output.toBytes());
+        return this.kryo.readObject(input, StreamMessage.class);
+    }
+}
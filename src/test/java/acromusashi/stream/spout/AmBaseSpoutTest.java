@@ -19,6 +19,7 @@ import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.eq;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +32,7 @@ import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import acromusashi.stream.entity.StreamMessage;
+import backtype.storm.Config;
 import backtype.storm.spout.SpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
@@ -596,4 +598,93 @@ public class AmBaseSpoutTest
                 equalTo("KeyHistory=[MessageKey]"));
         assertThat((StreamMessage) argList.get(1), sameInstance(message));
     }
+
+    /**
+     * バッファに追加したメッセージが送信上限件数ずつ送信されることを確認する。
+     *
+     * @target {@link AmBaseSpout#nextTuple()}
+     * @test 送信上限件数ずつ追加順に各MessageIdで送信され、バッファが空になった後に次のメッセージを取得すること
+     *    condition:: 送信上限2件、onNextTuple毎に5件バッファに追加してnextTupleを4回実行
+     *    result:: 送信上限件数ずつ追加順に各MessageIdで送信され、バッファが空になった後に次のメッセージを取得すること
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Test
+    public void testNextTuple_バッファ送信()
+    {
+        // 準備
+        BufferingAmBaseSpout spout = new BufferingAmBaseSpout(5);
+        spout.setEmitBudget(2);
+        spout.setIdleBackoff(null);
+        spout.open(this.mockConfMap, this.mockContext, this.mockCollector);
+
+        // 実施
+        spout.nextTuple();
+
+        // 検証
+        assertThat(spout.nextTupleCount, equalTo(1));
+        Mockito.verify(this.mockCollector, Mockito.times(2)).emit(Mockito.anyList(),
+                Mockito.any());
+
+        // 実施
+        spout.nextTuple();
+        spout.nextTuple();
+
+        // 検証
+        assertThat(spout.nextTupleCount, equalTo(1));
+        ArgumentCaptor<List> tupleArgument = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Object> idArgument = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(this.mockCollector, Mockito.times(5)).emit(tupleArgument.capture(),
+                idArgument.capture());
+        for (int index = 0; index < 5; index++)
+        {
+            StreamMessage sent = (StreamMessage) tupleArgument.getAllValues().get(index).get(1);
+            assertThat(sent.getBody().toString(), equalTo("Message" + index));
+            assertThat(sent.getHeader().getHistory().toString(),
+                    equalTo("KeyHistory=[MessageKey" + index + "]"));
+            assertThat(idArgument.getAllValues().get(index).toString(), equalTo("MessageId"
+                    + index));
+        }
+
+        // 実施
+        spout.nextTuple();
+
+        // 検証
+        assertThat(spout.nextTupleCount, equalTo(2));
+        assertThat(spout.getEmitBufferRemaining(), equalTo(AmBaseSpout.DEFAULT_EMIT_BUFFER_CAPACITY - 3));
+    }
+
+    /**
+     * 送信上限件数が最大未完了件数で制限されることを確認する。
+     *
+     * @target {@link AmBaseSpout#nextTuple()}
+     * @test nextTuple毎に最大未完了件数分のみ送信されること
+     *    condition:: 送信上限2件、最大未完了件数1件、onNextTuple毎に5件バッファに追加してnextTupleを2回実行
+     *    result:: nextTuple毎に最大未完了件数分のみ送信されること
+     */
+    @Test
+    public void testNextTuple_最大未完了件数制限()
+    {
+        // 準備
+        BufferingAmBaseSpout spout = new BufferingAmBaseSpout(5);
+        spout.setEmitBudget(2);
+        spout.setIdleBackoff(null);
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_MAX_SPOUT_PENDING, 1);
+        spout.open(conf, this.mockContext, this.mockCollector);
+
+        // 実施
+        spout.nextTuple();
+
+        // 検証
+        Mockito.verify(this.mockCollector, Mockito.times(1)).emit(Mockito.anyList(),
+                Mockito.any());
+
+        // 実施
+        spout.nextTuple();
+
+        // 検証
+        Mockito.verify(this.mockCollector, Mockito.times(2)).emit(Mockito.anyList(),
+                Mockito.any());
+        assertThat(spout.nextTupleCount, equalTo(1));
+    }
 }
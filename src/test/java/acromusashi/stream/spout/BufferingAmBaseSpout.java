@@ -0,0 +1,76 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.spout;
+
+import java.util.Map;
+
+import acromusashi.stream.entity.StreamMessage;
+import backtype.storm.task.TopologyContext;
+
+/**
+ * AmBaseSpoutのバッファ送信検証用のモッククラス<br>
+ * onNextTuple呼び出し毎に指定件数のメッセージをバッファに追加する。
+ *
+ * @author kimura
+ */
+public class BufferingAmBaseSpout extends AmBaseSpout
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    /** onNextTuple呼び出し毎の追加件数 */
+    private int               receiveCount;
+
+    /** onNextTuple呼び出し回数 */
+    int                       nextTupleCount   = 0;
+
+    /** 追加済みメッセージ件数 */
+    int                       bufferedCount    = 0;
+
+    /**
+     * 追加件数を指定してインスタンスを生成する。
+     *
+     * @param receiveCount onNextTuple呼び出し毎の追加件数
+     */
+    public BufferingAmBaseSpout(int receiveCount)
+    {
+        this.receiveCount = receiveCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("rawtypes")
+    @Override
+    public void onOpen(Map conf, TopologyContext context)
+    {
+        // Do nothing.
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onNextTuple()
+    {
+        this.nextTupleCount++;
+        for (int count = 0; count < this.receiveCount; count++)
+        {
+            StreamMessage message = new StreamMessage();
+            message.setBody("Message" + this.bufferedCount);
+            bufferEmit(message, "MessageKey" + this.bufferedCount, "MessageId"
+                    + this.bufferedCount);
+            this.bufferedCount++;
+        }
+    }
+}
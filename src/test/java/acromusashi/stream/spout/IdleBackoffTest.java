@@ -0,0 +1,135 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.spout;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * IdleBackoffのテストクラス
+ *
+ * @author kimura
+ */
+public class IdleBackoffTest
+{
+    /**
+     * 未受信回数に応じてスピン、Yield、Parkの順に待機方式が変化することを確認する。
+     *
+     * @target {@link IdleBackoff#idle()}
+     * @test スピン回数経過後にYield、Yield回数経過後に倍増するPark時間で待機すること
+     *    condition:: スピン2回、Yield2回、Park時間10～40nsの設定で7回未受信
+     *    result:: スピン回数経過後にYield、Yield回数経過後に倍増するPark時間で待機すること
+     */
+    @Test
+    public void testIdle_待機方式変化()
+    {
+        // 準備
+        RecordingBackoff target = new RecordingBackoff(2, 2, 10L, 40L);
+
+        // 実施
+        for (int count = 0; count < 7; count++)
+        {
+            target.idle();
+        }
+
+        // 検証
+        assertThat(target.yieldCount, equalTo(2));
+        assertThat(target.parkHistory.toString(), equalTo("[10, 20, 40]"));
+        assertThat(target.getParkNanos(), equalTo(40L));
+    }
+
+    /**
+     * 受信時に待機方式が初期化されることを確認する。
+     *
+     * @target {@link IdleBackoff#reset()}
+     * @test 初期化後はスピンから再開すること
+     *    condition:: Park状態まで未受信後に初期化し、再度未受信
+     *    result:: 初期化後はスピンから再開すること
+     */
+    @Test
+    public void testReset_スピンから再開()
+    {
+        // 準備
+        RecordingBackoff target = new RecordingBackoff(1, 0, 10L, 40L);
+        target.idle();
+        target.idle();
+
+        // 実施
+        target.reset();
+        target.idle();
+
+        // 検証
+        assertThat(target.getParkNanos(), equalTo(0L));
+        assertThat(target.parkHistory.size(), equalTo(1));
+    }
+
+    /**
+     * 不正な閾値を指定した場合に例外が発生することを確認する。
+     *
+     * @target {@link IdleBackoff#IdleBackoff(int, int, long, long)}
+     * @test IllegalArgumentExceptionが発生すること
+     *    condition:: 最大Park時間に最小Park時間未満の値を指定
+     *    result:: IllegalArgumentExceptionが発生すること
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_不正閾値()
+    {
+        // 実施
+        new IdleBackoff(1, 1, 100L, 10L);
+    }
+
+    /**
+     * 待機内容を記録するテスト用クラス
+     */
+    private static class RecordingBackoff extends IdleBackoff
+    {
+        /** serialVersionUID */
+        private static final long serialVersionUID = 1L;
+
+        /** Yield回数 */
+        int                       yieldCount       = 0;
+
+        /** Park時間履歴 */
+        List<Long>                parkHistory      = new ArrayList<>();
+
+        /**
+         * 閾値を指定してインスタンスを生成する。
+         *
+         * @param spinCount スピン回数
+         * @param yieldCount Yield回数
+         * @param minParkNanos 最小Park時間
+         * @param maxParkNanos 最大Park時間
+         */
+        RecordingBackoff(int spinCount, int yieldCount, long minParkNanos, long maxParkNanos)
+        {
+            super(spinCount, yieldCount, minParkNanos, maxParkNanos);
+        }
+
+        @Override
+        protected void yieldThread()
+        {
+            this.yieldCount++;
+        }
+
+        @Override
+        protected void park(long nanos)
+        {
+            this.parkHistory.add(nanos);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.state;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * KeyedStateStoreのテストクラス
+ *
+ * @author kimura
+ */
+public class KeyedStateStoreTest
+{
+    /** 一時ディレクトリ */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 初期容量を超える件数を登録、削除した場合に値が保持されることを確認する。
+     *
+     * @target {@link KeyedStateStore#addLong(String, long)}
+     * @test 削除したキー以外の値が保持されること
+     *    condition:: 初期容量16のストアに1000件加算後、偶数番のキーを削除
+     *    result:: 削除したキー以外の値が保持されること
+     */
+    @Test
+    public void testAddLong_拡張削除後保持確認()
+    {
+        // 準備
+        KeyedStateStore target = new KeyedStateStore(null, 16, KeyedStateStore.DEFAULT_MAX_DELTAS);
+
+        // 実施
+        for (int index = 0; index < 1000; index++)
+        {
+            target.addLong("Key" + index, index);
+            target.addLong("Key" + index, 1);
+        }
+        for (int index = 0; index < 1000; index += 2)
+        {
+            target.remove("Key" + index);
+        }
+
+        // 検証
+        assertThat(target.size(), equalTo(500));
+        for (int index = 0; index < 1000; index++)
+        {
+            long expected = -1L;
+            if (index % 2 == 1)
+            {
+                expected = index + 1;
+            }
+            assertThat(target.getLong("Key" + index, -1L), equalTo(expected));
+        }
+    }
+
+    /**
+     * キー格納領域を複数回拡張した場合に値が保持されることを確認する。
+     *
+     * @target {@link KeyedStateStore#putLong(String, long)}
+     * @test 全キーの値が保持されること
+     *    condition:: 初期キー格納領域サイズを超えるキーと、複数のキー格納領域にまたがる件数のキーを登録
+     *    result:: 全キーの値が保持されること
+     */
+    @Test
+    public void testPutLong_キー格納領域拡張後保持確認()
+    {
+        // 準備
+        KeyedStateStore target = new KeyedStateStore(null, 16, KeyedStateStore.DEFAULT_MAX_DELTAS);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() * 2 <= KeyedStateStore.INITIAL_KEY_SEGMENT_SIZE)
+        {
+            builder.append("LongKey");
+        }
+        String longKey = builder.toString();
+
+        // 実施
+        target.putLong("Key", 1L);
+        target.putLong(longKey, 2L);
+        for (int index = 0; index < 20000; index++)
+        {
+            target.putLong("SegmentKey" + index, index);
+        }
+
+        // 検証
+        assertThat(target.getLong("Key", -1L), equalTo(1L));
+        assertThat(target.getLong(longKey, -1L), equalTo(2L));
+        for (int index = 0; index < 20000; index++)
+        {
+            assertThat(target.getLong("SegmentKey" + index, -1L), equalTo((long) index));
+        }
+    }
+
+    /**
+     * double値の登録、加算を確認する。
+     *
+     * @target {@link KeyedStateStore#addDouble(String, double)}
+     * @test 加算後の値が取得できること
+     *    condition:: 1.5を登録後、2.25を加算
+     *    result:: 加算後の値が取得できること
+     */
+    @Test
+    public void testAddDouble_加算確認()
+    {
+        // 準備
+        KeyedStateStore target = new KeyedStateStore();
+        target.putDouble("Rate", 1.5d);
+
+        // 実施
+        double actual = target.addDouble("Rate", 2.25d);
+
+        // 検証
+        assertThat(actual, equalTo(3.75d));
+        assertThat(target.getDouble("Rate", 0.0d), equalTo(3.75d));
+        assertThat(target.contains("Unknown"), equalTo(false));
+    }
+
+    /**
+     * 全体スナップショット、差分スナップショットから復元できることを確認する。
+     *
+     * @target {@link KeyedStateStore#open(File, int, int)}
+     * @test 最後のスナップショット時点の値が復元されること
+     *    condition:: 全体スナップショット後に更新、削除して差分スナップショットを取得し、再オープン
+     *    result:: 最後のスナップショット時点の値が復元されること
+     */
+    @Test
+    public void testOpen_差分スナップショット復元() throws IOException
+    {
+        // 準備
+        File directory = this.folder.newFolder("state");
+        KeyedStateStore store = KeyedStateStore.open(directory, 16, 10);
+        store.putLong("Key1", 1L);
+        store.putLong("Key2", 2L);
+        store.snapshot();
+        store.addLong("Key1", 10L);
+        store.remove("Key2");
+        store.putLong("Key3", 3L);
+        store.snapshot();
+        store.putLong("Key4", 4L);
+        store.close();
+
+        // 実施
+        KeyedStateStore target = KeyedStateStore.open(directory, 16, 10);
+
+        // 検証
+        assertThat(target.size(), equalTo(2));
+        assertThat(target.getLong("Key1", -1L), equalTo(11L));
+        assertThat(target.contains("Key2"), equalTo(false));
+        assertThat(target.getLong("Key3", -1L), equalTo(3L));
+        assertThat(target.contains("Key4"), equalTo(false));
+    }
+
+    /**
+     * 最大差分数を超えた場合に全体スナップショットが取得され、古いファイルが削除されることを確認する。
+     *
+     * @target {@link KeyedStateStore#snapshot()}
+     * @test 最新の全体スナップショットのみが残ること
+     *    condition:: 最大差分数1で、更新毎に3回スナップショットを取得
+     *    result:: 最新の全体スナップショットのみが残り、復元できること
+     */
+    @Test
+    public void testSnapshot_全体スナップショット切替() throws IOException
+    {
+        // 準備
+        File directory = this.folder.newFolder("state");
+        KeyedStateStore target = KeyedStateStore.open(directory, 16, 1);
+
+        // 実施
+        for (int count = 1; count <= 3; count++)
+        {
+            target.putLong("Key", count);
+            target.snapshot();
+        }
+
+        // 検証
+        String[] files = directory.list();
+        Arrays.sort(files);
+        assertThat(Arrays.toString(files), equalTo("[state-00000000000000000003.full]"));
+        assertThat(KeyedStateStore.open(directory, 16, 1).getLong("Key", -1L), equalTo(3L));
+    }
+
+    /**
+     * 差分スナップショットに更新されたエントリのみが出力されることを確認する。
+     *
+     * @target {@link KeyedStateStore#snapshot()}
+     * @test 更新が無い場合は出力されず、更新後は更新、削除したエントリのみが出力され、復元できること
+     *    condition:: 100件の全体スナップショット後に更新なしでスナップショット、1件更新、1件削除後にスナップショット
+     *    result:: 更新が無い場合は出力されず、更新後は更新、削除したエントリのみが出力され、復元できること
+     */
+    @Test
+    public void testSnapshot_差分のみ出力() throws IOException
+    {
+        // 準備
+        File directory = this.folder.newFolder("state");
+        KeyedStateStore store = KeyedStateStore.open(directory, 16, 10);
+        for (int index = 0; index < 100; index++)
+        {
+            store.putLong("Key" + index, index);
+        }
+        store.snapshot();
+
+        // 実施
+        store.snapshot();
+
+        // 検証
+        assertThat(directory.list().length, equalTo(1));
+
+        // 実施
+        store.addLong("Key5", 1000L);
+        store.remove("Key6");
+        store.addLong("Key5", 1L);
+        store.snapshot();
+        store.close();
+
+        // 検証
+        File fullFile = new File(directory, "state-00000000000000000001.full");
+        File deltaFile = new File(directory, "state-00000000000000000002.delta");
+        assertThat(deltaFile.length() * 10 < fullFile.length(), equalTo(true));
+
+        KeyedStateStore target = KeyedStateStore.open(directory, 16, 10);
+        assertThat(target.size(), equalTo(99));
+        assertThat(target.getLong("Key5", -1L), equalTo(1006L));
+        assertThat(target.contains("Key6"), equalTo(false));
+        assertThat(target.getLong("Key99", -1L), equalTo(99L));
+    }
+}
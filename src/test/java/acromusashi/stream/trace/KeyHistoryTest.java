@@ -0,0 +1,200 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.trace;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.Test;
+
+/**
+ * KeyHistoryのテストクラス
+ *
+ * @author kimura
+ */
+public class KeyHistoryTest
+{
+    /**
+     * 直前と同一のキーを追加した場合、追加されないことを確認する。
+     *
+     * @target {@link KeyHistory#addKey(String)}
+     * @test 直前と同一のキーのみ追加されないこと
+     *    condition:: 同一のキーを連続して追加後、連続しない位置で再度追加
+     *    result:: 連続して追加したキーは追加されず、連続しない位置のキーは追加されること
+     */
+    @Test
+    public void testAddKey_重複キー追加()
+    {
+        // 準備
+        KeyHistory target = new KeyHistory();
+
+        // 実施
+        target.addKey("Key1");
+        target.addKey("Key1");
+        target.addKey("Key2");
+        target.addKey("Key1");
+
+        // 検証
+        assertThat(target.toString(), equalTo("KeyHistory=[Key1, Key2, Key1]"));
+        assertThat(target.size(), equalTo(3));
+    }
+
+    /**
+     * コピー後にキーを追加した場合、コピー元とコピー先が互いに影響しないことを確認する。
+     *
+     * @target {@link KeyHistory#createDeepCopy()}
+     * @test コピー元とコピー先が互いに影響しないこと
+     *    condition:: 1つのKeyHistoryから2つコピーを生成し、それぞれ異なるキーを追加
+     *    result:: コピー元とコピー先が互いに影響しないこと
+     */
+    @Test
+    public void testCreateDeepCopy_分岐確認()
+    {
+        // 準備
+        KeyHistory base = new KeyHistory();
+        base.addKey("Parent");
+
+        // 実施
+        KeyHistory child1 = base.createDeepCopy();
+        child1.addKey("Child1");
+        KeyHistory child2 = base.createDeepCopy();
+        child2.addKey("Child2");
+        base.addKey("Base");
+
+        // 検証
+        assertThat(base.toString(), equalTo("KeyHistory=[Parent, Base]"));
+        assertThat(child1.toString(), equalTo("KeyHistory=[Parent, Child1]"));
+        assertThat(child2.toString(), equalTo("KeyHistory=[Parent, Child2]"));
+    }
+
+    /**
+     * Javaシリアライズ後にキー情報履歴が復元されることを確認する。
+     *
+     * @target {@link KeyHistory}
+     * @test キー情報履歴が復元されること
+     *    condition:: キーを追加したKeyHistoryをシリアライズ後デシリアライズ
+     *    result:: キー情報履歴が復元されること
+     */
+    @Test
+    public void testSerialize_復元確認()
+    {
+        // 準備
+        KeyHistory base = new KeyHistory();
+        base.addKey("Key1");
+        base.addKey("Key2");
+
+        // 実施
+        KeyHistory result = (KeyHistory) SerializationUtils.clone(base);
+
+        // 検証
+        assertThat(result.toString(), equalTo("KeyHistory=[Key1, Key2]"));
+        assertThat(result.contains("Key2"), equalTo(true));
+    }
+
+    /**
+     * BOUNDEDモードで最大保持件数を超えてキーを追加した場合、直近のキーのみ保持されることを確認する。
+     *
+     * @target {@link KeyHistory#addKey(String)}
+     * @test 直近の最大保持件数分のキーのみ保持されること
+     *    condition:: 最大保持件数3のBOUNDEDモードで10個のキーを追加
+     *    result:: 直近の3個のキーのみ保持されること
+     */
+    @Test
+    public void testAddKey_BOUNDEDモード()
+    {
+        // 準備
+        KeyHistory target = new KeyHistory(KeyHistoryMode.BOUNDED, 3);
+
+        // 実施
+        for (int index = 0; index < 10; index++)
+        {
+            target.addKey("Key" + index);
+        }
+
+        // 検証
+        assertThat(target.toString(), equalTo("KeyHistory=[Key7, Key8, Key9]"));
+        assertThat(target.size(), equalTo(3));
+        assertThat(target.contains("Key9"), equalTo(true));
+        assertThat(target.contains("Key0"), equalTo(false));
+    }
+
+    /**
+     * HASHEDモードでキーを追加した場合、ハッシュ値で保持されることを確認する。
+     *
+     * @target {@link KeyHistory#addKey(String)}
+     * @test ハッシュ値で保持され、包含判定が可能なこと
+     *    condition:: HASHEDモードでキーを追加
+     *    result:: ハッシュ値で保持され、包含判定が可能なこと
+     */
+    @Test
+    public void testAddKey_HASHEDモード()
+    {
+        // 準備
+        KeyHistory target = new KeyHistory(KeyHistoryMode.HASHED, 0);
+
+        // 実施
+        target.addKey("Key1");
+        target.addKey("Key2");
+        target.addKey("Key2");
+
+        // 検証
+        String expected = String.format("KeyHistory=[#%016x, #%016x]",
+                KeyHistory.hashKey("Key1"), KeyHistory.hashKey("Key2"));
+        assertThat(target.toString(), equalTo(expected));
+        assertThat(target.size(), equalTo(2));
+        assertThat(target.contains("Key2"), equalTo(true));
+        assertThat(target.contains("Key3"), equalTo(false));
+        assertThat(target.createDeepCopy().getMode(), equalTo(KeyHistoryMode.HASHED));
+    }
+
+    /**
+     * HASHEDモードでコピー後にキーを追加した場合、コピー元とコピー先が互いに影響しないことを確認する。
+     *
+     * @target {@link KeyHistory#addKeyHash(long)}
+     * @test コピー元とコピー先が互いに影響しないこと
+     *    condition:: HASHEDモードで10個のハッシュ値を追加後に2つコピーを生成し、それぞれ異なるハッシュ値を追加
+     *    result:: コピー元とコピー先が互いに影響しないこと
+     */
+    @Test
+    public void testAddKeyHash_HASHEDモード分岐確認()
+    {
+        // 準備
+        KeyHistory base = new KeyHistory(KeyHistoryMode.HASHED, 0);
+        for (long hash = 0; hash < 10; hash++)
+        {
+            base.addKeyHash(hash);
+        }
+
+        // 実施
+        KeyHistory child1 = base.createDeepCopy();
+        child1.addKeyHash(100L);
+        KeyHistory child2 = base.createDeepCopy();
+        child2.addKeyHash(200L);
+        child2.addKeyHash(201L);
+        base.addKeyHash(300L);
+
+        // 検証
+        long[] baseHashes = base.getKeyHashes();
+        long[] child1Hashes = child1.getKeyHashes();
+        long[] child2Hashes = child2.getKeyHashes();
+        assertThat(baseHashes.length, equalTo(11));
+        assertThat(baseHashes[10], equalTo(300L));
+        assertThat(child1Hashes.length, equalTo(11));
+        assertThat(child1Hashes[9], equalTo(9L));
+        assertThat(child1Hashes[10], equalTo(100L));
+        assertThat(child2Hashes.length, equalTo(12));
+        assertThat(child2Hashes[10], equalTo(200L));
+        assertThat(child2Hashes[11], equalTo(201L));
+    }
+}